@@ -1,4 +1,9 @@
+import kotlinx.serialization.json.Json
+import kotlinx.serialization.json.int
+import kotlinx.serialization.json.jsonObject
+import kotlinx.serialization.json.jsonPrimitive
 import org.jetbrains.kotlin.config.JvmTarget
+import java.io.DataOutputStream
 /*
  * Copyright 2024 The Android Open Source Project
  *
@@ -19,6 +24,75 @@ plugins {
     alias(libs.plugins.jetbrains.kotlin.android)
 }
 val homePath = System.getenv("user.home")
+
+/**
+ * Writes a binderdb-<sdk>.json asset in the binary format read by BinderDbReader, so that the
+ * app does not have to parse JSON at startup. Strings are stored once in a table and referenced
+ * by index; see BinderDbReader for the layout.
+ */
+fun writeBinderDb(source: File, target: File) {
+    val root = Json.parseToJsonElement(source.readText()).jsonObject
+    val services = root.getValue("services").jsonObject
+    val methods = root.getValue("methods").jsonObject
+    val strings = LinkedHashMap<String, Int>()
+    fun intern(value: String): Int = strings.getOrPut(value) { strings.size }
+    val serviceIds = services.map { (name, actual) ->
+        intern(name) to intern(actual.jsonPrimitive.content)
+    }
+    val methodIds = methods.map { (descriptor, transacts) ->
+        intern(descriptor) to transacts.jsonObject.map { (name, id) ->
+            intern(name) to id.jsonPrimitive.int
+        }
+    }
+    DataOutputStream(target.outputStream().buffered()).use { out ->
+        out.writeInt(0x42544442) // "BTDB"
+        out.writeInt(1)
+        out.writeInt(strings.size)
+        strings.keys.forEach {
+            val bytes = it.toByteArray(Charsets.UTF_8)
+            check(bytes.size <= 0xffff) { "String too long for the binder database: $it" }
+            out.writeShort(bytes.size)
+            out.write(bytes)
+        }
+        out.writeInt(serviceIds.size)
+        serviceIds.forEach { (name, actual) ->
+            out.writeInt(name)
+            out.writeInt(actual)
+        }
+        out.writeInt(methodIds.size)
+        methodIds.forEach { (descriptor, transacts) ->
+            out.writeInt(descriptor)
+            out.writeInt(transacts.size)
+            transacts.forEach { (name, id) ->
+                out.writeInt(name)
+                out.writeInt(id)
+            }
+        }
+    }
+}
+
+val binderDbDir = layout.buildDirectory.dir("generated/binderdb")
+val generateBinderDb = tasks.register("generateBinderDb") {
+    val sources = fileTree("src/main/assets") { include("binderdb-*.json") }
+    val outputDir = binderDbDir
+    inputs.files(sources)
+    outputs.dir(outputDir)
+    doLast {
+        val dir = outputDir.get().asFile
+        dir.mkdirs()
+        sources.forEach { writeBinderDb(it, File(dir, it.name.replace(".json", ".bin"))) }
+    }
+}
+tasks.named("preBuild") { dependsOn(generateBinderDb) }
+// The unit tests check the generated database against the JSON assets.
+tasks.withType<Test>().configureEach {
+    dependsOn(generateBinderDb)
+    // The benchmark_* tests only run, and print their timings, with -Pbenchmarks.
+    val benchmarks = project.hasProperty("benchmarks")
+    systemProperty("dpctester.benchmarks", benchmarks)
+    testLogging.showStandardStreams = benchmarks
+}
+
 android {
     signingConfigs {
         // TODO :
@@ -176,13 +250,17 @@ android {
     buildFeatures {
         viewBinding = true
     }
+    androidResources {
+        // Keep the binder transact database uncompressed so that it can be mapped from the APK.
+        noCompress += "bin"
+    }
     sourceSets {
         getByName("main") {
             aidl {
                 srcDirs("src/main/aidl")
             }
             assets {
-                srcDirs("src/main/assets")
+                srcDirs("src/main/assets", binderDbDir.get().asFile)
             }
         }
     }
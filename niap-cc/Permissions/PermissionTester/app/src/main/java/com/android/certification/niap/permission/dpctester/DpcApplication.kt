@@ -38,7 +38,8 @@ class DpcApplication : Application() {
         //call it in more suitable place
 
         BinderTransaction.Builder(applicationContext).build()
-        BinderTransactsDict.Builder(applicationContext).build()
+        // Load the transact database off the main thread; lookups wait for it if needed.
+        BinderTransactsDict.Builder(applicationContext).setExecutor(executorService).build()
     }
 
 }
\ No newline at end of file
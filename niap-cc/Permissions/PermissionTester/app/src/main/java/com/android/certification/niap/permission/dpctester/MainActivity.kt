@@ -40,6 +40,7 @@ import androidx.recyclerview.widget.DefaultItemAnimator
 import androidx.recyclerview.widget.LinearLayoutManager
 import androidx.recyclerview.widget.RecyclerView
 import com.android.certification.niap.permission.dpctester.activity.SettingsActivity
+import com.android.certification.niap.permission.dpctester.common.MainLooperBatcher
 import com.android.certification.niap.permission.dpctester.data.LogBox
 import com.android.certification.niap.permission.dpctester.databinding.ActivityMainBinding
 import com.android.certification.niap.permission.dpctester.test.CoreTestModule
@@ -103,8 +104,10 @@ class MainViewAdapter(private val list: List<LogBox>,
             }
         }
 
+        // Taken now, as the position of the row shifts when older items are dropped.
+        val item = list[position]
         holder.itemView.setOnClickListener {
-            listener.onClickItem(it, list[position])
+            listener.onClickItem(it, item)
         }
     }
 
@@ -117,6 +120,11 @@ class MainViewAdapter(private val list: List<LogBox>,
 class MainActivity : AppCompatActivity(), ActivityLogger.LogListAdaptable {
     val TAG: String = "PermissionTester";//MainActivity::class.java.simpleName
 
+    companion object {
+        // The most log items shown in the list at once.
+        private const val MAX_LOG_ITEMS = 5000
+    }
+
     private lateinit var appBarConfiguration: AppBarConfiguration
     private lateinit var binding: ActivityMainBinding
     private var mBottomSheet: BottomSheetBehavior<LinearLayout>? = null
@@ -125,11 +133,13 @@ class MainActivity : AppCompatActivity(), ActivityLogger.LogListAdaptable {
         LoggerFactory.createActivityLogger(TAG, this);
 
     private var recyclerView: RecyclerView? = null
+    // Holds at most MAX_LOG_ITEMS, so that a long run of suites does not keep every item shown.
     val itemList = mutableListOf<LogBox>()
     private fun generateItemList(): List<LogBox> {
         return itemList
     }
     private fun removeItemList(){
+        itemBatcher.clear()
         itemList.clear();
         recyclerView?.getAdapter()?.notifyDataSetChanged()
     }
@@ -271,9 +281,6 @@ class MainActivity : AppCompatActivity(), ActivityLogger.LogListAdaptable {
                         PermissionTestRunner.getInstance()
                             .runNextModule(suite, suite.methodCallback)
                     }
-                }, cbTestControl_ = {info->
-                    if(PermissionTestRunner.testThreadMutex.isLocked)
-                        PermissionTestRunner.testThreadMutex.unlock();
                 }, cbSuiteStart_ = { info->
                     if(info.count_modules>=2) {
                         logger.system("Start '${info.title}' suite. (${info.count_modules} modules)")
@@ -589,17 +596,31 @@ class MainActivity : AppCompatActivity(), ActivityLogger.LogListAdaptable {
      ********************************************/
     var mStatusData: java.util.ArrayList<String> = java.util.ArrayList()
 
-    override fun addLogBox(logbox:LogBox){
-        runOnUiThread {
-            itemList.add(logbox)
-            this.recyclerView?.adapter?.notifyItemInserted(itemList.size-1)
+    // Log items added from the test threads, inserted into the list in one batch per frame.
+    private val itemBatcher by lazy {
+        MainLooperBatcher<LogBox>((application as DpcApplication).mainThreadHandler) { batch ->
+            insertItems(batch)
         }
     }
 
+    override fun addLogBox(logbox:LogBox){
+        itemBatcher.add(logbox)
+    }
+
     override fun addLogLine(msg: String) {
-        runOnUiThread {
-            itemList.add(LogBox(Random.nextLong(), "normal", msg))
-            this.recyclerView?.adapter?.notifyItemInserted(itemList.size-1)
+        addLogBox(LogBox(Random.nextLong(), "normal", msg))
+    }
+
+    private fun insertItems(batch: List<LogBox>) {
+        val start = itemList.size
+        itemList.addAll(batch)
+        this.recyclerView?.adapter?.notifyItemRangeInserted(start, batch.size)
+        // The oldest items are dropped once the list is full; the log of every module is still
+        // kept in its info, and the full run goes to logcat.
+        val overflow = itemList.size - MAX_LOG_ITEMS
+        if (overflow > 0) {
+            itemList.subList(0, overflow).clear()
+            this.recyclerView?.adapter?.notifyItemRangeRemoved(0, overflow)
         }
     }
 
@@ -0,0 +1,84 @@
+package com.android.certification.niap.permission.dpctester.common;
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import android.os.Handler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Collects items added from any thread and hands them to the main looper in batches, at most one
+ * message per {@link #BATCH_WINDOW_MS}. The test runner uses it for test results and the main
+ * activity for log items, so that a suite of hundreds of tests updates the UI once per frame
+ * instead of once per test.
+ *
+ * @param <T> the type of the items
+ */
+public class MainLooperBatcher<T> {
+    /**
+     * How long items are collected before they are delivered to the main looper together.
+     */
+    public static final long BATCH_WINDOW_MS = 16;
+
+    private final Handler mMainHandler;
+    private final Consumer<List<T>> mSink;
+    private final ConcurrentLinkedQueue<T> mPendingItems = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean mFlushPosted = new AtomicBoolean(false);
+
+    /**
+     * @param mainHandler a {@link Handler} on the main looper
+     * @param sink        receives each batch of items, in the order they were added, on the main
+     *                    looper; a batch is never empty
+     */
+    public MainLooperBatcher(Handler mainHandler, Consumer<List<T>> sink) {
+        mMainHandler = mainHandler;
+        mSink = sink;
+    }
+
+    /**
+     * Queues the {@code item} for the next batch.
+     */
+    public void add(T item) {
+        mPendingItems.add(item);
+        if (mFlushPosted.compareAndSet(false, true)) {
+            mMainHandler.postDelayed(this::flush, BATCH_WINDOW_MS);
+        }
+    }
+
+    /**
+     * Drops the items that have not been delivered yet.
+     */
+    public void clear() {
+        mPendingItems.clear();
+    }
+
+    private void flush() {
+        // reset first so that items queued while this batch is delivered get a new flush.
+        mFlushPosted.set(false);
+        List<T> batch = new ArrayList<>();
+        T item;
+        while ((item = mPendingItems.poll()) != null) {
+            batch.add(item);
+        }
+        if (!batch.isEmpty()) {
+            mSink.accept(batch);
+        }
+    }
+}
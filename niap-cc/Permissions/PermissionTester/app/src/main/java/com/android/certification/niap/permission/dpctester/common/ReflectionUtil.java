@@ -99,8 +99,8 @@ public final class ReflectionUtil {
             Class<?> clazz, Object obj, String methodName, Class<?>[] parameterTypes, Object... args)
             throws ReflectionIsTemporaryException {
         try {
-            Method method = clazz.getDeclaredMethod(methodName, parameterTypes);
-            method.setAccessible(true);
+            Method method = MethodCache.getInstance().getDeclaredMethod(clazz, methodName,
+                    parameterTypes);
             T result = (T) method.invoke(obj, args);
             return result;
         } catch (SecurityException
@@ -119,6 +119,25 @@ public final class ReflectionUtil {
         }
     }
 
+    /**
+     * Invokes a method that has already been resolved, reporting failures the same way as the
+     * lookups by name.
+     */
+    public static <T> T invoke(Method method, Object obj, Object... args)
+            throws ReflectionIsTemporaryException {
+        try {
+            return (T) method.invoke(obj, args);
+        } catch (SecurityException
+                 | BypassTestException
+                 | IllegalArgumentException
+                 | IllegalAccessException
+                 | InvocationTargetException e) {
+            Log.w(TAG, "Reflection failed.:" + method.getName(), e);
+            throw new ReflectionIsTemporaryException(
+                    "Failed to invoke " + method.getName() + ":" + e + ":" + e.getMessage(), e);
+        }
+    }
+
     /**
      * Gets the value of a static int constant. This can be used when the constant is not yet in the
      * SDK.
@@ -40,6 +40,8 @@ open class PermissionTestModuleBase(activity: Activity) {
     open var TAG: String = PermissionTestModuleBase::class.java.simpleName
     val title: String? = javaClass.getAnnotation(PermissionTestModule::class.java)?.name
     @JvmField
+    val priority:Int = javaClass.getAnnotation(PermissionTestModule::class.java)?.priority?:0
+    @JvmField
     val isSync:Boolean = javaClass.getAnnotation(PermissionTestModule::class.java)?.sync?:false
     var key =  CaseFormat.UPPER_CAMEL.to(CaseFormat.LOWER_UNDERSCORE, javaClass.simpleName)
     var prflabel = javaClass.getAnnotation(PermissionTestModule::class.java)?.prflabel?:""
@@ -16,17 +16,28 @@ package com.android.certification.niap.permission.dpctester.test.runner
  */
 import android.content.pm.PackageManager
 import android.os.Build
+import android.os.Looper
 import androidx.core.app.ActivityCompat
+import androidx.core.os.HandlerCompat
 import androidx.preference.PreferenceManager
+import com.android.certification.niap.permission.dpctester.common.MainLooperBatcher
+import com.android.certification.niap.permission.dpctester.common.MethodCache
 import com.android.certification.niap.permission.dpctester.common.ReflectionUtil
 import com.android.certification.niap.permission.dpctester.data.LogBox
 import com.android.certification.niap.permission.dpctester.test.exception.BypassTestException
 import com.android.certification.niap.permission.dpctester.test.exception.UnexpectedTestFailureException
 import com.android.certification.niap.permission.dpctester.test.log.StaticLogger
 import com.android.certification.niap.permission.dpctester.test.tool.ReflectionTool
+import com.android.certification.niap.permission.dpctester.test.tool.ServiceHandleRegistry
 import com.android.certification.niap.permission.dpctester.test.tool.TesterUtils
-import kotlinx.coroutines.sync.Mutex
 import java.lang.reflect.InvocationTargetException
+import java.lang.reflect.Method
+import java.util.Locale
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
 import java.util.function.Consumer
 
 class PermissionTestRunner {
@@ -44,9 +55,58 @@ class PermissionTestRunner {
             }
             return instance_!!
         }
-        var testThreadMutex = Mutex(false);
 
+        // Tests of a module run concurrently on this pool. It is separate from
+        // DpcApplication.executorService, which the test cases themselves use, so a test waiting
+        // on work it has submitted there can not starve the pool it is running on.
+        private val TEST_POOL_SIZE =
+            Runtime.getRuntime().availableProcessors().coerceIn(2, 4)
+        private val testExecutor: ExecutorService =
+            Executors.newFixedThreadPool(TEST_POOL_SIZE, testThreadFactory("PermissionTest"))
+        // Modules annotated with sync=true run their tests one at a time, in declaration order.
+        private val serialExecutor: ExecutorService =
+            Executors.newSingleThreadExecutor(testThreadFactory("PermissionTestSync"))
+
+        private fun testThreadFactory(name: String): ThreadFactory {
+            val count = AtomicInteger(0)
+            return ThreadFactory { r ->
+                val thread = Thread(r, name + "-" + count.incrementAndGet())
+                thread.isDaemon = true
+                thread
+            }
+        }
+    }
+
+    // Sum of the time spent in each test of the running suite, compared with the suite's wall
+    // clock time to report how much running the tests concurrently saved.
+    private val suiteTestTime = AtomicLong(0)
+
+    // Hands the results to the UI thread in batches, rather than one message per test.
+    private val resultBatcher = MainLooperBatcher<Runnable>(
+        HandlerCompat.createAsync(Looper.getMainLooper())) { batch -> batch.forEach { it.run() } }
+
+    // Counts the results of the running suite as they come in from the test threads.
+    val results = ResultAggregator<LogBox>()
+
+    /**
+     * Copies the counts of the suite and of the module [root] to their info, along with the
+     * module's log if [withLog] is set; runs on the UI thread, which reads the info.
+     */
+    private fun publishCounts(root: PermissionTestModuleBase, withLog: Boolean) {
+        val module = results.moduleSnapshot(root, withLog)
+        root.info.count_errors = module.errors.toInt()
+        root.info.count_bypassed = module.bypassed.toInt()
+        if (withLog) {
+            root.info.moduleLog.clear()
+            root.info.moduleLog.addAll(module.log)
+        }
+        val suiteCounts = results.suiteSnapshot()
+        suite.info.count_errors = suiteCounts.errors.toInt()
+        suite.info.count_bypassed = suiteCounts.bypassed.toInt()
+    }
 
+    private fun deliverResult(delivery: Runnable) {
+        resultBatcher.add(delivery)
     }
     /**
      * Inverse the results of the test cases
@@ -65,8 +125,10 @@ class PermissionTestRunner {
     //    But if both api and permission are granted unexpectedly it's also a success case.
     //    (It suggests system grants undeclared permissions automatically)
 
-    fun newTestThread(root: PermissionTestModuleBase,testCase:Data,callback: Consumer<Result>?):Thread {
-        return Thread {
+    fun newTestTask(root: PermissionTestModuleBase, testCase:Data, callback: Consumer<Result>?,
+                    remaining: AtomicInteger):Runnable {
+        return Runnable {
+            val testStart = System.nanoTime()
 
             val is_inverse = inverse_test_result || root.inverseForPlatformTesting
             val B_SUCCESS = if(is_inverse) false else true
@@ -123,7 +185,12 @@ class PermissionTestRunner {
                     }
 
                     //StaticLogger.debug("running=>"+testCase.methodName)
-                    ReflectionUtil.invoke(root, testCase.methodName)
+                    val method = testCase.method
+                    if (method != null) {
+                        ReflectionUtil.invoke<Any>(method, root)
+                    } else {
+                        ReflectionUtil.invoke(root, testCase.methodName)
+                    }
 
 
                 } catch (ex: ReflectionUtil.ReflectionIsTemporaryException) {
@@ -234,18 +301,18 @@ class PermissionTestRunner {
                     message=message)
             )
 
+            // Tests of the same module finish concurrently; they are counted by the aggregator
+            // and the counts are copied to the suite and module info on the UI thread.
             if(result.bypassed){
-                suite.info.count_bypassed += 1
-                root.info.count_bypassed  += 1 // suite.info.count_bypassed + 1
-                root.info.moduleLog.add(
-                    LogBox(type = "bypassed", name =testCase.permission, description = message));
+                results.recordBypassed(root,
+                    LogBox(type = "bypassed", name = testCase.permission, description = message))
+            } else if(result.success){
+                results.recordPassed(root)
             }
 
             if(!result.success && !result.bypassed){
-                suite.info.count_errors += 1
-                root.info.count_errors  += 1 // suite.info.count_errors + 1
-                root.info.moduleLog.add(
-                    LogBox(type = "error", name =testCase.permission, description = message));
+                results.recordError(root,
+                    LogBox(type = "error", name = testCase.permission, description = message))
                 if(throwable != null){
                     //throwable.printStackTrace()
                     StaticLogger.info("Failed:${testCase.permission} Throwable message : ${throwable.message}")
@@ -254,10 +321,17 @@ class PermissionTestRunner {
             //safe call
             //testLatch = CountDownLatch(1);
             //suite.info.count_errors = suite.info.count_errors + if(success) 0 else 1
-            root.mActivity.runOnUiThread{
+            suiteTestTime.addAndGet(System.nanoTime() - testStart)
+            deliverResult {
+                // Counted on the UI thread so the module is reported finished after the results
+                // of all its tests, and before cbModuleControl moves on to the next module.
+                val last = remaining.decrementAndGet() == 0
+                publishCounts(root, last)
                 callback?.accept(result)
+                if(last){
+                    suite.cbModuleFinish?.accept(root.info)
+                }
                 suite.cbModuleControl?.accept(root.info)
-                suite.cbTestControl?.accept(root.info)
             }
 
         }
@@ -271,6 +345,14 @@ class PermissionTestRunner {
         if(modulePos>=suite_.modules.size){
             //suite_.info.ellapsed_time = System.currentTimeMillis() - suite_.info.start_time
             suite_.info.ellapsed_time = System.currentTimeMillis() - suite_.info.start_time;
+            val testTime = suiteTestTime.get() / 1_000_000
+            StaticLogger.info(String.format(Locale.US,
+                "Suite '%s' finished in %d ms; its tests took %d ms in total (%.2fx speedup)",
+                suite_.info.title, suite_.info.ellapsed_time, testTime,
+                if (suite_.info.ellapsed_time > 0)
+                    testTime.toDouble() / suite_.info.ellapsed_time else 1.0))
+            StaticLogger.info(ServiceHandleRegistry.getInstance().stats)
+            StaticLogger.info(MethodCache.getInstance().stats)
             //mActivity.runOnUiThread {
             suite_.cbSuiteFinish?.accept(suite_.info)
             //}
@@ -289,6 +371,8 @@ class PermissionTestRunner {
             m.info.count_tests = prepareInfo.count_tests + testCases.size
             m.info.count_errors = prepareInfo.count_errors
             m.info.count_bypassed = prepareInfo.count_bypassed
+            results.startModule(m, prepareInfo.count_errors.toLong(),
+                prepareInfo.count_bypassed.toLong())
             m.info.self = m;
             if (prepareInfo.count_tests > 0) {
                 StaticLogger.info("there are ${prepareInfo.count_tests} pre-running testcases")
@@ -296,25 +380,18 @@ class PermissionTestRunner {
             m.mActivity.runOnUiThread {
                 suite_.cbModuleStart?.accept(m.info)
             }
-            val threads = mutableListOf<Thread>()
-
+            if (testCases.isEmpty()) {
+                m.mActivity.runOnUiThread{
+                    this.suite.cbModuleFinish?.accept(m.info)
+                }
+            }
+            // The last test to report its result also reports the module finished.
+            val remaining = AtomicInteger(testCases.size)
+            val executor = if (m.isSync) serialExecutor else testExecutor
             for (testCase in testCases) {
                 // Block If the version is not supported.
                 // If the permission has a corresponding task then run it.
-                val thread = newTestThread(m, testCase, callback)
-                //m.mActivity.runOnUiThread(thread);
-                thread.start();
-                synchronized(threads) {
-                    thread.join(1000)
-                }
-                if(m.isSync) testThreadMutex.tryLock()
-            }
-            //wait all thread finished
-            /*for (thread in threads) {
-                thread.join(500)
-            }*/
-            m.mActivity.runOnUiThread{
-                this.suite.cbModuleFinish?.accept(m.info)
+                executor.execute(newTestTask(m, testCase, callback, remaining))
             }
         } else {
             //Skip
@@ -343,6 +420,11 @@ class PermissionTestRunner {
         }
         running = true;
         modulePos=0
+        suiteTestTime.set(0)
+        results.reset()
+        // Higher priority modules run first; sortByDescending is stable, so modules with the
+        // same priority keep the order the suite declares them in.
+        suite_.modules.sortByDescending { it.priority }
         runNextModule(suite_,this.suite.methodCallback)
 
     }
@@ -366,7 +448,8 @@ class PermissionTestRunner {
         val requiredPermissions: Array<String>,
         val requestedPermissions: Array<String>,
         val developmentProtection: Boolean,
-        val ignore:Boolean
+        val ignore:Boolean,
+        val method: Method? = null
     ){
         constructor(permission: String) : this(permission=permission,
             sdkMin = 0,sdkMax=1000, methodName = "", requiredPermissions= emptyArray(),
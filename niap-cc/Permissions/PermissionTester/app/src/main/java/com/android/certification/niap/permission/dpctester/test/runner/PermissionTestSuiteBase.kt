@@ -48,7 +48,6 @@ open class PermissionTestSuiteBase(val activity: Activity, val async: Boolean, v
     var cbSuiteStart: Consumer<Info>?=null;
     var cbSuiteFinish: Consumer<Info>?=null;
     var cbModuleControl:Consumer<PermissionTestModuleBase.Info>?=null
-    var cbTestControl:Consumer<PermissionTestModuleBase.Info>?=null
     var cbModuleStart: Consumer<PermissionTestModuleBase.Info>?=null;
     var cbModuleFinish: Consumer<PermissionTestModuleBase.Info>?=null;
 
@@ -57,8 +56,7 @@ open class PermissionTestSuiteBase(val activity: Activity, val async: Boolean, v
                    cbSuiteFinish_: Consumer<Info>?,
                    cbModuleStart_: Consumer<PermissionTestModuleBase.Info>?,
                    cbModuleFinish_: Consumer<PermissionTestModuleBase.Info>?,
-                   cbModuleControl_:Consumer<PermissionTestModuleBase.Info>?=null,
-                   cbTestControl_:Consumer<PermissionTestModuleBase.Info>?=null
+                   cbModuleControl_:Consumer<PermissionTestModuleBase.Info>?=null
     ){
         info.title = title
         info.details = details
@@ -69,7 +67,6 @@ open class PermissionTestSuiteBase(val activity: Activity, val async: Boolean, v
         cbModuleStart = cbModuleStart_
         cbModuleFinish = cbModuleFinish_
         cbModuleControl = cbModuleControl_
-        cbTestControl = cbTestControl_
 
         //
         PermissionTestRunner.getInstance().start(this,callback)
@@ -0,0 +1,154 @@
+package com.android.certification.niap.permission.dpctester.test.runner;
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the results of a suite's tests as they are reported from the test threads, per module
+ * and for the whole suite, and keeps each module's log of notable results.
+ *
+ * <p>Recording a result never blocks: the counters are {@link LongAdder}s and the logs are
+ * lock-free queues, so tests finishing at the same time neither lose updates nor wait on each
+ * other. Readers take a {@link Snapshot}; a snapshot taken while results are still being
+ * recorded may already count a result whose log entry it does not include yet.
+ *
+ * @param <E> the type of the log entries
+ */
+public class ResultAggregator<E> {
+
+    /**
+     * The counts and log of a module, or of the whole suite, at the time it was taken.
+     */
+    public static final class Snapshot<E> {
+        public final long passed;
+        public final long errors;
+        public final long bypassed;
+        public final List<E> log;
+
+        Snapshot(long passed, long errors, long bypassed, List<E> log) {
+            this.passed = passed;
+            this.errors = errors;
+            this.bypassed = bypassed;
+            this.log = log;
+        }
+
+        public long getTotal() {
+            return passed + errors + bypassed;
+        }
+
+        @Override
+        public String toString() {
+            return "passed=" + passed + " errors=" + errors + " bypassed=" + bypassed
+                    + " log=" + log.size();
+        }
+    }
+
+    private static final class Counters<E> {
+        final LongAdder passed = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder bypassed = new LongAdder();
+        final ConcurrentLinkedQueue<E> log;
+
+        Counters(ConcurrentLinkedQueue<E> log) {
+            this.log = log;
+        }
+
+        Snapshot<E> snapshot(boolean withLog) {
+            List<E> log = withLog && this.log != null
+                    ? Collections.unmodifiableList(new ArrayList<>(this.log))
+                    : Collections.emptyList();
+            return new Snapshot<>(passed.sum(), errors.sum(), bypassed.sum(), log);
+        }
+    }
+
+    private final Counters<E> mSuite = new Counters<>(null);
+    // keyed by the module instance.
+    private final ConcurrentHashMap<Object, Counters<E>> mModules = new ConcurrentHashMap<>();
+
+    /**
+     * Clears all counts, for a new run of the suite.
+     */
+    public void reset() {
+        mSuite.passed.reset();
+        mSuite.errors.reset();
+        mSuite.bypassed.reset();
+        mModules.clear();
+    }
+
+    /**
+     * Starts counting the results of the {@code module} from the given counts, e.g. those of
+     * tests the module ran while it was prepared; any earlier counts of the module are dropped.
+     * The starting counts are not added to the suite's.
+     */
+    public void startModule(Object module, long errors, long bypassed) {
+        Counters<E> counters = new Counters<>(new ConcurrentLinkedQueue<>());
+        counters.errors.add(errors);
+        counters.bypassed.add(bypassed);
+        mModules.put(module, counters);
+    }
+
+    private Counters<E> module(Object module) {
+        return mModules.computeIfAbsent(module, m -> new Counters<>(new ConcurrentLinkedQueue<>()));
+    }
+
+    public void recordPassed(Object module) {
+        module(module).passed.increment();
+        mSuite.passed.increment();
+    }
+
+    /**
+     * Counts a failed test, adding the {@code entry}, if any, to the module's log.
+     */
+    public void recordError(Object module, E entry) {
+        Counters<E> counters = module(module);
+        counters.errors.increment();
+        mSuite.errors.increment();
+        if (entry != null) {
+            counters.log.add(entry);
+        }
+    }
+
+    /**
+     * Counts a bypassed test, adding the {@code entry}, if any, to the module's log.
+     */
+    public void recordBypassed(Object module, E entry) {
+        Counters<E> counters = module(module);
+        counters.bypassed.increment();
+        mSuite.bypassed.increment();
+        if (entry != null) {
+            counters.log.add(entry);
+        }
+    }
+
+    /**
+     * Returns the counts of the {@code module}, with a copy of its log if {@code withLog} is set.
+     */
+    public Snapshot<E> moduleSnapshot(Object module, boolean withLog) {
+        return module(module).snapshot(withLog);
+    }
+
+    /**
+     * Returns the counts of the whole suite; the suite has no log of its own.
+     */
+    public Snapshot<E> suiteSnapshot() {
+        return mSuite.snapshot(false);
+    }
+}
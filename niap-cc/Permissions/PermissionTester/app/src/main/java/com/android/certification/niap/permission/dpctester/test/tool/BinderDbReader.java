@@ -0,0 +1,94 @@
+package com.android.certification.niap.permission.dpctester.test.tool;
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Decodes the binary transact database generated at build time from the binderdb-&lt;sdk&gt;.json
+ * assets by the {@code generateBinderDb} task in app/build.gradle.kts.
+ *
+ * <p>All values are big-endian:
+ * <pre>
+ * int     magic ("BTDB")
+ * int     format version
+ * int     string count, followed by each string as an unsigned short byte length and its UTF-8
+ *         bytes; all names below are indexes into this table
+ * int     service count, followed by (int name, int actual service name) pairs
+ * int     descriptor count, followed by each descriptor as (int descriptor, int method count) and
+ *         the descriptor's (int method name, int transact ID) pairs
+ * </pre>
+ */
+public class BinderDbReader {
+    static final int MAGIC = 0x42544442;
+    static final int VERSION = 1;
+
+    private BinderDbReader() {
+    }
+
+    /**
+     * Reads the database in the {@code buffer}, which may be a mapped asset, adding the service
+     * name synonyms to {@code services} and returning the transact IDs compiled into an index.
+     *
+     * @throws IOException if the buffer does not hold a database in the supported format
+     */
+    public static TransactIndex read(ByteBuffer buffer, Map<String, String> services)
+            throws IOException {
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a binder transact database");
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported binder transact database version " + version);
+            }
+
+            String[] strings = new String[buffer.getInt()];
+            byte[] bytes = new byte[256];
+            for (int i = 0; i < strings.length; i++) {
+                int length = buffer.getShort() & 0xffff;
+                if (length > bytes.length) {
+                    bytes = new byte[length];
+                }
+                buffer.get(bytes, 0, length);
+                strings[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+            }
+
+            int serviceCount = buffer.getInt();
+            for (int i = 0; i < serviceCount; i++) {
+                services.put(strings[buffer.getInt()], strings[buffer.getInt()]);
+            }
+
+            TransactIndex.Builder builder = new TransactIndex.Builder();
+            int descriptorCount = buffer.getInt();
+            for (int i = 0; i < descriptorCount; i++) {
+                String descriptor = strings[buffer.getInt()];
+                int methodCount = buffer.getInt();
+                for (int j = 0; j < methodCount; j++) {
+                    builder.add(descriptor, strings[buffer.getInt()], buffer.getInt());
+                }
+            }
+            return builder.build();
+        } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Truncated or corrupt binder transact database", e);
+        }
+    }
+}
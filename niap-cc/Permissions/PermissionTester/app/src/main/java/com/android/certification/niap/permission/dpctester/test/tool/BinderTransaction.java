@@ -14,32 +14,22 @@ package com.android.certification.niap.permission.dpctester.test.tool;
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-import android.accessibilityservice.AccessibilityServiceInfo;
-import android.accounts.Account;
-import android.annotation.SuppressLint;
-import android.app.PendingIntent;
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 import android.content.ServiceConnection;
-import android.net.NetworkCapabilities;
-import android.net.Uri;
 import android.os.IBinder;
 import android.os.IInterface;
 import android.os.Parcel;
-import android.os.ParcelFileDescriptor;
-import android.os.ParcelUuid;
 import android.os.Parcelable;
 import android.os.RemoteException;
 import android.text.TextUtils;
 import android.util.Log;
 
-import com.android.certification.niap.permission.dpctester.common.ReflectionUtil;
 import com.android.certification.niap.permission.dpctester.test.exception.BypassTestException;
 import com.android.certification.niap.permission.dpctester.test.exception.UnexpectedTestFailureException;
 import com.android.certification.niap.permission.dpctester.test.log.StaticLogger;
 
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Proxy;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
@@ -81,74 +71,57 @@ public class BinderTransaction  {
     }
 
 
-    private static Parcel handleBinderInput(Parcel data,Object parameter,Boolean useCharSequence,Class<?> clazzRemoteCallback) throws ReflectionUtil.ReflectionIsTemporaryException {
+    private static final MarshallerRegistry<Parcel> marshallers = createMarshallers();
 
+    /**
+     * Returns the registry used to write the parameters of direct transacts to the data
+     * {@link Parcel}; additional parameter types can be supported by registering a marshaller
+     * for them.
+     */
+    public static MarshallerRegistry<Parcel> getMarshallers() {
+        return marshallers;
+    }
 
-        if (parameter instanceof CharSequence && useCharSequence) {
-            /*if(parameter == null) {
+    private static MarshallerRegistry<Parcel> createMarshallers() {
+        MarshallerRegistry<Parcel> registry = new MarshallerRegistry<>((data, value) ->
+                Log.d("BinderTransaction","unknown parameter:"+value));
+        registry
+                .register(String.class, (data, value) -> data.writeString((String) value))
+                .register(Long.class, (data, value) -> data.writeLong((Long) value))
+                .register(Integer.class, (data, value) -> data.writeInt((Integer) value))
+                .register(Boolean.class, (data, value) -> data.writeInt((Boolean) value ? 1 : 0))
+                .register(int[].class, (data, value) -> data.writeIntArray((int[]) value))
+                .register(byte[].class, (data, value) -> data.writeByteArray((byte[]) value))
+                .register(String[].class, (data, value) -> data.writeStringArray((String[]) value))
+                .register(Proxy.class, (data, value) -> {})
+                .register(IInterface.class,
+                        (data, value) -> data.writeStrongBinder(((IInterface) value).asBinder()))
+                .register(IBinder.class, (data, value) -> data.writeStrongBinder((IBinder) value));
+        try {
+            // RemoteCallback is a hidden Parcelable that is written without the non-null marker.
+            registry.register(Class.forName("android.os.RemoteCallback"), (data, value) -> {
                 data.writeInt(0);
-            }*/
-            data.writeInt(1);
-            TextUtils.writeToParcel((CharSequence) parameter, data, 0);
-
-        } else if (parameter instanceof String) {
-            data.writeString((String) parameter);
-        } else if (parameter instanceof Long) {
-            data.writeLong((Long) parameter);
-        } else if (parameter instanceof Integer) {
-            data.writeInt((Integer) parameter);
-        } else if (parameter instanceof Boolean) {
-            data.writeInt((Boolean) parameter ? 1 : 0);
-        } else if (parameter instanceof int[]) {
-            data.writeIntArray((int[]) parameter);
-        } else if (parameter instanceof byte[]) {
-            data.writeByteArray((byte[]) parameter);
-        } else if (parameter instanceof Proxy) {
-            //ReflectionUtils.checkDeclaredMethod(parameter,"");
-        } else if (parameter instanceof IInterface) {
-            data.writeStrongBinder(
-                    parameter != null ? ((IInterface) parameter).asBinder() : null);
-        } else if (parameter instanceof IBinder) {
-            data.writeStrongBinder((IBinder) parameter);
-        } else if (parameter instanceof ComponentName) {
-            data.writeInt(1);
-            ((ComponentName) parameter).writeToParcel(data, 0);
-        } else if (parameter instanceof Uri) {
-            data.writeInt(1);
-            ((Uri) parameter).writeToParcel(data, 0);
-        } else if (parameter instanceof String[]) {
-            data.writeStringArray((String[]) parameter);
-        } else if (parameter instanceof Account) {
-            data.writeInt(1);
-            ((Account) parameter).writeToParcel(data, 0);
-        } else if (parameter instanceof AccessibilityServiceInfo) {
-            data.writeInt(1);
-            ((AccessibilityServiceInfo) parameter).writeToParcel(data, 0);
-        } else if (parameter instanceof ParcelUuid) {
-            data.writeInt(1);
-            ((ParcelUuid) parameter).writeToParcel(data, 0);
-        } else if (parameter instanceof PendingIntent) {
-            data.writeInt(1);
-            ((PendingIntent) parameter).writeToParcel(data, 0);
-        } else if (parameter instanceof NetworkCapabilities) {
-            data.writeInt(1);
-            ((NetworkCapabilities) parameter).writeToParcel(data, 0);
-        } else if (parameter instanceof ParcelFileDescriptor) {
-            //mLogger.logSystem("here");
+                ((Parcelable) value).writeToParcel(data, 0);
+            });
+        } catch (ClassNotFoundException e) {
+            StaticLogger.error("android.os.RemoteCallback is not available on this device", e);
+        }
+        // All other Parcelables (ComponentName, Uri, Account, PendingIntent, etc.) are written
+        // with a non-null marker followed by their contents.
+        registry.register(Parcelable.class, (data, value) -> {
             data.writeInt(1);
-            ((ParcelFileDescriptor) parameter).writeToParcel(data, 0);
-        } else if (clazzRemoteCallback.isInstance(parameter)) {
-            data.writeInt(0);
-            ReflectionUtil.invoke(parameter, "writeToParcel",data,0);
+            ((Parcelable) value).writeToParcel(data, 0);
+        });
+        return registry;
+    }
 
-        } else if (parameter instanceof Parcelable) {
+    private static void handleBinderInput(Parcel data,Object parameter,Boolean useCharSequence) {
+        if (useCharSequence && parameter instanceof CharSequence) {
             data.writeInt(1);
-            ((Parcelable) parameter).writeToParcel(data, 0);
+            TextUtils.writeToParcel((CharSequence) parameter, data, 0);
         } else {
-            Log.d("BinderTransaction","unknown parameter:"+parameter);
+            marshallers.marshal(data, parameter);
         }
-
-        return data;
     }
 
 
@@ -167,36 +140,31 @@ public class BinderTransaction  {
         return invoke(ibinder,descriptor,methodName,useCharSequence,parameters);
     }
 
-    @SuppressLint("PrivateApi")
     private Parcel invoke(String serviceName, String descriptor, String methodName,boolean useCharSequence, Object ... parameters)
     {
         IBinder binder;
         try {
-            binder = (IBinder) Class.forName("android.os.ServiceManager")
-                    .getMethod("getService",String.class).invoke(null,serviceName);
+            binder = ServiceHandleRegistry.getInstance().getService(serviceName);
             if(binder == null){
                 throw new BypassTestException("The " + serviceName
                         + " service guarded by this permission is not available on this device");
             }
-        } catch (IllegalAccessException | InvocationTargetException | NoSuchMethodException |
-                 ClassNotFoundException e) {
+        } catch (ReflectiveOperationException e) {
             throw new RuntimeException(e);
         }
 
         return invoke(binder,descriptor,methodName,useCharSequence,parameters);
     }
 
-    @SuppressLint("PrivateApi")
     private Parcel invoke(IBinder binder, String descriptor, String methodName, Boolean useCharSequence, Object ... parameters){
         try {
             int tId = BinderTransactsDict.getInstance().getTransactId(descriptor,methodName);
-            Class<?> clazzRemoteCallback =  Class.forName("android.os.RemoteCallback");
             Parcel reply = Parcel.obtain();
             Parcel data  = Parcel.obtain();
             data.writeInterfaceToken(descriptor);
 
             for(Object parameter : parameters) {
-               data =  handleBinderInput(data, parameter, useCharSequence, clazzRemoteCallback);
+               handleBinderInput(data, parameter, useCharSequence);
             }
             //Log.d("tag",">"+tId+":"+methodName);
             binder.transact(tId, data, reply, 0);
@@ -209,11 +177,6 @@ public class BinderTransaction  {
             } else {
                 throw new UnexpectedTestFailureException(e);
             }
-        } catch (ClassNotFoundException e) {
-            throw new UnexpectedTestFailureException(e);
-
-        } catch (ReflectionUtil.ReflectionIsTemporaryException e) {
-            throw new UnexpectedTestFailureException(e);
         }
     }
 
@@ -15,17 +15,25 @@ package com.android.certification.niap.permission.dpctester.test.tool;
  * limitations under the License.
  */
 import android.content.Context;
+import android.content.res.AssetFileDescriptor;
 import android.content.res.AssetManager;
 import android.os.Build;
+import android.os.SystemClock;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 import com.android.certification.niap.permission.dpctester.test.log.StaticLogger;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -34,9 +42,10 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 public class BinderTransactsDict {
     static Map<String,String> serviceNameSynonyms = new HashMap<>();
 
-    static Map<String, Map<String,Integer>> indexDb = new HashMap<>();
+    static volatile TransactIndex transactIndex = null;
 
     Context mContext;
+    private FutureTask<TransactIndex> mLoadTask;
     private static BinderTransactsDict instance = null;
     private BinderTransactsDict(){
 
@@ -53,62 +62,151 @@ public class BinderTransactsDict {
         return instance;
     }
 
-    private void build(BinderTransactsDict.Builder builder) {
+    private synchronized void build(BinderTransactsDict.Builder builder) {
         this.mContext = builder.mContext;
         //Initialize Database According to the Database File
-        try {
-            AssetManager am = mContext.getResources().getAssets();
-            //Change suffix depends on system version
-
-            var SDK_INT = Build.VERSION.SDK_INT;
-            if(TesterUtils.isAtLeastBaklava()){
-                SDK_INT = 36;
-            }
+        mLoadTask = new FutureTask<>(this::load);
+        if (builder.mExecutor != null) {
+            // The database is loaded in the background and getTransactId waits for it.
+            builder.mExecutor.execute(mLoadTask);
+        } else {
+            mLoadTask.run();
+        }
+    }
 
-            String filename = String.format(Locale.getDefault(),"binderdb-%d.json",
-                    SDK_INT);
-            StaticLogger.debug("Binder Transaction filename:"+filename);
+    private TransactIndex load() throws IOException {
+        long start = SystemClock.elapsedRealtime();
+        AssetManager am = mContext.getResources().getAssets();
+        //Change suffix depends on system version
 
-            InputStream is = am.open(filename);
-            BufferedReader br = new BufferedReader(new InputStreamReader(is));
-            String allText = br.lines().collect(Collectors.joining());
+        var SDK_INT = Build.VERSION.SDK_INT;
+        if(TesterUtils.isAtLeastBaklava()){
+            SDK_INT = 36;
+        }
 
-            ObjectMapper mapper = new ObjectMapper();
-            JsonNode root = mapper.readTree(allText);
+        String filename = String.format(Locale.getDefault(),"binderdb-%d",SDK_INT);
+        StaticLogger.debug("Binder Transaction filename:"+filename);
+
+        Map<String,String> services = new HashMap<>();
+        TransactIndex index;
+        ByteBuffer buffer = openBinary(am, filename + ".bin");
+        if (buffer != null) {
+            index = BinderDbReader.read(buffer, services);
+        } else {
+            // Builds without the generated database fall back to the JSON source.
+            index = readJson(am, filename + ".json", services);
+        }
+        serviceNameSynonyms = services;
+        transactIndex = index;
+        StaticLogger.debug("Binder Transaction entries:" + index.size() + " loaded in "
+                + (SystemClock.elapsedRealtime() - start) + "ms");
+        return index;
+    }
 
-            JsonNode services_= root.get("services");
-            JsonNode methods_ = root.get("methods");
+    /**
+     * Maps the binary database asset, which is stored uncompressed, straight from the APK; if
+     * the asset is compressed it is read into memory instead. Returns null if the asset does not
+     * exist.
+     */
+    private static ByteBuffer openBinary(AssetManager am, String filename) throws IOException {
+        try (AssetFileDescriptor afd = am.openFd(filename);
+             FileInputStream in = afd.createInputStream()) {
+            // The mapping stays valid after the channel is closed.
+            return in.getChannel().map(FileChannel.MapMode.READ_ONLY, afd.getStartOffset(),
+                    afd.getLength());
+        } catch (FileNotFoundException e) {
+            // openFd fails for compressed assets as well as missing ones.
+        }
+        try (InputStream is = am.open(filename)) {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] chunk = new byte[8192];
+            int read;
+            while ((read = is.read(chunk)) != -1) {
+                content.write(chunk, 0, read);
+            }
+            return ByteBuffer.wrap(content.toByteArray());
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+    }
 
-            serviceNameSynonyms = mapper.readValue(services_.toString(),serviceNameSynonyms.getClass());
-            indexDb = mapper.readValue(methods_.toString(),indexDb.getClass());
-            /*for(String key : serviceNameSynonyms.keySet()){
-                String actual = serviceNameSynonyms.get(key);
-                if(!actual.equals(key)){
-                    StaticLogger.info("public static final String "+key+" = \""+actual+"\";");
+    private static TransactIndex readJson(AssetManager am, String filename,
+                                          Map<String,String> services) throws IOException {
+        try (InputStream is = am.open(filename)) {
+            JsonNode root = new ObjectMapper().readTree(is);
+            Iterator<Map.Entry<String, JsonNode>> synonyms = root.get("services").fields();
+            while (synonyms.hasNext()) {
+                Map.Entry<String, JsonNode> synonym = synonyms.next();
+                services.put(synonym.getKey(), synonym.getValue().asText());
+            }
+            // Compile the descriptor -> method -> transact ID tree straight into the index.
+            TransactIndex.Builder indexBuilder = new TransactIndex.Builder();
+            Iterator<Map.Entry<String, JsonNode>> descriptors = root.get("methods").fields();
+            while (descriptors.hasNext()) {
+                Map.Entry<String, JsonNode> descriptor = descriptors.next();
+                Iterator<Map.Entry<String, JsonNode>> methods = descriptor.getValue().fields();
+                while (methods.hasNext()) {
+                    Map.Entry<String, JsonNode> method = methods.next();
+                    indexBuilder.add(descriptor.getKey(), method.getKey(),
+                            method.getValue().asInt());
                 }
+            }
+            return indexBuilder.build();
+        }
+    }
 
-            }*/
-            //Log.d("tag",indexDb.toString());
-            //Log.d("tag",serviceNameSynonyms.toString());
-
-        } catch (IOException e) {
+    private TransactIndex getTransactIndex() {
+        TransactIndex index = transactIndex;
+        if (index != null) {
+            return index;
+        }
+        FutureTask<TransactIndex> loadTask;
+        synchronized (this) {
+            loadTask = mLoadTask;
+        }
+        if (loadTask == null) {
+            throw new IllegalStateException("BinderTransactsDict has not been built");
+        }
+        try {
+            return loadTask.get();
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             throw new RuntimeException(e);
         }
-
-
     }
+
     public static class Builder {
         private final Context mContext; // Mandatory
+        private Executor mExecutor;
         //private Builder(){}
         public Builder(Context context) {
             this.mContext = context;
         }
+        /**
+         * Loads the database on the {@code executor} instead of the calling thread.
+         */
+        public Builder setExecutor(Executor executor) {
+            this.mExecutor = executor;
+            return this;
+        }
         public void build(){
             BinderTransactsDict.getInstance().build(this);
         }
     }
 
     public int getTransactId(String descriptor, String methodName){
-        return indexDb.get(descriptor).get(methodName);
+        TransactIndex index = getTransactIndex();
+        int handle = index.find(descriptor, methodName);
+        if (handle == TransactIndex.NOT_FOUND) {
+            if (!index.containsDescriptor(descriptor)) {
+                throw new IllegalArgumentException(
+                        "No transact entries found for the requested descriptor, " + descriptor);
+            }
+            throw new IllegalArgumentException("The requested transaction name, " + methodName
+                    + ", does not have a corresponding ID");
+        }
+        return index.getTransactId(handle);
     }
 }
@@ -15,13 +15,18 @@ package com.android.certification.niap.permission.dpctester.test.tool
  * limitations under the License.
  */
 import android.util.Log
+import com.android.certification.niap.permission.dpctester.common.MethodCache
 import com.android.certification.niap.permission.dpctester.test.runner.PermissionTestRunner
 import com.google.common.base.CaseFormat
+import java.util.concurrent.ConcurrentHashMap
 import java.util.stream.Collectors
 
 class ReflectionTool {
     companion object {
-
+        // The @PermissionTest methods of each module class, scanned once per process since
+        // every module looks its tests up again whenever it is run or skipped.
+        private val permissionTests =
+            ConcurrentHashMap<Class<*>, List<PermissionTestRunner.Data>>()
 
         /**
          * Dynamically invoke a method.
@@ -64,7 +69,8 @@ class ReflectionTool {
             targetObject: Any?, parameterClasses: Array<Class<*>?>, vararg parameters: Any?
         ): Any {
             try {
-                val method = targetClass.getMethod(methodName, *parameterClasses)
+                val method = MethodCache.getInstance().getMethod(targetClass, methodName,
+                    *parameterClasses)
                 return method.invoke(targetObject, *parameters)
             } catch (e: ReflectiveOperationException) {
                 Log.e("ReflectionTool", "Reflection failed.",e)
@@ -152,17 +158,26 @@ class ReflectionTool {
         }
 
         fun checkPermissionTestMethod(target: Any): MutableList<PermissionTestRunner.Data> {
+            val tests = permissionTests.computeIfAbsent(target.javaClass) {
+                scanPermissionTestMethods(it)
+            }
+            //Data is mutable, so every caller gets its own copy
+            return tests.mapTo(ArrayList(tests.size)) { it.copy() }
+        }
+
+        private fun scanPermissionTestMethods(clazz: Class<*>): List<PermissionTestRunner.Data> {
             val a: MutableList<PermissionTestRunner.Data> = ArrayList()
-            val clazz: Class<*> = target.javaClass
             val methods = clazz.declaredMethods
             //Take all methods that has PermissionTest annotation
             for (m in methods) {
                 val ann = m.getAnnotation(PermissionTest::class.java)
                 if (ann == null) continue;
+                //The runner invokes the test through this method instead of looking it up by name
+                m.isAccessible = true
                 val container =
                     PermissionTestRunner.Data(ann.permission, ann.sdkMin, ann.sdkMax,
                         m.name,ann.requiredPermissions,ann.requestedPermissions,
-                        ann.developmentProtection,ann.ignore);//ann.requiredPermissions,ann.requiredServices)
+                        ann.developmentProtection,ann.ignore,m);//ann.requiredPermissions,ann.requiredServices)
                 //Log.d("TAG",container.toString())
                 a.add(container)
             }
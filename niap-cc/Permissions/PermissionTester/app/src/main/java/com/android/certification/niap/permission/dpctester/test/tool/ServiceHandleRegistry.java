@@ -0,0 +1,117 @@
+package com.android.certification.niap.permission.dpctester.test.tool;
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import android.annotation.SuppressLint;
+import android.os.IBinder;
+import android.os.RemoteException;
+
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resolves system service {@link IBinder}s by name for direct transacts.
+ *
+ * <p>{@code ServiceManager.getService} is looked up reflectively only once, and the binder
+ * returned for each service is kept until the service dies; a {@link IBinder.DeathRecipient}
+ * registered on every cached binder evicts its entry so that the next lookup fetches the
+ * restarted service. Services that are not available are not cached, since they may still be
+ * started later.
+ */
+public class ServiceHandleRegistry {
+    private static final ServiceHandleRegistry sInstance = new ServiceHandleRegistry();
+
+    private final ConcurrentHashMap<String, IBinder> mBinders = new ConcurrentHashMap<>();
+    private volatile Method mGetServiceMethod;
+
+    private final AtomicLong mHits = new AtomicLong();
+    private final AtomicLong mMisses = new AtomicLong();
+    private final AtomicLong mEvictions = new AtomicLong();
+    private final AtomicLong mHitNanos = new AtomicLong();
+    private final AtomicLong mMissNanos = new AtomicLong();
+
+    private ServiceHandleRegistry() {
+    }
+
+    public static ServiceHandleRegistry getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Returns the {@link IBinder} for the specified {@code service}, or {@code null} if the
+     * service is not available on this device.
+     *
+     * @throws ReflectiveOperationException if {@code ServiceManager.getService} cannot be invoked
+     */
+    public IBinder getService(String service) throws ReflectiveOperationException {
+        final long start = System.nanoTime();
+        IBinder binder = mBinders.get(service);
+        if (binder != null) {
+            mHits.incrementAndGet();
+            mHitNanos.addAndGet(System.nanoTime() - start);
+            return binder;
+        }
+
+        binder = (IBinder) getServiceMethod().invoke(null, service);
+        if (binder != null) {
+            final IBinder cachedBinder = binder;
+            mBinders.put(service, binder);
+            try {
+                binder.linkToDeath(() -> {
+                    if (mBinders.remove(service, cachedBinder)) {
+                        mEvictions.incrementAndGet();
+                    }
+                }, 0);
+            } catch (RemoteException e) {
+                // The service has already died; drop it again, hand out the binder anyway and
+                // let the transact report the failure.
+                mBinders.remove(service, cachedBinder);
+            }
+        }
+        mMisses.incrementAndGet();
+        mMissNanos.addAndGet(System.nanoTime() - start);
+        return binder;
+    }
+
+    @SuppressLint("PrivateApi")
+    private Method getServiceMethod() throws ReflectiveOperationException {
+        Method method = mGetServiceMethod;
+        if (method == null) {
+            method = Class.forName("android.os.ServiceManager")
+                    .getMethod("getService", String.class);
+            mGetServiceMethod = method;
+        }
+        return method;
+    }
+
+    /**
+     * Returns a summary of the lookups served so far: the hit rate, the average latency of hits
+     * and misses, and how many cached binders have been evicted because their service died.
+     */
+    public String getStats() {
+        long hits = mHits.get();
+        long misses = mMisses.get();
+        long lookups = hits + misses;
+        return String.format(Locale.US,
+                "Service handles: %d lookups, %.1f%% hits (avg %.1f us), %d misses (avg %.1f us),"
+                        + " %d evicted, %d cached",
+                lookups, lookups == 0 ? 0.0 : 100.0 * hits / lookups,
+                hits == 0 ? 0.0 : mHitNanos.get() / 1000.0 / hits,
+                misses, misses == 0 ? 0.0 : mMissNanos.get() / 1000.0 / misses,
+                mEvictions.get(), mBinders.size());
+    }
+}
@@ -0,0 +1,52 @@
+package com.android.certification.niap.permission.dpctester;
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import static org.junit.Assume.assumeTrue;
+
+import java.util.Locale;
+
+/**
+ * Gates the {@code benchmark_*} methods of the unit tests. They only time the code under test and
+ * assert nothing, so they are skipped unless the tests are run with {@code -Pbenchmarks}:
+ *
+ * <pre>
+ * ./gradlew :app:testNormalDebugUnitTest -Pbenchmarks --tests '*BenchmarkTest'
+ * </pre>
+ */
+public final class Benchmarks {
+    /**
+     * The system property the build sets when run with {@code -Pbenchmarks}.
+     */
+    public static final String PROPERTY = "dpctester.benchmarks";
+
+    private Benchmarks() {
+    }
+
+    /**
+     * Skips the calling test unless benchmarks are enabled.
+     */
+    public static void assumeEnabled() {
+        assumeTrue("benchmarks only run with -Pbenchmarks", Boolean.getBoolean(PROPERTY));
+    }
+
+    /**
+     * Prints the result of a benchmark, which the build shows when run with {@code -Pbenchmarks}.
+     */
+    public static void report(String format, Object... args) {
+        System.out.println(String.format(Locale.US, format, args));
+    }
+}
@@ -0,0 +1,114 @@
+package com.android.certification.niap.permission.dpctester.common;
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import com.android.certification.niap.permission.dpctester.Benchmarks;
+
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+
+/**
+ * Checks the behaviour of {@link MethodCache} and compares the cost of a reflective call through
+ * it with looking the method up on every call, as the reflection helpers used to.
+ */
+public class MethodCacheBenchmarkTest {
+    private static final int WARMUP_ITERATIONS = 200_000;
+    private static final int MEASURED_ITERATIONS = 1_000_000;
+
+    public static class Target {
+        public int add(int a, int b) {
+            return a + b;
+        }
+
+        @SuppressWarnings("unused")
+        private String hidden(String value) {
+            return value;
+        }
+    }
+
+    @Test
+    public void getMethod_returnsTheSameMethodOnEveryLookup() throws Exception {
+        MethodCache cache = MethodCache.getInstance();
+        Method first = cache.getMethod(Target.class, "add", int.class, int.class);
+        Method second = cache.getMethod(Target.class, "add", new Class<?>[]{int.class, int.class});
+
+        assertSame(first, second);
+        assertEquals(3, first.invoke(new Target(), 1, 2));
+    }
+
+    @Test
+    public void getDeclaredMethod_returnsAnAccessibleMethod() throws Exception {
+        Method method = MethodCache.getInstance().getDeclaredMethod(Target.class, "hidden",
+                String.class);
+
+        assertEquals("value", method.invoke(new Target(), "value"));
+    }
+
+    @Test
+    public void missingMembers_areReportedOnEveryLookup() throws Exception {
+        MethodCache cache = MethodCache.getInstance();
+        for (int i = 0; i < 2; i++) {
+            try {
+                cache.getMethod(Target.class, "missing");
+                fail("NoSuchMethodException expected");
+            } catch (NoSuchMethodException expected) {
+            }
+            try {
+                cache.forName("com.example.Missing");
+                fail("ClassNotFoundException expected");
+            } catch (ClassNotFoundException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void benchmark_reflectiveCallCost() throws Exception {
+        Benchmarks.assumeEnabled();
+        MethodCache cache = MethodCache.getInstance();
+        Target target = new Target();
+        int sink = 0;
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            sink += (Integer) Target.class.getMethod("add", int.class, int.class)
+                    .invoke(target, i, 1);
+            sink += (Integer) cache.getMethod(Target.class, "add", int.class, int.class)
+                    .invoke(target, i, 1);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            sink += (Integer) Target.class.getMethod("add", int.class, int.class)
+                    .invoke(target, i, 1);
+        }
+        double uncachedNanos = (double) (System.nanoTime() - start) / MEASURED_ITERATIONS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            sink += (Integer) cache.getMethod(Target.class, "add", int.class, int.class)
+                    .invoke(target, i, 1);
+        }
+        double cachedNanos = (double) (System.nanoTime() - start) / MEASURED_ITERATIONS;
+
+        Benchmarks.report(
+                "Reflective call: getMethod each call %.1f ns, cached %.1f ns (%.2fx) [%d]%n%s",
+                uncachedNanos, cachedNanos, uncachedNanos / cachedNanos, sink, cache.getStats());
+    }
+}
@@ -0,0 +1,131 @@
+package com.android.certification.niap.permission.dpctester.test.runner;
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records synthetic results from many threads at once and checks that none of them is lost.
+ */
+public class ResultAggregatorTest {
+    private static final int THREADS = 16;
+    private static final int RESULTS = 10_000;
+    private static final int MODULES = 4;
+
+    // result i is passed, an error or bypassed depending on i % 3, for module i % MODULES.
+    private static long expected(int module, int kind) {
+        long count = 0;
+        for (int i = 0; i < RESULTS; i++) {
+            if (i % MODULES == module && i % 3 == kind) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void concurrentResults_areAllCounted() throws Exception {
+        ResultAggregator<String> results = new ResultAggregator<>();
+        Object[] modules = new Object[MODULES];
+        for (int m = 0; m < MODULES; m++) {
+            modules[m] = new Object();
+            results.startModule(modules[m], 0, 0);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        Future<?>[] futures = new Future<?>[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            futures[t] = executor.submit(() -> {
+                start.await();
+                for (int i = thread; i < RESULTS; i += THREADS) {
+                    Object module = modules[i % MODULES];
+                    switch (i % 3) {
+                        case 0:
+                            results.recordPassed(module);
+                            break;
+                        case 1:
+                            results.recordError(module, "error " + i);
+                            break;
+                        default:
+                            results.recordBypassed(module, "bypassed " + i);
+                            break;
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        long total = 0;
+        Set<String> entries = new HashSet<>();
+        for (int m = 0; m < MODULES; m++) {
+            ResultAggregator.Snapshot<String> snapshot = results.moduleSnapshot(modules[m], true);
+            assertEquals(expected(m, 0), snapshot.passed);
+            assertEquals(expected(m, 1), snapshot.errors);
+            assertEquals(expected(m, 2), snapshot.bypassed);
+            assertEquals(snapshot.errors + snapshot.bypassed, snapshot.log.size());
+            entries.addAll(snapshot.log);
+            total += snapshot.getTotal();
+        }
+        assertEquals(RESULTS, total);
+
+        ResultAggregator.Snapshot<String> suite = results.suiteSnapshot();
+        assertEquals(RESULTS, suite.getTotal());
+        assertEquals(RESULTS - (RESULTS + 2) / 3, suite.errors + suite.bypassed);
+        assertTrue(suite.log.isEmpty());
+        // every entry was logged exactly once.
+        assertEquals(suite.errors + suite.bypassed, entries.size());
+    }
+
+    @Test
+    public void startModule_keepsPreparedCountsOutOfTheSuite() {
+        ResultAggregator<String> results = new ResultAggregator<>();
+        Object module = new Object();
+        results.recordError(module, "stale");
+        results.reset();
+        results.startModule(module, 2, 1);
+        results.recordError(module, "error");
+        results.recordPassed(module);
+
+        ResultAggregator.Snapshot<String> snapshot = results.moduleSnapshot(module, true);
+        assertEquals(1, snapshot.passed);
+        assertEquals(3, snapshot.errors);
+        assertEquals(1, snapshot.bypassed);
+        assertEquals(1, snapshot.log.size());
+        assertEquals("error", snapshot.log.get(0));
+
+        ResultAggregator.Snapshot<String> suite = results.suiteSnapshot();
+        assertEquals(1, suite.passed);
+        assertEquals(1, suite.errors);
+        assertEquals(0, suite.bypassed);
+    }
+}
@@ -0,0 +1,139 @@
+package com.android.certification.niap.permission.dpctester.test.tool;
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import com.android.certification.niap.permission.dpctester.Benchmarks;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Compares loading the binder transact database from the binary file generated by the
+ * {@code generateBinderDb} task with the JSON parsing BinderTransactsDict used to do at startup.
+ *
+ * <p>The first load of each format is reported separately as the cold start cost, since it
+ * includes class loading and, for JSON, Jackson's own initialization.
+ */
+public class BinderDbBenchmarkTest {
+    private static final File ASSETS_DIR = new File("src/main/assets");
+    private static final File GENERATED_DIR = new File("build/generated/binderdb");
+    private static final int[] SDKS = {33, 34, 35, 36};
+    private static final int WARM_ITERATIONS = 50;
+
+    private static class JsonDb {
+        Map<String, String> services = new HashMap<>();
+        Map<String, Map<String, Integer>> methods = new HashMap<>();
+    }
+
+    /**
+     * Loads the JSON database the way BinderTransactsDict did before the binary format existed.
+     */
+    @SuppressWarnings("unchecked")
+    private static JsonDb loadJson(File file) throws IOException {
+        JsonDb db = new JsonDb();
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file)))) {
+            String allText = br.lines().collect(Collectors.joining());
+            ObjectMapper mapper = new ObjectMapper();
+            JsonNode root = mapper.readTree(allText);
+            db.services = mapper.readValue(root.get("services").toString(),
+                    db.services.getClass());
+            db.methods = mapper.readValue(root.get("methods").toString(),
+                    db.methods.getClass());
+        }
+        return db;
+    }
+
+    private static TransactIndex loadBinary(File file, Map<String, String> services)
+            throws IOException {
+        try (FileInputStream in = new FileInputStream(file)) {
+            ByteBuffer buffer = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+                    file.length());
+            return BinderDbReader.read(buffer, services);
+        }
+    }
+
+    private static File binaryFile(int sdk) {
+        File file = new File(GENERATED_DIR, "binderdb-" + sdk + ".bin");
+        assumeTrue("Run generateBinderDb first: " + file + " is missing", file.exists());
+        return file;
+    }
+
+    @Test
+    public void binaryDatabase_matchesJsonAssets() throws IOException {
+        for (int sdk : SDKS) {
+            JsonDb json = loadJson(new File(ASSETS_DIR, "binderdb-" + sdk + ".json"));
+            Map<String, String> services = new HashMap<>();
+            TransactIndex index = loadBinary(binaryFile(sdk), services);
+
+            assertEquals(json.services, services);
+            int count = 0;
+            for (Map.Entry<String, Map<String, Integer>> descriptor : json.methods.entrySet()) {
+                for (Map.Entry<String, Integer> method : descriptor.getValue().entrySet()) {
+                    int handle = index.find(descriptor.getKey(), method.getKey());
+                    assertEquals(method.getValue().intValue(), index.getTransactId(handle));
+                    count++;
+                }
+            }
+            assertEquals(count, index.size());
+        }
+    }
+
+    @Test
+    public void benchmark_coldAndWarmLoad() throws IOException {
+        Benchmarks.assumeEnabled();
+        File jsonFile = new File(ASSETS_DIR, "binderdb-36.json");
+        File binaryFile = binaryFile(36);
+
+        long start = System.nanoTime();
+        loadBinary(binaryFile, new HashMap<>());
+        long binaryCold = System.nanoTime() - start;
+        start = System.nanoTime();
+        loadJson(jsonFile);
+        long jsonCold = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < WARM_ITERATIONS; i++) {
+            loadBinary(binaryFile, new HashMap<>());
+        }
+        long binaryWarm = (System.nanoTime() - start) / WARM_ITERATIONS;
+        start = System.nanoTime();
+        for (int i = 0; i < WARM_ITERATIONS; i++) {
+            loadJson(jsonFile);
+        }
+        long jsonWarm = (System.nanoTime() - start) / WARM_ITERATIONS;
+
+        Benchmarks.report(
+                "binderdb-36 (%d bytes json, %d bytes binary): cold json %.2f ms, binary %.2f ms;"
+                        + " warm json %.3f ms, binary %.3f ms",
+                jsonFile.length(), binaryFile.length(), jsonCold / 1e6, binaryCold / 1e6,
+                jsonWarm / 1e6, binaryWarm / 1e6);
+    }
+}
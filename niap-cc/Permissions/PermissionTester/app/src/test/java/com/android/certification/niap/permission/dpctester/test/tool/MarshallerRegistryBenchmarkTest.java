@@ -0,0 +1,218 @@
+package com.android.certification.niap.permission.dpctester.test.tool;
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import static org.junit.Assert.assertEquals;
+
+import com.android.certification.niap.permission.dpctester.Benchmarks;
+
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the cost of writing transact parameters through {@link MarshallerRegistry} with the
+ * {@code instanceof} ladder it replaced in {@link BinderTransaction}.
+ *
+ * <p>{@link android.os.Parcel} cannot be used off device, so both sides write to a
+ * {@link FakeParcel} that only records the values, and the parcelable types of the ladder are
+ * stood in for by small fakes. The old ladder also looked up the RemoteCallback class and its
+ * {@code writeToParcel} method on every transact; the baseline does the same with its fake.
+ */
+public class MarshallerRegistryBenchmarkTest {
+    private static final int WARMUP_ITERATIONS = 200_000;
+    private static final int MEASURED_ITERATIONS = 1_000_000;
+
+    /**
+     * Records the values written to it in place of a {@link android.os.Parcel}.
+     */
+    public static class FakeParcel {
+        final List<Object> mValues = new ArrayList<>();
+
+        public void writeInt(int value) { mValues.add(value); }
+        public void writeLong(long value) { mValues.add(value); }
+        public void writeString(String value) { mValues.add(value); }
+        public void writeIntArray(int[] value) { mValues.add(value); }
+        public void writeByteArray(byte[] value) { mValues.add(value); }
+        public void writeStringArray(String[] value) { mValues.add(value); }
+        public void writeStrongBinder(FakeBinder value) { mValues.add(value); }
+
+        void reset() {
+            mValues.clear();
+        }
+    }
+
+    public interface FakeBinder {
+    }
+
+    public static class FakeParcelable {
+        private final String mName;
+
+        FakeParcelable(String name) {
+            mName = name;
+        }
+
+        public void writeToParcel(FakeParcel parcel, int flags) {
+            parcel.writeString(mName);
+        }
+    }
+
+    public static class FakeComponentName extends FakeParcelable {
+        FakeComponentName() { super("component"); }
+    }
+
+    public static class FakeUri extends FakeParcelable {
+        FakeUri() { super("uri"); }
+    }
+
+    public static class FakeAccount extends FakeParcelable {
+        FakeAccount() { super("account"); }
+    }
+
+    public static class FakePendingIntent extends FakeParcelable {
+        FakePendingIntent() { super("pendingIntent"); }
+    }
+
+    public static class FakeRemoteCallback extends FakeParcelable {
+        FakeRemoteCallback() { super("callback"); }
+    }
+
+    public static class FakeBundle extends FakeParcelable {
+        FakeBundle() { super("bundle"); }
+    }
+
+    // a typical mix of transact parameters, with the parcelables near the end of the ladder.
+    private static final Object[] PARAMETERS = {
+            "com.example.package", 0, 1L, true, new int[]{1, 2}, new FakeComponentName(),
+            new FakeBundle(), new FakeRemoteCallback(), new FakeBinder() {}
+    };
+
+    private static MarshallerRegistry<FakeParcel> createRegistry() {
+        MarshallerRegistry<FakeParcel> registry = new MarshallerRegistry<>((data, value) -> {});
+        registry
+                .register(String.class, (data, value) -> data.writeString((String) value))
+                .register(Long.class, (data, value) -> data.writeLong((Long) value))
+                .register(Integer.class, (data, value) -> data.writeInt((Integer) value))
+                .register(Boolean.class, (data, value) -> data.writeInt((Boolean) value ? 1 : 0))
+                .register(int[].class, (data, value) -> data.writeIntArray((int[]) value))
+                .register(byte[].class, (data, value) -> data.writeByteArray((byte[]) value))
+                .register(String[].class, (data, value) -> data.writeStringArray((String[]) value))
+                .register(FakeBinder.class,
+                        (data, value) -> data.writeStrongBinder((FakeBinder) value))
+                .register(FakeRemoteCallback.class, (data, value) -> {
+                    data.writeInt(0);
+                    ((FakeParcelable) value).writeToParcel(data, 0);
+                })
+                .register(FakeParcelable.class, (data, value) -> {
+                    data.writeInt(1);
+                    ((FakeParcelable) value).writeToParcel(data, 0);
+                });
+        return registry;
+    }
+
+    private static void marshalWithRegistry(MarshallerRegistry<FakeParcel> registry,
+            FakeParcel data, Object[] parameters) {
+        for (Object parameter : parameters) {
+            registry.marshal(data, parameter);
+        }
+    }
+
+    private static void marshalWithLadder(FakeParcel data, Object[] parameters) throws Exception {
+        Class<?> remoteCallbackClass = Class.forName(FakeRemoteCallback.class.getName());
+        for (Object parameter : parameters) {
+            if (parameter instanceof String) {
+                data.writeString((String) parameter);
+            } else if (parameter instanceof Long) {
+                data.writeLong((Long) parameter);
+            } else if (parameter instanceof Integer) {
+                data.writeInt((Integer) parameter);
+            } else if (parameter instanceof Boolean) {
+                data.writeInt((Boolean) parameter ? 1 : 0);
+            } else if (parameter instanceof int[]) {
+                data.writeIntArray((int[]) parameter);
+            } else if (parameter instanceof byte[]) {
+                data.writeByteArray((byte[]) parameter);
+            } else if (parameter instanceof FakeBinder) {
+                data.writeStrongBinder((FakeBinder) parameter);
+            } else if (parameter instanceof FakeComponentName) {
+                data.writeInt(1);
+                ((FakeComponentName) parameter).writeToParcel(data, 0);
+            } else if (parameter instanceof FakeUri) {
+                data.writeInt(1);
+                ((FakeUri) parameter).writeToParcel(data, 0);
+            } else if (parameter instanceof String[]) {
+                data.writeStringArray((String[]) parameter);
+            } else if (parameter instanceof FakeAccount) {
+                data.writeInt(1);
+                ((FakeAccount) parameter).writeToParcel(data, 0);
+            } else if (parameter instanceof FakePendingIntent) {
+                data.writeInt(1);
+                ((FakePendingIntent) parameter).writeToParcel(data, 0);
+            } else if (remoteCallbackClass.isInstance(parameter)) {
+                data.writeInt(0);
+                Method method = remoteCallbackClass.getMethod("writeToParcel",
+                        FakeParcel.class, int.class);
+                method.invoke(parameter, data, 0);
+            } else if (parameter instanceof FakeParcelable) {
+                data.writeInt(1);
+                ((FakeParcelable) parameter).writeToParcel(data, 0);
+            }
+        }
+    }
+
+    @Test
+    public void registry_writesTheSameValuesAsTheLadder() throws Exception {
+        FakeParcel expected = new FakeParcel();
+        marshalWithLadder(expected, PARAMETERS);
+        FakeParcel actual = new FakeParcel();
+        marshalWithRegistry(createRegistry(), actual, PARAMETERS);
+
+        assertEquals(expected.mValues, actual.mValues);
+    }
+
+    @Test
+    public void benchmark_marshallingCostPerCall() throws Exception {
+        Benchmarks.assumeEnabled();
+        MarshallerRegistry<FakeParcel> registry = createRegistry();
+        FakeParcel data = new FakeParcel();
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            data.reset();
+            marshalWithLadder(data, PARAMETERS);
+            data.reset();
+            marshalWithRegistry(registry, data, PARAMETERS);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            data.reset();
+            marshalWithLadder(data, PARAMETERS);
+        }
+        double ladderNanos = (double) (System.nanoTime() - start) / MEASURED_ITERATIONS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            data.reset();
+            marshalWithRegistry(registry, data, PARAMETERS);
+        }
+        double registryNanos = (double) (System.nanoTime() - start) / MEASURED_ITERATIONS;
+
+        Benchmarks.report(
+                "Marshalling %d parameters: ladder %.1f ns/call, registry %.1f ns/call (%.2fx)",
+                PARAMETERS.length, ladderNanos, registryNanos, ladderNanos / registryNanos);
+    }
+}
@@ -0,0 +1,161 @@
+package com.android.certification.niap.permission.dpctester.test.tool;
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNotNull;
+
+import com.android.certification.niap.permission.dpctester.Benchmarks;
+import com.android.certification.niap.permission.dpctester.common.ReflectionUtil;
+import com.android.certification.niap.permission.dpctester.test.runner.PermissionTestRunner;
+
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks the cached test discovery in {@code ReflectionTool.checkPermissionTestMethod} and
+ * compares it, and the dispatch through the cached test methods, with scanning the module's
+ * annotations and looking each test up by name on every run as the runner used to.
+ */
+public class ReflectionToolBenchmarkTest {
+    private static final int WARMUP_ITERATIONS = 2_000;
+    private static final int MEASURED_ITERATIONS = 10_000;
+
+    public static class Module {
+        int calls;
+
+        @PermissionTest(permission = "READ_LOGS")
+        public void testReadLogs() { calls++; }
+        @PermissionTest(permission = "DUMP", sdkMin = 34)
+        public void testDump() { calls++; }
+        @PermissionTest(permission = "BATTERY_STATS")
+        public void testBatteryStats() { calls++; }
+        @PermissionTest(permission = "MANAGE_USERS", ignore = true)
+        public void testManageUsers() { calls++; }
+        @PermissionTest(permission = "WRITE_SECURE_SETTINGS")
+        public void testWriteSecureSettings() { calls++; }
+        @PermissionTest(permission = "INTERACT_ACROSS_USERS")
+        public void testInteractAcrossUsers() { calls++; }
+        @PermissionTest(permission = "PACKAGE_USAGE_STATS")
+        public void testPackageUsageStats() { calls++; }
+        @PermissionTest(permission = "com.example.permission.CUSTOM")
+        private void testCustom() { calls++; }
+
+        public void helper() {
+        }
+    }
+
+    /**
+     * Scans the module the way checkPermissionTestMethod did before its results were cached.
+     */
+    private static List<PermissionTestRunner.Data> scan(Object target) {
+        List<PermissionTestRunner.Data> tests = new ArrayList<>();
+        for (Method m : target.getClass().getDeclaredMethods()) {
+            PermissionTest ann = m.getAnnotation(PermissionTest.class);
+            if (ann == null) continue;
+            tests.add(new PermissionTestRunner.Data(ann.permission(), ann.sdkMin(), ann.sdkMax(),
+                    m.getName(), ann.requiredPermissions(), ann.requestedPermissions(),
+                    ann.developmentProtection(), ann.ignore(), null));
+        }
+        return tests;
+    }
+
+    @Test
+    public void checkPermissionTestMethod_findsEveryAnnotatedMethod() throws Exception {
+        Module module = new Module();
+        List<PermissionTestRunner.Data> tests =
+                ReflectionTool.Companion.checkPermissionTestMethod(module);
+
+        assertEquals(8, tests.size());
+        for (PermissionTestRunner.Data test : tests) {
+            assertNotNull(test.getMethod());
+            assertEquals(test.getMethodName(), test.getMethod().getName());
+            ReflectionUtil.invoke(test.getMethod(), module);
+            if (test.getMethodName().equals("testCustom")) {
+                assertEquals("com.example.permission.CUSTOM", test.getPermission());
+            }
+        }
+        assertEquals(8, module.calls);
+    }
+
+    @Test
+    public void checkPermissionTestMethod_returnsCopiesOfTheCachedTests() {
+        Module module = new Module();
+        List<PermissionTestRunner.Data> first =
+                ReflectionTool.Companion.checkPermissionTestMethod(module);
+        List<PermissionTestRunner.Data> second =
+                ReflectionTool.Companion.checkPermissionTestMethod(module);
+
+        assertEquals(first, second);
+        assertNotSame(first.get(0), second.get(0));
+        first.get(0).setPermission("changed");
+        assertEquals(second, ReflectionTool.Companion.checkPermissionTestMethod(module));
+    }
+
+    @Test
+    public void benchmark_discoveryAndDispatch() throws Exception {
+        Benchmarks.assumeEnabled();
+        Module module = new Module();
+        int sink = 0;
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            for (PermissionTestRunner.Data test : scan(module)) {
+                ReflectionUtil.invoke(module, test.getMethodName());
+            }
+            for (PermissionTestRunner.Data test :
+                    ReflectionTool.Companion.checkPermissionTestMethod(module)) {
+                ReflectionUtil.invoke(test.getMethod(), module);
+            }
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            sink += scan(module).size();
+        }
+        double scanNanos = (double) (System.nanoTime() - start) / MEASURED_ITERATIONS;
+        start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            sink += ReflectionTool.Companion.checkPermissionTestMethod(module).size();
+        }
+        double cachedNanos = (double) (System.nanoTime() - start) / MEASURED_ITERATIONS;
+
+        List<PermissionTestRunner.Data> tests =
+                ReflectionTool.Companion.checkPermissionTestMethod(module);
+        start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            for (PermissionTestRunner.Data test : tests) {
+                ReflectionUtil.invoke(module, test.getMethodName());
+            }
+        }
+        double byNameNanos = (double) (System.nanoTime() - start) / MEASURED_ITERATIONS;
+        start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            for (PermissionTestRunner.Data test : tests) {
+                ReflectionUtil.invoke(test.getMethod(), module);
+            }
+        }
+        double directNanos = (double) (System.nanoTime() - start) / MEASURED_ITERATIONS;
+
+        Benchmarks.report(
+                "Test discovery: scan %.0f ns, cached %.0f ns (%.1fx); dispatch of %d tests:"
+                        + " by name %.0f ns, cached method %.0f ns (%.1fx) [%d]",
+                scanNanos, cachedNanos, scanNanos / cachedNanos, tests.size(), byNameNanos,
+                directNanos, byNameNanos / directNanos, sink + module.calls);
+    }
+}
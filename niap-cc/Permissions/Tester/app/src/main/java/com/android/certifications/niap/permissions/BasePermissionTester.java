@@ -357,6 +357,7 @@ public abstract class BasePermissionTester {
         public Runnable mTestRunnable;
         public int mMinApiLevel;
         public int mMaxApiLevel;
+        public boolean mRunOnWorker;
 
         /**
          * Constructs a new instance that will run on all API levels supported by this app.
@@ -400,6 +401,19 @@ public abstract class BasePermissionTester {
             this.mMaxApiLevel = maxApiLevel;
         }
 
+        /**
+         * Allows this test to run on a worker thread of the {@link PermissionTestScheduler}
+         * alongside other tests, instead of one at a time on the main looper. This is only safe
+         * for tests that read state through binder or reflective calls, or bind to a companion
+         * service; tests that touch UI, need a looper or change device state must not use it.
+         *
+         * @return this instance, so that it can be chained with the constructor
+         */
+        public PermissionTest runOnWorker() {
+            mRunOnWorker = true;
+            return this;
+        }
+
         /**
          * Invokes the {@link Runnable}'s run method for this test.
          */
@@ -415,6 +429,7 @@ public abstract class BasePermissionTester {
                     ", mTestRunnable=" + mTestRunnable +
                     ", mMinApiLevel=" + mMinApiLevel +
                     ", mMaxApiLevel=" + mMaxApiLevel +
+                    ", mRunOnWorker=" + mRunOnWorker +
                     '}';
         }
     }
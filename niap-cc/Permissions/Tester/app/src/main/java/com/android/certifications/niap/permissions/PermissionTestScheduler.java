@@ -0,0 +1,264 @@
+/*
+ * Copyright 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.certifications.niap.permissions;
+
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.core.util.Consumer;
+
+import com.android.certifications.niap.permissions.utils.MainLooperBatcher;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a batch of permission tests on a pool of worker threads and hands their outcomes back on
+ * the main looper.
+ *
+ * <p>Each test runs under a timeout; a test that has not completed in time is reported as failed
+ * and its worker is interrupted. Since most tests block in a binder call that cannot be
+ * interrupted, a timed out test may keep its worker busy until the call returns, but it no longer
+ * holds up the rest of the batch.
+ *
+ * <p>Tests that need to run on the main looper (e.g. ones that create UI objects, need a looper
+ * or change device state) are posted to the main {@link Handler} instead, where they run one at
+ * a time as they did before this scheduler existed.
+ *
+ * <p>Outcomes are not posted one by one; they are handed to the callback in batches by a
+ * {@link MainLooperBatcher}, so that a run of hundreds of tests does not flood the main looper.
+ */
+public class PermissionTestScheduler {
+    private static final String TAG = "PermissionTestScheduler";
+
+    /**
+     * The time after which a running test is reported as failed.
+     */
+    public static final long DEFAULT_TEST_TIMEOUT_MS = 10000;
+
+    /**
+     * The body of a single test, returning whether the test passed.
+     */
+    public interface TestBody {
+        boolean run();
+    }
+
+    /**
+     * A permission test to be scheduled.
+     */
+    public static class Task {
+        final String mPermission;
+        final boolean mRunOnMainLooper;
+        final TestBody mBody;
+
+        /**
+         * @param permission     the permission under test
+         * @param runOnMainLooper {@code true} if the test must run on the main looper
+         * @param body           the test to run
+         */
+        public Task(String permission, boolean runOnMainLooper, TestBody body) {
+            mPermission = permission;
+            mRunOnMainLooper = runOnMainLooper;
+            mBody = body;
+        }
+    }
+
+    /**
+     * The outcome of a scheduled test, as handed to the callback.
+     */
+    public static class Outcome {
+        public final String permission;
+        public final boolean passed;
+        public final boolean timedOut;
+        public final boolean isTarget;
+
+        Outcome(String permission, boolean passed, boolean timedOut, boolean isTarget) {
+            this.permission = permission;
+            this.passed = passed;
+            this.timedOut = timedOut;
+            this.isTarget = isTarget;
+        }
+
+        /**
+         * Returns a passing outcome for a {@code permission} that is not tested by this run.
+         */
+        public static Outcome nonTarget(String permission) {
+            return new Outcome(permission, true, false, false);
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "Outcome{" +
+                    "permission='" + permission + '\'' +
+                    ", passed=" + passed +
+                    ", timedOut=" + timedOut +
+                    ", isTarget=" + isTarget +
+                    '}';
+        }
+    }
+
+    private final Handler mMainHandler;
+    private final int mParallelism;
+    private final long mTimeoutMs;
+    private final MainLooperBatcher<Outcome> mOutcomes;
+    private final AtomicInteger mRemaining = new AtomicInteger(0);
+    private ExecutorService mWorkers;
+    private ScheduledExecutorService mWatchdog;
+    private Consumer<Outcome> mCallback;
+    private long mStartTime;
+
+    /**
+     * Constructs a new scheduler with one worker per available processor.
+     */
+    public PermissionTestScheduler(Handler mainHandler) {
+        this(mainHandler, Runtime.getRuntime().availableProcessors(), DEFAULT_TEST_TIMEOUT_MS);
+    }
+
+    /**
+     * Constructs a new scheduler.
+     *
+     * @param mainHandler a {@link Handler} on the main looper, used to run main looper tests and
+     *                    to deliver outcomes
+     * @param parallelism the number of worker threads; values below 1 are treated as 1
+     * @param timeoutMs   the time after which a running test is reported as failed
+     */
+    public PermissionTestScheduler(Handler mainHandler, int parallelism, long timeoutMs) {
+        mMainHandler = mainHandler;
+        mParallelism = Math.max(1, parallelism);
+        mTimeoutMs = timeoutMs;
+        mOutcomes = new MainLooperBatcher<>(mainHandler, this::flush);
+    }
+
+    /**
+     * Schedules all of the provided {@code tasks} and returns immediately. The {@code callback} is
+     * invoked on the main looper once for each task, in completion order; the worker threads are
+     * released once the last outcome has been delivered.
+     *
+     * @param tasks    the tests to run
+     * @param skipped  outcomes of tests that were decided without running anything, e.g. because
+     *                 they are not targeted by the configuration; these are delivered first
+     * @param callback receives the outcome of every task and every skipped test
+     */
+    public void runAll(List<Task> tasks, List<Outcome> skipped, Consumer<Outcome> callback) {
+        mCallback = callback;
+        mStartTime = SystemClock.elapsedRealtime();
+        mRemaining.set(tasks.size() + skipped.size());
+        final AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, String.format(Locale.US, "permission-test-%d",
+                    threadCount.incrementAndGet()));
+            thread.setDaemon(true);
+            return thread;
+        };
+        mWorkers = Executors.newFixedThreadPool(mParallelism, threadFactory);
+        mWatchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "permission-test-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        for (Outcome outcome : skipped) {
+            deliver(outcome);
+        }
+        for (Task task : tasks) {
+            if (task.mRunOnMainLooper) {
+                mMainHandler.post(() -> runTask(task));
+            } else {
+                mWorkers.execute(() -> runTask(task));
+            }
+        }
+        if (tasks.isEmpty() && skipped.isEmpty()) {
+            shutdown();
+        }
+    }
+
+    /**
+     * Runs a single task on the current thread, racing it against the watchdog; whichever finishes
+     * first reports the outcome.
+     */
+    private void runTask(Task task) {
+        // guards the interrupt below, so that it can never hit a later task on the same worker.
+        final AtomicBoolean reported = new AtomicBoolean(false);
+        final Thread runner = Thread.currentThread();
+        Future<?> timeout = mWatchdog.schedule(() -> {
+            synchronized (reported) {
+                if (reported.getAndSet(true)) {
+                    return;
+                }
+                // the main looper must never be interrupted; worker threads are ours to interrupt.
+                if (!task.mRunOnMainLooper) {
+                    runner.interrupt();
+                }
+            }
+            Log.w(TAG, String.format(Locale.US, "%s timed out after %d ms",
+                    task.mPermission, mTimeoutMs));
+            deliver(new Outcome(task.mPermission, false, true, true));
+        }, mTimeoutMs, TimeUnit.MILLISECONDS);
+
+        boolean passed;
+        try {
+            passed = task.mBody.run();
+        } catch (Throwable t) {
+            Log.e(TAG, "Unexpected error while running the test for " + task.mPermission, t);
+            passed = false;
+        }
+        timeout.cancel(false);
+        boolean timedOut;
+        synchronized (reported) {
+            timedOut = reported.getAndSet(true);
+        }
+        // clear an interrupt raised by the watchdog while the test was finishing.
+        Thread.interrupted();
+        if (!timedOut) {
+            deliver(new Outcome(task.mPermission, passed, false, true));
+        }
+    }
+
+    private void deliver(Outcome outcome) {
+        mOutcomes.add(outcome);
+    }
+
+    /**
+     * Hands a batch of outcomes to the callback; runs on the main looper.
+     */
+    private void flush(List<Outcome> batch) {
+        for (Outcome item : batch) {
+            mCallback.accept(item);
+        }
+        if (mRemaining.addAndGet(-batch.size()) == 0) {
+            Log.d(TAG, String.format(Locale.US, "All tests completed in %d ms on %d workers",
+                    SystemClock.elapsedRealtime() - mStartTime, mParallelism));
+            shutdown();
+        }
+    }
+
+    private void shutdown() {
+        mWorkers.shutdown();
+        mWatchdog.shutdownNow();
+    }
+}
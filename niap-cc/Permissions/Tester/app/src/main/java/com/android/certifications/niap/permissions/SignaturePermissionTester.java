@@ -210,8 +210,10 @@ import com.android.certifications.niap.permissions.log.LoggerFactory;
 import com.android.certifications.niap.permissions.log.UiLogger;
 import com.android.certifications.niap.permissions.services.TestService;
 import com.android.certifications.niap.permissions.utils.InternalPermissions;
+import com.android.certifications.niap.permissions.utils.MethodCache;
 import com.android.certifications.niap.permissions.utils.PermissionUtils;
 import com.android.certifications.niap.permissions.utils.ReflectionUtils;
+import com.android.certifications.niap.permissions.utils.ServiceHandleRegistry;
 import com.android.certifications.niap.permissions.utils.SignaturePermissions;
 import com.android.certifications.niap.permissions.utils.TesterUtils;
 import com.android.certifications.niap.permissions.utils.Transacts;
@@ -386,7 +388,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                 new PermissionTest(false, () -> {
                     invokeReflectionCall(mDisplayManager.getClass(), "getAmbientBrightnessStats",
                             mDisplayManager, null);
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.ACCESS_CACHE_FILESYSTEM,
                 new PermissionTest(false, () -> {
@@ -412,13 +414,13 @@ public class SignaturePermissionTester extends BasePermissionTester {
                     mTransacts.invokeTransact(Transacts.ACTIVITY_SERVICE, Transacts.ACTIVITY_DESCRIPTOR,
                             Transacts.getContentProviderExternal, "settings", 0,
                             getActivityToken(), TAG);
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.ACCESS_INSTANT_APPS,
                 new PermissionTest(false, () -> {
                     invokeReflectionCall(mPackageManager.getClass(), "getInstantApps",
                             mPackageManager, null);
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.ACCESS_KEYGUARD_SECURE_STORAGE,
                 new PermissionTest(false, () -> {
@@ -432,7 +434,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
         mPermissionTasks.put(permission.ACCESS_MTP, new PermissionTest(false, () -> {
             mTransacts.invokeTransact(Transacts.USB_SERVICE, Transacts.USB_DESCRIPTOR,
                     Transacts.getControlFd, 0L);
-        }));
+        }).runOnWorker());
 
         // android.permission.ACCESS_NETWORK_CONDITIONS guards network condition broadcasts
 
@@ -441,7 +443,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                     mTransacts.invokeTransact(Transacts.NOTIFICATION_SERVICE,
                             Transacts.NOTIFICATION_DESCRIPTOR, Transacts.getActiveNotifications,
                             mPackageName);
-                }));
+                }).runOnWorker());
 
         // android.permission.ACCESS_PDB_STATE - SELinux policy blocks access to Persistent Data
         // Block service.
@@ -477,7 +479,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                         mTransacts.invokeTransact(Transacts.VOICE_INTERACTION_SERVICE,
                                 Transacts.VOICE_INTERACTION_DESCRIPTOR, Transacts.isSessionRunning);
                     }
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.ACCESS_VR_MANAGER,
                 new PermissionTest(false, () -> {
@@ -488,7 +490,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
         mPermissionTasks.put(permission.ACCESS_VR_STATE, new PermissionTest(false, () -> {
             mTransacts.invokeTransact(Transacts.VR_SERVICE, Transacts.VR_DESCRIPTOR,
                     Transacts.getVrModeState);
-        }));
+        }).runOnWorker());
 
         mPermissionTasks.put(permission.ALLOCATE_AGGRESSIVE,
                 new PermissionTest(false, () -> {
@@ -514,13 +516,13 @@ public class SignaturePermissionTester extends BasePermissionTester {
         mPermissionTasks.put(permission.BATTERY_STATS, new PermissionTest(false, () -> {
             mTransacts.invokeTransact(Transacts.BATTERY_STATS_SERVICE, Transacts.BATTERY_STATS_DESCRIPTOR,
                     Transacts.getAwakeTimeBattery);
-        }));
+        }).runOnWorker());
 
         mPermissionTasks.put(permission.BRIGHTNESS_SLIDER_USAGE,
                 new PermissionTest(false, () -> {
                     invokeReflectionCall(mDisplayManager.getClass(), "getBrightnessEvents",
                             mDisplayManager, null);
-                }));
+                }).runOnWorker());
 
         // android.permission.BROADCAST_PACKAGE_REMOVED - all broadcasts protected by a platform
         // signed signature permission first check if the caller is a system UID; if not the call
@@ -651,7 +653,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                 new PermissionTest(false, () -> {
                     invokeReflectionCall(mDisplayManager.getClass(), "getBrightnessConfiguration",
                             mDisplayManager, null);
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.CONFIGURE_DISPLAY_COLOR_MODE,
                 new PermissionTest(false, () -> {
@@ -678,7 +680,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                     mTransacts.invokeTransact(Transacts.CONNECTIVITY_SERVICE,
                             Transacts.CONNECTIVITY_DESCRIPTOR,
                             Transacts.getActiveNetworkForUid, mUid, false);
-                }));
+                }).runOnWorker());
 
         // Note,
         mPermissionTasks.put(permission.CONNECTIVITY_USE_RESTRICTED_NETWORKS,
@@ -824,7 +826,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                 new PermissionTest(false,Build.VERSION_CODES.P,Build.VERSION_CODES.S,() -> {
                     mTransacts.invokeTransact(Transacts.MOUNT_SERVICE, Transacts.MOUNT_DESCRIPTOR,
                             Transacts.getEncryptionState);
-                }));
+                }).runOnWorker());
 
         // android.permission.DELETE_CACHE_FILES is no longer used and has been replaced by
         // android.permission.INTERNAL_DELETE_CACHE_FILES
@@ -972,7 +974,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                     }
                     mTransacts.invokeTransact(service, descriptor, Transacts.getGrantedUriPermissions,
                             mPackageName, mUid);
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.GET_APP_OPS_STATS,
                 new PermissionTest(false, () -> {
@@ -986,14 +988,14 @@ public class SignaturePermissionTester extends BasePermissionTester {
                                 Transacts.APP_OPS_DESCRIPTOR, Transacts.getUidOps, 1000,
                                 new int[]{0});
                     }
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.GET_INTENT_SENDER_INTENT,
                 new PermissionTest(false, () -> {
                     IBinder token = getActivityToken();
                     mTransacts.invokeTransact(Transacts.ACTIVITY_SERVICE, Transacts.ACTIVITY_DESCRIPTOR,
                             Transacts.getIntentForIntentSender, token);
-                }));
+                }).runOnWorker());
 
         // android.permission.GET_PASSWORDS allows but does not guarantee access to the user
         // password at the conclusion of an add account; without that guarantee it cannot be
@@ -1011,7 +1013,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                         descriptor = Transacts.ACTIVITY_DESCRIPTOR;
                     }
                     mTransacts.invokeTransact(service, descriptor, Transacts.getAssistContextExtras, 0);
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.HARDWARE_TEST, new PermissionTest(false, () -> {
             // The showCpu transaction should result in an invalid transaction ID; when the
@@ -1059,14 +1061,14 @@ public class SignaturePermissionTester extends BasePermissionTester {
                 new PermissionTest(false, () -> {
                     invokeReflectionCall(mActivityManager.getClass(), "isUserRunning",
                             mActivityManager, new Class<?>[]{int.class}, 1);
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.INTERACT_ACROSS_USERS_FULL,
                 new PermissionTest(false, () -> {
                     invokeReflectionCall(mPackageManager.getClass(),
                             "getDefaultBrowserPackageNameAsUser", mPackageManager,
                             new Class<?>[]{int.class}, 1);
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.INTERNAL_DELETE_CACHE_FILES,
                 new PermissionTest(false, () -> {
@@ -1129,7 +1131,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                         descriptor = Transacts.ACTIVITY_DESCRIPTOR;
                     }
                     mTransacts.invokeTransact(service, descriptor, Transacts.getTaskDescription, 0);
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.MANAGE_APP_OPS_MODES,
                 new PermissionTest(false, () -> {
@@ -1182,7 +1184,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                 new PermissionTest(false, () -> {
                     mTransacts.invokeTransact(Transacts.PACKAGE_SERVICE, Transacts.PACKAGE_DESCRIPTOR,
                             Transacts.isPackageStateProtected, mPackageName, mUid);
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.MANAGE_DOCUMENTS, new PermissionTest(false, () -> {
             // Without this permission this query fails with a SecurityException, but with it it
@@ -1207,21 +1209,21 @@ public class SignaturePermissionTester extends BasePermissionTester {
                     mTransacts.invokeTransact(Transacts.MEDIA_PROJECTION_SERVICE,
                             Transacts.MEDIA_PROJECTION_DESCRIPTOR,
                             Transacts.getActiveProjectionInfo);
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.MANAGE_NETWORK_POLICY,
                 new PermissionTest(false, () -> {
                     mTransacts.invokeTransact(Transacts.NET_POLICY_SERVICE,
                             Transacts.NET_POLICY_DESCRIPTOR,
                             Transacts.getUidPolicy, mUid);
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.MANAGE_NOTIFICATIONS,
                 new PermissionTest(false, () -> {
                     mTransacts.invokeTransact(Transacts.NOTIFICATION_SERVICE,
                             Transacts.NOTIFICATION_DESCRIPTOR,
                             Transacts.getZenRules);
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.MANAGE_PROFILE_AND_DEVICE_OWNERS,
                 new PermissionTest(false, () -> {
@@ -1296,11 +1298,11 @@ public class SignaturePermissionTester extends BasePermissionTester {
                     mTransacts.invokeTransact(Transacts.NET_POLICY_SERVICE,
                             Transacts.NET_POLICY_DESCRIPTOR,
                             Transacts.getSubscriptionPlans, 0, mPackageName);
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.MANAGE_USB, new PermissionTest(false, () -> {
             invokeReflectionCall(mUsbManager.getClass(), "getPorts", mUsbManager, null);
-        }));
+        }).runOnWorker());
 
         // android.permission.MANAGE_USER_OEM_UNLOCK_STATE - also requires the oem_lock service
         // that is guarded by SELinux policy.
@@ -1308,7 +1310,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
         mPermissionTasks.put(permission.MANAGE_USERS, new PermissionTest(false, () -> {
             mTransacts.invokeTransact(Transacts.PACKAGE_SERVICE, Transacts.PACKAGE_DESCRIPTOR,
                     Transacts.isPackageDeviceAdminOnAnyUser, mPackageName);
-        }));
+        }).runOnWorker());
 
         mPermissionTasks.put(permission.MASTER_CLEAR, new PermissionTest(false, () -> {
             // Note, if this permission is granted this action could potentially interrupt the test
@@ -1358,7 +1360,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                 new PermissionTest(false, () -> {
                     mTransacts.invokeTransact(Transacts.AUDIO_SERVICE, Transacts.AUDIO_DESCRIPTOR,
                             Transacts.isAudioServerRunning);
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.MODIFY_PHONE_STATE,
                 new PermissionTest(false, () -> {
@@ -1403,7 +1405,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                 new PermissionTest(false, () -> {
                     mTransacts.invokeTransact(Transacts.PACKAGE_SERVICE, Transacts.PACKAGE_DESCRIPTOR,
                             Transacts.getMoveStatus, 1);
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.MOVE_PACKAGE, new PermissionTest(false, () -> {
             mTransacts.invokeTransact(Transacts.PACKAGE_SERVICE, Transacts.PACKAGE_DESCRIPTOR,
@@ -1470,14 +1472,14 @@ public class SignaturePermissionTester extends BasePermissionTester {
                 new PermissionTest(false, () -> {
                     mTransacts.invokeTransact(Transacts.WIFI_SERVICE, Transacts.WIFI_DESCRIPTOR,
                             Transacts.getWifiApConfiguration);
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.PACKAGE_USAGE_STATS,
                 new PermissionTest(false, () -> {
                     invokeReflectionCall(mActivityManager.getClass(), "getPackageImportance",
                             mActivityManager, new Class<?>[]{String.class},
                             mPackageName);
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.PACKAGE_VERIFICATION_AGENT,
                 new PermissionTest(false, () -> {
@@ -1503,7 +1505,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                     mTransacts.invokeTransact(Transacts.DEVICE_POLICY_SERVICE,
                             Transacts.DEVICE_POLICY_DESCRIPTOR,
                             Transacts.getDoNotAskCredentialsOnBoot);
-                }));
+                }).runOnWorker());
 
         // android.permission.QUERY_TIME_ZONE_RULES - service required for this permission is
         // guarded by SELinux policy.
@@ -1517,7 +1519,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                 new PermissionTest(false, () -> {
                     mTransacts.invokeTransact(Transacts.DREAMS_SERVICE, Transacts.DREAMS_DESCRIPTOR,
                             Transacts.isDreaming);
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.READ_FRAME_BUFFER,
                 new PermissionTest(false, () -> {
@@ -1550,9 +1552,6 @@ public class SignaturePermissionTester extends BasePermissionTester {
 
         mPermissionTasks.put(permission.READ_PRECISE_PHONE_STATE,
                 new PermissionTest(false, () -> {
-                    if (Looper.myLooper() == null) {
-                        Looper.prepare();
-                    }
                     mTelephonyManager.listen(new PhoneStateListener(), 0x00000800);
                 }));
 
@@ -1560,19 +1559,19 @@ public class SignaturePermissionTester extends BasePermissionTester {
                 new PermissionTest(false, () -> {
                     invokeReflectionCall(mPrintManager.getClass(), "getPrintServiceRecommendations",
                             mPrintManager, null);
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.READ_PRINT_SERVICES,
                 new PermissionTest(false, () -> {
                     invokeReflectionCall(mPrintManager.getClass(), "getPrintServices",
                             mPrintManager, new Class<?>[]{int.class}, 3);
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.READ_PRIVILEGED_PHONE_STATE,
                 new PermissionTest(false, () -> {
                     invokeReflectionCall(mTelephonyManager.getClass(), "getUiccSlotsInfo",
                             mTelephonyManager, new Class<?>[]{},null);
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.READ_SEARCH_INDEXABLES, new PermissionTest(false,
                 () -> {
@@ -1592,7 +1591,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                 new PermissionTest(false, () -> {
                     invokeReflectionCall(mWifiManager.getClass(), "getPrivilegedConfiguredNetworks",
                             mWifiManager, null);
-                }));
+                }).runOnWorker());
 
         //TODO : Reboot the device?
         mPermissionTasks.put(permission.REBOOT, new PermissionTest(false, () -> {
@@ -1766,7 +1765,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                     mTransacts.invokeTransact(Transacts.ACCESSIBILITY_SERVICE,
                             Transacts.ACCESSIBILITY_DESCRIPTOR,
                             Transacts.getWindowToken,  -3, mUid);
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.REVOKE_RUNTIME_PERMISSIONS,
                 new PermissionTest(false, () -> {
@@ -1819,7 +1818,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                     // be bypassed when the permission is granted.
                     mTransacts.invokeTransact(Transacts.PACKAGE_SERVICE, Transacts.PACKAGE_DESCRIPTOR,
                             Transacts.getHarmfulAppWarning, Constants.COMPANION_PACKAGE, mUid);
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.SET_INPUT_CALIBRATION,
                 new PermissionTest(false, () -> {
@@ -2029,7 +2028,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                     mTransacts.invokeTransact(Transacts.NOTIFICATION_SERVICE,
                             Transacts.NOTIFICATION_DESCRIPTOR,
                             Transacts.isNotificationPolicyAccessGrantedForPackage, "android");
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.STOP_APP_SWITCHES,
                 new PermissionTest(false, () -> {
@@ -2065,7 +2064,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
         mPermissionTasks.put(permission.TABLET_MODE, new PermissionTest(false, () -> {
             mTransacts.invokeTransact(Transacts.INPUT_SERVICE, Transacts.INPUT_DESCRIPTOR,
                     Transacts.isInTabletMode);
-        }));
+        }).runOnWorker());
 
         // TemporaryEnableAccessibilityStateUntilKeyguardRemoved api has been removed from Android 14.
         mPermissionTasks.put(permission.TEMPORARY_ENABLE_ACCESSIBILITY,
@@ -2263,13 +2262,13 @@ public class SignaturePermissionTester extends BasePermissionTester {
                         mTransacts.invokeTransact(Transacts.VPN_SERVICE, Transacts.VPN_DESCRIPTOR,
                                 Transacts.getAlwaysOnVpnPackage, mUid);
                     }
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.CONTROL_KEYGUARD_SECURE_NOTIFICATIONS,
                 new PermissionTest(false, Build.VERSION_CODES.Q, () -> {
                     invokeReflectionCall(mKeyguardManager.getClass(),
                             "getPrivateNotificationsAllowed", mKeyguardManager, null);
-                }));
+                }).runOnWorker());
 
         // android.permission.START_ACTIVITY_AS_CALLER requires both the permission and a permission
         // token.
@@ -2281,7 +2280,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                 new PermissionTest(false, Build.VERSION_CODES.Q, () -> {
                     invokeReflectionCall(mPackageManager.getClass(), "getDeclaredSharedLibraries",
                             mPackageManager, new Class[]{String.class, int.class}, "android", 0);
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.MONITOR_INPUT,
                 new PermissionTest(false, Build.VERSION_CODES.Q, () -> {
@@ -2509,7 +2508,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                 new PermissionTest(false, VERSION_CODES.Q, () -> {
                     mTransacts.invokeTransact(Transacts.BIOMETRIC_SERVICE, Transacts.BIOMETRIC_DESCRIPTOR,
                             Transacts.hasEnrolledBiometrics, 0, mPackageName);
-                }));
+                }).runOnWorker());
 
         // android.permission.INSTALL_DYNAMIC_SYSTEM - dynamic_system service is guarded by
         // SELinux policy.
@@ -2675,7 +2674,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                             new Class[]{String.class, String.class, UserHandle.class},
                             Manifest.permission.READ_PHONE_STATE, "android",
                             UserHandle.getUserHandleForUid(mUid));
-                }));
+                }).runOnWorker());
 
         // android.permission.NETWORK_CARRIER_PROVISIONING requires a FQDN of the Passpoint
         // configuration.
@@ -2704,13 +2703,13 @@ public class SignaturePermissionTester extends BasePermissionTester {
                     } catch (ReflectiveOperationException e) {
                         throw new UnexpectedPermissionTestFailureException(e);
                     }
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.ADJUST_RUNTIME_PERMISSIONS_POLICY,
                 new PermissionTest(false, VERSION_CODES.Q, () -> {
                     mTransacts.invokeTransact(Transacts.PACKAGE_SERVICE, Transacts.PACKAGE_DESCRIPTOR,
                             Transacts.getRuntimePermissionsVersion, 0);
-                }));
+                }).runOnWorker());
 
         // Following are the new permissions for Android 11.
         mPermissionTasks.put(permission.ACCESS_CONTEXT_HUB,
@@ -2762,7 +2761,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                 new PermissionTest(false, VERSION_CODES.R, () -> {
                     mTransacts.invokeTransact(Transacts.VIBRATOR_SERVICE, Transacts.VIBRATOR_DESCRIPTOR,
                             Transacts.isVibrating);
-                }));
+                }).runOnWorker());
 
         //The permission had been removed as of SDK 31
         mPermissionTasks.put(permission.ASSOCIATE_INPUT_DEVICE_TO_DISPLAY_BY_PORT,
@@ -3180,7 +3179,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                     } catch (ReflectiveOperationException e) {
                         throw new UnexpectedPermissionTestFailureException(e);
                     }
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.RESTORE_RUNTIME_PERMISSIONS,
                 new PermissionTest(false, VERSION_CODES.R, () -> {
@@ -3300,7 +3299,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                                 Transacts.PERMISSION_MANAGER_DESCRIPTOR,
                                 Transacts.isAutoRevokeExempted, mPackageName, 0);
                     }
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.USE_INSTALLER_V2,
                 new PermissionTest(false, VERSION_CODES.R, () -> {
@@ -3511,7 +3510,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                 new PermissionTest(false, Build.VERSION_CODES.S, () -> {
                     mTransacts.invokeTransact(Transacts.GAME_SERVICE, Transacts.GAME_DESCRIPTOR,
                             Transacts.getAvailableGameModes, mContext.getPackageName());
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.MANAGE_SMARTSPACE,
                 new PermissionTest(false, Build.VERSION_CODES.S, () -> {
@@ -3570,7 +3569,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                     mTransacts.invokeTransact(Transacts.DISPLAY_SERVICE,
                             Transacts.DISPLAY_DESCRIPTOR,
                             Transacts.shouldAlwaysRespectAppRequestedMode);
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.QUERY_AUDIO_STATE,
                 new PermissionTest(false, Build.VERSION_CODES.S, () -> {
@@ -3590,7 +3589,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                     };
                     mTransacts.invokeTransact(Transacts.AUDIO_SERVICE, Transacts.AUDIO_DESCRIPTOR,
                             Transacts.getDeviceVolumeBehavior, audioDeviceAttributes);
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.READ_DREAM_SUPPRESSION,
                 new PermissionTest(false, Build.VERSION_CODES.S, () -> {
@@ -3600,13 +3599,13 @@ public class SignaturePermissionTester extends BasePermissionTester {
                     // as expected when both permissions are granted.
                     mTransacts.invokeTransact(Transacts.POWER_SERVICE, Transacts.POWER_DESCRIPTOR,
                             Transacts.isAmbientDisplaySuppressedForTokenByApp, "test-token", mUid);
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.READ_PROJECTION_STATE,
                 new PermissionTest(false, Build.VERSION_CODES.S, () -> {
                     mTransacts.invokeTransact(Transacts.UI_MODE_SERVICE,
                             Transacts.UI_MODE_DESCRIPTOR, Transacts.getActiveProjectionTypes);
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.RESET_APP_ERRORS,
                 new PermissionTest(false, Build.VERSION_CODES.S, () -> {
@@ -3644,7 +3643,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                 new PermissionTest(false, Build.VERSION_CODES.S, () -> {
                     mTransacts.invokeTransact(Transacts.AUTH_SERVICE, Transacts.AUTH_DESCRIPTOR,
                             Transacts.getUiPackage);
-                }));
+                }).runOnWorker());
 
         // UNLIMITED_TOASTS requires MANAGE_TOAST_RATE_LIMITING to enable toast rate limiting then
         // need to be able to count the number of displayed toasts.
@@ -3718,7 +3717,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                     mTransacts.invokeTransact(Transacts.NOTIFICATION_SERVICE,
                             Transacts.NOTIFICATION_DESCRIPTOR,
                             Transacts.getEnabledNotificationListeners, 0);
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.BATTERY_PREDICTION,
                 new PermissionTest(false, Build.VERSION_CODES.S, () -> {
@@ -3759,7 +3758,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                     mTransacts.invokeTransact(Transacts.TIME_DETECTOR_SERVICE,
                             Transacts.TIME_DETECTOR_DESCRIPTOR,
                             Transacts.getCapabilitiesAndConfig, 0);
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.NFC_SET_CONTROLLER_ALWAYS_ON,
                 new PermissionTest(false, Build.VERSION_CODES.S, () -> {
@@ -3769,7 +3768,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                     }
                     mTransacts.invokeTransact(Transacts.NFC_SERVICE, Transacts.NFC_DESCRIPTOR,
                             Transacts.isControllerAlwaysOnSupported);
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.OVERRIDE_COMPAT_CHANGE_CONFIG_ON_RELEASE_BUILD,
                 new PermissionTest(false, Build.VERSION_CODES.S, () -> {
@@ -3805,7 +3804,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                                 Transacts.DEVICE_POLICY_DESCRIPTOR,
                                 Transacts.getNearbyNotificationStreamingPolicy, 0);
                     }
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.REGISTER_MEDIA_RESOURCE_OBSERVER,
                 new PermissionTest(false, Build.VERSION_CODES.S, () -> {
@@ -4011,13 +4010,13 @@ public class SignaturePermissionTester extends BasePermissionTester {
                 new PermissionTest(false, Build.VERSION_CODES.S, () -> {
                     mTransacts.invokeTransact(Transacts.FONT_SERVICE, Transacts.FONT_DESCRIPTOR,
                             Transacts.getFontConfig);
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.UWB_PRIVILEGED,
                 new PermissionTest(false, Build.VERSION_CODES.S, () -> {
                     mTransacts.invokeTransact(Transacts.UWB_SERVICE, Transacts.UWB_DESCRIPTOR,
                             Transacts.getSpecificationInfo);
-                }));
+                }).runOnWorker());
 
         // CONTROL_UI_TRACING - does not appear to be used in AOSP.
 
@@ -4049,7 +4048,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                 new PermissionTest(false, Build.VERSION_CODES.S, () -> {
                     mTransacts.invokeTransact(Transacts.TV_INPUT_SERVICE,
                             Transacts.TV_INPUT_DESCRIPTOR, Transacts.getCurrentTunedInfos, 0);
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.GET_PEOPLE_TILE_PREVIEW,
                 new PermissionTest(false, Build.VERSION_CODES.S, () -> {
@@ -4086,13 +4085,13 @@ public class SignaturePermissionTester extends BasePermissionTester {
                     mTransacts.invokeTransact(Transacts.CLIPBOARD_SERVICE,
                             Transacts.CLIPBOARD_DESCRIPTOR, Transacts.getPrimaryClipSource,
                             mPackageName, 0);
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.READ_PEOPLE_DATA,
                 new PermissionTest(false, Build.VERSION_CODES.S, () -> {
                     mTransacts.invokeTransact(Transacts.PEOPLE_SERVICE, Transacts.PEOPLE_DESCRIPTOR,
                             Transacts.isConversation, mPackageName, 0, "test-shortcut-id");
-                }));
+                }).runOnWorker());
 
         // MANAGE_SEARCH_UI is a permission that must be required by a SearchUiService.
 
@@ -4145,13 +4144,13 @@ public class SignaturePermissionTester extends BasePermissionTester {
                     }
                     invokeReflectionCall(mLocationManager.getClass(),
                             "isAutomotiveGnssSuspended",mLocationManager,null);
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.MANAGE_WIFI_NETWORK_SELECTION,
                 new PermissionTest(false, Build.VERSION_CODES.TIRAMISU, () -> {
                     invokeReflectionCall(mWifiManager.getClass(),
                             "getSsidsAllowlist",mWifiManager,null);
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.MANAGE_WIFI_INTERFACES,
                 new PermissionTest(false, Build.VERSION_CODES.TIRAMISU, () -> {
@@ -4201,7 +4200,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                             "getUserRestrictionSource", mUserManager,
                             new Class<?>[]{java.lang.String.class, android.os.UserHandle.class},
                             "Hello",UserHandle.getUserHandleForUid(0));
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.QUERY_ADMIN_POLICY,
                 new PermissionTest(false, Build.VERSION_CODES.TIRAMISU, () -> {
@@ -4467,28 +4466,28 @@ public class SignaturePermissionTester extends BasePermissionTester {
                     invokeReflectionCall(mAudioManager.getClass(),
                             "isUltrasoundSupported", mAudioManager,
                             new Class[]{});
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.CALL_AUDIO_INTERCEPTION,
                 new PermissionTest(false, Build.VERSION_CODES.TIRAMISU, () -> {
                     invokeReflectionCall(mAudioManager.getClass(),
                             "isPstnCallAudioInterceptable", mAudioManager,
                             new Class[]{});
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.MANAGE_LOW_POWER_STANDBY,
                 new PermissionTest(false, Build.VERSION_CODES.TIRAMISU, () -> {
                     invokeReflectionCall(mPowerManager.getClass(),
                             "isLowPowerStandbySupported", mPowerManager,
                             new Class[]{});
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.ACCESS_BROADCAST_RESPONSE_STATS,
                 new PermissionTest(false, Build.VERSION_CODES.TIRAMISU, () -> {
                     invokeReflectionCall(mUsageStatsManager.getClass(),
                             "queryBroadcastResponseStats", mUsageStatsManager,
                             new Class[]{String.class,long.class},mContext.getPackageName(),0);
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.CHANGE_APP_LAUNCH_TIME_ESTIMATE,
                 new PermissionTest(false, Build.VERSION_CODES.TIRAMISU, () -> {
@@ -4507,7 +4506,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                             "isWeakEscrowTokenActive", mKeyguardManager,
                             new Class[]{long.class, UserHandle.class},
                             100L, UserHandle.getUserHandleForUid(mUid));
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.SET_WALLPAPER_DIM_AMOUNT,
                 new PermissionTest(false, Build.VERSION_CODES.TIRAMISU, () -> {
@@ -4672,7 +4671,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                     //The tv_input service guarded by this permission is not available on this device
                     mTransacts.invokeTransact(Transacts.TV_INPUT_SERVICE, Transacts.TV_INPUT_DESCRIPTOR,
                             Transacts.getAvailableExtensionInterfaceNames);
-                }));
+                }).runOnWorker());
 
         // # Skip WRITE_SECURITY_LOG
         //Reason : The corresponding api
@@ -4874,7 +4873,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                                 Transacts.getAppMetadataFd,
                                 mContext.getPackageName(), mUid);
                     }
-                }));
+                }).runOnWorker());
         mPermissionTasks.put(permission.LIST_ENABLED_CREDENTIAL_PROVIDERS,
                 new PermissionTest(false, VERSION_CODES.UPSIDE_DOWN_CAKE, () -> {
                     if(isPermissionGranted(QUERY_ALL_PACKAGES)){
@@ -4887,7 +4886,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                             Transacts.getCredentialProviderServices,
                             mUid,Binder.getCallingPid());
 
-                }));
+                }).runOnWorker());
         mPermissionTasks.put(permission.LOG_FOREGROUND_RESOURCE_USE,
                 new PermissionTest(false, VERSION_CODES.UPSIDE_DOWN_CAKE, () -> {
                     mTransacts.invokeTransact(
@@ -4906,7 +4905,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                             mUid
                     );
 
-                }));
+                }).runOnWorker());
         mPermissionTasks.put(permission.MANAGE_SUBSCRIPTION_USER_ASSOCIATION,
                 new PermissionTest(false, VERSION_CODES.UPSIDE_DOWN_CAKE, () -> {
                     mTransacts.invokeTransact(
@@ -4981,7 +4980,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                             Transacts.INPUT_DESCRIPTOR,
                             Transacts.getModifierKeyRemapping);
 
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.SATELLITE_COMMUNICATION,
                 new PermissionTest(false, VERSION_CODES.UPSIDE_DOWN_CAKE, () -> {
@@ -5031,7 +5030,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                             Transacts.isInputMethodPickerShownForTest
                     );
 
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.TURN_SCREEN_ON,
                 new PermissionTest(false, VERSION_CODES.UPSIDE_DOWN_CAKE, () -> {
@@ -5058,7 +5057,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                             Transacts.getDefaultApplicationAsUser,
                             "dummy",mUid
                     );
-                }));
+                }).runOnWorker());
 
         mPermissionTasks.put(permission.KILL_ALL_BACKGROUND_PROCESSES,
                 new PermissionTest(false, VERSION_CODES.UPSIDE_DOWN_CAKE, () -> {
@@ -5499,7 +5498,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                     mTransacts.invokeTransact(Transacts.TELEPHONY_SERVICE, Transacts.TELEPHONY_DESCRIPTOR,
                             Transacts.getLastKnownCellIdentity, 0,mPackageName,"callingFeatureId");
 
-            }));
+            }).runOnWorker());
         mPermissionTasks.put(permission.ACCESS_HIDDEN_PROFILES_FULL,
                 new PermissionTest(false, VERSION_CODES.UPSIDE_DOWN_CAKE, () -> {
                     //same as access_hidden_profiles install permission
@@ -5871,7 +5870,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
                 }
                 mTransacts.invokeTransact(Transacts.ACTIVITY_SERVICE, Transacts.ACTIVITY_DESCRIPTOR,
                    Transacts.getBindingUidProcessState, mUid, mPackageName);
-        }));
+        }).runOnWorker());
         mPermissionTasks.put(permission.MANAGE_DISPLAYS,
                 new PermissionTest(false, VERSION_CODES.UPSIDE_DOWN_CAKE, () -> {
             //mLogger.logDebug("Test case for android.permission.MANAGE_DISPLAYS not implemented yet");
@@ -5915,7 +5914,7 @@ public class SignaturePermissionTester extends BasePermissionTester {
             mTransacts.invokeTransact(Transacts.BACKGROUND_INSTALL_CONTROL_SERVICE,
                     Transacts.BACKGROUND_INSTALL_CONTROL_DESCRIPTOR,
                     Transacts.getBackgroundInstalledPackages, PackageManager.MATCH_ALL,mUid);
-        }));
+        }).runOnWorker());
         mPermissionTasks.put(permission.READ_SYSTEM_GRAMMATICAL_GENDER,
                 new PermissionTest(false, VERSION_CODES.UPSIDE_DOWN_CAKE, () -> {
                     if (Build.VERSION.SDK_INT >= VERSION_CODES.S) {
@@ -6008,262 +6007,262 @@ public class SignaturePermissionTester extends BasePermissionTester {
 
         //TODO : Any Bind Services causes ANR with Activity swapping
         mPermissionTasks.put(permission.BIND_INCALL_SERVICE,
-                new PermissionTest(false, getBindRunnable(permission.BIND_INCALL_SERVICE)));
+                new PermissionTest(false, getBindRunnable(permission.BIND_INCALL_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_ATTENTION_SERVICE,
-                new PermissionTest(false, Build.VERSION_CODES.Q, getBindRunnable(permission.BIND_ATTENTION_SERVICE)));
+                new PermissionTest(false, Build.VERSION_CODES.Q, getBindRunnable(permission.BIND_ATTENTION_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_PRINT_RECOMMENDATION_SERVICE,
                 new PermissionTest(false,
-                        getBindRunnable(permission.BIND_PRINT_RECOMMENDATION_SERVICE)));
+                        getBindRunnable(permission.BIND_PRINT_RECOMMENDATION_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_KEYGUARD_APPWIDGET,
-                new PermissionTest(false, getBindRunnable(permission.BIND_KEYGUARD_APPWIDGET)));
+                new PermissionTest(false, getBindRunnable(permission.BIND_KEYGUARD_APPWIDGET)).runOnWorker());
         mPermissionTasks.put(permission.BIND_DEVICE_ADMIN,
-                new PermissionTest(false, getBindRunnable(permission.BIND_DEVICE_ADMIN)));
+                new PermissionTest(false, getBindRunnable(permission.BIND_DEVICE_ADMIN)).runOnWorker());
         mPermissionTasks.put(permission.BIND_PRINT_SERVICE,
-                new PermissionTest(false, getBindRunnable(permission.BIND_PRINT_SERVICE)));
+                new PermissionTest(false, getBindRunnable(permission.BIND_PRINT_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_RUNTIME_PERMISSION_PRESENTER_SERVICE,
                 new PermissionTest(false,
-                        getBindRunnable(permission.BIND_RUNTIME_PERMISSION_PRESENTER_SERVICE)));
+                        getBindRunnable(permission.BIND_RUNTIME_PERMISSION_PRESENTER_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_VR_LISTENER_SERVICE,
-                new PermissionTest(false, getBindRunnable(permission.BIND_VR_LISTENER_SERVICE)));
+                new PermissionTest(false, getBindRunnable(permission.BIND_VR_LISTENER_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_DREAM_SERVICE,
-                new PermissionTest(false, getBindRunnable(permission.BIND_DREAM_SERVICE)));
+                new PermissionTest(false, getBindRunnable(permission.BIND_DREAM_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_CARRIER_SERVICES,
-                new PermissionTest(false, getBindRunnable(permission.BIND_CARRIER_SERVICES)));
+                new PermissionTest(false, getBindRunnable(permission.BIND_CARRIER_SERVICES)).runOnWorker());
         mPermissionTasks.put(permission.BIND_QUICK_SETTINGS_TILE,
-                new PermissionTest(false, getBindRunnable(permission.BIND_QUICK_SETTINGS_TILE)));
+                new PermissionTest(false, getBindRunnable(permission.BIND_QUICK_SETTINGS_TILE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_TV_INPUT,
-                new PermissionTest(false, getBindRunnable(permission.BIND_TV_INPUT)));
+                new PermissionTest(false, getBindRunnable(permission.BIND_TV_INPUT)).runOnWorker());
         mPermissionTasks.put(permission.BIND_AUTOFILL,
-                new PermissionTest(false, getBindRunnable(permission.BIND_AUTOFILL)));
+                new PermissionTest(false, getBindRunnable(permission.BIND_AUTOFILL)).runOnWorker());
         mPermissionTasks.put(permission.BIND_WALLPAPER,
-                new PermissionTest(false, getBindRunnable(permission.BIND_WALLPAPER)));
+                new PermissionTest(false, getBindRunnable(permission.BIND_WALLPAPER)).runOnWorker());
         mPermissionTasks.put(permission.BIND_INTENT_FILTER_VERIFIER,
-                new PermissionTest(false, getBindRunnable(permission.BIND_INTENT_FILTER_VERIFIER)));
+                new PermissionTest(false, getBindRunnable(permission.BIND_INTENT_FILTER_VERIFIER)).runOnWorker());
         mPermissionTasks.put(permission.BIND_TELECOM_CONNECTION_SERVICE,
                 new PermissionTest(false,
-                        getBindRunnable(permission.BIND_TELECOM_CONNECTION_SERVICE)));
+                        getBindRunnable(permission.BIND_TELECOM_CONNECTION_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_CALL_REDIRECTION_SERVICE,
                 new PermissionTest(false,Build.VERSION_CODES.Q,
-                        getBindRunnable(permission.BIND_CALL_REDIRECTION_SERVICE)));
+                        getBindRunnable(permission.BIND_CALL_REDIRECTION_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_VOICE_INTERACTION,
-                new PermissionTest(false, getBindRunnable(permission.BIND_VOICE_INTERACTION)));
+                new PermissionTest(false, getBindRunnable(permission.BIND_VOICE_INTERACTION)).runOnWorker());
         mPermissionTasks.put(permission.BIND_CACHE_QUOTA_SERVICE,
-                new PermissionTest(false, getBindRunnable(permission.BIND_CACHE_QUOTA_SERVICE)));
+                new PermissionTest(false, getBindRunnable(permission.BIND_CACHE_QUOTA_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_RESOLVER_RANKER_SERVICE,
                 new PermissionTest(false,
-                        getBindRunnable(permission.BIND_RESOLVER_RANKER_SERVICE)));
+                        getBindRunnable(permission.BIND_RESOLVER_RANKER_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_CARRIER_MESSAGING_CLIENT_SERVICE,
                 new PermissionTest(false,Build.VERSION_CODES.Q,
-                        getBindRunnable(permission.BIND_CARRIER_MESSAGING_CLIENT_SERVICE)));
+                        getBindRunnable(permission.BIND_CARRIER_MESSAGING_CLIENT_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_CONNECTION_SERVICE,
-                new PermissionTest(false, getBindRunnable(permission.BIND_CONNECTION_SERVICE)));
+                new PermissionTest(false, getBindRunnable(permission.BIND_CONNECTION_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_QUICK_ACCESS_WALLET_SERVICE,
                 new PermissionTest(false,Build.VERSION_CODES.R,
-                        getBindRunnable(permission.BIND_QUICK_ACCESS_WALLET_SERVICE)));
+                        getBindRunnable(permission.BIND_QUICK_ACCESS_WALLET_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_VPN_SERVICE,
-                new PermissionTest(false, getBindRunnable(permission.BIND_VPN_SERVICE)));
+                new PermissionTest(false, getBindRunnable(permission.BIND_VPN_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_APPWIDGET,
-                new PermissionTest(false, getBindRunnable(permission.BIND_APPWIDGET)));
+                new PermissionTest(false, getBindRunnable(permission.BIND_APPWIDGET)).runOnWorker());
         mPermissionTasks.put(permission.BIND_NOTIFICATION_LISTENER_SERVICE,
                 new PermissionTest(false,
-                        getBindRunnable(permission.BIND_NOTIFICATION_LISTENER_SERVICE)));
+                        getBindRunnable(permission.BIND_NOTIFICATION_LISTENER_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_SCREENING_SERVICE,
-                new PermissionTest(false, getBindRunnable(permission.BIND_SCREENING_SERVICE)));
+                new PermissionTest(false, getBindRunnable(permission.BIND_SCREENING_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_MIDI_DEVICE_SERVICE,
-                new PermissionTest(false, getBindRunnable(permission.BIND_MIDI_DEVICE_SERVICE)));
+                new PermissionTest(false, getBindRunnable(permission.BIND_MIDI_DEVICE_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_REMOTE_DISPLAY,
-                new PermissionTest(false, getBindRunnable(permission.BIND_REMOTE_DISPLAY)));
+                new PermissionTest(false, getBindRunnable(permission.BIND_REMOTE_DISPLAY)).runOnWorker());
         mPermissionTasks.put(permission.BIND_AUTOFILL_SERVICE,
-                new PermissionTest(false, getBindRunnable(permission.BIND_AUTOFILL_SERVICE)));
+                new PermissionTest(false, getBindRunnable(permission.BIND_AUTOFILL_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_JOB_SERVICE,
-                new PermissionTest(false, getBindRunnable(permission.BIND_JOB_SERVICE)));
+                new PermissionTest(false, getBindRunnable(permission.BIND_JOB_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_COMPANION_DEVICE_MANAGER_SERVICE,
                 new PermissionTest(false,
-                        getBindRunnable(permission.BIND_COMPANION_DEVICE_MANAGER_SERVICE)));
+                        getBindRunnable(permission.BIND_COMPANION_DEVICE_MANAGER_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_PACKAGE_VERIFIER,
-                new PermissionTest(false, getBindRunnable(permission.BIND_PACKAGE_VERIFIER)));
+                new PermissionTest(false, getBindRunnable(permission.BIND_PACKAGE_VERIFIER)).runOnWorker());
         mPermissionTasks.put(permission.BIND_ROUTE_PROVIDER,
-                new PermissionTest(false, getBindRunnable(permission.BIND_ROUTE_PROVIDER)));
+                new PermissionTest(false, getBindRunnable(permission.BIND_ROUTE_PROVIDER)).runOnWorker());
         mPermissionTasks.put(permission.BIND_CARRIER_MESSAGING_SERVICE,
                 new PermissionTest(false,
-                        getBindRunnable(permission.BIND_CARRIER_MESSAGING_SERVICE)));
+                        getBindRunnable(permission.BIND_CARRIER_MESSAGING_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_EUICC_SERVICE,
-                new PermissionTest(false, getBindRunnable(permission.BIND_EUICC_SERVICE)));
+                new PermissionTest(false, getBindRunnable(permission.BIND_EUICC_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_VISUAL_VOICEMAIL_SERVICE,
                 new PermissionTest(false,
-                        getBindRunnable(permission.BIND_VISUAL_VOICEMAIL_SERVICE)));
+                        getBindRunnable(permission.BIND_VISUAL_VOICEMAIL_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_TV_REMOTE_SERVICE,
-                new PermissionTest(false, getBindRunnable(permission.BIND_TV_REMOTE_SERVICE)));
+                new PermissionTest(false, getBindRunnable(permission.BIND_TV_REMOTE_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_CONDITION_PROVIDER_SERVICE,
                 new PermissionTest(false,
-                        getBindRunnable(permission.BIND_CONDITION_PROVIDER_SERVICE)));
+                        getBindRunnable(permission.BIND_CONDITION_PROVIDER_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_AUTOFILL_FIELD_CLASSIFICATION_SERVICE,
                 new PermissionTest(false,
-                        getBindRunnable(permission.BIND_AUTOFILL_FIELD_CLASSIFICATION_SERVICE)));
+                        getBindRunnable(permission.BIND_AUTOFILL_FIELD_CLASSIFICATION_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_CONTENT_SUGGESTIONS_SERVICE,
                 new PermissionTest(false,Build.VERSION_CODES.Q,
-                        getBindRunnable(permission.BIND_CONTENT_SUGGESTIONS_SERVICE)));
+                        getBindRunnable(permission.BIND_CONTENT_SUGGESTIONS_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_NOTIFICATION_ASSISTANT_SERVICE,
                 new PermissionTest(false,
-                        getBindRunnable(permission.BIND_NOTIFICATION_ASSISTANT_SERVICE)));
+                        getBindRunnable(permission.BIND_NOTIFICATION_ASSISTANT_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_SOUND_TRIGGER_DETECTION_SERVICE,
                 new PermissionTest(false,
-                        getBindRunnable(permission.BIND_SOUND_TRIGGER_DETECTION_SERVICE)));
+                        getBindRunnable(permission.BIND_SOUND_TRIGGER_DETECTION_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_PRINT_SPOOLER_SERVICE,
-                new PermissionTest(false, getBindRunnable(permission.BIND_PRINT_SPOOLER_SERVICE)));
+                new PermissionTest(false, getBindRunnable(permission.BIND_PRINT_SPOOLER_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_DIRECTORY_SEARCH,
-                new PermissionTest(false, getBindRunnable(permission.BIND_DIRECTORY_SEARCH)));
+                new PermissionTest(false, getBindRunnable(permission.BIND_DIRECTORY_SEARCH)).runOnWorker());
         mPermissionTasks.put(permission.BIND_TELEPHONY_NETWORK_SERVICE,
                 new PermissionTest(false,
-                        getBindRunnable(permission.BIND_TELEPHONY_NETWORK_SERVICE)));
+                        getBindRunnable(permission.BIND_TELEPHONY_NETWORK_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_CONTROLS,
-                new PermissionTest(false, Build.VERSION_CODES.R,getBindRunnable(permission.BIND_CONTROLS)));
+                new PermissionTest(false, Build.VERSION_CODES.R,getBindRunnable(permission.BIND_CONTROLS)).runOnWorker());
         mPermissionTasks.put(permission.BIND_SETTINGS_SUGGESTIONS_SERVICE,
                 new PermissionTest(false,
-                        getBindRunnable(permission.BIND_SETTINGS_SUGGESTIONS_SERVICE)));
+                        getBindRunnable(permission.BIND_SETTINGS_SUGGESTIONS_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_TRUST_AGENT,
-                new PermissionTest(false, getBindRunnable(permission.BIND_TRUST_AGENT)));
+                new PermissionTest(false, getBindRunnable(permission.BIND_TRUST_AGENT)).runOnWorker());
         mPermissionTasks.put(permission.BIND_REMOTEVIEWS,
-                new PermissionTest(false, getBindRunnable(permission.BIND_REMOTEVIEWS)));
+                new PermissionTest(false, getBindRunnable(permission.BIND_REMOTEVIEWS)).runOnWorker());
         mPermissionTasks.put(permission.BIND_TELEPHONY_DATA_SERVICE,
-                new PermissionTest(false, getBindRunnable(permission.BIND_TELEPHONY_DATA_SERVICE)));
+                new PermissionTest(false, getBindRunnable(permission.BIND_TELEPHONY_DATA_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_CELL_BROADCAST_SERVICE,
                 new PermissionTest(false, Build.VERSION_CODES.R,
-                        getBindRunnable(permission.BIND_CELL_BROADCAST_SERVICE)));
+                        getBindRunnable(permission.BIND_CELL_BROADCAST_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_ACCESSIBILITY_SERVICE,
-                new PermissionTest(false, getBindRunnable(permission.BIND_ACCESSIBILITY_SERVICE)));
+                new PermissionTest(false, getBindRunnable(permission.BIND_ACCESSIBILITY_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_INPUT_METHOD,
-                new PermissionTest(false, getBindRunnable(permission.BIND_INPUT_METHOD)));
+                new PermissionTest(false, getBindRunnable(permission.BIND_INPUT_METHOD)).runOnWorker());
         mPermissionTasks.put(permission.BIND_EXTERNAL_STORAGE_SERVICE,
                 new PermissionTest(false,Build.VERSION_CODES.R,
-                        getBindRunnable(permission.BIND_EXTERNAL_STORAGE_SERVICE)));
+                        getBindRunnable(permission.BIND_EXTERNAL_STORAGE_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_TEXTCLASSIFIER_SERVICE,
-                new PermissionTest(false, getBindRunnable(permission.BIND_TEXTCLASSIFIER_SERVICE)));
+                new PermissionTest(false, getBindRunnable(permission.BIND_TEXTCLASSIFIER_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_NFC_SERVICE,
-                new PermissionTest(false, getBindRunnable(permission.BIND_NFC_SERVICE)));
+                new PermissionTest(false, getBindRunnable(permission.BIND_NFC_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_PHONE_ACCOUNT_SUGGESTION_SERVICE,
                 new PermissionTest(false,Build.VERSION_CODES.Q,
-                        getBindRunnable(permission.BIND_PHONE_ACCOUNT_SUGGESTION_SERVICE)));
+                        getBindRunnable(permission.BIND_PHONE_ACCOUNT_SUGGESTION_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_IMS_SERVICE,
-                new PermissionTest(false, getBindRunnable(permission.BIND_IMS_SERVICE)));
+                new PermissionTest(false, getBindRunnable(permission.BIND_IMS_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_TEXT_SERVICE,
-                new PermissionTest(false, getBindRunnable(permission.BIND_TEXT_SERVICE)));
+                new PermissionTest(false, getBindRunnable(permission.BIND_TEXT_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_EXPLICIT_HEALTH_CHECK_SERVICE,
                 new PermissionTest(false,Build.VERSION_CODES.Q,
-                        getBindRunnable(permission.BIND_EXPLICIT_HEALTH_CHECK_SERVICE)));
+                        getBindRunnable(permission.BIND_EXPLICIT_HEALTH_CHECK_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_NETWORK_RECOMMENDATION_SERVICE,
                 new PermissionTest(false,
-                        getBindRunnable(permission.BIND_NETWORK_RECOMMENDATION_SERVICE)));
+                        getBindRunnable(permission.BIND_NETWORK_RECOMMENDATION_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_CHOOSER_TARGET_SERVICE,
-                new PermissionTest(false, getBindRunnable(permission.BIND_CHOOSER_TARGET_SERVICE)));
+                new PermissionTest(false, getBindRunnable(permission.BIND_CHOOSER_TARGET_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_INLINE_SUGGESTION_RENDER_SERVICE,
                 new PermissionTest(false,Build.VERSION_CODES.R,
-                        getBindRunnable(permission.BIND_INLINE_SUGGESTION_RENDER_SERVICE)));
+                        getBindRunnable(permission.BIND_INLINE_SUGGESTION_RENDER_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_CONTENT_CAPTURE_SERVICE,
                 new PermissionTest(false,Build.VERSION_CODES.Q,
-                        getBindRunnable(permission.BIND_CONTENT_CAPTURE_SERVICE)));
+                        getBindRunnable(permission.BIND_CONTENT_CAPTURE_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_AUGMENTED_AUTOFILL_SERVICE,
                 new PermissionTest(false,Build.VERSION_CODES.Q,
-                        getBindRunnable(permission.BIND_AUGMENTED_AUTOFILL_SERVICE)));
+                        getBindRunnable(permission.BIND_AUGMENTED_AUTOFILL_SERVICE)).runOnWorker());
 
         // The following are the new BIND_ permissions in Android 12.
         mPermissionTasks.put(permission.BIND_CALL_DIAGNOSTIC_SERVICE,
                 new PermissionTest(false, Build.VERSION_CODES.S,
-                        getBindRunnable(permission.BIND_CALL_DIAGNOSTIC_SERVICE)));
+                        getBindRunnable(permission.BIND_CALL_DIAGNOSTIC_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_COMPANION_DEVICE_SERVICE,
                 new PermissionTest(false, Build.VERSION_CODES.S,
-                        getBindRunnable(permission.BIND_COMPANION_DEVICE_SERVICE)));
+                        getBindRunnable(permission.BIND_COMPANION_DEVICE_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_DISPLAY_HASHING_SERVICE,
                 new PermissionTest(false, Build.VERSION_CODES.S,
-                        getBindRunnable(permission.BIND_DISPLAY_HASHING_SERVICE)));
+                        getBindRunnable(permission.BIND_DISPLAY_HASHING_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_DOMAIN_VERIFICATION_AGENT,
                 new PermissionTest(false, Build.VERSION_CODES.S,
-                        getBindRunnable(permission.BIND_DOMAIN_VERIFICATION_AGENT)));
+                        getBindRunnable(permission.BIND_DOMAIN_VERIFICATION_AGENT)).runOnWorker());
         mPermissionTasks.put(permission.BIND_GBA_SERVICE,
                 new PermissionTest(false, Build.VERSION_CODES.S,
-                        getBindRunnable(permission.BIND_GBA_SERVICE)));
+                        getBindRunnable(permission.BIND_GBA_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_HOTWORD_DETECTION_SERVICE,
                 new PermissionTest(false, Build.VERSION_CODES.S,
-                        getBindRunnable(permission.BIND_HOTWORD_DETECTION_SERVICE)));
+                        getBindRunnable(permission.BIND_HOTWORD_DETECTION_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_MUSIC_RECOGNITION_SERVICE,
                 new PermissionTest(false, Build.VERSION_CODES.S,
-                        getBindRunnable(permission.BIND_MUSIC_RECOGNITION_SERVICE)));
+                        getBindRunnable(permission.BIND_MUSIC_RECOGNITION_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_RESUME_ON_REBOOT_SERVICE,
                 new PermissionTest(false, Build.VERSION_CODES.S,
-                        getBindRunnable(permission.BIND_RESUME_ON_REBOOT_SERVICE)));
+                        getBindRunnable(permission.BIND_RESUME_ON_REBOOT_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_ROTATION_RESOLVER_SERVICE,
                 new PermissionTest(false, Build.VERSION_CODES.S,
-                        getBindRunnable(permission.BIND_ROTATION_RESOLVER_SERVICE)));
+                        getBindRunnable(permission.BIND_ROTATION_RESOLVER_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_TIME_ZONE_PROVIDER_SERVICE,
                 new PermissionTest(false, Build.VERSION_CODES.S,
-                        getBindRunnable(permission.BIND_TIME_ZONE_PROVIDER_SERVICE)));
+                        getBindRunnable(permission.BIND_TIME_ZONE_PROVIDER_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_TRANSLATION_SERVICE,
                 new PermissionTest(false, Build.VERSION_CODES.S,
-                        getBindRunnable(permission.BIND_TRANSLATION_SERVICE)));
+                        getBindRunnable(permission.BIND_TRANSLATION_SERVICE)).runOnWorker());
 
         //The following are the new BIND_ permissions in Android T
         mPermissionTasks.put(permission.BIND_ATTESTATION_VERIFICATION_SERVICE,
                 new PermissionTest(false, Build.VERSION_CODES.TIRAMISU,
-                        getBindRunnable(permission.BIND_ATTESTATION_VERIFICATION_SERVICE)));
+                        getBindRunnable(permission.BIND_ATTESTATION_VERIFICATION_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_TRACE_REPORT_SERVICE,
                 new PermissionTest(false, Build.VERSION_CODES.TIRAMISU,
-                        getBindRunnable(permission.BIND_TRACE_REPORT_SERVICE)));
+                        getBindRunnable(permission.BIND_TRACE_REPORT_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_GAME_SERVICE,
                 new PermissionTest(false, Build.VERSION_CODES.TIRAMISU,
-                        getBindRunnable(permission.BIND_GAME_SERVICE)));
+                        getBindRunnable(permission.BIND_GAME_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_SELECTION_TOOLBAR_RENDER_SERVICE,
                 new PermissionTest(false, Build.VERSION_CODES.TIRAMISU,
-                        getBindRunnable(permission.BIND_SELECTION_TOOLBAR_RENDER_SERVICE)));
+                        getBindRunnable(permission.BIND_SELECTION_TOOLBAR_RENDER_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_WALLPAPER_EFFECTS_GENERATION_SERVICE,
                 new PermissionTest(false, Build.VERSION_CODES.TIRAMISU,
-                        getBindRunnable(permission.BIND_WALLPAPER_EFFECTS_GENERATION_SERVICE)));
+                        getBindRunnable(permission.BIND_WALLPAPER_EFFECTS_GENERATION_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_TV_INTERACTIVE_APP,
                 new PermissionTest(false, Build.VERSION_CODES.TIRAMISU,
-                        getBindRunnable(permission.BIND_TV_INTERACTIVE_APP)));
+                        getBindRunnable(permission.BIND_TV_INTERACTIVE_APP)).runOnWorker());
         mPermissionTasks.put(permission.BIND_AMBIENT_CONTEXT_DETECTION_SERVICE,
                 new PermissionTest(false, Build.VERSION_CODES.TIRAMISU,
-                        getBindRunnable(permission.BIND_AMBIENT_CONTEXT_DETECTION_SERVICE)));
+                        getBindRunnable(permission.BIND_AMBIENT_CONTEXT_DETECTION_SERVICE)).runOnWorker());
 
         //The following are the new BIND_ permissions in Android U
         mPermissionTasks.put(permission.BIND_CALL_STREAMING_SERVICE,
                 new PermissionTest(false, VERSION_CODES.UPSIDE_DOWN_CAKE,
-                        getBindRunnable(permission.BIND_CALL_STREAMING_SERVICE)));
+                        getBindRunnable(permission.BIND_CALL_STREAMING_SERVICE)).runOnWorker());
 
         mPermissionTasks.put(permission.BIND_CREDENTIAL_PROVIDER_SERVICE,
                 new PermissionTest(false, VERSION_CODES.UPSIDE_DOWN_CAKE,
-                        getBindRunnable(permission.BIND_CREDENTIAL_PROVIDER_SERVICE)));
+                        getBindRunnable(permission.BIND_CREDENTIAL_PROVIDER_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_FIELD_CLASSIFICATION_SERVICE,
                 new PermissionTest(false, VERSION_CODES.UPSIDE_DOWN_CAKE,
-                        getBindRunnable(permission.BIND_FIELD_CLASSIFICATION_SERVICE)));
+                        getBindRunnable(permission.BIND_FIELD_CLASSIFICATION_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_REMOTE_LOCKSCREEN_VALIDATION_SERVICE,
                 new PermissionTest(false, VERSION_CODES.UPSIDE_DOWN_CAKE,
-                        getBindRunnable(permission.BIND_REMOTE_LOCKSCREEN_VALIDATION_SERVICE)));
+                        getBindRunnable(permission.BIND_REMOTE_LOCKSCREEN_VALIDATION_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_SATELLITE_GATEWAY_SERVICE,
                 new PermissionTest(false, VERSION_CODES.UPSIDE_DOWN_CAKE,
-                        getBindRunnable(permission.BIND_SATELLITE_GATEWAY_SERVICE)));
+                        getBindRunnable(permission.BIND_SATELLITE_GATEWAY_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_SATELLITE_SERVICE,
                 new PermissionTest(false, VERSION_CODES.UPSIDE_DOWN_CAKE,
-                        getBindRunnable(permission.BIND_SATELLITE_SERVICE)));
+                        getBindRunnable(permission.BIND_SATELLITE_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_VISUAL_QUERY_DETECTION_SERVICE,
                 new PermissionTest(false, VERSION_CODES.UPSIDE_DOWN_CAKE,
-                        getBindRunnable(permission.BIND_VISUAL_QUERY_DETECTION_SERVICE)));
+                        getBindRunnable(permission.BIND_VISUAL_QUERY_DETECTION_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_WEARABLE_SENSING_SERVICE,
                 new PermissionTest(false, VERSION_CODES.UPSIDE_DOWN_CAKE,
-                        getBindRunnable(permission.BIND_WEARABLE_SENSING_SERVICE)));
+                        getBindRunnable(permission.BIND_WEARABLE_SENSING_SERVICE)).runOnWorker());
 
         //For Android 15 (Temporay allow runnning on UPSIDE_DOWN_CAKE)
         mPermissionTasks.put(permission.BIND_TV_AD_SERVICE,
                 new PermissionTest(false, Build.VERSION_CODES.UPSIDE_DOWN_CAKE,
-                        getBindRunnable(permission.BIND_TV_AD_SERVICE)));
+                        getBindRunnable(permission.BIND_TV_AD_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_DOMAIN_SELECTION_SERVICE,
                 new PermissionTest(false, Build.VERSION_CODES.UPSIDE_DOWN_CAKE,
-                        getBindRunnable(permission.BIND_DOMAIN_SELECTION_SERVICE)));
+                        getBindRunnable(permission.BIND_DOMAIN_SELECTION_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_ON_DEVICE_INTELLIGENCE_SERVICE,
                 new PermissionTest(false, Build.VERSION_CODES.UPSIDE_DOWN_CAKE,
-                        getBindRunnable(permission.BIND_ON_DEVICE_INTELLIGENCE_SERVICE)));
+                        getBindRunnable(permission.BIND_ON_DEVICE_INTELLIGENCE_SERVICE)).runOnWorker());
         mPermissionTasks.put(permission.BIND_ON_DEVICE_SANDBOXED_INFERENCE_SERVICE,
                 new PermissionTest(false, Build.VERSION_CODES.UPSIDE_DOWN_CAKE,
-                        getBindRunnable(permission.BIND_ON_DEVICE_SANDBOXED_INFERENCE_SERVICE)));
+                        getBindRunnable(permission.BIND_ON_DEVICE_SANDBOXED_INFERENCE_SERVICE)).runOnWorker());
     }
 
 
@@ -6573,52 +6572,54 @@ public class SignaturePermissionTester extends BasePermissionTester {
                 Collections.emptySet());
         AtomicInteger cnt = new AtomicInteger(0);
         AtomicInteger err = new AtomicInteger(0);
-        int cntmap = 0;
         final int total = permissions.size();
-        for (String permission : permissions) {
-            // If the permission has a corresponding task then run it.
-            cntmap+=1;
-            //mLogger.logDebug("Starting test for signature permission: "+String.format(Locale.US,
-            //        "%d %d ",cntmap,total) + permission);
-
-            Handler handler = ((TesterApplication) mActivity.getApplication()).mainThreadHandler;
-            Thread thread = new Thread(() -> {
-                // if this is a signature permission with the privileged protection flag then skip it
-                // if the app is configured to use the PrivilegedPermissionTester.
-                handler.post(new Runnable() {
-                    @Override
-                    public void run() {
-                        String tester = this.getClass().getSimpleName();
-                        if (permissionsToSkip.contains(permission) || (mPrivilegedPermissions.contains(permission)
-                                && Constants.USE_PRIVILEGED_PERMISSION_TESTER)) {
-                            mLogger.logInfo(permission+" is skipped due to the configurations.");
-                            callback.accept(new Result(true, permission, aiIncl(cnt), total,err.get(),tester).markNonTarget());
-                        } else {
-                            if (mPermissionTasks.containsKey(permission)) {
-                                if (runPermissionTest(permission, mPermissionTasks.get(permission))) {
-                                    callback.accept(new Result(true, permission, aiIncl(cnt), total,err.get(),tester));
-                                } else {
-                                    callback.accept(new Result(false, permission, aiIncl(cnt), total,aiIncl(err),tester));
-                                }
-                            } else {
-                                //The task to skip.
-                                if(!((MainActivity)mActivity).m_reduce_logs)
-                                    mLogger.logInfo(permission+" is not a target permission.");
+        final String tester = this.getClass().getSimpleName();
 
-                                callback.accept(new Result(true, permission, aiIncl(cnt), total,err.get(),tester).markNonTarget());
-                            }
-                        }
-                    }
-                });
-            });
-            thread.setPriority(9);
-            thread.start();
-            try {
-                thread.join(THREAD_JOIN_DELAY);
-            } catch (InterruptedException e) {
-                mLogger.logError(String.format(Locale.US,"%d %s failed due to the timeout.",cnt.get(),permission));
+        // Tests run one at a time on the main looper, as they did before the scheduler; only the
+        // read-only ones marked with runOnWorker() run on its workers. Outcomes come back to the
+        // main looper in batches.
+        List<PermissionTestScheduler.Task> tasks = new ArrayList<>();
+        List<PermissionTestScheduler.Outcome> skipped = new ArrayList<>();
+        for (String permission : permissions) {
+            // if this is a signature permission with the privileged protection flag then skip it
+            // if the app is configured to use the PrivilegedPermissionTester.
+            if (permissionsToSkip.contains(permission) || (mPrivilegedPermissions.contains(permission)
+                    && Constants.USE_PRIVILEGED_PERMISSION_TESTER)) {
+                mLogger.logInfo(permission+" is skipped due to the configurations.");
+                skipped.add(PermissionTestScheduler.Outcome.nonTarget(permission));
+            } else if (mPermissionTasks.containsKey(permission)) {
+                PermissionTest test = mPermissionTasks.get(permission);
+                tasks.add(new PermissionTestScheduler.Task(permission, !test.mRunOnWorker,
+                        () -> runPermissionTest(permission, test)));
+            } else {
+                //The task to skip.
+                if(!((MainActivity)mActivity).m_reduce_logs)
+                    mLogger.logInfo(permission+" is not a target permission.");
+                skipped.add(PermissionTestScheduler.Outcome.nonTarget(permission));
             }
         }
+
+        Handler handler = ((TesterApplication) mActivity.getApplication()).mainThreadHandler;
+        new PermissionTestScheduler(handler).runAll(tasks, skipped, (outcome) -> {
+            if (!outcome.isTarget) {
+                callback.accept(new Result(true, outcome.permission, aiIncl(cnt), total,
+                        err.get(), tester).markNonTarget());
+            } else if (outcome.passed) {
+                callback.accept(new Result(true, outcome.permission, aiIncl(cnt), total,
+                        err.get(), tester));
+            } else {
+                if (outcome.timedOut) {
+                    mLogger.logError(String.format(Locale.US, "%d %s failed due to the timeout.",
+                            cnt.get(), outcome.permission));
+                }
+                callback.accept(new Result(false, outcome.permission, aiIncl(cnt), total,
+                        aiIncl(err), tester));
+            }
+            if (cnt.get() == total) {
+                mLogger.logDebug(ServiceHandleRegistry.getInstance().getStats());
+                mLogger.logDebug(MethodCache.getInstance().getStats());
+            }
+        });
     }
 
     @Override
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.certifications.niap.permissions;
+
+import android.os.Handler;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * A single run of one or more permission testers, executed one after another on an executor.
+ *
+ * <p>A run moves through {@link State#QUEUED}, {@link State#RUNNING} and then either {@link
+ * State#DONE} or {@link State#CANCELLED}. A tester's block of tests is over once its {@link
+ * BlockRunner} reports that the last result is in, or once no result has been reported for
+ * {@link #DEFAULT_IDLE_TIMEOUT_MS}, so a tester that never reports a final result can not hold up
+ * the rest of the run. Nothing waits for a block by polling; the next block is started from the
+ * completion report itself.
+ *
+ * <p>The run is its own handle: {@link #cancel()} stops it from starting further blocks and
+ * interrupts the block that is being started. Tests of the current block that are already
+ * running are not interrupted, since most of them block in binder calls.
+ */
+public class TesterRun {
+    private static final String TAG = "TesterRun";
+
+    /**
+     * The time without any reported result after which a block is considered finished.
+     */
+    public static final long DEFAULT_IDLE_TIMEOUT_MS = 30000;
+
+    public enum State {
+        QUEUED,
+        RUNNING,
+        DONE,
+        CANCELLED
+    }
+
+    /**
+     * Starts the tests of a single tester.
+     */
+    public interface BlockRunner {
+        /**
+         * Starts the tests of the {@code tester}; called on the run's executor. Implementations
+         * should call {@link TesterRun#onProgress()} for every result and run {@code done} once
+         * the last result has been reported. Running {@code done} more than once, or after the
+         * block has timed out, has no effect.
+         */
+        void run(TesterRun run, BasePermissionTester tester, Runnable done);
+    }
+
+    /**
+     * Receives the state changes of a run on the main looper.
+     */
+    public interface StateListener {
+        void onStateChanged(TesterRun run, State state);
+    }
+
+    private final ExecutorService mExecutor;
+    private final Handler mMainHandler;
+    private final List<BasePermissionTester> mTesters;
+    private final BlockRunner mBlockRunner;
+    private final StateListener mListener;
+    private final long mIdleTimeoutMs;
+
+    // all of the below are guarded by this.
+    private State mState = State.QUEUED;
+    private int mCurrentBlock = -1;
+    private Future<?> mCurrentFuture;
+    private long mLastProgress;
+    private long mStartTime;
+    private long mStartCpuTime;
+    private long mElapsedTime;
+    private long mCpuTime;
+
+    /**
+     * Constructs a new run of the {@code testers}; the run does not begin until {@link #start()}
+     * is invoked.
+     *
+     * @param executor    runs each tester's {@link BlockRunner}
+     * @param mainHandler a {@link Handler} on the main looper, used for the idle timeouts and to
+     *                    notify the {@code listener}
+     * @param testers     the testers to run, in order
+     * @param blockRunner starts the tests of each tester
+     * @param listener    notified of every state change
+     */
+    public TesterRun(ExecutorService executor, Handler mainHandler,
+            List<BasePermissionTester> testers, BlockRunner blockRunner, StateListener listener) {
+        this(executor, mainHandler, testers, blockRunner, listener, DEFAULT_IDLE_TIMEOUT_MS);
+    }
+
+    /**
+     * Constructs a new run that considers a block finished once no result has been reported for
+     * {@code idleTimeoutMs}.
+     */
+    public TesterRun(ExecutorService executor, Handler mainHandler,
+            List<BasePermissionTester> testers, BlockRunner blockRunner, StateListener listener,
+            long idleTimeoutMs) {
+        mExecutor = executor;
+        mMainHandler = mainHandler;
+        mTesters = new ArrayList<>(testers);
+        mBlockRunner = blockRunner;
+        mListener = listener;
+        mIdleTimeoutMs = idleTimeoutMs;
+    }
+
+    /**
+     * Starts the first block and returns immediately.
+     *
+     * @throws IllegalStateException if the run has already been started or cancelled
+     */
+    public synchronized void start() {
+        if (mState != State.QUEUED) {
+            throw new IllegalStateException("The run has already been started: " + mState);
+        }
+        mStartTime = SystemClock.elapsedRealtime();
+        mStartCpuTime = Process.getElapsedCpuTime();
+        setState(State.RUNNING);
+        startNextBlock();
+    }
+
+    /**
+     * Cancels the run; returns false if it had already finished or been cancelled.
+     */
+    public synchronized boolean cancel() {
+        if (mState == State.DONE || mState == State.CANCELLED) {
+            return false;
+        }
+        if (mCurrentFuture != null) {
+            mCurrentFuture.cancel(true);
+        }
+        finish(State.CANCELLED);
+        return true;
+    }
+
+    /**
+     * Records that the current block has reported a result, postponing its idle timeout.
+     */
+    public synchronized void onProgress() {
+        mLastProgress = SystemClock.elapsedRealtime();
+    }
+
+    public synchronized State getState() {
+        return mState;
+    }
+
+    public synchronized boolean isCancelled() {
+        return mState == State.CANCELLED;
+    }
+
+    /**
+     * Returns a summary of the run's wall clock and CPU time; the CPU time covers the whole app
+     * process while the run was in progress.
+     */
+    public synchronized String getStats() {
+        long elapsed = mElapsedTime;
+        long cpu = mCpuTime;
+        if (mState == State.RUNNING) {
+            elapsed = SystemClock.elapsedRealtime() - mStartTime;
+            cpu = Process.getElapsedCpuTime() - mStartCpuTime;
+        }
+        return String.format(Locale.US,
+                "Test run %s: %d of %d blocks started, %d ms elapsed, %d ms CPU (%.1f%% of a core)",
+                mState.name().toLowerCase(Locale.US), Math.max(0, Math.min(mCurrentBlock + 1,
+                        mTesters.size())), mTesters.size(), elapsed, cpu,
+                elapsed == 0 ? 0.0 : 100.0 * cpu / elapsed);
+    }
+
+    private void finishBlock(int block) {
+        synchronized (this) {
+            // ignores a block that has already timed out, been reported, or been cancelled.
+            if (mState != State.RUNNING || block != mCurrentBlock) {
+                return;
+            }
+            startNextBlock();
+        }
+    }
+
+    private void checkIdle(int block) {
+        synchronized (this) {
+            if (mState != State.RUNNING || block != mCurrentBlock) {
+                return;
+            }
+            long idle = SystemClock.elapsedRealtime() - mLastProgress;
+            if (idle < mIdleTimeoutMs) {
+                mMainHandler.postDelayed(() -> checkIdle(block), mIdleTimeoutMs - idle);
+                return;
+            }
+            Log.w(TAG, String.format(Locale.US, "%s reported no result for %d ms; moving on",
+                    mTesters.get(block).getClass().getSimpleName(), idle));
+            startNextBlock();
+        }
+    }
+
+    // must be called with the lock held.
+    private void startNextBlock() {
+        mCurrentBlock++;
+        if (mCurrentBlock >= mTesters.size()) {
+            mCurrentFuture = null;
+            finish(State.DONE);
+            return;
+        }
+        final int block = mCurrentBlock;
+        final BasePermissionTester tester = mTesters.get(block);
+        mLastProgress = SystemClock.elapsedRealtime();
+        mCurrentFuture = mExecutor.submit(() -> {
+            try {
+                mBlockRunner.run(this, tester, () -> finishBlock(block));
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Unexpected error while starting "
+                        + tester.getClass().getSimpleName(), e);
+                finishBlock(block);
+            }
+        });
+        mMainHandler.postDelayed(() -> checkIdle(block), mIdleTimeoutMs);
+    }
+
+    // must be called with the lock held.
+    private void finish(State state) {
+        // a run cancelled before it started has used no time.
+        if (mState == State.RUNNING) {
+            mElapsedTime = SystemClock.elapsedRealtime() - mStartTime;
+            mCpuTime = Process.getElapsedCpuTime() - mStartCpuTime;
+        }
+        setState(state);
+        Log.i(TAG, getStats());
+    }
+
+    // must be called with the lock held.
+    private void setState(State state) {
+        mState = state;
+        mMainHandler.post(() -> mListener.onStateChanged(this, state));
+    }
+}
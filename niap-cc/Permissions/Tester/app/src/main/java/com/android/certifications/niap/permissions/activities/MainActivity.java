@@ -75,16 +75,19 @@ import com.android.certifications.niap.permissions.R;
 import com.android.certifications.niap.permissions.RuntimePermissionTester;
 import com.android.certifications.niap.permissions.SignaturePermissionTester;
 import com.android.certifications.niap.permissions.TesterApplication;
+import com.android.certifications.niap.permissions.TesterRun;
 import com.android.certifications.niap.permissions.companion.services.TestBindService;
 import com.android.certifications.niap.permissions.config.BypassConfigException;
 import com.android.certifications.niap.permissions.config.ConfigurationFactory;
 import com.android.certifications.niap.permissions.config.TestConfiguration;
+import com.android.certifications.niap.permissions.log.LogLineBuffer;
 import com.android.certifications.niap.permissions.log.Logger;
 import com.android.certifications.niap.permissions.log.LoggerFactory;
 import com.android.certifications.niap.permissions.receivers.Admin;
 import com.android.certifications.niap.permissions.services.FgCameraService;
 import com.android.certifications.niap.permissions.services.FgLocationService;
 import com.android.certifications.niap.permissions.services.FgMicrophoneService;
+import com.android.certifications.niap.permissions.utils.MainLooperBatcher;
 import com.android.certifications.niap.permissions.utils.gson.Test;
 import com.android.certifications.niap.permissions.utils.gson.TestCategory;
 import com.android.certifications.niap.permissions.utils.gson.TestSuites;
@@ -95,6 +98,7 @@ import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -102,11 +106,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
@@ -122,14 +122,18 @@ public class MainActivity extends AppCompatActivity implements LogListAdaptable
     private final Logger sLogger = LoggerFactory.createActivityLogger(TAG, this);
 
     private static final int ADMIN_INTENT = 1;
+    // The status log keeps the latest lines only, so a long run can not exhaust the memory.
+    private static final int MAX_LOG_LINES = 20000;
 
     public boolean m_reduce_logs = false;
     private final List<Button> mTestButtons = new ArrayList<>();
     private Context mContext;
     private TestConfiguration mConfiguration;
     private ListView mStatusListView;
-    List<String> mStatusData = new ArrayList<>();
+    final LogLineBuffer mStatusData = new LogLineBuffer(MAX_LOG_LINES);
     ArrayAdapter<String> mStatusAdapter = null;
+    // Lines logged from the test threads reach the status list in one batch per frame.
+    private MainLooperBatcher<String> mLogBatcher;
     public void setLogAdapter(){
         mStatusAdapter = new ArrayAdapter<String>(
                 (Context) this,
@@ -144,22 +148,29 @@ public class MainActivity extends AppCompatActivity implements LogListAdaptable
 
     @Override
     public void addLogLine(String msg){
-        runOnUiThread(new Runnable() {
-            @Override
-            public void run() {
-                assert mStatusAdapter != null;
-                mStatusAdapter.add(msg);
-            }
-        });
+        mLogBatcher.add(msg);
     }
     public void notifyUpdate(){
-        runOnUiThread(new Runnable() {
-            @Override
-            public void run() {
-                mStatusAdapter.notifyDataSetChanged();
-                //getWindow().getDecorView().findViewById(android.R.id.content).invalidate();
-            }
-        });
+        mLogBatcher.requestFlush();
+    }
+
+    /**
+     * Appends a batch of lines delivered by the {@link MainLooperBatcher} and refreshes the list
+     * once; runs on the main looper.
+     */
+    private void appendLogLines(List<String> lines) {
+        assert mStatusAdapter != null;
+        int firstVisible = mStatusListView.getFirstVisiblePosition();
+        View firstChild = mStatusListView.getChildAt(0);
+        int offset = firstChild == null ? 0 : firstChild.getTop();
+        long evictedBefore = mStatusData.getEvictedCount();
+        mStatusData.addAll(lines);
+        int evicted = (int) (mStatusData.getEvictedCount() - evictedBefore);
+        mStatusAdapter.notifyDataSetChanged();
+        // lines dropped from the top would otherwise scroll the lines being read out of view.
+        if (evicted > 0 && firstVisible > 0) {
+            mStatusListView.setSelectionFromTop(Math.max(0, firstVisible - evicted), offset);
+        }
     }
 
 
@@ -172,7 +183,19 @@ public class MainActivity extends AppCompatActivity implements LogListAdaptable
             });
 
     AtomicBoolean runningTest= new AtomicBoolean(false);
+    // The run started by the last tap on a test button; cancelled if the activity is finished.
+    private TesterRun mCurrentRun;
     void postTestersFinished(String message){
+        postStatusNotification(message);
+        runningTest.set(false);
+        runOnUiThread(()->{
+            for (Button button : mTestButtons) {
+                button.setEnabled(true);
+            }
+        });
+    }
+
+    void postStatusNotification(String message){
         //StatusTextView.setText(statusMessage);
         Resources resources = getResources();
         CharSequence channelName = resources.getString(R.string.tester_channel_name);
@@ -193,13 +216,6 @@ public class MainActivity extends AppCompatActivity implements LogListAdaptable
                         .setAutoCancel(true)
                         .build();
         notificationManager.notify(0, notification);
-        //
-        runningTest.set(false);
-        runOnUiThread(()->{
-            for (Button button : mTestButtons) {
-                button.setEnabled(true);
-            }
-        });
     }
 
 
@@ -213,14 +229,22 @@ public class MainActivity extends AppCompatActivity implements LogListAdaptable
     protected void onStop() {
         super.onStop();
     }
+    @Override
+    protected void onDestroy() {
+        // A configuration change (rotation, dark mode, locale or the uiMode switched by the car
+        // mode test) recreates the activity but must not stop the run.
+        if (mCurrentRun != null && isFinishing() && !isChangingConfigurations()) {
+            mCurrentRun.cancel();
+        }
+        super.onDestroy();
+    }
 
     @Override
     protected void onSaveInstanceState(Bundle outState)
     {
         super.onSaveInstanceState(outState);
-        outState.putStringArrayList("listViewData", (ArrayList<String>) mStatusData);
+        outState.putStringArrayList("listViewData", new ArrayList<>(mStatusData));
     }
-    private CountDownLatch mCDLForSync;
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -232,14 +256,15 @@ public class MainActivity extends AppCompatActivity implements LogListAdaptable
         TextView mStatusTextView = new TextView(this);
         mStatusTextView.setText(R.string.tap_to_run);
 
+        mLogBatcher = new MainLooperBatcher<>(
+                ((TesterApplication) getApplication()).mainThreadHandler, this::appendLogLines);
         setLogAdapter();
         if (savedInstanceState != null) {
-            mStatusData = savedInstanceState.getStringArrayList("listViewData");
-            runOnUiThread(() -> {
-                for (String s : mStatusData) {
-                    addLogLine(s);
-                }
-            });
+            List<String> lines = savedInstanceState.getStringArrayList("listViewData");
+            if (lines != null) {
+                mStatusData.addAll(lines);
+                mStatusAdapter.notifyDataSetChanged();
+            }
         } else {
             addLogLine("Welcome!");
         }
@@ -262,7 +287,10 @@ public class MainActivity extends AppCompatActivity implements LogListAdaptable
             //it's difficult to pass the configuration object to workManager,
             //so I would like to choose ExecutorService instead of it
             testButton.setOnClickListener((view) -> {
-                //Clear log
+                //Clear log; cleared before the new adapter is attached, so the list view never
+                //sees the lines disappear without a notification.
+                mLogBatcher.clear();
+                mStatusData.clear();
                 mStatusListView.setAdapter(null);
                 setLogAdapter();
                 //disable all buttons//
@@ -275,12 +303,10 @@ public class MainActivity extends AppCompatActivity implements LogListAdaptable
                         executor = ((TesterApplication) getApplication()).executorService;
 
                 AtomicInteger errorCnt = new AtomicInteger(0);
-                //AtomicInteger finishedTesters = new AtomicInteger(0);
-                List<String> errorPermissions = new ArrayList<>();
-                AtomicBoolean bTestExecuted = new AtomicBoolean(false);
+                // results are reported from the test threads as well as the main looper.
+                List<String> errorPermissions = Collections.synchronizedList(new ArrayList<>());
                 try {
                     Activity activity = MainActivity.this;
-                    mStatusData.clear();
                     configuration.preRunSetup();
                     SharedPreferences sp =
                             PreferenceManager.getDefaultSharedPreferences(this);
@@ -290,69 +316,69 @@ public class MainActivity extends AppCompatActivity implements LogListAdaptable
                     boolean run_runtime = sp.getBoolean("cb_runtime", false);
                     boolean run_internal = sp.getBoolean("cb_internal", false);
                     m_reduce_logs = sp.getBoolean("cb_reduce_logs", false);
-                    List<BasePermissionTester> testers = configuration.getPermissionTesters(activity);
-
-
-                    for (BasePermissionTester permissionTester : testers) {
-
+                    List<BasePermissionTester> testers = new ArrayList<>();
+                    for (BasePermissionTester permissionTester :
+                            configuration.getPermissionTesters(activity)) {
                         String block = permissionTester.getClass().getSimpleName();
                         if (block.equals("SignaturePermissionTester") && !run_signature) continue;
                         if (block.equals("InstallPermissionTester") && !run_install) continue;
                         if (block.equals("RuntimePermissionTester") && !run_runtime) continue;
                         if (block.equals("InternalPermissionTester") && !run_internal) continue;
-                        sLogger.logSystem("Start Tester Block...:" + block);
-                        mStatusAdapter.notifyDataSetChanged();
-                        bTestExecuted.set(true);
-
-                        Future<Boolean> future = executor.submit(() -> {
-                            mCDLForSync = new CountDownLatch(1);
-
-                            permissionTester.runPermissionTestsByThreads((result) -> {
-                                runOnUiThread(() -> {
+                        testers.add(permissionTester);
+                    }
+                    if (testers.isEmpty()) {
+                        //if no test was executed
+                        sLogger.logSystem("Found no test blocks to run. See [Settings]...");
+                        postTestersFinished("No test block is executed.");
+                        return;
+                    }
 
-                                    if (result.getResult()) {
-                                        if (!m_reduce_logs) sLogger.logInfo("Passed:" + result);
-                                    } else {
-                                        sLogger.logError("Failure:" + result);
-                                        errorPermissions.add(result.getName());
-                                        errorCnt.incrementAndGet();
+                    // The testers run one after another; each block starts the next one once its
+                    // last result is in, so nothing here waits for them.
+                    mCurrentRun = new TesterRun(executor,
+                            ((TesterApplication) getApplication()).mainThreadHandler, testers,
+                            (run, permissionTester, done) -> {
+                        String block = permissionTester.getClass().getSimpleName();
+                        sLogger.logSystem("Start Tester Block...:" + block);
+                        // Results are logged on the thread that reports them; the log lines
+                        // reach the status list in batches.
+                        permissionTester.runPermissionTestsByThreads((result) -> {
+                            if (run.isCancelled()) return;
+                            run.onProgress();
+                            if (result.getResult()) {
+                                if (!m_reduce_logs) sLogger.logInfo("Passed:" + result);
+                            } else {
+                                sLogger.logError("Failure:" + result);
+                                errorPermissions.add(result.getName());
+                                errorCnt.incrementAndGet();
 
-                                    }
-                                    if (result.getTotal() == result.getNo()) {
-                                        sLogger.logSystem("The test block has done.Error="+result.getError()+"/"+result.getTotal());
-                                        if (!m_reduce_logs) {
-                                            for (String pm : errorPermissions) {
-                                                sLogger.logInfo(pm);
-                                            }
+                            }
+                            if (result.getTotal() == result.getNo()) {
+                                sLogger.logSystem("The test block has done.Error="+result.getError()+"/"+result.getTotal());
+                                if (!m_reduce_logs) {
+                                    synchronized (errorPermissions) {
+                                        for (String pm : errorPermissions) {
+                                            sLogger.logInfo(pm);
                                         }
-                                        postTestersFinished(block + "All test has been finished. Found " + errorCnt.get() + " errors.");
-                                        mCDLForSync.countDown();
                                     }
-                                    //mStatusAdapter.notifyDataSetChanged();
-                                    notifyUpdate();
-                                });//runOnUi
-                            });//runThread
-                            mCDLForSync.await(1000,TimeUnit.MILLISECONDS);
-                            return true;
-                        });//Future<Boolean>
-
-                        try {
-                            while (!future.isDone() && !future.isCancelled()) {
-                                notifyUpdate();
+                                }
+                                postStatusNotification(block + "All test has been finished. Found " + errorCnt.get() + " errors.");
+                                done.run();
                             }
-                            future.get();
-                            //sLogger.logSystem("Submit to executor : " + result);
-                            if (!bTestExecuted.get()) {
-                                //if no test was executed
-                                sLogger.logSystem("Found no test blocks to run. See [Settings]...");
-                                postTestersFinished("No test block is executed.");
+                        });//runThread
+                    }, (run, state) -> {
+                        if (state == TesterRun.State.DONE) {
+                            sLogger.logSystem(run.getStats());
+                            runningTest.set(false);
+                            for (Button button : mTestButtons) {
+                                button.setEnabled(true);
                             }
-                            //sLogger.logSystem(String.format("All test cases have been finished : resp=%s",result.toString()));
-                        } catch (InterruptedException | ExecutionException e) {
-                            e.printStackTrace();
+                        } else if (state == TesterRun.State.CANCELLED) {
+                            sLogger.logSystem(run.getStats());
+                            postTestersFinished("The test run has been cancelled.");
                         }
-
-                    }//for
+                    });
+                    mCurrentRun.start();
                 } catch (BypassConfigException ex) {
                     sLogger.logError(configuration.getClass().getSimpleName()+" has been Bypassed => "+ex.getMessage());
                     postTestersFinished("No test block is executed.");
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.certifications.niap.permissions.log;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * A list of log lines backed by a fixed size ring buffer; once it is full, adding a line drops
+ * the oldest one, so the memory used by the status log stays bounded however long a run is.
+ *
+ * <p>Lines can only be appended or cleared. The number of lines dropped so far is available
+ * from {@link #getEvictedCount()}, which lets a list view keep its scroll position steady while
+ * lines disappear from the top. This class is not thread safe; it is meant to be used on the
+ * main looper only.
+ */
+public class LogLineBuffer extends AbstractList<String> implements RandomAccess {
+    private final String[] mLines;
+    // index of the oldest line.
+    private int mHead;
+    private int mSize;
+    private long mEvicted;
+
+    /**
+     * Constructs a new buffer holding at most {@code capacity} lines.
+     */
+    public LogLineBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        mLines = new String[capacity];
+    }
+
+    @Override
+    public String get(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + mSize);
+        }
+        return mLines[(mHead + index) % mLines.length];
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Appends the {@code line}, dropping the oldest line if the buffer is full.
+     */
+    @Override
+    public boolean add(String line) {
+        if (mSize < mLines.length) {
+            mLines[(mHead + mSize) % mLines.length] = line;
+            mSize++;
+        } else {
+            mLines[mHead] = line;
+            mHead = (mHead + 1) % mLines.length;
+            mEvicted++;
+        }
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(mLines, null);
+        mHead = 0;
+        mSize = 0;
+        modCount++;
+    }
+
+    /**
+     * Returns the maximum number of lines held.
+     */
+    public int getCapacity() {
+        return mLines.length;
+    }
+
+    /**
+     * Returns the number of lines dropped from the top since the buffer was created.
+     */
+    public long getEvictedCount() {
+        return mEvicted;
+    }
+}
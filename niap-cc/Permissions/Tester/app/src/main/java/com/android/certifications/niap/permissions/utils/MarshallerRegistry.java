@@ -0,0 +1,129 @@
+/*
+ * Copyright 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.certifications.niap.permissions.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps the class of a transact parameter to the {@link Marshaller} that writes it to a parcel.
+ *
+ * <p>Marshallers are registered against a type and apply to every value that is an instance of
+ * that type; when several registered types match a value, the one registered first wins, so more
+ * specific types must be registered before the types they extend. The marshaller chosen for a
+ * concrete class is cached the first time a value of that class is seen, so that later values of
+ * the same class are dispatched with a single map lookup instead of walking the registered types.
+ *
+ * <p>The registry does not depend on the parcel type so that the dispatch can be exercised
+ * without a device; {@link Transacts} uses it with {@link android.os.Parcel}.
+ *
+ * @param <P> the type of the parcel that values are written to
+ */
+public class MarshallerRegistry<P> {
+    /**
+     * Writes a single transact parameter to a parcel.
+     */
+    public interface Marshaller<P> {
+        void marshal(P parcel, Object value);
+    }
+
+    private static class Rule<P> {
+        final Class<?> mType;
+        final Marshaller<P> mMarshaller;
+
+        Rule(Class<?> type, Marshaller<P> marshaller) {
+            mType = type;
+            mMarshaller = marshaller;
+        }
+    }
+
+    private final Marshaller<P> mFallback;
+    private volatile List<Rule<P>> mRules = new ArrayList<>();
+    private final ConcurrentHashMap<Class<?>, Marshaller<P>> mResolved = new ConcurrentHashMap<>();
+
+    /**
+     * @param fallback the marshaller used for {@code null} values and for values that do not
+     *                 match any registered type
+     */
+    public MarshallerRegistry(Marshaller<P> fallback) {
+        mFallback = fallback;
+    }
+
+    /**
+     * Registers the {@code marshaller} for values of the specified {@code type}, after all of the
+     * types registered so far.
+     *
+     * @return this registry, to allow chaining registrations
+     */
+    public MarshallerRegistry<P> register(Class<?> type, Marshaller<P> marshaller) {
+        return addRule(new Rule<>(type, marshaller), false);
+    }
+
+    /**
+     * Registers the {@code marshaller} for values of the specified {@code type}, ahead of all of
+     * the types registered so far; this allows a parcelable type that needs to be written
+     * differently to override the generic marshaller of a type it extends.
+     *
+     * @return this registry, to allow chaining registrations
+     */
+    public MarshallerRegistry<P> registerFirst(Class<?> type, Marshaller<P> marshaller) {
+        return addRule(new Rule<>(type, marshaller), true);
+    }
+
+    private synchronized MarshallerRegistry<P> addRule(Rule<P> rule, boolean first) {
+        List<Rule<P>> rules = new ArrayList<>(mRules);
+        if (first) {
+            rules.add(0, rule);
+        } else {
+            rules.add(rule);
+        }
+        mRules = rules;
+        // classes resolved so far may match the new type.
+        mResolved.clear();
+        return this;
+    }
+
+    /**
+     * Returns the marshaller for values of the specified concrete {@code clazz}.
+     */
+    public Marshaller<P> resolve(Class<?> clazz) {
+        Marshaller<P> marshaller = mResolved.get(clazz);
+        if (marshaller == null) {
+            marshaller = mFallback;
+            for (Rule<P> rule : mRules) {
+                if (rule.mType.isAssignableFrom(clazz)) {
+                    marshaller = rule.mMarshaller;
+                    break;
+                }
+            }
+            mResolved.put(clazz, marshaller);
+        }
+        return marshaller;
+    }
+
+    /**
+     * Writes the {@code value} to the {@code parcel} with the marshaller registered for its class.
+     */
+    public void marshal(P parcel, Object value) {
+        if (value == null) {
+            mFallback.marshal(parcel, null);
+        } else {
+            resolve(value.getClass()).marshal(parcel, value);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.certifications.niap.permissions.utils;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the results of reflective lookups keyed by (class, method name, parameter types), and
+ * of class lookups by name.
+ *
+ * <p>Lookups that fail are cached as well, so a test probing for a method or class that does not
+ * exist on the device under test pays for the failed lookup only once; later lookups throw a new
+ * {@link NoSuchMethodException} or {@link ClassNotFoundException} without searching again.
+ */
+public class MethodCache {
+    private static final MethodCache sInstance = new MethodCache();
+
+    // stored in place of a Method or Class that could not be found.
+    private static final Object NOT_FOUND = new Object();
+    private static final Class<?>[] NO_PARAMETERS = new Class<?>[0];
+
+    private final ConcurrentHashMap<Key, Object> mMethods = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Object> mClasses = new ConcurrentHashMap<>();
+
+    private final AtomicLong mHits = new AtomicLong();
+    private final AtomicLong mNegativeHits = new AtomicLong();
+    private final AtomicLong mMisses = new AtomicLong();
+
+    private static class Key {
+        final Class<?> mClass;
+        final String mName;
+        final Class<?>[] mParameterTypes;
+        final boolean mDeclared;
+        final int mHash;
+
+        Key(Class<?> clazz, String name, Class<?>[] parameterTypes, boolean declared) {
+            mClass = clazz;
+            mName = name;
+            mParameterTypes = parameterTypes;
+            mDeclared = declared;
+            mHash = ((clazz.hashCode() * 31 + name.hashCode()) * 31
+                    + Arrays.hashCode(parameterTypes)) * 31 + (declared ? 1 : 0);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return mHash == other.mHash && mClass == other.mClass && mDeclared == other.mDeclared
+                    && mName.equals(other.mName)
+                    && Arrays.equals(mParameterTypes, other.mParameterTypes);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHash;
+        }
+    }
+
+    private MethodCache() {
+    }
+
+    public static MethodCache getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Returns the public method as {@link Class#getMethod(String, Class[])} would.
+     */
+    public Method getMethod(Class<?> clazz, String name, Class<?>... parameterTypes)
+            throws NoSuchMethodException {
+        return lookup(new Key(clazz, name, normalize(parameterTypes), false));
+    }
+
+    /**
+     * Returns the declared method as {@link Class#getDeclaredMethod(String, Class[])} would,
+     * already made accessible.
+     */
+    public Method getDeclaredMethod(Class<?> clazz, String name, Class<?>... parameterTypes)
+            throws NoSuchMethodException {
+        return lookup(new Key(clazz, name, normalize(parameterTypes), true));
+    }
+
+    private static Class<?>[] normalize(Class<?>[] parameterTypes) {
+        return parameterTypes == null ? NO_PARAMETERS : parameterTypes;
+    }
+
+    private Method lookup(Key key) throws NoSuchMethodException {
+        Object cached = mMethods.get(key);
+        if (cached == null) {
+            mMisses.incrementAndGet();
+            try {
+                Method method;
+                if (key.mDeclared) {
+                    method = key.mClass.getDeclaredMethod(key.mName, key.mParameterTypes);
+                    method.setAccessible(true);
+                } else {
+                    method = key.mClass.getMethod(key.mName, key.mParameterTypes);
+                }
+                // the key may be built around a caller's array; keep a copy that cannot change.
+                mMethods.put(new Key(key.mClass, key.mName, key.mParameterTypes.clone(),
+                        key.mDeclared), method);
+                return method;
+            } catch (NoSuchMethodException e) {
+                mMethods.put(new Key(key.mClass, key.mName, key.mParameterTypes.clone(),
+                        key.mDeclared), NOT_FOUND);
+                throw e;
+            }
+        }
+        if (cached == NOT_FOUND) {
+            mNegativeHits.incrementAndGet();
+            throw new NoSuchMethodException(key.mClass.getName() + "." + key.mName
+                    + Arrays.toString(key.mParameterTypes));
+        }
+        mHits.incrementAndGet();
+        return (Method) cached;
+    }
+
+    /**
+     * Returns the class as {@link Class#forName(String)} would.
+     */
+    public Class<?> forName(String className) throws ClassNotFoundException {
+        Object cached = mClasses.get(className);
+        if (cached == null) {
+            mMisses.incrementAndGet();
+            try {
+                Class<?> clazz = Class.forName(className);
+                mClasses.put(className, clazz);
+                return clazz;
+            } catch (ClassNotFoundException e) {
+                mClasses.put(className, NOT_FOUND);
+                throw e;
+            }
+        }
+        if (cached == NOT_FOUND) {
+            mNegativeHits.incrementAndGet();
+            throw new ClassNotFoundException(className);
+        }
+        mHits.incrementAndGet();
+        return (Class<?>) cached;
+    }
+
+    /**
+     * Returns a summary of the lookups served so far.
+     */
+    public String getStats() {
+        long hits = mHits.get();
+        long negativeHits = mNegativeHits.get();
+        long misses = mMisses.get();
+        long lookups = hits + negativeHits + misses;
+        return String.format(Locale.US,
+                "Reflection cache: %d lookups, %.1f%% hits (%d of them for missing members),"
+                        + " %d misses, %d methods and %d classes cached",
+                lookups, lookups == 0 ? 0.0 : 100.0 * (hits + negativeHits) / lookups,
+                negativeHits, misses, mMethods.size(), mClasses.size());
+    }
+}
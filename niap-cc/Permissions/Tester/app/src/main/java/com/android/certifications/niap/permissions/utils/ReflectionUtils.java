@@ -56,7 +56,8 @@ public class ReflectionUtils {
     public static Object invokeReflectionCall(Class<?> targetClass, String methodName,
             Object targetObject, Class<?>[] parameterClasses, Object... parameters) {
         try {
-            Method method = targetClass.getMethod(methodName, parameterClasses);
+            Method method = MethodCache.getInstance().getMethod(targetClass, methodName,
+                    parameterClasses);
             return method.invoke(targetObject, parameters);
         } catch (ReflectiveOperationException e) {
             Throwable cause = e.getCause();
@@ -76,8 +77,9 @@ public class ReflectionUtils {
     public static Object invokeReflectionCall(String className, String methodName,
                                               Object targetObject, Class<?>[] parameterClasses, Object... parameters) {
         try {
-            Class<?> targetClass = Class.forName(className);
-            Method method = targetClass.getMethod(methodName, parameterClasses);
+            Class<?> targetClass = MethodCache.getInstance().forName(className);
+            Method method = MethodCache.getInstance().getMethod(targetClass, methodName,
+                    parameterClasses);
             return method.invoke(targetObject, parameters);
         } catch (ReflectiveOperationException e) {
             Throwable cause = e.getCause();
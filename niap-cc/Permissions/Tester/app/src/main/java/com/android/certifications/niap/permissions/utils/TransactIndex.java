@@ -0,0 +1,168 @@
+/*
+ * Copyright 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.certifications.niap.permissions.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable index from (descriptor, transact name) pairs to transact IDs.
+ *
+ * <p>All of the pairs are stored in flat, parallel arrays forming an open addressing hash table
+ * that is at most half full. A lookup combines the cached hash codes of the two strings, so it
+ * neither allocates nor unboxes, and it resolves the pair to an int handle, the slot of the
+ * pair in the table, from which the transact ID is read.
+ */
+public class TransactIndex {
+    /**
+     * Returned by {@link #find(String, String)} when the index has no entry for the pair.
+     */
+    public static final int NOT_FOUND = -1;
+
+    private final String[] mDescriptors;
+    private final String[] mTransactNames;
+    private final int[] mHashes;
+    private final int[] mTransactIds;
+    private final int mMask;
+    private final int mSize;
+
+    private TransactIndex(List<String> descriptors, List<String> transactNames,
+            List<Integer> transactIds) {
+        int capacity = Integer.highestOneBit(Math.max(1, descriptors.size()) * 2 - 1) << 1;
+        mDescriptors = new String[capacity];
+        mTransactNames = new String[capacity];
+        mHashes = new int[capacity];
+        mTransactIds = new int[capacity];
+        mMask = capacity - 1;
+        int size = 0;
+        for (int i = 0; i < descriptors.size(); i++) {
+            String descriptor = descriptors.get(i);
+            String transactName = transactNames.get(i);
+            int hash = hash(descriptor, transactName);
+            int slot = hash & mMask;
+            while (mTransactNames[slot] != null) {
+                if (mHashes[slot] == hash && mDescriptors[slot].equals(descriptor)
+                        && mTransactNames[slot].equals(transactName)) {
+                    break;
+                }
+                slot = (slot + 1) & mMask;
+            }
+            if (mTransactNames[slot] == null) {
+                size++;
+            }
+            mDescriptors[slot] = descriptor;
+            mTransactNames[slot] = transactName;
+            mHashes[slot] = hash;
+            mTransactIds[slot] = transactIds.get(i);
+        }
+        mSize = size;
+    }
+
+    /**
+     * Collects the entries of a {@link TransactIndex}.
+     */
+    public static class Builder {
+        private final List<String> mDescriptors = new ArrayList<>();
+        private final List<String> mTransactNames = new ArrayList<>();
+        private final List<Integer> mTransactIds = new ArrayList<>();
+
+        /**
+         * Adds the {@code transactId} of the {@code transactName} method on the {@code
+         * descriptor}; if the pair is added more than once the last ID wins.
+         */
+        public Builder add(String descriptor, String transactName, int transactId) {
+            mDescriptors.add(descriptor);
+            mTransactNames.add(transactName);
+            mTransactIds.add(transactId);
+            return this;
+        }
+
+        public TransactIndex build() {
+            return new TransactIndex(mDescriptors, mTransactNames, mTransactIds);
+        }
+    }
+
+    /**
+     * Compiles a mapping from descriptors to a Map of transact names to their IDs into an index.
+     */
+    public static TransactIndex compile(
+            Map<String, ? extends Map<String, ? extends Number>> descriptorTransacts) {
+        Builder builder = new Builder();
+        for (Map.Entry<String, ? extends Map<String, ? extends Number>> descriptorEntry :
+                descriptorTransacts.entrySet()) {
+            for (Map.Entry<String, ? extends Number> transactEntry :
+                    descriptorEntry.getValue().entrySet()) {
+                if (transactEntry.getValue() != null) {
+                    builder.add(descriptorEntry.getKey(), transactEntry.getKey(),
+                            transactEntry.getValue().intValue());
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private static int hash(String descriptor, String transactName) {
+        int hash = descriptor.hashCode() * 31 + transactName.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Returns the handle of the {@code transactName} method on the {@code descriptor}, or {@link
+     * #NOT_FOUND} if the index has no ID for it.
+     */
+    public int find(String descriptor, String transactName) {
+        int hash = hash(descriptor, transactName);
+        int slot = hash & mMask;
+        String name;
+        while ((name = mTransactNames[slot]) != null) {
+            if (mHashes[slot] == hash && name.equals(transactName)
+                    && mDescriptors[slot].equals(descriptor)) {
+                return slot;
+            }
+            slot = (slot + 1) & mMask;
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Returns the transact ID for a {@code handle} returned by {@link #find(String, String)}.
+     */
+    public int getTransactId(int handle) {
+        return mTransactIds[handle];
+    }
+
+    /**
+     * Returns whether the index has an ID for any transact on the {@code descriptor}; this scans
+     * the whole index and is only meant for reporting failed lookups.
+     */
+    public boolean containsDescriptor(String descriptor) {
+        for (int i = 0; i < mDescriptors.length; i++) {
+            if (mTransactNames[i] != null && mDescriptors[i].equals(descriptor)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of (descriptor, transact name) pairs in the index.
+     */
+    public int size() {
+        return mSize;
+    }
+}
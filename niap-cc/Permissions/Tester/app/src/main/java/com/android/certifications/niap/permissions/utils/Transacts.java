@@ -16,24 +16,18 @@
 
 package com.android.certifications.niap.permissions.utils;
 
-import android.accessibilityservice.AccessibilityServiceInfo;
-import android.accounts.Account;
-import android.app.PendingIntent;
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 import android.content.ServiceConnection;
-import android.net.NetworkCapabilities;
-import android.net.Uri;
 import android.os.Build;
 import android.os.IBinder;
 import android.os.IInterface;
 import android.os.Parcel;
-import android.os.ParcelFileDescriptor;
-import android.os.ParcelUuid;
 import android.os.Parcelable;
 import android.os.RemoteException;
 import android.text.TextUtils;
+import android.util.Log;
 
 import androidx.core.os.BuildCompat;
 
@@ -59,6 +53,7 @@ import java.util.concurrent.TimeUnit;
 public class Transacts {
     private static final String TAG = "PermissionTesterTransacts";
     private final Logger mLogger = LoggerFactory.createDefaultLogger(TAG);
+    private static final MarshallerRegistry<Parcel> sMarshallers = createMarshallers();
 
     // Following are the service and descriptor values for exported system services.
     public static final String ACCESSIBILITY_SERVICE = Context.ACCESSIBILITY_SERVICE;
@@ -775,6 +770,11 @@ public class Transacts {
      * The API level of the device under test.
      */
     protected int mDeviceApiLevel;
+    /**
+     * {@link #mDescriptorTransacts} compiled for lookups; subclasses populate the map in their
+     * constructors, so the index is compiled the first time a transact ID is requested.
+     */
+    private volatile TransactIndex mTransactIndex;
 
     /**
      * Initializes the mapping of transact names to their expected IDs for a device running Android
@@ -2518,11 +2518,7 @@ public class Transacts {
      * transactName} for this instance's API level.
      */
     public boolean descriptorContainsTransactName(String descriptor, String transactName) {
-        Map<String, Integer> transactIds = mDescriptorTransacts.get(descriptor);
-        if (transactIds == null) {
-            return false;
-        }
-        return transactIds.containsKey(transactName);
+        return getTransactIndex().find(descriptor, transactName) != TransactIndex.NOT_FOUND;
     }
 
     /**
@@ -2530,16 +2526,26 @@ public class Transacts {
      * {@code transactName}.
      */
     public int getTransactId(String descriptor, String transactName) {
-        Map<String, Integer> transactIds = mDescriptorTransacts.get(descriptor);
-        if (transactIds == null) {
-            throw new IllegalArgumentException(
-                    "No transact entries found for the requested descriptor, " + descriptor);
-        }
-        if (!transactIds.containsKey(transactName)) {
+        TransactIndex index = getTransactIndex();
+        int handle = index.find(descriptor, transactName);
+        if (handle == TransactIndex.NOT_FOUND) {
+            if (!index.containsDescriptor(descriptor)) {
+                throw new IllegalArgumentException(
+                        "No transact entries found for the requested descriptor, " + descriptor);
+            }
             throw new IllegalArgumentException("The requested transaction name, " + transactName
                     + ", does not have a corresponding ID");
         }
-        return transactIds.get(transactName);
+        return index.getTransactId(handle);
+    }
+
+    private TransactIndex getTransactIndex() {
+        TransactIndex index = mTransactIndex;
+        if (index == null) {
+            index = TransactIndex.compile(mDescriptorTransacts);
+            mTransactIndex = index;
+        }
+        return index;
     }
 
     /**
@@ -2616,8 +2622,7 @@ public class Transacts {
         IBinder binder = null;
         try {
             // Obtain the IBinder for the specified service.
-            binder = (IBinder) Class.forName("android.os.ServiceManager")
-                    .getMethod("getService", String.class).invoke(null, service);
+            binder = ServiceHandleRegistry.getInstance().getService(service);
             if (binder == null) {
                 throw new BasePermissionTester.BypassTestException("The " + service
                         + " service guarded by this permission is not available on this device");
@@ -2645,98 +2650,29 @@ public class Transacts {
      */
     public Parcel invokeTransactWithCharSequence(IBinder binder, String descriptor,
             String transactName, boolean useCharSequence, Object... parameters) {
-        if (!descriptorContainsTransactName(descriptor, transactName)) {
+        TransactIndex index = getTransactIndex();
+        int handle = index.find(descriptor, transactName);
+        if (handle == TransactIndex.NOT_FOUND) {
             throw new BasePermissionTester.UnexpectedPermissionTestFailureException(
                     "Transact action " + transactName + " does not have a corresponding ID for SDK "
                             + mDeviceApiLevel);
         }
-        int transactId = getTransactId(descriptor, transactName);
-        Class remoteCallbackClass;
+        int transactId = index.getTransactId(handle);
 
         try {
-            remoteCallbackClass = Class.forName("android.os.RemoteCallback");
             Parcel reply = Parcel.obtain();
             // Write all of the provided parameters to the data Parcel to be passed to the transact.
-            // Each parameter must be written to the Parcel based on its class; if any new classes
-            // need to be supported for direct transacts they should be added here with an
-            // appropriate means of writing the instance of the class to the Parcel.
+            // Each parameter is written by the marshaller registered for its class; if any new
+            // classes need to be supported for direct transacts a marshaller for them should be
+            // registered with getMarshallers().
             Parcel data = Parcel.obtain();
             data.writeInterfaceToken(descriptor);
             for (Object parameter : parameters) {
-
-                //if(parameter != null)
-                //mLogger.logDebug(parameter.getClass().toString());
-                //mLogger.logDebug(ReflectionUtils.checkDeclaredMethod(parameter,"").toString());
-                //mLogger.logSystem("into here!!");
-                if (parameter instanceof CharSequence && useCharSequence) {
-                    if (parameter == null) {
-                        data.writeInt(0);
-                    } else {
-                        data.writeInt(1);
-                        TextUtils.writeToParcel((CharSequence) parameter, data, 0);
-                    }
-                } else if (parameter instanceof String) {
-                    data.writeString((String) parameter);
-                } else if (parameter instanceof Long) {
-                    data.writeLong((Long) parameter);
-                } else if (parameter instanceof Integer) {
-                    data.writeInt((Integer) parameter);
-                } else if (parameter instanceof Boolean) {
-                    data.writeInt((Boolean) parameter ? 1 : 0);
-                } else if (parameter instanceof int[]) {
-                    data.writeIntArray((int[]) parameter);
-                } else if (parameter instanceof byte[]) {
-                    data.writeByteArray((byte[]) parameter);
-                } else if (parameter instanceof Proxy) {
-                    ReflectionUtils.checkDeclaredMethod(parameter,"");
-                } else if (parameter instanceof IInterface ) {
-                    data.writeStrongBinder(
-                            parameter != null ? ((IInterface) parameter).asBinder() : null);
-                } else if (parameter instanceof IBinder) {
-                    data.writeStrongBinder((IBinder) parameter);
-                } else if (parameter instanceof byte[]) {
-                    data.writeByteArray((byte[]) parameter);
-                } else if (parameter instanceof ComponentName) {
-                    if (parameter == null) {
-                        data.writeInt(0);
-                    } else {
-                        data.writeInt(1);
-                        ((ComponentName) parameter).writeToParcel(data, 0);
-                    }
-                } else if (parameter instanceof Uri) {
-                    data.writeInt(1);
-                    ((Uri) parameter).writeToParcel(data, 0);
-                } else if (parameter instanceof String[]) {
-                    data.writeStringArray((String[]) parameter);
-                } else if (parameter instanceof Account) {
-                    data.writeInt(1);
-                    ((Account) parameter).writeToParcel(data, 0);
-                } else if (parameter instanceof AccessibilityServiceInfo) {
-                    data.writeInt(1);
-                    ((AccessibilityServiceInfo) parameter).writeToParcel(data, 0);
-                } else if (parameter instanceof ParcelUuid) {
-                    data.writeInt(1);
-                    ((ParcelUuid) parameter).writeToParcel(data, 0);
-                } else if (parameter instanceof PendingIntent) {
+                if (useCharSequence && parameter instanceof CharSequence) {
                     data.writeInt(1);
-                    ((PendingIntent) parameter).writeToParcel(data, 0);
-                } else if (parameter instanceof NetworkCapabilities) {
-                    data.writeInt(1);
-                    ((NetworkCapabilities) parameter).writeToParcel(data, 0);
-                } else if (parameter instanceof ParcelFileDescriptor) {
-                   //mLogger.logSystem("here");
-                    data.writeInt(1);
-                    ((ParcelFileDescriptor) parameter).writeToParcel(data, 0);
-                } else if (remoteCallbackClass.isInstance(parameter)) {
-
-                    data.writeInt(0);
-                    ReflectionUtils.invokeReflectionCall(remoteCallbackClass,"writeToParcel",
-                            parameter,new Class[]{Parcel.class,int.class},data,0);
-
-                } else if (parameter instanceof Parcelable) {
-
-                    data.writeInt(1);
-                    ((Parcelable) parameter).writeToParcel(data, 0);
+                    TextUtils.writeToParcel((CharSequence) parameter, data, 0);
+                } else {
+                    sMarshallers.marshal(data, parameter);
                 }
             }
             binder.transact(transactId, data, reply, 0);
@@ -2750,8 +2686,50 @@ public class Transacts {
             } else {
                 throw new BasePermissionTester.UnexpectedPermissionTestFailureException(re);
             }
-        } catch(ClassNotFoundException re) {
-            throw new BasePermissionTester.UnexpectedPermissionTestFailureException(re);
         }
     }
+
+    /**
+     * Returns the registry used to write the parameters of direct transacts to the data {@link
+     * Parcel}; additional parameter types can be supported by registering a marshaller for them.
+     */
+    public static MarshallerRegistry<Parcel> getMarshallers() {
+        return sMarshallers;
+    }
+
+    private static MarshallerRegistry<Parcel> createMarshallers() {
+        // Parameters of an unsupported class are not written to the Parcel.
+        MarshallerRegistry<Parcel> marshallers = new MarshallerRegistry<>((data, value) -> {});
+        marshallers
+                .register(String.class, (data, value) -> data.writeString((String) value))
+                .register(Long.class, (data, value) -> data.writeLong((Long) value))
+                .register(Integer.class, (data, value) -> data.writeInt((Integer) value))
+                .register(Boolean.class, (data, value) -> data.writeInt((Boolean) value ? 1 : 0))
+                .register(int[].class, (data, value) -> data.writeIntArray((int[]) value))
+                .register(byte[].class, (data, value) -> data.writeByteArray((byte[]) value))
+                .register(String[].class,
+                        (data, value) -> data.writeStringArray((String[]) value))
+                .register(Proxy.class,
+                        (data, value) -> ReflectionUtils.checkDeclaredMethod(value, ""))
+                .register(IInterface.class,
+                        (data, value) -> data.writeStrongBinder(((IInterface) value).asBinder()))
+                .register(IBinder.class,
+                        (data, value) -> data.writeStrongBinder((IBinder) value));
+        try {
+            // RemoteCallback is a hidden Parcelable that is written without the non-null marker.
+            marshallers.register(Class.forName("android.os.RemoteCallback"), (data, value) -> {
+                data.writeInt(0);
+                ((Parcelable) value).writeToParcel(data, 0);
+            });
+        } catch (ClassNotFoundException e) {
+            Log.w(TAG, "android.os.RemoteCallback is not available on this device", e);
+        }
+        // All other Parcelables (ComponentName, Uri, Account, PendingIntent, etc.) are written
+        // with a non-null marker followed by their contents.
+        marshallers.register(Parcelable.class, (data, value) -> {
+            data.writeInt(1);
+            ((Parcelable) value).writeToParcel(data, 0);
+        });
+        return marshallers;
+    }
 }
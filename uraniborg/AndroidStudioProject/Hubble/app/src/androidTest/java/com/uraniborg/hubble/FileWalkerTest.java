@@ -0,0 +1,216 @@
+//Copyright 2019 Uraniborg authors.
+//
+//Licensed under the Apache License, Version 2.0 (the "License");
+//you may not use this file except in compliance with the License.
+//You may obtain a copy of the License at
+//
+//http://www.apache.org/licenses/LICENSE-2.0
+//
+//Unless required by applicable law or agreed to in writing, software
+//distributed under the License is distributed on an "AS IS" BASIS,
+//WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//See the License for the specific language governing permissions and
+//limitations under the License.
+
+package com.uraniborg.hubble;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.util.Log;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Checks that {@link FileWalker} lists every file once under its canonical path, and compares it
+ * with the recursive listing it replaced in {@link Utilities#getAllFilesInDirectory}.
+ *
+ * <p>The walker relies on {@link Os#lstat} and {@link Os#stat}, so this runs on a device. The
+ * benchmark is skipped unless the instrumentation is given <code>benchmarks=true</code>, and logs
+ * its timings under {@link #TAG}.
+ */
+public class FileWalkerTest {
+  public static final String TAG = "FILEWALKERTEST";
+
+  private static final int BENCHMARK_DIRECTORIES = 100;
+  private static final int BENCHMARK_FILES_PER_DIRECTORY = 1000;
+  private static final int BENCHMARK_LINKS = 10000;
+
+  private File mRoot;
+
+  @Before
+  public void setUp() throws IOException {
+    File cacheDir = InstrumentationRegistry.getInstrumentation().getTargetContext().getCacheDir();
+    mRoot = new File(cacheDir, "filewalker").getCanonicalFile();
+    delete(mRoot);
+    assertTrue(mRoot.mkdirs());
+  }
+
+  @After
+  public void tearDown() {
+    delete(mRoot);
+  }
+
+  @Test
+  public void walk_reportsEveryFileOnceUnderItsCanonicalPath() throws Exception {
+    File tree = createTree();
+
+    List<File> files = walk(tree.getPath());
+
+    assertEquals(new HashSet<>(Arrays.asList(new File(tree, "a/1"), new File(tree, "a/b/2"),
+        new File(tree, "c/3"), new File(mRoot, "outside/4"))), new HashSet<>(files));
+    assertEquals(4, files.size());
+  }
+
+  @Test
+  public void walk_keepsSymlinkPathsWhenAskedTo() throws Exception {
+    File tree = createTree();
+
+    List<File> files = Utilities.getAllFilesInDirectory(tree.getPath(), true);
+
+    // the looping directory link is still only walked once.
+    assertEquals(new HashSet<>(Arrays.asList(new File(tree, "a/1"), new File(tree, "a/b/2"),
+        new File(tree, "c/3"), new File(tree, "a/link3"), new File(tree, "link4"))),
+        new HashSet<>(files));
+  }
+
+  @Test
+  public void walk_matchesTheRecursiveListing() throws Exception {
+    File tree = createBenchmarkTree(10, 10, 20);
+
+    Set<File> expected = new HashSet<>(listRecursively(tree.getPath()));
+    List<File> files = walk(tree.getPath());
+
+    assertEquals(expected, new HashSet<>(files));
+    assertEquals(expected.size(), files.size());
+  }
+
+  @Test
+  public void benchmark_walkAgainstRecursiveListing() throws Exception {
+    assumeTrue("benchmarks only run with benchmarks=true", Boolean.parseBoolean(
+        InstrumentationRegistry.getArguments().getString("benchmarks")));
+    File tree = createBenchmarkTree(BENCHMARK_DIRECTORIES, BENCHMARK_FILES_PER_DIRECTORY,
+        BENCHMARK_LINKS);
+    // once each to warm up, and to get the tree into the dentry cache.
+    walk(tree.getPath());
+    listRecursively(tree.getPath());
+
+    long start = System.nanoTime();
+    int recursiveCount = listRecursively(tree.getPath()).size();
+    long recursiveNanos = System.nanoTime() - start;
+    start = System.nanoTime();
+    int walkerCount = walk(tree.getPath()).size();
+    long walkerNanos = System.nanoTime() - start;
+
+    assertEquals(recursiveCount, walkerCount);
+    Log.i(TAG, String.format("%d files: recursive listing %d ms, FileWalker %d ms", walkerCount,
+        recursiveNanos / 1000000, walkerNanos / 1000000));
+  }
+
+  private static List<File> walk(String root) {
+    return Utilities.getAllFilesInDirectory(root, false);
+  }
+
+  /**
+   * Creates a tree with a file found both directly and through a symlink, a file only found through
+   * a symlink, a directory symlink looping back up the tree, and a broken symlink.
+   */
+  private File createTree() throws Exception {
+    File tree = new File(mRoot, "tree");
+    createFile(new File(tree, "a/1"));
+    createFile(new File(tree, "a/b/2"));
+    createFile(new File(tree, "c/3"));
+    createFile(new File(mRoot, "outside/4"));
+    Os.symlink(new File(tree, "c/3").getPath(), new File(tree, "a/link3").getPath());
+    Os.symlink(new File(mRoot, "outside/4").getPath(), new File(tree, "link4").getPath());
+    Os.symlink(tree.getPath(), new File(tree, "c/loop").getPath());
+    Os.symlink(new File(tree, "missing").getPath(), new File(tree, "broken").getPath());
+    return tree;
+  }
+
+  /**
+   * Creates <code>directories</code> directories of <code>files</code> files each, plus
+   * <code>links</code> symlinks to some of those files and one symlink to a directory.
+   */
+  private File createBenchmarkTree(int directories, int files, int links) throws Exception {
+    File tree = new File(mRoot, "bench");
+    for (int d = 0; d < directories; d++) {
+      File directory = new File(tree, "dir" + d);
+      assertTrue(directory.mkdirs());
+      for (int f = 0; f < files; f++) {
+        createFile(new File(directory, "file" + f));
+      }
+    }
+    File linkDirectory = new File(tree, "links");
+    assertTrue(linkDirectory.mkdirs());
+    for (int l = 0; l < links; l++) {
+      File target = new File(tree, "dir" + (l % directories) + "/file" + (l % files));
+      Os.symlink(target.getPath(), new File(linkDirectory, "link" + l).getPath());
+    }
+    Os.symlink(new File(tree, "dir0").getPath(), new File(tree, "dirlink").getPath());
+    return tree;
+  }
+
+  // how Utilities.getAllFilesInDirectory listed files before FileWalker, without symlinks.
+  private static List<File> listRecursively(String root) throws IOException {
+    Set<File> result = new HashSet<>();
+    File[] files = new File(root).listFiles();
+    if (files == null) {
+      return new ArrayList<>();
+    }
+    for (File file : files) {
+      if (file.isFile()) {
+        result.add(file.getCanonicalFile());
+      } else if (file.isDirectory()) {
+        result.addAll(listRecursively(file.getAbsolutePath()));
+      }
+    }
+    return new ArrayList<>(result);
+  }
+
+  private static void createFile(File file) throws IOException {
+    File parent = file.getParentFile();
+    if (parent != null && !parent.exists()) {
+      assertTrue(parent.mkdirs());
+    }
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(file.getName().getBytes());
+    }
+  }
+
+  private static void delete(File file) {
+    // symlinks are deleted, never followed.
+    File[] children = isSymlink(file) ? null : file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+  private static boolean isSymlink(File file) {
+    try {
+      return OsConstants.S_ISLNK(Os.lstat(file.getPath()).st_mode);
+    } catch (ErrnoException e) {
+      return false;
+    }
+  }
+}
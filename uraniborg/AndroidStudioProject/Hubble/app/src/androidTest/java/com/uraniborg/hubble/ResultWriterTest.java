@@ -0,0 +1,193 @@
+//Copyright 2019 Uraniborg authors.
+//
+//Licensed under the Apache License, Version 2.0 (the "License");
+//you may not use this file except in compliance with the License.
+//You may obtain a copy of the License at
+//
+//http://www.apache.org/licenses/LICENSE-2.0
+//
+//Unless required by applicable law or agreed to in writing, software
+//distributed under the License is distributed on an "AS IS" BASIS,
+//WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//See the License for the specific language governing permissions and
+//limitations under the License.
+
+package com.uraniborg.hubble;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import android.content.Context;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Checks that {@link ResultWriter} writes the same bytes as the result files assembled from
+ * {@link BaseInfo#getJSONString(String[])}, which hubble_parser.py reads.
+ *
+ * <p>{@link android.util.JsonWriter} is only a stub off device, so this runs on a device. The
+ * known difference, U+2028 and U+2029 being escaped by JsonWriter but not by JSONObject, is left
+ * out of the records; json.loads reads both forms the same.
+ */
+public class ResultWriterTest {
+  private static final String VERSION = "2.0.0";
+  private static final String FILENAME = "resultwritertest.txt";
+  // how MainActivity laid out result files before ResultWriter.
+  private static final String HEADER_FMT = "{ \"version\": \"%s\", \"%s\": %d,\n\"%s\": [\n";
+  private static final String FOOTER_STR = "\n]\n}";
+
+  private Context mContext;
+
+  @Before
+  public void setUp() {
+    mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+    // results must go to the file, not into an archive left open by a scan.
+    assertNull(ResultArchive.getInstance());
+  }
+
+  @After
+  public void tearDown() {
+    new File(Utilities.getResultStorageDirectory(mContext), FILENAME).delete();
+  }
+
+  @Test
+  public void writeRecord_matchesGetJSONStringForPackages() throws Exception {
+    String[] skip = new String[] {"ref"};
+    List<PackageMetadata> packages = Arrays.asList(createPackage(), new PackageMetadata());
+
+    assertEquals(assembleOldFile("totalPackages", "packages", packages, skip),
+        writeFile("totalPackages", "packages", packages, skip));
+  }
+
+  @Test
+  public void writeRecord_matchesGetJSONStringForBinaries() throws Exception {
+    BinaryInfo sh = new BinaryInfo();
+    sh.name = "sh";
+    sh.installPath = "/system/bin";
+    sh.hash = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+    sh.fileSizeInBytes = 5L * Integer.MAX_VALUE;
+    BinaryInfo unnamed = new BinaryInfo();
+    unnamed.installPath = "/vendor/bin/\"quoted\" dir\\with\ttab";
+    List<BinaryInfo> binaries = Arrays.asList(sh, unnamed);
+
+    assertEquals(assembleOldFile("totalBins", "bins", binaries, null),
+        writeFile("totalBins", "bins", binaries, null));
+  }
+
+  @Test
+  public void writeRecord_matchesGetJSONStringForLibraries() throws Exception {
+    LibraryInfo libc = new LibraryInfo();
+    libc.name = "libc.so";
+    libc.installPath = "/apex/com.android.runtime/lib64/bionic";
+    libc.hash = "fedcba9876543210fedcba9876543210fedcba9876543210fedcba9876543210";
+    libc.bits = 64;
+    libc.fileSizeInBytes = 1234567;
+    List<LibraryInfo> libraries = Arrays.asList(libc);
+
+    assertEquals(assembleOldFile("totalLibs", "libs", libraries, null),
+        writeFile("totalLibs", "libs", libraries, null));
+  }
+
+  @Test
+  public void writeRecord_writesAnEmptyArrayForNoRecords() throws Exception {
+    List<BinaryInfo> none = Arrays.asList();
+
+    assertEquals(assembleOldFile("totalBins", "bins", none, null),
+        writeFile("totalBins", "bins", none, null));
+  }
+
+  // exercises every conversion ResultWriter.writeValue copies from JSONObject.
+  private static PackageMetadata createPackage() throws JSONException {
+    PackageMetadata pkg = new PackageMetadata();
+    pkg.hash = "abcdef";
+    pkg.name = "com.example.app";
+    pkg.label = "Example \"app\" \u00fc\u4f8b";
+    pkg.description = new StringBuilder("line one\nline two\ttabbed\u0001\\/ slash");
+    pkg.versionCode = Integer.MIN_VALUE;
+    pkg.versionName = "1.0/beta";
+    pkg.certIds = new String[] {"cert1", "cert2"};
+    pkg.isEnabled = true;
+    pkg.isPreinstalled = true;
+    pkg.installLocation = "/data/app/~~abc==/com.example.app-1/base.apk";
+
+    JSONObject permission = new JSONObject();
+    permission.put("name", "com.example.permission.READ");
+    permission.put("protectionLevel", 18);
+    permission.put("weight", 1.0);
+    permission.put("ratio", 0.25);
+    permission.put("large", 1e20);
+    permission.put("flag", false);
+    permission.put("missing", JSONObject.NULL);
+    permission.put("empty", new JSONArray());
+    permission.put("nested", new JSONObject());
+    pkg.permissionsDeclared = new JSONArray().put(permission);
+    pkg.permissionsGranted = new JSONArray().put("android.permission.INTERNET").put(
+        "android.permission.CAMERA");
+    pkg.permissionsNotGranted = new JSONArray();
+    pkg.permissionsSpecial = new HashSet<>(Arrays.asList("android.permission.BIND_JOB_SERVICE",
+        "android.permission.BIND_ACCESSIBILITY_SERVICE", "android.permission.BIND_VPN_SERVICE"));
+    JSONObject activity = new JSONObject();
+    activity.put("name", ".MainActivity");
+    activity.put("exported", true);
+    activity.put("intentFilters", new JSONArray().put(new JSONArray().put("MAIN")));
+    pkg.activities = new JSONArray().put(activity);
+    pkg.firstInstallTime = 1700000000123L;
+    pkg.sharedUserLabel = 7;
+    pkg.splitNames = new String[] {"config.arm64_v8a", null};
+    pkg.kernelGids = new int[] {1000, 3003};
+    pkg.fileSizeInBytes = 42;
+    return pkg;
+  }
+
+  // the file as MainActivity assembled it from getJSONString() before ResultWriter.
+  private static String assembleOldFile(String countName, String fieldName,
+                                        List<? extends BaseInfo> records, String[] skip) {
+    StringBuilder file = new StringBuilder(String.format(HEADER_FMT, VERSION, countName,
+        records.size(), fieldName));
+    for (int i = 0; i < records.size(); i++) {
+      file.append(records.get(i).getJSONString(skip));
+      if (i < records.size() - 1) {
+        file.append(",\n");
+      }
+    }
+    return file.append(FOOTER_STR).toString();
+  }
+
+  private String writeFile(String countName, String fieldName, List<? extends BaseInfo> records,
+                           String[] skip) throws IOException {
+    try (ResultWriter writer = ResultWriter.open(mContext, FILENAME, VERSION)) {
+      writer.writeHeader(countName, records.size(), fieldName);
+      for (BaseInfo record : records) {
+        writer.writeRecord(record, skip);
+      }
+      writer.writeFooter();
+    }
+    File file = new File(Utilities.getResultStorageDirectory(mContext), FILENAME);
+    try (InputStream in = new FileInputStream(file)) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+      return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+  }
+}
@@ -0,0 +1,202 @@
+//Copyright 2019 Uraniborg authors.
+//
+//Licensed under the Apache License, Version 2.0 (the "License");
+//you may not use this file except in compliance with the License.
+//You may obtain a copy of the License at
+//
+//http://www.apache.org/licenses/LICENSE-2.0
+//
+//Unless required by applicable law or agreed to in writing, software
+//distributed under the License is distributed on an "AS IS" BASIS,
+//WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//See the License for the specific language governing permissions and
+//limitations under the License.
+
+package com.uraniborg.hubble;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Checks that {@link ScanManifest} restores package records from a previous run's
+ * <code>packages.txt</code>, on its own or inside the result archive.
+ * {@link android.util.JsonReader} is only a stub off device, so this runs on a device.
+ */
+public class ScanManifestRecordsTest {
+  private static final String VERSION = "2.0.0";
+  private static final String PROFILE = "full";
+  private static final String FILENAME = "scanmanifestrecordstest.txt";
+  private static final String[] SKIP = new String[] {"ref"};
+  private static final String KEY = ScanManifest.buildKey(1700000000000L, 42, 123456,
+      1700000000000000123L, 1700000000000000456L, 7890);
+
+  private Context mContext;
+  private File mPackagesFile;
+  private File mArchiveFile;
+  private File mManifestFile;
+
+  @Before
+  public void setUp() {
+    mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+    assertNull(ResultArchive.getInstance());
+    mPackagesFile = new File(Utilities.getResultStorageDirectory(mContext), FILENAME);
+    mArchiveFile = new File(mContext.getCacheDir(), "scanmanifestrecordstest.zip");
+    mManifestFile = new File(mContext.getCacheDir(), "scanmanifestrecordstest_manifest.txt");
+  }
+
+  @After
+  public void tearDown() {
+    mPackagesFile.delete();
+    mArchiveFile.delete();
+    mManifestFile.delete();
+  }
+
+  private static List<PackageMetadata> createPackages() throws Exception {
+    PackageMetadata app = new PackageMetadata();
+    app.name = "com.example.app";
+    app.hash = "abcdef";
+    app.label = "Example \"app\" \u00fc";
+    app.versionCode = 42;
+    app.certIds = new String[] {"cert1", null};
+    app.kernelGids = new int[] {1000, 3003};
+    app.firstInstallTime = 1700000000123L;
+    app.fileSizeInBytes = 5L * Integer.MAX_VALUE;
+    app.isPreinstalled = true;
+    JSONObject permission = new JSONObject();
+    permission.put("name", "com.example.permission.READ");
+    permission.put("protectionLevel", 18);
+    permission.put("ratio", 0.25);
+    permission.put("missing", JSONObject.NULL);
+    app.permissionsDeclared = new JSONArray().put(permission);
+    app.permissionsGranted = new JSONArray();
+    app.permissionsSpecial = new HashSet<>(Arrays.asList("android.permission.BIND_VPN_SERVICE"));
+
+    PackageMetadata empty = new PackageMetadata();
+    empty.name = "com.example.empty";
+    return Arrays.asList(app, empty);
+  }
+
+  private void writePreviousRun(String version, List<PackageMetadata> packages)
+      throws Exception {
+    try (ResultWriter writer = ResultWriter.open(mContext, FILENAME, version)) {
+      writer.writeHeader("totalPackages", packages.size(), "packages");
+      for (PackageMetadata pkg : packages) {
+        writer.writeRecord(pkg, SKIP);
+      }
+      writer.writeFooter();
+    }
+    ScanManifest previous = new ScanManifest(VERSION, PROFILE);
+    for (PackageMetadata pkg : packages) {
+      previous.observe(pkg.name, KEY, pkg.hash);
+    }
+    previous.save(mManifestFile);
+  }
+
+  private void zipPreviousRun() throws Exception {
+    try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(mArchiveFile));
+         InputStream in = new FileInputStream(mPackagesFile)) {
+      zip.putNextEntry(new ZipEntry("packages.txt"));
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        zip.write(buffer, 0, read);
+      }
+      zip.closeEntry();
+    }
+  }
+
+  private ScanManifest loadManifest() {
+    ScanManifest manifest = new ScanManifest(VERSION, PROFILE);
+    manifest.loadKeys(mManifestFile);
+    return manifest;
+  }
+
+  private static void assertRestores(ScanManifest manifest, List<PackageMetadata> packages) {
+    for (PackageMetadata pkg : packages) {
+      JSONObject record = manifest.getReusableRecord(pkg.name, KEY);
+      assertNotNull(pkg.name, record);
+      PackageMetadata restored = new PackageMetadata();
+      assertTrue(restored.readJSON(record));
+      assertEquals(pkg.getJSONString(SKIP), restored.getJSONString(SKIP));
+    }
+  }
+
+  @Test
+  public void loadRecords_restoresUnchangedPackages() throws Exception {
+    List<PackageMetadata> packages = createPackages();
+    writePreviousRun(VERSION, packages);
+
+    ScanManifest manifest = loadManifest();
+    manifest.loadRecords(mPackagesFile);
+
+    assertRestores(manifest, packages);
+    assertNull(manifest.getReusableRecord("com.example.app", KEY + "1"));
+    assertNull(manifest.getReusableRecord("com.example.app", null));
+  }
+
+  @Test
+  public void loadRecordsFromArchive_restoresUnchangedPackages() throws Exception {
+    List<PackageMetadata> packages = createPackages();
+    writePreviousRun(VERSION, packages);
+    zipPreviousRun();
+
+    ScanManifest manifest = loadManifest();
+    manifest.loadRecordsFromArchive(mArchiveFile);
+
+    assertRestores(manifest, packages);
+  }
+
+  @Test
+  public void loadRecords_ignoresRecordsOfAnotherVersion() throws Exception {
+    writePreviousRun("1.0.0", createPackages());
+
+    ScanManifest manifest = loadManifest();
+    manifest.loadRecords(mPackagesFile);
+
+    assertNull(manifest.getReusableRecord("com.example.app", KEY));
+  }
+
+  @Test
+  public void getChanges_reportsThePreviousHashOfChangedPackages() throws Exception {
+    writePreviousRun(VERSION, createPackages());
+
+    ScanManifest manifest = loadManifest();
+    manifest.loadRecords(mPackagesFile);
+    manifest.observe("com.example.app", KEY + "1", "fedcba");
+
+    List<JSONObject> changes = manifest.getChanges();
+    assertEquals(2, changes.size());
+    JSONObject changed = changes.get(0);
+    assertEquals("com.example.app", changed.getString("name"));
+    assertEquals(ScanManifest.CHANGE_CHANGED, changed.getString("change"));
+    assertEquals("abcdef", changed.getString("previousHash"));
+    assertEquals("fedcba", changed.getString("hash"));
+    JSONObject removed = changes.get(1);
+    assertEquals("com.example.empty", removed.getString("name"));
+    assertEquals(ScanManifest.CHANGE_REMOVED, removed.getString("change"));
+    assertTrue(removed.isNull("previousHash"));
+    assertTrue(removed.isNull("hash"));
+  }
+}
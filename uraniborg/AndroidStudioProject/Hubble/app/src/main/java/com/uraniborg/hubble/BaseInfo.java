@@ -14,6 +14,7 @@
 
 package com.uraniborg.hubble;
 
+import android.util.JsonWriter;
 import android.util.Log;
 
 import org.jetbrains.annotations.NotNull;
@@ -22,13 +23,17 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class BaseInfo {
   /**
@@ -53,17 +58,180 @@ public class BaseInfo {
     return null;
   }
 
-  @NotNull
-  private Field[] getRelevantFields(@Nullable String[] skipFieldNames) {
-    List<Field> result = new ArrayList<>();
+  /**
+   * Streams this instance as a JSON object to <code>writer</code>, producing the same content as
+   * {@link #getJSONString(String[])} without building the intermediate {@link JSONObject}.
+   * @param writer The writer to emit tokens to.
+   * @param skip An array of strings containing field names to be skipped. NOTE: static and final
+   *            fields are automatically skipped.
+   * @throws IOException if writing to the underlying stream fails.
+   */
+  public void writeJSON(@NotNull JsonWriter writer, @Nullable String[] skip) throws IOException {
+    final String TAG = "writeJSON";
+    writer.beginObject();
+    for (FieldDescriptor descriptor : getFieldDescriptors(getClass())) {
+      if (descriptor.isSkipped(skip)) {
+        continue;
+      }
+      Field field = descriptor.field;
+      try {
+        // primitives are read through their typed accessors so that they aren't boxed.
+        switch (descriptor.kind) {
+          case INT:
+            int intValue = field.getInt(this);
+            writer.name(descriptor.name).value(intValue);
+            break;
+          case LONG:
+            long longValue = field.getLong(this);
+            writer.name(descriptor.name).value(longValue);
+            break;
+          case BOOLEAN:
+            boolean booleanValue = field.getBoolean(this);
+            writer.name(descriptor.name).value(booleanValue);
+            break;
+          case SET:
+            Set setValue = (Set) field.get(this);
+            writer.name(descriptor.name);
+            // a null set is written as an empty array, matching convertSetToJSONArray.
+            ResultWriter.writeValue(writer, (setValue != null) ? setValue :
+                Collections.emptySet());
+            break;
+          default:
+            Object value = field.get(this);
+            writer.name(descriptor.name);
+            ResultWriter.writeValue(writer, value);
+            break;
+        }
+      } catch (IllegalAccessException e) {
+        Log.e(TAG, String.format("Failed to access value for field: %s", descriptor.name));
+      }
+    }
+    writer.endObject();
+  }
 
-    // convert skipFieldNames to a List first to avoid doing it in a loop
-    List<String> skipFieldList = null;
-    if (skipFieldNames != null) {
-      skipFieldList = Arrays.asList(skipFieldNames);
+  /**
+   * Restores the fields of this instance from a JSON object previously produced by
+   * {@link #writeJSON(JsonWriter, String[])} or {@link #getJSONString(String[])}. Fields that are
+   * missing from <code>record</code>, or whose type cannot be represented in JSON, are left as they
+   * are.
+   * @param record The JSON object to read from.
+   * @return <code>true</code> if every field present in <code>record</code> was restored.
+   */
+  public boolean readJSON(@NotNull JSONObject record) {
+    final String TAG = "readJSON";
+    boolean isSuccessful = true;
+    for (FieldDescriptor descriptor : getFieldDescriptors(getClass())) {
+      String name = descriptor.name;
+      if (!record.has(name)) {
+        continue;
+      }
+      Field field = descriptor.field;
+      Class<?> type = field.getType();
+      try {
+        switch (descriptor.kind) {
+          case INT:
+            field.setInt(this, record.getInt(name));
+            break;
+          case LONG:
+            field.setLong(this, record.getLong(name));
+            break;
+          case BOOLEAN:
+            field.setBoolean(this, record.getBoolean(name));
+            break;
+          case SET:
+            Set<String> set = new HashSet<>();
+            JSONArray setItems = record.getJSONArray(name);
+            for (int i = 0; i < setItems.length(); i++) {
+              set.add(setItems.getString(i));
+            }
+            field.set(this, set);
+            break;
+          default:
+            if (record.isNull(name)) {
+              field.set(this, null);
+            } else if (type == String.class || type == CharSequence.class) {
+              field.set(this, record.getString(name));
+            } else if (type == JSONArray.class) {
+              field.set(this, record.getJSONArray(name));
+            } else if (type == String[].class) {
+              JSONArray items = record.getJSONArray(name);
+              String[] strings = new String[items.length()];
+              for (int i = 0; i < strings.length; i++) {
+                strings[i] = items.isNull(i) ? null : items.getString(i);
+              }
+              field.set(this, strings);
+            } else if (type == int[].class) {
+              JSONArray items = record.getJSONArray(name);
+              int[] ints = new int[items.length()];
+              for (int i = 0; i < ints.length; i++) {
+                ints[i] = items.getInt(i);
+              }
+              field.set(this, ints);
+            }
+            break;
+        }
+      } catch (IllegalAccessException | JSONException e) {
+        Log.e(TAG, String.format("Failed to restore field %s: %s", name, e.getMessage()));
+        isSuccessful = false;
+      }
     }
+    return isSuccessful;
+  }
 
-    for (Field field : this.getClass().getDeclaredFields()) {
+  /**
+   * Describes one serializable field of a {@link BaseInfo} subclass. The descriptors of a class
+   * are worked out once, the first time an instance is serialized, and cached for every later
+   * record of the same class.
+   */
+  private static final class FieldDescriptor {
+    enum Kind { INT, LONG, BOOLEAN, SET, OBJECT }
+
+    final Field field;
+    final String name;
+    final Kind kind;
+
+    FieldDescriptor(@NotNull Field field) {
+      this.field = field;
+      this.name = field.getName();
+      Class<?> type = field.getType();
+      if (type == int.class) {
+        this.kind = Kind.INT;
+      } else if (type == long.class) {
+        this.kind = Kind.LONG;
+      } else if (type == boolean.class) {
+        this.kind = Kind.BOOLEAN;
+      } else if (type == Set.class) {
+        this.kind = Kind.SET;
+      } else {
+        this.kind = Kind.OBJECT;
+      }
+    }
+
+    boolean isSkipped(@Nullable String[] skip) {
+      if (skip == null) {
+        return false;
+      }
+      for (String skipName : skip) {
+        if (name.equals(skipName)) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  private static final ConcurrentHashMap<Class<?>, FieldDescriptor[]> sFieldDescriptors =
+      new ConcurrentHashMap<>();
+
+  @NotNull
+  private static FieldDescriptor[] getFieldDescriptors(@NotNull Class<?> clazz) {
+    FieldDescriptor[] descriptors = sFieldDescriptors.get(clazz);
+    if (descriptors != null) {
+      return descriptors;
+    }
+
+    List<FieldDescriptor> result = new ArrayList<>();
+    for (Field field : clazz.getDeclaredFields()) {
       int fieldModifiers = field.getModifiers();
       // we'll skip static fields
       if (Modifier.isStatic(fieldModifiers)) {
@@ -75,16 +243,12 @@ public class BaseInfo {
         continue;
       }
 
-      if (skipFieldList != null) {
-        if (skipFieldList.contains(field.getName())) {
-          continue;
-        }
-      }
-
-      result.add(field);
+      result.add(new FieldDescriptor(field));
     }
 
-    return result.toArray(new Field[0]);
+    descriptors = result.toArray(new FieldDescriptor[0]);
+    FieldDescriptor[] existing = sFieldDescriptors.putIfAbsent(clazz, descriptors);
+    return (existing != null) ? existing : descriptors;
   }
 
 
@@ -125,14 +289,17 @@ public class BaseInfo {
     final String TAG = "getJSON";
     JSONObject result = new JSONObject();
 
-    for (Field field : getRelevantFields(skip)) {
-      String fieldName = field.getName();
+    for (FieldDescriptor descriptor : getFieldDescriptors(getClass())) {
+      if (descriptor.isSkipped(skip)) {
+        continue;
+      }
+      String fieldName = descriptor.name;
 
       try {
-        Object value = field.get(this);
+        Object value = descriptor.field.get(this);
 
         // implement special cases here
-        if (field.getType().equals(Set.class)) {
+        if (descriptor.kind == FieldDescriptor.Kind.SET) {
           value = convertSetToJSONArray((Set) value);
         }
 
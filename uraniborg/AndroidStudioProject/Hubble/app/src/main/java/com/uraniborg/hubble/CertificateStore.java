@@ -0,0 +1,131 @@
+//Copyright 2019 Uraniborg authors.
+//
+//Licensed under the Apache License, Version 2.0 (the "License");
+//you may not use this file except in compliance with the License.
+//You may obtain a copy of the License at
+//
+//http://www.apache.org/licenses/LICENSE-2.0
+//
+//Unless required by applicable law or agreed to in writing, software
+//distributed under the License is distributed on an "AS IS" BASIS,
+//WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//See the License for the specific language governing permissions and
+//limitations under the License.
+
+package com.uraniborg.hubble;
+
+import android.content.pm.Signature;
+import android.util.Base64;
+import android.util.Log;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Interns the certificates signing packages. Each distinct certificate is hashed once, the first
+ * time it is seen, and given a small integer ID; later occurrences of the same certificate bytes
+ * are resolved with a single map lookup. {@link Signature} compares and hashes by content, so
+ * certificates from different packages that are byte for byte the same map to the same ID. The
+ * store also keeps, for every certificate, the packages signed with it.
+ */
+public class CertificateStore {
+  public static final String TAG = "CERTSTORE";
+
+  private static class Entry {
+    final String hash;
+    final byte[] encodedCert;
+    final List<String> packages = new ArrayList<>();
+
+    Entry(@NotNull String hash, @NotNull byte[] encodedCert) {
+      this.hash = hash;
+      this.encodedCert = encodedCert;
+    }
+  }
+
+  private final HashMap<Signature, Integer> mIds = new HashMap<>();
+  // indexed by certificate ID, in the order certificates were first seen.
+  private final ArrayList<Entry> mEntries = new ArrayList<>();
+  private int mLookups = 0;
+
+  /**
+   * Returns the ID of a certificate, hashing and storing it if it has not been seen before.
+   * @param signature The certificate to look up.
+   * @return the certificate's ID, or -1 if it could not be hashed.
+   */
+  public int intern(@NotNull Signature signature) {
+    mLookups++;
+    Integer id = mIds.get(signature);
+    if (id != null) {
+      return id;
+    }
+
+    String hash = Utilities.computeSHA256DigestOfCertificate(signature);
+    if (hash == null) {
+      return -1;
+    }
+    id = mEntries.size();
+    mEntries.add(new Entry(hash, signature.toByteArray()));
+    mIds.put(signature, id);
+    return id;
+  }
+
+  /**
+   * Records that a package is signed with a certificate.
+   * @param id The ID returned by {@link #intern(Signature)}.
+   * @param packageName The name of the package signed with the certificate.
+   */
+  public void addSignedPackage(int id, @NotNull String packageName) {
+    mEntries.get(id).packages.add(packageName);
+  }
+
+  /**
+   * @param id The ID returned by {@link #intern(Signature)}.
+   * @return the hex encoded SHA256 digest of the certificate. The same {@link String} instance is
+   * returned for every package signed with it.
+   */
+  @NotNull
+  public String getHash(int id) {
+    return mEntries.get(id).hash;
+  }
+
+  public int size() {
+    return mEntries.size();
+  }
+
+  /**
+   * Builds the record written to the certificates file for a certificate.
+   * @param id The ID returned by {@link #intern(Signature)}.
+   * @return a {@link JSONObject} holding the certificate's hash, its Base64 encoding and the names
+   * of the packages signed with it. <code>null</code> is returned if there are any errors.
+   */
+  @Nullable
+  public JSONObject buildRecord(int id) {
+    Entry entry = mEntries.get(id);
+    JSONObject cert = new JSONObject();
+    try {
+      cert.put("hash", entry.hash);
+      cert.put("encodedCert", Base64.encodeToString(entry.encodedCert, Base64.NO_WRAP));
+      cert.put("packages", new JSONArray(entry.packages));
+    } catch (JSONException e) {
+      Log.e(TAG, String.format("Facing errors dealing with JSON: %s", e.getMessage()));
+      return null;
+    }
+    return cert;
+  }
+
+  /**
+   * Logs how many lookups the store served and how many certificates had to be hashed.
+   * @param tag The tag to log with.
+   */
+  public void logStats(@NotNull String tag) {
+    Log.d(tag, String.format("Resolved %d certificate lookups to %d distinct certificates.",
+        mLookups, mEntries.size()));
+  }
+}
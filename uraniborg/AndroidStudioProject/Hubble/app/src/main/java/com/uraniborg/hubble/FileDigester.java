@@ -0,0 +1,204 @@
+//Copyright 2019 Uraniborg authors.
+//
+//Licensed under the Apache License, Version 2.0 (the "License");
+//you may not use this file except in compliance with the License.
+//You may obtain a copy of the License at
+//
+//http://www.apache.org/licenses/LICENSE-2.0
+//
+//Unless required by applicable law or agreed to in writing, software
+//distributed under the License is distributed on an "AS IS" BASIS,
+//WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//See the License for the specific language governing permissions and
+//limitations under the License.
+
+package com.uraniborg.hubble;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Computes SHA256 digests of files. Files are read through the same small buffer loop Hubble has
+ * always used, with the digest and buffer kept per thread instead of allocated for every file.
+ * Only large files (e.g. big APKs and APEX payloads) are memory-mapped in windows, so that a
+ * digest able to hash a direct buffer in place, as Conscrypt's are, needs no copy of them.
+ *
+ * <p>There are no device measurements of the mapped path yet. On a host JVM, whose digests copy
+ * direct buffers through a heap array, it is anywhere from somewhat faster to clearly slower than
+ * reading, so it is kept to files of 16 MB and more. The running totals logged by
+ * {@link #logStats(String)} let both paths be compared on devices.
+ */
+public class FileDigester {
+  public static final String TAG = "FileDigester";
+
+  // files at least this large are memory-mapped instead of read.
+  private static final long MAP_THRESHOLD = (long) (16 * Utilities.Megabyte);
+
+  // sizes used on regular devices, and on devices reporting themselves as low on RAM.
+  private static final int READ_BUFFER_SIZE = (int) (8 * Utilities.Kilobyte);
+  private static final int LOW_RAM_READ_BUFFER_SIZE = 512;
+  private static final long MAP_WINDOW_SIZE = (long) (32 * Utilities.Megabyte);
+  private static final long LOW_RAM_MAP_WINDOW_SIZE = (long) (8 * Utilities.Megabyte);
+
+  private static volatile Boolean sIsLowRamDevice = null;
+
+  private static final ThreadLocal<MessageDigest> sDigest = new ThreadLocal<MessageDigest>() {
+    @Override
+    protected MessageDigest initialValue() {
+      try {
+        return MessageDigest.getInstance("SHA256");
+      } catch (NoSuchAlgorithmException e) {
+        Log.e(TAG, "SHA256 isn't implemented on this device.");
+        return null;
+      }
+    }
+  };
+
+  private static final ThreadLocal<byte[]> sReadBuffer = new ThreadLocal<byte[]>() {
+    @Override
+    protected byte[] initialValue() {
+      return new byte[isLowRamDevice() ? LOW_RAM_READ_BUFFER_SIZE : READ_BUFFER_SIZE];
+    }
+  };
+
+  // running totals so the two strategies can be compared from the run log.
+  private static final AtomicLong sReadFiles = new AtomicLong();
+  private static final AtomicLong sReadBytes = new AtomicLong();
+  private static final AtomicLong sReadMillis = new AtomicLong();
+  private static final AtomicLong sMappedFiles = new AtomicLong();
+  private static final AtomicLong sMappedBytes = new AtomicLong();
+  private static final AtomicLong sMappedMillis = new AtomicLong();
+
+  /**
+   * Looks up the device's memory class. Only the first call queries {@link ActivityManager}; later
+   * calls are no-ops.
+   * @param context The execution context.
+   */
+  public static void init(@NotNull Context context) {
+    if (sIsLowRamDevice != null) {
+      return;
+    }
+    synchronized (FileDigester.class) {
+      if (sIsLowRamDevice != null) {
+        return;
+      }
+      ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+      if (am == null) {
+        Log.e(TAG, "Error obtaining ActivityManager, assuming a low RAM device.");
+        sIsLowRamDevice = true;
+      } else {
+        sIsLowRamDevice = am.isLowRamDevice();
+      }
+    }
+  }
+
+  private static boolean isLowRamDevice() {
+    return sIsLowRamDevice != null && sIsLowRamDevice;
+  }
+
+  /**
+   * Computes the SHA256 digest of the content of a file.
+   * @param context The execution context, used once to look up the device's memory class.
+   * @param file The file to hash.
+   * @return the raw digest bytes. <code>null</code> is returned if the file is empty, cannot be
+   * read, or SHA256 is not available.
+   */
+  @Nullable
+  public static byte[] digest(@NotNull Context context, @NotNull File file) {
+    init(context);
+    MessageDigest md = sDigest.get();
+    if (md == null) {
+      return null;
+    }
+    md.reset();
+
+    try (FileInputStream fis = new FileInputStream(file)) {
+      FileChannel channel = fis.getChannel();
+      long filesize = channel.size();
+      if (filesize == 0) {
+        Log.e(TAG, String.format("%s is an empty file", file.getAbsolutePath()));
+        return null;
+      }
+
+      final long start = SystemClock.elapsedRealtime();
+      if (filesize >= MAP_THRESHOLD && digestMapped(channel, filesize, md)) {
+        sMappedFiles.incrementAndGet();
+        sMappedBytes.addAndGet(filesize);
+        sMappedMillis.addAndGet(SystemClock.elapsedRealtime() - start);
+      } else {
+        digestRead(fis, md);
+        sReadFiles.incrementAndGet();
+        sReadBytes.addAndGet(filesize);
+        sReadMillis.addAndGet(SystemClock.elapsedRealtime() - start);
+      }
+    } catch (FileNotFoundException e) {
+      Log.e(TAG, String.format("File %s is not found on the system!", file.getAbsolutePath()));
+      return null;
+    } catch (IOException e) {
+      Log.e(TAG, String.format("Failed to read from %s due to %s", file.getAbsolutePath(),
+          e.getMessage()));
+      md.reset();
+      return null;
+    }
+
+    return md.digest();
+  }
+
+  private static void digestRead(@NotNull FileInputStream fis, @NotNull MessageDigest md)
+      throws IOException {
+    byte[] buffer = sReadBuffer.get();
+    int read;
+    while ((read = fis.read(buffer)) != -1) {
+      md.update(buffer, 0, read);
+    }
+  }
+
+  /**
+   * Hashes the file by mapping it one window at a time.
+   * @return <code>true</code> if the whole file was hashed. <code>false</code> if the file could
+   * not be mapped, in which case the digest is reset and the caller should fall back to reading.
+   */
+  private static boolean digestMapped(@NotNull FileChannel channel, long filesize,
+                                      @NotNull MessageDigest md) {
+    long windowSize = isLowRamDevice() ? LOW_RAM_MAP_WINDOW_SIZE : MAP_WINDOW_SIZE;
+    long position = 0;
+    try {
+      while (position < filesize) {
+        long length = Math.min(windowSize, filesize - position);
+        MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        md.update(window);
+        position += length;
+      }
+    } catch (IOException e) {
+      Log.w(TAG, String.format("Failed to map file, falling back to reads: %s", e.getMessage()));
+      md.reset();
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Logs how many files and bytes went through each strategy, and how long each one took.
+   * @param tag The tag to log with.
+   */
+  public static void logStats(@NotNull String tag) {
+    Log.d(tag, String.format("Digested %d files (%d bytes) by reading in %d ms, %d files " +
+            "(%d bytes) by mapping in %d ms.", sReadFiles.get(), sReadBytes.get(),
+        sReadMillis.get(), sMappedFiles.get(), sMappedBytes.get(), sMappedMillis.get()));
+  }
+}
@@ -0,0 +1,238 @@
+//Copyright 2019 Uraniborg authors.
+//
+//Licensed under the Apache License, Version 2.0 (the "License");
+//you may not use this file except in compliance with the License.
+//You may obtain a copy of the License at
+//
+//http://www.apache.org/licenses/LICENSE-2.0
+//
+//Unless required by applicable law or agreed to in writing, software
+//distributed under the License is distributed on an "AS IS" BASIS,
+//WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//See the License for the specific language governing permissions and
+//limitations under the License.
+
+package com.uraniborg.hubble;
+
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.system.StructStat;
+import android.util.Log;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lists the regular files under one or more root directories without recursion, handing each
+ * file to a {@link Visitor} as soon as it is found.
+ *
+ * <p>Unless symlinks are to be included, every file is reported once, under its canonical path,
+ * however many symlinks point to it. Files and directories are told apart by their device and
+ * inode, from a single lstat() per entry, rather than by resolving the canonical path of every
+ * entry. Directories are only ever entered through their canonical path, so the files found in
+ * them already have canonical paths; only symlinks need to be resolved. A symlink to a file is
+ * held back until {@link #finish()}, and dropped if the file it points to turns up under one of
+ * the roots in the meantime.
+ *
+ * <p>The walker keeps the identities seen across all roots it walks, and is not thread safe.
+ */
+public class FileWalker {
+  public static final String TAG = "FILEWALKER";
+
+  /**
+   * Receives the files found by a {@link FileWalker}, on the walking thread.
+   */
+  public interface Visitor {
+    void accept(@NotNull File file);
+  }
+
+  // identifies a file or directory by its device and inode, as HashCache does.
+  private static final class FileKey {
+    final long device;
+    final long inode;
+
+    FileKey(@NotNull StructStat stat) {
+      device = stat.st_dev;
+      inode = stat.st_ino;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof FileKey)) {
+        return false;
+      }
+      FileKey key = (FileKey) other;
+      return device == key.device && inode == key.inode;
+    }
+
+    @Override
+    public int hashCode() {
+      return Long.hashCode(device) * 31 + Long.hashCode(inode);
+    }
+  }
+
+  private final boolean mIncludeSymlink;
+  private final Visitor mVisitor;
+  private final Set<FileKey> mSeenFiles = new HashSet<>();
+  private final Set<FileKey> mSeenDirectories = new HashSet<>();
+  // symlinks to files not found under the roots yet, in the order they were found.
+  private final Map<FileKey, File> mPendingLinks = new LinkedHashMap<>();
+  private long mEntries = 0;
+  private long mDirectories = 0;
+  private long mReported = 0;
+  private long mDuplicates = 0;
+  private long mFailures = 0;
+  private long mElapsedMillis = 0;
+
+  /**
+   * @param includeSymlink Whether symlinks are to be reported as files of their own, under their
+   *                       own paths. Files are then not deduplicated either.
+   * @param visitor Receives the files found.
+   */
+  public FileWalker(boolean includeSymlink, @NotNull Visitor visitor) {
+    mIncludeSymlink = includeSymlink;
+    mVisitor = visitor;
+  }
+
+  /**
+   * Reports the regular files under <code>root</code> and all of its subdirectories. Entries that
+   * cannot be read are skipped, as are directories already walked under another path.
+   * @param root The directory to walk. Nothing is reported if it is not a readable directory.
+   */
+  public void walk(@NotNull String root) {
+    final long start = System.currentTimeMillis();
+    ArrayDeque<File> directories = new ArrayDeque<>();
+    File rootDirectory = new File(root);
+    if (!mIncludeSymlink) {
+      rootDirectory = canonicalize(rootDirectory);
+    }
+    if (rootDirectory != null) {
+      StructStat stat = stat(rootDirectory, false);
+      if (stat != null && OsConstants.S_ISDIR(stat.st_mode)
+          && mSeenDirectories.add(new FileKey(stat))) {
+        directories.push(rootDirectory);
+      }
+    }
+
+    while (!directories.isEmpty()) {
+      File directory = directories.pop();
+      String[] names = directory.list();
+      if (names == null) {
+        mFailures++;
+        continue;
+      }
+      mDirectories++;
+      for (String name : names) {
+        mEntries++;
+        visitEntry(new File(directory, name), directories);
+      }
+    }
+    mElapsedMillis += System.currentTimeMillis() - start;
+  }
+
+  private void visitEntry(@NotNull File entry, @NotNull ArrayDeque<File> directories) {
+    StructStat stat = stat(entry, true);
+    if (stat == null) {
+      return;
+    }
+    final boolean isLink = OsConstants.S_ISLNK(stat.st_mode);
+    if (isLink) {
+      // the rest is decided by what the link points to; broken links are skipped.
+      stat = stat(entry, false);
+      if (stat == null) {
+        return;
+      }
+    }
+
+    FileKey key = new FileKey(stat);
+    if (OsConstants.S_ISDIR(stat.st_mode)) {
+      // also guards against symlinks looping back to a directory being walked.
+      if (!mSeenDirectories.add(key)) {
+        mDuplicates++;
+        return;
+      }
+      File directory = (isLink && !mIncludeSymlink) ? canonicalize(entry) : entry;
+      if (directory != null) {
+        directories.push(directory);
+      }
+    } else if (OsConstants.S_ISREG(stat.st_mode)) {
+      if (mIncludeSymlink) {
+        report(entry);
+      } else if (mSeenFiles.contains(key)) {
+        mDuplicates++;
+      } else if (isLink) {
+        if (mPendingLinks.containsKey(key)) {
+          mDuplicates++;
+        } else {
+          mPendingLinks.put(key, entry);
+        }
+      } else {
+        mSeenFiles.add(key);
+        if (mPendingLinks.remove(key) != null) {
+          mDuplicates++;
+        }
+        report(entry);
+      }
+    }
+  }
+
+  /**
+   * Reports the files that were only found through symlinks, under their canonical paths. Must be
+   * called once all roots have been walked.
+   */
+  public void finish() {
+    final long start = System.currentTimeMillis();
+    for (Map.Entry<FileKey, File> link : mPendingLinks.entrySet()) {
+      File file = canonicalize(link.getValue());
+      if (file != null) {
+        mSeenFiles.add(link.getKey());
+        report(file);
+      }
+    }
+    mPendingLinks.clear();
+    mElapsedMillis += System.currentTimeMillis() - start;
+  }
+
+  private void report(@NotNull File file) {
+    mReported++;
+    mVisitor.accept(file);
+  }
+
+  private StructStat stat(@NotNull File file, boolean noFollow) {
+    try {
+      return noFollow ? Os.lstat(file.getPath()) : Os.stat(file.getPath());
+    } catch (ErrnoException e) {
+      mFailures++;
+      return null;
+    }
+  }
+
+  private File canonicalize(@NotNull File file) {
+    try {
+      return file.getCanonicalFile();
+    } catch (IOException e) {
+      Log.e(TAG, String.format("Failed to get canonical file for %s: %s",
+          file.getAbsolutePath(), e.getMessage()));
+      mFailures++;
+      return null;
+    }
+  }
+
+  /**
+   * Logs how much the walker has visited and reported so far.
+   * @param tag The tag to log under.
+   */
+  public void logStats(@NotNull String tag) {
+    Log.d(tag, String.format("Walked %d entries in %d directories in %d ms: %d files reported, " +
+        "%d duplicates skipped, %d entries unreadable.", mEntries, mDirectories, mElapsedMillis,
+        mReported, mDuplicates, mFailures));
+  }
+}
@@ -0,0 +1,287 @@
+//Copyright 2019 Uraniborg authors.
+//
+//Licensed under the Apache License, Version 2.0 (the "License");
+//you may not use this file except in compliance with the License.
+//You may obtain a copy of the License at
+//
+//http://www.apache.org/licenses/LICENSE-2.0
+//
+//Unless required by applicable law or agreed to in writing, software
+//distributed under the License is distributed on an "AS IS" BASIS,
+//WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//See the License for the specific language governing permissions and
+//limitations under the License.
+
+package com.uraniborg.hubble;
+
+import android.content.Context;
+import android.os.Build;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.StructStat;
+import android.util.Log;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A persistent cache of file digests, stored in the app's files dir. An entry is reused only if
+ * the file at the same path still has the same device, inode, size, modification time and status
+ * change time as when it was hashed. The whole cache is dropped when the build fingerprint changes,
+ * since an OTA may replace system files while keeping their size and (fixed) timestamps. Entries
+ * that are not looked up during a run are not written back, so the cache only ever holds files
+ * from the latest scan.
+ *
+ * <p>Timestamps are compared in nanoseconds from API 27, and in whole seconds before that. As in
+ * git's handling of "racily clean" files, a file whose timestamps fall within a second of when it
+ * was hashed is not cached at all, since it could be changed again without its timestamps
+ * changing.
+ */
+public class HashCache {
+  public static final String TAG = "HASHCACHE";
+
+  private static final String CACHE_FILENAME = "hash_cache.txt";
+  private static final String FORMAT_VERSION = "2";
+  private static final long NANOS_PER_SECOND = 1000000000L;
+  private static final String SEPARATOR = "\t";
+
+  private static volatile HashCache sInstance = null;
+
+  private final File mCacheFile;
+  private final String mFingerprint;
+  private final Map<String, Entry> mPreviousEntries = new ConcurrentHashMap<>();
+  private final Map<String, Entry> mCurrentEntries = new ConcurrentHashMap<>();
+  private final AtomicLong mHits = new AtomicLong();
+  private final AtomicLong mMisses = new AtomicLong();
+  private final AtomicLong mRacy = new AtomicLong();
+
+  /**
+   * What a file looked like when it was hashed, and its digest.
+   */
+  static class Entry {
+    final long device;
+    final long inode;
+    final long size;
+    final long mtimeNanos;
+    final long ctimeNanos;
+    String hash;
+
+    Entry(long device, long inode, long size, long mtimeNanos, long ctimeNanos,
+          @Nullable String hash) {
+      this.device = device;
+      this.inode = inode;
+      this.size = size;
+      this.mtimeNanos = mtimeNanos;
+      this.ctimeNanos = ctimeNanos;
+      this.hash = hash;
+    }
+
+    Entry(@NotNull StructStat stat) {
+      this(stat.st_dev, stat.st_ino, stat.st_size, getMtimeNanos(stat), getCtimeNanos(stat), null);
+    }
+
+    boolean matches(@NotNull Entry other) {
+      return device == other.device && inode == other.inode && size == other.size &&
+          mtimeNanos == other.mtimeNanos && ctimeNanos == other.ctimeNanos;
+    }
+  }
+
+  // st_mtim and st_ctim only exist from API 27; before that timestamps have whole seconds.
+  static long getMtimeNanos(@NotNull StructStat stat) {
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+      return stat.st_mtim.tv_sec * NANOS_PER_SECOND + stat.st_mtim.tv_nsec;
+    }
+    return stat.st_mtime * NANOS_PER_SECOND;
+  }
+
+  static long getCtimeNanos(@NotNull StructStat stat) {
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+      return stat.st_ctim.tv_sec * NANOS_PER_SECOND + stat.st_ctim.tv_nsec;
+    }
+    return stat.st_ctime * NANOS_PER_SECOND;
+  }
+
+  HashCache(@NotNull File cacheFile, @Nullable String fingerprint) {
+    mCacheFile = cacheFile;
+    mFingerprint = fingerprint;
+  }
+
+  /**
+   * Loads the cache from the app's files dir and makes it the instance used by
+   * {@link Utilities#computeSHA256DigestOfFile(Context, String)} until {@link #close()} is called.
+   * @param context The execution context.
+   */
+  public static void open(@NotNull Context context) {
+    HashCache cache = new HashCache(new File(context.getFilesDir(), CACHE_FILENAME),
+        Build.FINGERPRINT);
+    cache.load();
+    sInstance = cache;
+  }
+
+  /**
+   * Writes the entries used in this run back to disk, logs the hit and miss counts, and stops
+   * serving lookups.
+   */
+  public static void close() {
+    HashCache cache = sInstance;
+    sInstance = null;
+    if (cache == null) {
+      return;
+    }
+    cache.save();
+    Log.d(TAG, String.format("Hash cache: %d hits, %d misses, %d entries kept, %d recently " +
+        "changed files not cached.", cache.mHits.get(), cache.mMisses.get(),
+        cache.mCurrentEntries.size(), cache.mRacy.get()));
+  }
+
+  @Nullable
+  public static HashCache getInstance() {
+    return sInstance;
+  }
+
+  /**
+   * Returns the cached digest of a file if it is unchanged since it was last hashed, and hashes
+   * it otherwise.
+   * @param context The execution context.
+   * @param pathToFile The path of the file to hash. Callers pass canonical paths, and the
+   *                   device/inode check guards against a path now pointing at another file.
+   * @return the hex encoded SHA256 digest of the file, or <code>null</code> if hashing failed.
+   */
+  @Nullable
+  public String getOrCompute(@NotNull Context context, @NotNull String pathToFile) {
+    StructStat stat;
+    try {
+      stat = Os.stat(pathToFile);
+    } catch (ErrnoException e) {
+      mMisses.incrementAndGet();
+      return Utilities.computeUncachedSHA256DigestOfFile(context, pathToFile);
+    }
+
+    Entry current = new Entry(stat);
+    String hash = lookup(pathToFile, current);
+    if (hash != null) {
+      return hash;
+    }
+
+    final long hashedAtNanos = System.currentTimeMillis() * 1000000L;
+    hash = Utilities.computeUncachedSHA256DigestOfFile(context, pathToFile);
+    if (hash != null) {
+      current.hash = hash;
+      store(pathToFile, current, hashedAtNanos);
+    }
+    return hash;
+  }
+
+  /**
+   * Returns the digest cached for a path if the file there still looks the same, and keeps the
+   * entry for the next run.
+   * @param pathToFile The path of the file.
+   * @param current What the file looks like now.
+   * @return the cached digest, or <code>null</code> if the file must be hashed.
+   */
+  @Nullable
+  String lookup(@NotNull String pathToFile, @NotNull Entry current) {
+    Entry entry = mPreviousEntries.get(pathToFile);
+    if (entry != null && entry.matches(current)) {
+      mHits.incrementAndGet();
+      mCurrentEntries.put(pathToFile, entry);
+      return entry.hash;
+    }
+    mMisses.incrementAndGet();
+    return null;
+  }
+
+  /**
+   * Keeps a freshly computed digest for the next run, unless the file was changed too recently
+   * for its timestamps to tell a later change apart.
+   * @param pathToFile The path of the file.
+   * @param entry What the file looked like before it was hashed, with its digest.
+   * @param hashedAtNanos The wall clock time at which hashing started.
+   */
+  void store(@NotNull String pathToFile, @NotNull Entry entry, long hashedAtNanos) {
+    if (pathToFile.contains(SEPARATOR) || pathToFile.contains("\n")) {
+      return;
+    }
+    // a file changed this recently may be changed again without its timestamps moving on.
+    if (Math.max(entry.mtimeNanos, entry.ctimeNanos) + NANOS_PER_SECOND <= hashedAtNanos) {
+      mCurrentEntries.put(pathToFile, entry);
+    } else {
+      mRacy.incrementAndGet();
+    }
+  }
+
+  void load() {
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+        new FileInputStream(mCacheFile), StandardCharsets.UTF_8))) {
+      String header = reader.readLine();
+      if (header == null || !header.equals(getHeader())) {
+        Log.d(TAG, "Hash cache was written by another build or format, ignoring it.");
+        return;
+      }
+
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] parts = line.split(SEPARATOR);
+        if (parts.length != 7) {
+          Log.w(TAG, String.format("Skipping malformed cache line: %s", line));
+          continue;
+        }
+        try {
+          mPreviousEntries.put(parts[0], new Entry(Long.parseLong(parts[1]),
+              Long.parseLong(parts[2]), Long.parseLong(parts[3]), Long.parseLong(parts[4]),
+              Long.parseLong(parts[5]), parts[6]));
+        } catch (NumberFormatException e) {
+          Log.w(TAG, String.format("Skipping malformed cache line: %s", line));
+        }
+      }
+    } catch (FileNotFoundException e) {
+      Log.d(TAG, "No hash cache found, starting from scratch.");
+    } catch (IOException e) {
+      Log.e(TAG, String.format("Failed to read hash cache: %s", e.getMessage()));
+      mPreviousEntries.clear();
+    }
+  }
+
+  void save() {
+    // write to a temporary file first so that an interrupted run never leaves a truncated cache.
+    File tmpFile = new File(mCacheFile.getPath() + ".tmp");
+    try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+        new FileOutputStream(tmpFile), StandardCharsets.UTF_8))) {
+      writer.write(getHeader());
+      writer.newLine();
+      for (Map.Entry<String, Entry> item : mCurrentEntries.entrySet()) {
+        Entry entry = item.getValue();
+        writer.write(item.getKey() + SEPARATOR + entry.device + SEPARATOR + entry.inode +
+            SEPARATOR + entry.size + SEPARATOR + entry.mtimeNanos + SEPARATOR + entry.ctimeNanos +
+            SEPARATOR + entry.hash);
+        writer.newLine();
+      }
+    } catch (IOException e) {
+      Log.e(TAG, String.format("Failed to write hash cache: %s", e.getMessage()));
+      return;
+    }
+
+    if (!tmpFile.renameTo(mCacheFile)) {
+      Log.e(TAG, String.format("Failed to move %s into place", tmpFile.getAbsolutePath()));
+    }
+  }
+
+  @NotNull
+  private String getHeader() {
+    return FORMAT_VERSION + SEPARATOR + mFingerprint;
+  }
+}
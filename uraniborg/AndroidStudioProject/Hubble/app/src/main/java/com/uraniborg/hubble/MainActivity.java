@@ -26,6 +26,7 @@ import android.os.Build;
 import android.os.Bundle;
 import android.os.SystemClock;
 import android.util.Base64;
+import android.util.Base64OutputStream;
 import android.util.Log;
 
 import java.util.TreeMap;
@@ -33,15 +34,23 @@ import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import org.json.JSONArray;
-import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 public class MainActivity extends AppCompatActivity {
   final String TAG = "HUBBLE";
@@ -54,7 +63,7 @@ public class MainActivity extends AppCompatActivity {
   // We're changing to TreeMap so that package names are sorted. This would ease output comparison.
   private TreeMap<String, PackageMetadata> mAllPackages;
   private TreeMap<String, PackageMetadata> mPreinstalledPackages;
-  private HashMap<String, byte[]> mAllCertificates;
+  private CertificateStore mAllCertificates;
   private HashMap<String, BinaryInfo> mAllBinaries;
   private HashMap<String, LibraryInfo> mAllLibraries;
   private HardwareInfo mHardwareInfo;
@@ -62,22 +71,47 @@ public class MainActivity extends AppCompatActivity {
   private PackageManager mPackageManager;
   private DevicePropertiesInfo mDeviceProps;
   private Executor mExecutor;
-
-  private static String HEADER_FMT = "{ \"version\": \"%s\", \"%s\": %d,\n\"%s\": [\n";
-  private static String FOOTER_STR = "\n]\n}";
+  private WorkerPool mHashingPool;
+  // insertion-ordered so that stage timings are logged in the order they ran.
+  private LinkedHashMap<String, Long> mStageDurations;
+  private ScanOptions mOptions;
+  private ScanManifest mManifest;
+
+  // only set in pipelined mode, where records are written out as they are collected.
+  private PipelineSection mPackageSection;
+  private PipelineSection mPreinstalledSection;
+  private PipelineSection mCertSection;
+  private PipelineSection mBinSection;
+  private PipelineSection mLibSection;
+  private Set<String> mPublishedBinaryHashes;
+  private Set<String> mPublishedLibraryHashes;
+
+  private static final String PKG_FILENAME = "packages.txt";
+  private static final String PREINSTALL_FILENAME = "preinstalled_packages.txt";
+  private static final String CERT_FILENAME = "certificates.txt";
+  private static final String BIN_FILENAME = "binaries.txt";
+  private static final String LIB_FILENAME = "libraries.txt";
+  private static final String DELTA_FILENAME = "delta.txt";
+  private static final String[] PKG_SKIP_FIELDS = new String[] {"ref"};
+  // the number of records each pipelined section may buffer before its collector blocks.
+  private static final int SECTION_CAPACITY = 64;
 
 
   private boolean initialize() {
     final String tag = TAG + "-INIT";
     mAllPackages = new TreeMap<>();
     mPreinstalledPackages = new TreeMap<>();
-    mAllCertificates = new HashMap<>();
-    mAllBinaries = new HashMap<>();
-    mAllLibraries = new HashMap<>();
+    mAllCertificates = new CertificateStore();
+    // kept in walk order, as the pipelined mode writes them.
+    mAllBinaries = new LinkedHashMap<>();
+    mAllLibraries = new LinkedHashMap<>();
     mHardwareInfo = new HardwareInfo();
     mBuildInfo = new BuildInfo();
     mDeviceProps = new DevicePropertiesInfo();
     mExecutor = Executors.newSingleThreadExecutor();
+    mHashingPool = WorkerPool.sizedToCores("hash");
+    mStageDurations = new LinkedHashMap<>();
+    mOptions = ScanOptions.fromIntent(getIntent());
 
     mPackageManager = getPackageManager();
     if (mPackageManager == null) {
@@ -87,6 +121,43 @@ public class MainActivity extends AppCompatActivity {
     return true;
   }
 
+  private void recordStageDuration(@NotNull String stage, long start) {
+    mStageDurations.put(stage, SystemClock.elapsedRealtime() - start);
+  }
+
+  private void runStage(@NotNull String stage, @NotNull Runnable runnable) {
+    final long start = SystemClock.elapsedRealtime();
+    runnable.run();
+    recordStageDuration(stage, start);
+  }
+
+  private void openSections() {
+    mPackageSection = new PipelineSection(this, PKG_FILENAME, VERSION, "totalPackages",
+        "packages", PKG_SKIP_FIELDS, SECTION_CAPACITY);
+    mPreinstalledSection = new PipelineSection(this, PREINSTALL_FILENAME, VERSION,
+        "totalPreinstalledPackages", "preinstalledPackages", PKG_SKIP_FIELDS, SECTION_CAPACITY);
+    mCertSection = new PipelineSection(this, CERT_FILENAME, VERSION, "totalCerts", "certs", null,
+        SECTION_CAPACITY);
+    mBinSection = new PipelineSection(this, BIN_FILENAME, VERSION, "totalBins", "bins", null,
+        SECTION_CAPACITY);
+    mLibSection = new PipelineSection(this, LIB_FILENAME, VERSION, "totalLibs", "libs", null,
+        SECTION_CAPACITY);
+    mPublishedBinaryHashes = new HashSet<>();
+    mPublishedLibraryHashes = new HashSet<>();
+  }
+
+  private void finishSections() {
+    final String tag = TAG + "-PIPE";
+    // the sections drain concurrently; finish() waits for each one to commit its file.
+    int packages = mPackageSection.finish();
+    int preinstalled = mPreinstalledSection.finish();
+    int certs = mCertSection.finish();
+    int bins = mBinSection.finish();
+    int libs = mLibSection.finish();
+    Log.d(tag, String.format("Wrote %d packages, %d preinstalled packages, %d certs, %d bins " +
+        "and %d libs.", packages, preinstalled, certs, bins, libs));
+  }
+
   /*
    * other constants not available/visible from SDK
    */
@@ -108,6 +179,10 @@ public class MainActivity extends AppCompatActivity {
                 PackageManager.GET_SERVICES |
                 PackageManager.GET_SHARED_LIBRARY_FILES |
                 MATCH_APEX;
+    if (ScanOptions.PROFILE_MINIMAL.equals(mOptions.profile)) {
+      // providers carry no permissions that the minimal profile collects.
+      flags &= ~PackageManager.GET_PROVIDERS;
+    }
 
     if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
       flags |= PackageManager.GET_SIGNING_CERTIFICATES | MATCH_HIDDEN_UNTIL_INSTALLED_COMPONENTS;
@@ -115,16 +190,154 @@ public class MainActivity extends AppCompatActivity {
       flags |= PackageManager.GET_SIGNATURES;
     }
 
-    @SuppressLint("WrongConstant") List<PackageInfo> installedPackagesAndApexes = mPackageManager.
-        getInstalledPackages(flags);
-    for (PackageInfo pkg : installedPackagesAndApexes) {
-      PackageMetadata pkgMetadata = PackageMetadata.parse(this, pkg, mPackageManager);
-      mAllPackages.put(pkg.packageName, pkgMetadata);
+    // packages are parsed on the pool, but handed to addPackage() one at a time on this thread
+    // and in list order, so the results are the same as parsing them one after another. The pool
+    // only keeps a few packages per worker in flight, which bounds how many APKs are hashed at
+    // the same time and how many parsed packages wait to be added.
+    final ParseStats stats = new ParseStats();
+    final long start = SystemClock.elapsedRealtime();
+    final int[] extractedCount = new int[1];
+    WorkerPool parsingPool = new WorkerPool("parse", mOptions.parseParallelism,
+        mOptions.parseParallelism * 2);
+    WorkerPool.Sink<PackageMetadata> sink = pkgMetadata -> {
+      if (pkgMetadata != null) {
+        addPackage(pkgMetadata);
+        extractedCount[0]++;
+      }
+    };
+    if (mOptions.chunked) {
+      final int packageFlags = flags;
+      List<String> packageNames = listInstalledPackageNames();
+      Log.d(tag, String.format("Listed %d packages (including APEX)", packageNames.size()));
+      parsingPool.forEachOrdered(packageNames, pkgName -> {
+        PackageInfo pkg = getPackageInfo(pkgName, packageFlags);
+        return (pkg == null) ? null : extractPackage(pkg, stats);
+      }, sink);
+    } else {
+      @SuppressLint("WrongConstant") List<PackageInfo> installedPackagesAndApexes =
+          mPackageManager.getInstalledPackages(flags);
+      if (mPackageSection != null) {
+        // records are written in the order they are published, so publish them in the same order
+        // as the TreeMap used in sequential mode.
+        Collections.sort(installedPackagesAndApexes,
+            (first, second) -> first.packageName.compareTo(second.packageName));
+      }
+      parsingPool.forEachOrdered(installedPackagesAndApexes,
+          pkg -> extractPackage(pkg, stats), sink);
+    }
+    parsingPool.shutdown();
+    Log.d(tag, String.format("There are %d packages (including APEX)", extractedCount[0]));
+    if (stats.parsedCount > 0) {
+      Log.d(tag, String.format(Locale.US, "Parsed %d packages with the %s profile in %.2f ms " +
+          "(%.2f ms per package, slowest %s at %.2f ms).", stats.parsedCount, mOptions.profile,
+          stats.parseNanos / 1e6, stats.parseNanos / 1e6 / stats.parsedCount,
+          stats.slowestPackage, stats.slowestParseNanos / 1e6));
+    }
+    Log.d(tag, String.format(Locale.US, "Extracted %d packages on %d workers in %d ms.",
+        extractedCount[0], parsingPool.getParallelism(), SystemClock.elapsedRealtime() - start));
+    parsingPool.logWorkerStats(tag);
+  }
+
+  /**
+   * Lists the names of all installed packages and APEXes, sorted. Only the bare package records
+   * are requested, so the reply stays small however many components the packages declare.
+   * @return the sorted package names.
+   */
+  @NotNull
+  private List<String> listInstalledPackageNames() {
+    int flags = MATCH_APEX;
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+      flags |= MATCH_HIDDEN_UNTIL_INSTALLED_COMPONENTS;
+    }
+    @SuppressLint("WrongConstant") List<PackageInfo> packages =
+        mPackageManager.getInstalledPackages(flags);
+    List<String> packageNames = new ArrayList<>(packages.size());
+    for (PackageInfo pkg : packages) {
+      packageNames.add(pkg.packageName);
+    }
+    Collections.sort(packageNames);
+    return packageNames;
+  }
+
+  /**
+   * Fetches the full {@link PackageInfo} of a single package.
+   * @param pkgName The name of the package.
+   * @param flags The same flags that would be passed to getInstalledPackages.
+   * @return the package's {@link PackageInfo}, or <code>null</code> if it has been uninstalled
+   * since it was listed.
+   */
+  @Nullable
+  private PackageInfo getPackageInfo(@NotNull String pkgName, int flags) {
+    final String tag = TAG + "-PKGS";
+    try {
+      @SuppressLint("WrongConstant") PackageInfo pkg =
+          mPackageManager.getPackageInfo(pkgName, flags);
+      return pkg;
+    } catch (PackageManager.NameNotFoundException e) {
+      Log.e(tag, String.format("Package %s disappeared while scanning: %s", pkgName,
+          e.getMessage()));
+      return null;
+    }
+  }
+
+  /**
+   * Turns a package into the metadata to be recorded for it, reusing the previous run's record
+   * in differential mode; called on the parsing pool.
+   * @param pkg The package to extract.
+   * @param stats Records the time taken if the package had to be parsed.
+   * @return the package's metadata.
+   */
+  @NotNull
+  private PackageMetadata extractPackage(@NotNull PackageInfo pkg, @NotNull ParseStats stats) {
+    final String tag = TAG + "-PKGS";
+    PackageMetadata pkgMetadata = null;
+    if (mOptions.differential) {
+      pkgMetadata = mManifest.reuse(pkg);
+    }
+    if (pkgMetadata == null) {
+      final long parseStart = System.nanoTime();
+      pkgMetadata = PackageMetadata.parse(this, pkg, mPackageManager, mOptions.profile);
+      final long elapsed = System.nanoTime() - parseStart;
+      Log.v(tag, String.format(Locale.US, "Parsed %s (%s profile) in %.2f ms", pkg.packageName,
+          mOptions.profile, elapsed / 1e6));
+      stats.record(pkg.packageName, elapsed);
+    }
+    mManifest.observe(pkg, pkgMetadata);
+    return pkgMetadata;
+  }
+
+  // the parse times of the packages parsed so far, updated from every parsing worker.
+  private static class ParseStats {
+    int parsedCount = 0;
+    long parseNanos = 0;
+    long slowestParseNanos = 0;
+    String slowestPackage = null;
+
+    synchronized void record(@NotNull String packageName, long elapsed) {
+      parsedCount++;
+      parseNanos += elapsed;
+      if (elapsed > slowestParseNanos) {
+        slowestParseNanos = elapsed;
+        slowestPackage = packageName;
+      }
+    }
+  }
+
+  private void addPackage(@NotNull PackageMetadata pkgMetadata) {
+    if (mPackageSection == null) {
+      mAllPackages.put(pkgMetadata.name, pkgMetadata);
       if (pkgMetadata.isPreinstalled) {
-        mPreinstalledPackages.put(pkg.packageName, pkgMetadata);
+        mPreinstalledPackages.put(pkgMetadata.name, pkgMetadata);
       }
+      return;
+    }
+
+    // in pipelined mode, certificates are resolved right away since the package is not kept.
+    registerCertificates(pkgMetadata);
+    mPackageSection.publish(pkgMetadata);
+    if (pkgMetadata.isPreinstalled) {
+      mPreinstalledSection.publish(pkgMetadata);
     }
-    Log.d(tag, String.format("There are %d packages (including APEX)", mAllPackages.size()));
   }
 
   private void getAllCertificates() {
@@ -135,37 +348,79 @@ public class MainActivity extends AppCompatActivity {
         Log.e(tag, String.format("Unexpected error getting pkg metadata for %s", pkgName));
         continue;
       }
-      PackageInfo pkgInfo = pkgMetadata.ref;
-      Signature[] signatures;
-      if (Build.VERSION.SDK_INT < Build.VERSION_CODES.P) {
-        signatures = pkgInfo.signatures;
-      } else {
-        SigningInfo signingInfo = pkgInfo.signingInfo;
-        if (signingInfo.hasMultipleSigners()) {
-          signatures = signingInfo.getApkContentsSigners();
-        } else {
-          signatures = signingInfo.getSigningCertificateHistory();
+      registerCertificates(pkgMetadata);
+    }
+
+    if (mCertSection != null) {
+      // certificates are only published once every package is registered, so that their records
+      // list all the packages signed with them.
+      for (int id = 0; id < mAllCertificates.size(); id++) {
+        JSONObject cert = mAllCertificates.buildRecord(id);
+        if (cert != null) {
+          mCertSection.publish(cert);
         }
       }
-      if (signatures == null) {
-        Log.e(tag, String.format("Failed to grab signature for package: %s", pkgName));
-        continue;
+    }
+    mAllCertificates.logStats(tag);
+  }
+
+  /**
+   * Interns the certificates signing a package, fills in {@link PackageMetadata#certIds}, and
+   * records the package as signed with each of them.
+   * @param pkgMetadata The package whose certificates are to be registered.
+   */
+  private void registerCertificates(@NotNull PackageMetadata pkgMetadata) {
+    final String tag = TAG + "-CERT";
+    String pkgName = pkgMetadata.name;
+    PackageInfo pkgInfo = pkgMetadata.ref;
+    Signature[] signatures;
+    if (Build.VERSION.SDK_INT < Build.VERSION_CODES.P) {
+      signatures = pkgInfo.signatures;
+    } else {
+      SigningInfo signingInfo = pkgInfo.signingInfo;
+      if (signingInfo.hasMultipleSigners()) {
+        signatures = signingInfo.getApkContentsSigners();
+      } else {
+        signatures = signingInfo.getSigningCertificateHistory();
       }
+    }
+    if (signatures == null) {
+      Log.e(tag, String.format("Failed to grab signature for package: %s", pkgName));
+      return;
+    }
 
-      JSONArray signaturesJSONArray = new JSONArray();
-      for (Signature signature : signatures) {
-        String encodedSignatureDigest = Utilities.computeSHA256DigestOfCertificate(signature);
-        if (encodedSignatureDigest == null) {
-          Log.e(tag, String.format("Failed to compute hash for cert of package: %s", pkgName));
-          continue;
-        }
-        if (!mAllCertificates.containsKey(encodedSignatureDigest)) {
-          mAllCertificates.put(encodedSignatureDigest, signature.toByteArray());
-        }
-        signaturesJSONArray.put(encodedSignatureDigest);
+    List<String> certIds = new ArrayList<>(signatures.length);
+    for (Signature signature : signatures) {
+      int certId = mAllCertificates.intern(signature);
+      if (certId < 0) {
+        Log.e(tag, String.format("Failed to compute hash for cert of package: %s", pkgName));
+        continue;
       }
-      pkgMetadata.certIds = signaturesJSONArray;
+      mAllCertificates.addSignedPackage(certId, pkgName);
+      certIds.add(mAllCertificates.getHash(certId));
     }
+    pkgMetadata.certIds = certIds.toArray(new String[0]);
+  }
+
+  /**
+   * Lists the files under all of the <code>roots</code>, each file once under its canonical path
+   * even if it is also reachable through symlinks or from several roots.
+   * @param tag The tag to log the walk's statistics under.
+   * @param roots The directories to walk.
+   * @return the files found, sorted.
+   */
+  @NotNull
+  private List<File> listFiles(@NotNull String tag, @NotNull String[] roots) {
+    List<File> files = new ArrayList<>();
+    FileWalker walker = new FileWalker(false, files::add);
+    for (String root : roots) {
+      walker.walk(root);
+    }
+    walker.finish();
+    walker.logStats(tag);
+    // sort so that merging the results does not depend on directory listing or scheduling order.
+    Collections.sort(files);
+    return files;
   }
 
   private void getAllBinaries() {
@@ -179,53 +434,80 @@ public class MainActivity extends AppCompatActivity {
     }
     Log.d(tag, String.format("binPaths: %s", binPaths));
 
-    String[] paths = binPaths.split(":");
-    List<File> accessibleBins = new ArrayList<>();
-    for (String path : paths) {
-      accessibleBins.addAll(Utilities.getAllFilesInDirectory(path, false));
-    }
+    long start = SystemClock.elapsedRealtime();
+    List<File> accessibleBins = listFiles(tag, binPaths.split(":"));
+    recordStageDuration("binaries-list", start);
 
-    for (File binFile : accessibleBins) {
+    start = SystemClock.elapsedRealtime();
+    mHashingPool.forEachOrdered(accessibleBins, binFile -> {
       BinaryInfo binaryInfo = new BinaryInfo();
       binaryInfo.name = binFile.getName();
       binaryInfo.installPath = binFile.getParent();
       binaryInfo.hash = Utilities.computeSHA256DigestOfFile(this, binFile.getAbsolutePath());
       binaryInfo.fileSizeInBytes = binFile.length();
+      return binaryInfo;
+    }, this::addBinary);
+    recordStageDuration("binaries-hash", start);
+    Log.d(tag, String.format("There are %d accessible binaries.", (mBinSection == null) ?
+        mAllBinaries.size() : mPublishedBinaryHashes.size()));
+  }
 
-      if (binaryInfo.hash != null ) {
+  private void addBinary(@Nullable BinaryInfo binaryInfo) {
+    if (binaryInfo == null || binaryInfo.hash == null) {
+      return;
+    }
+    if (mBinSection == null) {
+      // the first file with a given hash in walk order represents it, in both modes.
+      if (!mAllBinaries.containsKey(binaryInfo.hash)) {
         mAllBinaries.put(binaryInfo.hash, binaryInfo);
       }
+    } else if (mPublishedBinaryHashes.add(binaryInfo.hash)) {
+      mBinSection.publish(binaryInfo);
     }
-    Log.d(tag, String.format("There are %d accessible binaries.", mAllBinaries.size()));
   }
 
   private void getAllLibraries() {
     final String tag = TAG + "-LIBINFO";
 
-    for (String libDir : LibraryInfo.LIB_PATHS) {
-      for (File libFile : Utilities.getAllFilesInDirectory(libDir, false)) {
-        LibraryInfo libraryInfo = new LibraryInfo();
-        libraryInfo.name = libFile.getName();
-        libraryInfo.installPath = libFile.getParent();
+    long start = SystemClock.elapsedRealtime();
+    List<File> libFiles = listFiles(tag, LibraryInfo.LIB_PATHS);
+    recordStageDuration("libraries-list", start);
 
-        if (libraryInfo.installPath.contains("64")) {
-          libraryInfo.bits = 64;
-        } else {
-          libraryInfo.bits = 32;
-        }
+    start = SystemClock.elapsedRealtime();
+    mHashingPool.forEachOrdered(libFiles, libFile -> {
+      LibraryInfo libraryInfo = new LibraryInfo();
+      libraryInfo.name = libFile.getName();
+      libraryInfo.installPath = libFile.getParent();
 
-        libraryInfo.hash = Utilities.computeSHA256DigestOfFile(this, libFile.getAbsolutePath());
+      if (libraryInfo.installPath.contains("64")) {
+        libraryInfo.bits = 64;
+      } else {
+        libraryInfo.bits = 32;
+      }
 
-        if (libraryInfo.hash != null) {
-          mAllLibraries.put(libraryInfo.hash, libraryInfo);
-        }
+      libraryInfo.hash = Utilities.computeSHA256DigestOfFile(this, libFile.getAbsolutePath());
+      libraryInfo.fileSizeInBytes = libFile.length();
+      return libraryInfo;
+    }, this::addLibrary);
+    recordStageDuration("libraries-hash", start);
 
-        libraryInfo.fileSizeInBytes = libFile.length();
-      }
-    }
+    Log.d(tag, String.format("There are %d libraries found.", (mLibSection == null) ?
+        mAllLibraries.size() : mPublishedLibraryHashes.size()));
 
-    Log.d(tag, String.format("There are %d libraries found.", mAllLibraries.size()));
+  }
 
+  private void addLibrary(@Nullable LibraryInfo libraryInfo) {
+    if (libraryInfo == null || libraryInfo.hash == null) {
+      return;
+    }
+    if (mLibSection == null) {
+      // the first file with a given hash in walk order represents it, in both modes.
+      if (!mAllLibraries.containsKey(libraryInfo.hash)) {
+        mAllLibraries.put(libraryInfo.hash, libraryInfo);
+      }
+    } else if (mPublishedLibraryHashes.add(libraryInfo.hash)) {
+      mLibSection.publish(libraryInfo);
+    }
   }
 
   private void getHardwareInformation() {
@@ -242,26 +524,6 @@ public class MainActivity extends AppCompatActivity {
     //getSystemService(Context.PERSISTENT_DATA_BLOCK_SERVICE);
   }
 
-  @Nullable
-  private String getKernelVersion() {
-    // there are many ways to get the kernel version, but not all can succeed on every build
-    String cmd = "uname -a";
-    ExecutionResult result = Utilities.executeInShell(cmd);
-    if (!result.exceptionTriggered && result.exitCode == 0 && !result.stdOutStr.trim().isEmpty()) {
-      return result.stdOutStr.trim();
-    }
-
-    // if we reach here, means the first method didn't give us satisfactory answers.
-    cmd = "cat /proc/version";
-    result = Utilities.executeInShell(cmd);
-    if (!result.exceptionTriggered && result.exitCode == 0 && !result.stdOutStr.trim().isEmpty()) {
-      return result.stdOutStr.trim();
-    }
-
-    // if we reach here, we're out of ideas!! :(
-    return null;
-  }
-
   private void getBuildInformation() {
     final String tag = TAG + "-BUILDINFO";
     mBuildInfo.apiLevel = Build.VERSION.SDK_INT;
@@ -271,7 +533,7 @@ public class MainActivity extends AppCompatActivity {
     mBuildInfo.radioVersion = Build.getRadioVersion();
     mBuildInfo.locale = Locale.getDefault().getDisplayName();
 
-    mBuildInfo.kernelVersion = getKernelVersion();
+    mBuildInfo.kernelVersion = SystemInfoReader.readKernelVersion();
     if (mBuildInfo.kernelVersion == null || mBuildInfo.kernelVersion.isEmpty()) {
       mBuildInfo.kernelVersion = Build.UNKNOWN;
     }
@@ -279,6 +541,24 @@ public class MainActivity extends AppCompatActivity {
 
   private void getDeviceProperties() {
     final String tag = TAG + "-GETPROP";
+    TreeMap<String, String> props = SystemInfoReader.readProperties();
+    if (props != null) {
+      // encoded while being written, so that the getprop style text is never built as a whole.
+      ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+      try {
+        try (Writer writer = new OutputStreamWriter(
+            new Base64OutputStream(encoded, Base64.NO_WRAP), StandardCharsets.UTF_8)) {
+          SystemInfoReader.writeProperties(props, writer);
+        }
+        mDeviceProps.encodedDevProps = new String(encoded.toByteArray(),
+            StandardCharsets.US_ASCII);
+        return;
+      } catch (IOException e) {
+        Log.e(tag, String.format("Failed to encode device properties: %s", e.getMessage()));
+      }
+    }
+
+    // the property areas could not be read, so fall back to asking getprop.
     String cmd = "getprop";
     ExecutionResult result = Utilities.executeInShell(cmd);
     if (!result.exceptionTriggered && result.exitCode != null && result.exitCode.intValue() == 0 &&
@@ -291,108 +571,73 @@ public class MainActivity extends AppCompatActivity {
 
   private void writePackagesToFile() {
     final String tag = TAG + "-W_PKG";
-    final String PKG_FILENAME = "packages.txt";
-    final String PREINSTALL_FILENAME = "preinstalled_packages.txt";
-
-    String header = String.format(HEADER_FMT, VERSION, "totalPackages", mAllPackages.size(),
-        "packages");
-    Utilities.writeToFile(this, PKG_FILENAME, header, false);
-    int i = 0;
-    String[] skip = new String[] {"ref"};
-    for (PackageMetadata pkgMetadata : mAllPackages.values()) {
-      Utilities.writeToFile(this, PKG_FILENAME, pkgMetadata.getJSONString(skip), true);
-      if (i == mAllPackages.size() - 1) {
-        continue;
+
+    try (ResultWriter writer = ResultWriter.open(this, PKG_FILENAME, VERSION)) {
+      writer.writeHeader("totalPackages", mAllPackages.size(), "packages");
+      for (PackageMetadata pkgMetadata : mAllPackages.values()) {
+        writer.writeRecord(pkgMetadata, PKG_SKIP_FIELDS);
       }
-      Utilities.writeToFile(this, PKG_FILENAME, ",\n", true);
-      i++;
+      writer.writeFooter();
+    } catch (IOException e) {
+      Log.e(tag, String.format("Failed to write %s: %s", PKG_FILENAME, e.getMessage()));
     }
-    Utilities.writeToFile(this, PKG_FILENAME, FOOTER_STR, true);
 
     // write preload info to preload file.
-    header = String.format(HEADER_FMT, VERSION, "totalPreinstalledPackages",
-            mPreinstalledPackages.size(), "preinstalledPackages");
-    Utilities.writeToFile(this, PREINSTALL_FILENAME, header, false);
-    int j = 0;
-    for (PackageMetadata preinstalledMetadata : mPreinstalledPackages.values()) {
-      Utilities.writeToFile(this, PREINSTALL_FILENAME,
-              preinstalledMetadata.getJSONString(skip), true);
-      if (j == mPreinstalledPackages.size() - 1) {
-        continue;
+    try (ResultWriter writer = ResultWriter.open(this, PREINSTALL_FILENAME, VERSION)) {
+      writer.writeHeader("totalPreinstalledPackages", mPreinstalledPackages.size(),
+          "preinstalledPackages");
+      for (PackageMetadata preinstalledMetadata : mPreinstalledPackages.values()) {
+        writer.writeRecord(preinstalledMetadata, PKG_SKIP_FIELDS);
       }
-      Utilities.writeToFile(this, PREINSTALL_FILENAME, ",\n", true);
-      j++;
+      writer.writeFooter();
+    } catch (IOException e) {
+      Log.e(tag, String.format("Failed to write %s: %s", PREINSTALL_FILENAME, e.getMessage()));
     }
-    Utilities.writeToFile(this, PREINSTALL_FILENAME, FOOTER_STR, true);
   }
 
   private void writeCertsToFile() {
     final String tag = TAG + "-W_CRT";
-    final String CERT_FILENAME = "certificates.txt";
-
-    String header = String.format(HEADER_FMT, VERSION, "totalCerts", mAllCertificates.size(),
-        "certs");
-    Utilities.writeToFile(this, CERT_FILENAME, header, false);
-    int i = 0;
-    for (String certHash : mAllCertificates.keySet()) {
-      JSONObject cert = new JSONObject();
-      try {
-        cert.put("hash", certHash);
-        cert.put("encodedCert", Base64.encodeToString(mAllCertificates.get(certHash),
-            Base64.NO_WRAP));
-        Utilities.writeToFile(this, CERT_FILENAME, cert.toString(2), true);
-      } catch (JSONException e) {
-        Log.e(tag, String.format("Facing errors dealing with JSON: %s", e.getMessage()));
-      }
-      if (i == mAllCertificates.size() - 1) {
-        continue;
-      }
-      Utilities.writeToFile(this, CERT_FILENAME, ",\n", true);
-      i++;
 
+    try (ResultWriter writer = ResultWriter.open(this, CERT_FILENAME, VERSION)) {
+      writer.writeHeader("totalCerts", mAllCertificates.size(), "certs");
+      for (int id = 0; id < mAllCertificates.size(); id++) {
+        JSONObject cert = mAllCertificates.buildRecord(id);
+        if (cert != null) {
+          writer.writeRecord(cert);
+        }
+      }
+      writer.writeFooter();
+    } catch (IOException e) {
+      Log.e(tag, String.format("Failed to write %s: %s", CERT_FILENAME, e.getMessage()));
     }
-    Utilities.writeToFile(this, CERT_FILENAME, FOOTER_STR, true);
   }
 
   private void writeBinsToFile() {
     final String tag = TAG + "-W_BIN";
-    final String BIN_FILENAME = "binaries.txt";
-
-    String header = String.format(HEADER_FMT, this.VERSION, "totalBins", mAllBinaries.size(),
-        "bins");
-    Utilities.writeToFile(this, BIN_FILENAME, header, false);
-    int i = 0;
-    for (String binHash : mAllBinaries.keySet()) {
-      BinaryInfo binInfo = mAllBinaries.get(binHash);
-      Utilities.writeToFile(this, BIN_FILENAME, binInfo.getJSONString(null), true);
 
-      if (i == mAllBinaries.size() - 1) {
-        continue;
+    try (ResultWriter writer = ResultWriter.open(this, BIN_FILENAME, VERSION)) {
+      writer.writeHeader("totalBins", mAllBinaries.size(), "bins");
+      for (BinaryInfo binInfo : mAllBinaries.values()) {
+        writer.writeRecord(binInfo, null);
       }
-      Utilities.writeToFile(this, BIN_FILENAME, ",\n", true);
-      i++;
+      writer.writeFooter();
+    } catch (IOException e) {
+      Log.e(tag, String.format("Failed to write %s: %s", BIN_FILENAME, e.getMessage()));
     }
-    Utilities.writeToFile(this, BIN_FILENAME, FOOTER_STR, true);
   }
 
   private void writeLibsToFile() {
     final String tag = TAG + "-W_LIB";
-    final String LIB_FILENAME = "libraries.txt";
-
-    String header = String.format(HEADER_FMT, VERSION, "totalLibs", mAllLibraries.size(), "libs");
-    Utilities.writeToFile(this, LIB_FILENAME, header, false);
-    int i = 0;
-    for (String libHash : mAllLibraries.keySet()) {
-      LibraryInfo libInfo = mAllLibraries.get(libHash);
-      Utilities.writeToFile(this, LIB_FILENAME, libInfo.getJSONString(null), true);
 
-      if (i == mAllLibraries.size() - 1) {
-        continue;
+    try (ResultWriter writer = ResultWriter.open(this, LIB_FILENAME, VERSION)) {
+      writer.writeHeader("totalLibs", mAllLibraries.size(), "libs");
+      for (LibraryInfo libInfo : mAllLibraries.values()) {
+        writer.writeRecord(libInfo, null);
       }
-      Utilities.writeToFile(this, LIB_FILENAME, ",\n", true);
-      i++;
+      writer.writeFooter();
+    } catch (IOException e) {
+      Log.e(tag, String.format("Failed to write %s: %s", LIB_FILENAME, e.getMessage()));
     }
-    Utilities.writeToFile(this, LIB_FILENAME, FOOTER_STR, true);
   }
 
   private void writeHardwareToFile() {
@@ -422,11 +667,13 @@ public class MainActivity extends AppCompatActivity {
   private void writeSingleInfoToFile(@NotNull String filename, @NotNull String countName,
                                      @NotNull String fieldName, @NotNull BaseInfo info,
                                      @Nullable String[] skip) {
-    StringBuilder sbToWrite = new StringBuilder(String.format(HEADER_FMT, VERSION, countName, 1,
-        fieldName));
-    sbToWrite.append(info.getJSONString(skip));
-    sbToWrite.append(FOOTER_STR);
-    Utilities.writeToFile(this, filename, sbToWrite.toString(), false);
+    try (ResultWriter writer = ResultWriter.open(this, filename, VERSION)) {
+      writer.writeHeader(countName, 1, fieldName);
+      writer.writeRecord(info, skip);
+      writer.writeFooter();
+    } catch (IOException e) {
+      Log.e(TAG, String.format("Failed to write %s: %s", filename, e.getMessage()));
+    }
   }
 
   @Override
@@ -442,28 +689,60 @@ public class MainActivity extends AppCompatActivity {
     mExecutor.execute(() -> {
       final long start = SystemClock.elapsedRealtime();
 
-      getInstalledPackagesInformation();
-      getAllCertificates();
-      getAllBinaries();
-      getAllLibraries();
-      getHardwareInformation();
-      getBuildInformation();
-      getDeviceProperties();
+      runStage("hash-cache-load", () -> HashCache.open(this));
+      // must happen before packages.txt is rewritten, as differential scans restore from it.
+      runStage("manifest-load", () ->
+          mManifest = ScanManifest.load(this, VERSION, mOptions.profile, mOptions.differential));
+      if (mOptions.pipelined) {
+        openSections();
+      }
+      runStage("packages", this::getInstalledPackagesInformation);
+      runStage("certificates", this::getAllCertificates);
+      runStage("binaries", this::getAllBinaries);
+      runStage("libraries", this::getAllLibraries);
+      runStage("hardware", this::getHardwareInformation);
+      runStage("build", this::getBuildInformation);
+      runStage("properties", this::getDeviceProperties);
+      mHashingPool.shutdown();
+      FileDigester.logStats(TAG);
+      HashCache.close();
 
       final long duration = SystemClock.elapsedRealtime() - start;
 
-      writePackagesToFile();
-      writeCertsToFile();
-      writeBinsToFile();
-      writeLibsToFile();
-      writeHardwareToFile();
-      writeBuildToFile();
-      writeDevicePropsToFile();
+      if (mOptions.archive) {
+        // every result file written from here on becomes a section of the archive.
+        ResultArchive.open(this, VERSION);
+      }
+      if (mOptions.pipelined) {
+        // packages, certificates, binaries and libraries were written while being collected.
+        runStage("write-pipelined", this::finishSections);
+      } else {
+        runStage("write-packages", this::writePackagesToFile);
+        runStage("write-certificates", this::writeCertsToFile);
+        runStage("write-binaries", this::writeBinsToFile);
+        runStage("write-libraries", this::writeLibsToFile);
+      }
+      runStage("write-hardware", this::writeHardwareToFile);
+      runStage("write-build", this::writeBuildToFile);
+      runStage("write-properties", this::writeDevicePropsToFile);
+      if (mOptions.differential) {
+        runStage("write-delta", () -> mManifest.writeDelta(this, DELTA_FILENAME));
+      }
+      if (mOptions.archive) {
+        runStage("write-archive", ResultArchive::close);
+      }
+      // saved only once packages.txt is complete, so that the two always describe the same run.
+      runStage("manifest-save", () -> mManifest.save(this));
 
+      Log.d(TAG, String.format("Scan options: %s", mOptions));
       Log.d(TAG, String.format("Execution took %d ms.", duration));
+      for (Map.Entry<String, Long> stage : mStageDurations.entrySet()) {
+        Log.d(TAG, String.format("  Stage %s took %d ms.", stage.getKey(), stage.getValue()));
+      }
       Log.w(TAG, String.format("Build version: %d", Build.VERSION.SDK_INT));
       Log.w(TAG,
-              String.format("Results are available at: %s", Utilities.getResultStorageDirectory(this)));
+              String.format("Results are available at: %s", mOptions.archive ?
+                  ResultArchive.getArchiveFile(this) : Utilities.getResultStorageDirectory(this)));
       runOnUiThread(() -> textView.setText(getResources().getString(R.string.scan_end)));
     });
   }
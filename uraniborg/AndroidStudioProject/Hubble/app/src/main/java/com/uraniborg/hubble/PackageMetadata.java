@@ -49,7 +49,8 @@ public class PackageMetadata extends BaseInfo {
   protected CharSequence description = null;
   protected int versionCode;
   protected String versionName;
-  protected JSONArray certIds;
+  // the hashes of the signing certificates, shared with every other package signed with them.
+  protected String[] certIds;
   protected boolean isEnabled = false;
   protected boolean isTestOnly = false;
   protected boolean isFactoryTest = false;
@@ -87,6 +88,23 @@ public class PackageMetadata extends BaseInfo {
    */
   static public PackageMetadata parse(Context context, @NotNull PackageInfo packageInfo,
                                       @NotNull PackageManager packageManager) {
+    return parse(context, packageInfo, packageManager, ScanOptions.PROFILE_FULL);
+  }
+
+  /**
+   * @param context The context to operate in.
+   * @param packageInfo A valid {@link PackageInfo} object containing information about an APK.
+   * @param packageManager A valid {@link PackageManager} object used to load app description.
+   * @param profile Either {@link ScanOptions#PROFILE_FULL}, or {@link ScanOptions#PROFILE_MINIMAL}
+   *                to leave out the app label and description as well as the activities,
+   *                services, receivers and providers. Only the special permissions guarding
+   *                components are still collected, as the risk analyzer relies on them.
+   * @return a valid {@link PackageMetadata} object containing parsed information about the APK.
+   */
+  static public PackageMetadata parse(Context context, @NotNull PackageInfo packageInfo,
+                                      @NotNull PackageManager packageManager,
+                                      @NotNull String profile) {
+    final boolean isFull = !ScanOptions.PROFILE_MINIMAL.equals(profile);
     PackageMetadata result = new PackageMetadata();
     result.ref = packageInfo;
     result.name = packageInfo.packageName;
@@ -95,7 +113,9 @@ public class PackageMetadata extends BaseInfo {
       ApplicationInfo appInfo = packageInfo.applicationInfo;
       result.installLocation = appInfo.sourceDir;
       result.hash = Utilities.computeSHA256DigestOfFile(context, appInfo.sourceDir);
-      result.label = context.getPackageManager().getApplicationLabel(appInfo).toString();
+      if (isFull) {
+        result.label = context.getPackageManager().getApplicationLabel(appInfo).toString();
+      }
       result.isEnabled = appInfo.enabled;
 
       result.hasCode = ((appInfo.flags & ApplicationInfo.FLAG_HAS_CODE) != 0);
@@ -112,7 +132,9 @@ public class PackageMetadata extends BaseInfo {
       }
 
       result.isHidden = (appInfo.flags & ApplicationInfo.FLAG_INSTALLED) == 0;
-      result.description = appInfo.loadDescription(packageManager);
+      if (isFull) {
+        result.description = appInfo.loadDescription(packageManager);
+      }
     }
 
     if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
@@ -141,10 +163,14 @@ public class PackageMetadata extends BaseInfo {
     result.parseRequestedPermissions();
 
     // deal with components
-    result.parseServices(packageManager);
-    result.parseActivityInfo(packageManager, false);
-    result.parseActivityInfo(packageManager, true);
-    result.parseProviders(packageManager);
+    if (isFull) {
+      result.parseServices(packageManager);
+      result.parseActivityInfo(packageManager, false);
+      result.parseActivityInfo(packageManager, true);
+      result.parseProviders(packageManager);
+    } else {
+      result.parseComponentPermissions();
+    }
 
     return result;
   }
@@ -166,6 +192,35 @@ public class PackageMetadata extends BaseInfo {
     return null;
   }
 
+  /**
+   * Collects the special permissions guarding the APK's services, activities and receivers into
+   * {@link PackageMetadata#permissionsSpecial}, without resolving anything else about the
+   * components. Unlike the full component parsers, this needs no resources from the APK.
+   */
+  public void parseComponentPermissions() {
+    if (ref.services != null) {
+      for (ServiceInfo service : ref.services) {
+        addSpecialPermission(service.permission);
+      }
+    }
+    if (ref.activities != null) {
+      for (ActivityInfo activityInfo : ref.activities) {
+        addSpecialPermission(activityInfo.permission);
+      }
+    }
+    if (ref.receivers != null) {
+      for (ActivityInfo activityInfo : ref.receivers) {
+        addSpecialPermission(activityInfo.permission);
+      }
+    }
+  }
+
+  private void addSpecialPermission(@Nullable String permName) {
+    if (permName != null && PERMISSION_PATTERN.matcher(permName).matches()) {
+      this.permissionsSpecial.add(permName);
+    }
+  }
+
   public boolean parseServices(PackageManager packageManager) {
     final String TAG = "parseServices";
     ServiceInfo[] services = ref.services;
@@ -182,10 +237,7 @@ public class PackageMetadata extends BaseInfo {
       }
 
       // parse permission
-      String permName = service.permission;
-      if (permName != null && PERMISSION_PATTERN.matcher(permName).matches()) {
-        this.permissionsSpecial.add(permName);
-      }
+      addSpecialPermission(service.permission);
       try {
         serviceJson.put("permission", (service.permission == null) ? JSONObject.NULL : service.permission);
       } catch (JSONException e) {
@@ -229,10 +281,7 @@ public class PackageMetadata extends BaseInfo {
       }
 
       // parse permission
-      String permName = activityInfo.permission;
-      if (permName != null && PERMISSION_PATTERN.matcher(permName).matches()) {
-        this.permissionsSpecial.add(permName);
-      }
+      addSpecialPermission(activityInfo.permission);
       try {
         resultJson.put("permission", (activityInfo.permission == null) ? JSONObject.NULL :
             activityInfo.permission);
@@ -0,0 +1,171 @@
+//Copyright 2019 Uraniborg authors.
+//
+//Licensed under the Apache License, Version 2.0 (the "License");
+//you may not use this file except in compliance with the License.
+//You may obtain a copy of the License at
+//
+//http://www.apache.org/licenses/LICENSE-2.0
+//
+//Unless required by applicable law or agreed to in writing, software
+//distributed under the License is distributed on an "AS IS" BASIS,
+//WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//See the License for the specific language governing permissions and
+//limitations under the License.
+
+package com.uraniborg.hubble;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * One result file of a pipelined scan. Collectors {@link #publish(BaseInfo)} records into a
+ * bounded queue while a dedicated writer thread drains it into a spooled {@link ResultWriter}, so
+ * that only a small window of records is held in memory at any time. Once the collectors are done,
+ * {@link #finish()} commits the result file with the final record count.
+ *
+ * <p>Records are written in the order they are published. Sections that need a particular order
+ * (e.g. packages sorted by name) rely on their collector publishing in that order.
+ */
+public class PipelineSection {
+  public static final String TAG = "PipelineSection";
+
+  // marks the end of the stream; never written.
+  private static final Object END_OF_STREAM = new Object();
+
+  private final Context mContext;
+  private final String mFilename;
+  private final String mVersion;
+  private final String mCountName;
+  private final String mFieldName;
+  private final String[] mSkip;
+  private final BlockingQueue<Object> mQueue;
+  private final Thread mWriterThread;
+  private volatile int mRecordCount = 0;
+
+  /**
+   * Creates the section and starts its writer thread.
+   * @param context The execution context.
+   * @param filename The name of the result file.
+   * @param version The Hubble version to record in the header.
+   * @param countName The name of the header field holding the record count.
+   * @param fieldName The name of the array holding the records.
+   * @param skip Field names to leave out of {@link BaseInfo} records.
+   * @param capacity The number of records that may wait in the queue before publishers block.
+   */
+  public PipelineSection(@NotNull Context context, @NotNull String filename,
+                         @NotNull String version, @NotNull String countName,
+                         @NotNull String fieldName, @Nullable String[] skip, int capacity) {
+    mContext = context;
+    mFilename = filename;
+    mVersion = version;
+    mCountName = countName;
+    mFieldName = fieldName;
+    mSkip = skip;
+    mQueue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+    mWriterThread = new Thread(this::drain, "writer-" + filename);
+    mWriterThread.start();
+  }
+
+  /**
+   * Hands a record over to the writer thread, blocking while the queue is full.
+   */
+  public void publish(@NotNull BaseInfo record) {
+    enqueue(record);
+  }
+
+  /**
+   * Hands a record over to the writer thread, blocking while the queue is full.
+   */
+  public void publish(@NotNull JSONObject record) {
+    enqueue(record);
+  }
+
+  private void enqueue(@NotNull Object record) {
+    try {
+      mQueue.put(record);
+    } catch (InterruptedException e) {
+      Log.e(TAG, String.format("Interrupted while publishing to %s, record dropped", mFilename));
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Signals that no more records will be published, and waits for the writer thread to commit
+   * the result file.
+   * @return the number of records written.
+   */
+  public int finish() {
+    enqueue(END_OF_STREAM);
+    try {
+      mWriterThread.join();
+    } catch (InterruptedException e) {
+      Log.e(TAG, String.format("Interrupted while waiting for %s to be written", mFilename));
+      Thread.currentThread().interrupt();
+    }
+    return mRecordCount;
+  }
+
+  private void drain() {
+    ResultWriter writer = null;
+    try {
+      writer = ResultWriter.openSpooled(mContext, mFilename, mVersion);
+    } catch (IOException e) {
+      Log.e(TAG, String.format("Failed to open %s: %s", mFilename, e.getMessage()));
+    }
+
+    while (true) {
+      Object record;
+      try {
+        record = mQueue.take();
+      } catch (InterruptedException e) {
+        Log.e(TAG, String.format("Writer for %s was interrupted", mFilename));
+        break;
+      }
+      if (record == END_OF_STREAM) {
+        break;
+      }
+      if (writer == null) {
+        // keep draining so that publishers never block on a writer that has failed.
+        continue;
+      }
+
+      try {
+        if (record instanceof BaseInfo) {
+          writer.writeRecord((BaseInfo) record, mSkip);
+        } else {
+          writer.writeRecord((JSONObject) record);
+        }
+      } catch (IOException e) {
+        Log.e(TAG, String.format("Failed to write to %s: %s", mFilename, e.getMessage()));
+        closeQuietly(writer);
+        writer = null;
+      }
+    }
+
+    if (writer == null) {
+      return;
+    }
+    try {
+      writer.commit(mCountName, mFieldName);
+      mRecordCount = writer.getRecordCount();
+    } catch (IOException e) {
+      Log.e(TAG, String.format("Failed to commit %s: %s", mFilename, e.getMessage()));
+    }
+  }
+
+  private void closeQuietly(@NotNull ResultWriter writer) {
+    try {
+      writer.close();
+    } catch (IOException e) {
+      Log.w(TAG, String.format("Failed to close %s: %s", mFilename, e.getMessage()));
+    }
+  }
+}
@@ -0,0 +1,280 @@
+//Copyright 2019 Uraniborg authors.
+//
+//Licensed under the Apache License, Version 2.0 (the "License");
+//you may not use this file except in compliance with the License.
+//You may obtain a copy of the License at
+//
+//http://www.apache.org/licenses/LICENSE-2.0
+//
+//Unless required by applicable law or agreed to in writing, software
+//distributed under the License is distributed on an "AS IS" BASIS,
+//WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//See the License for the specific language governing permissions and
+//limitations under the License.
+
+package com.uraniborg.hubble;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * A single zip archive holding all the result files of a scan, each deflated as its own entry.
+ * While an archive is open, {@link ResultWriter} writes every result file into it instead of into
+ * the result directory, section by section as the files are produced.
+ *
+ * <p>The last entry, <code>index.txt</code>, is stored uncompressed and lists the offset of every
+ * section in the archive along with its compressed and uncompressed size, so that a consumer can
+ * seek straight to one section and inflate only that one. The offsets are only known once the
+ * sections have been written, so the index comes last rather than first; like any zip entry, it
+ * can be located through the archive's central directory.
+ */
+public class ResultArchive {
+  public static final String TAG = "RESULTARCHIVE";
+
+  public static final String ARCHIVE_FILENAME = "results.zip";
+  public static final String INDEX_FILENAME = "index.txt";
+  private static final int BUFFER_SIZE = (int) (64 * Utilities.Kilobyte);
+
+  private static volatile ResultArchive sInstance = null;
+
+  // where one section ended up in the archive.
+  private static class Section {
+    ZipEntry entry;
+    long headerOffset;
+    long dataOffset;
+  }
+
+  // counts the bytes written to the archive file, which gives the offset of every section.
+  private static class CountingOutputStream extends FilterOutputStream {
+    long count = 0;
+
+    CountingOutputStream(@NotNull OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(@NotNull byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+  }
+
+  // the stream of the section being written; closing it closes the section, not the archive.
+  private class SectionStream extends OutputStream {
+    private boolean mClosed = false;
+
+    @Override
+    public void write(int b) throws IOException {
+      mZip.write(b);
+    }
+
+    @Override
+    public void write(@NotNull byte[] b, int off, int len) throws IOException {
+      mZip.write(b, off, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (!mClosed) {
+        mClosed = true;
+        closeSection();
+      }
+    }
+  }
+
+  private final String mVersion;
+  private final File mPartFile;
+  private final File mArchiveFile;
+  private final CountingOutputStream mCounter;
+  private final ZipOutputStream mZip;
+  // all of the below are guarded by this.
+  private final List<Section> mSections = new ArrayList<>();
+  private Section mOpenSection = null;
+
+  private ResultArchive(@NotNull String version, @NotNull File archiveFile) throws IOException {
+    mVersion = version;
+    mArchiveFile = archiveFile;
+    mPartFile = new File(archiveFile.getPath() + ".part");
+    mCounter = new CountingOutputStream(new BufferedOutputStream(
+        new FileOutputStream(mPartFile), BUFFER_SIZE));
+    mZip = new ZipOutputStream(mCounter);
+  }
+
+  /**
+   * @param context The execution context.
+   * @return the location of the archive in {@link Utilities#getResultStorageDirectory(Context)}.
+   */
+  @NotNull
+  public static File getArchiveFile(@NotNull Context context) {
+    return new File(Utilities.getResultStorageDirectory(context), ARCHIVE_FILENAME);
+  }
+
+  /**
+   * Starts a new archive and makes it the one {@link ResultWriter} writes to until
+   * {@link #close()} is called. The previous archive is only replaced once the new one is closed.
+   * @param context The execution context.
+   * @param version The Hubble version to record in the index.
+   */
+  public static void open(@NotNull Context context, @NotNull String version) {
+    File archiveFile = getArchiveFile(context);
+    File resultDir = archiveFile.getParentFile();
+    if (resultDir != null && !resultDir.exists()) {
+      resultDir.mkdirs();
+    }
+    try {
+      sInstance = new ResultArchive(version, archiveFile);
+    } catch (IOException e) {
+      Log.e(TAG, String.format("Failed to open %s: %s", archiveFile.getAbsolutePath(),
+          e.getMessage()));
+    }
+  }
+
+  /**
+   * Writes the index, completes the archive and moves it into place. Result files written after
+   * this go to the result directory again.
+   */
+  public static void close() {
+    ResultArchive archive = sInstance;
+    sInstance = null;
+    if (archive != null) {
+      archive.finish();
+    }
+  }
+
+  @Nullable
+  public static ResultArchive getInstance() {
+    return sInstance;
+  }
+
+  /**
+   * Starts a new section of the archive. Only one section is written at a time; if another one is
+   * still open, this waits until it is closed.
+   * @param name The name of the section, which is the name the result file would have had.
+   * @return a writer for the section's content. Closing it closes the section.
+   * @throws IOException if the section cannot be started.
+   */
+  @NotNull
+  public Writer openSection(@NotNull String name) throws IOException {
+    synchronized (this) {
+      while (mOpenSection != null) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IOException("Interrupted while waiting to write " + name);
+        }
+      }
+      Section section = new Section();
+      section.entry = new ZipEntry(name);
+      section.entry.setMethod(ZipEntry.DEFLATED);
+      section.headerOffset = mCounter.count;
+      mZip.putNextEntry(section.entry);
+      // the local header has been written out, and the section's data starts right after it.
+      section.dataOffset = mCounter.count;
+      mOpenSection = section;
+    }
+    return new BufferedWriter(new OutputStreamWriter(new SectionStream(),
+        StandardCharsets.UTF_8), BUFFER_SIZE);
+  }
+
+  private synchronized void closeSection() throws IOException {
+    Section section = mOpenSection;
+    mOpenSection = null;
+    notifyAll();
+    if (section == null) {
+      return;
+    }
+    // fills in the entry's sizes and checksum.
+    mZip.closeEntry();
+    mSections.add(section);
+  }
+
+  private synchronized void finish() {
+    long size = 0;
+    try {
+      if (mOpenSection != null) {
+        Log.e(TAG, String.format("Section %s was never closed", mOpenSection.entry.getName()));
+      }
+      writeIndex();
+      mZip.close();
+      for (Section section : mSections) {
+        size += section.entry.getSize();
+      }
+    } catch (IOException | JSONException e) {
+      Log.e(TAG, String.format("Failed to complete %s: %s", mArchiveFile.getAbsolutePath(),
+          e.getMessage()));
+      try {
+        mZip.close();
+      } catch (IOException closeException) {
+        // already reported above.
+      }
+      mPartFile.delete();
+      return;
+    }
+    if (!mPartFile.renameTo(mArchiveFile)) {
+      Log.e(TAG, String.format("Failed to move %s into place", mPartFile.getAbsolutePath()));
+      return;
+    }
+    Log.d(TAG, String.format("Wrote %d sections to %s: %d bytes, %d bytes uncompressed.",
+        mSections.size(), mArchiveFile.getAbsolutePath(), mArchiveFile.length(), size));
+  }
+
+  private void writeIndex() throws IOException, JSONException {
+    JSONArray sections = new JSONArray();
+    for (Section section : mSections) {
+      JSONObject record = new JSONObject();
+      record.put("name", section.entry.getName());
+      record.put("headerOffset", section.headerOffset);
+      record.put("dataOffset", section.dataOffset);
+      record.put("compressedSize", section.entry.getCompressedSize());
+      record.put("size", section.entry.getSize());
+      record.put("crc32", section.entry.getCrc());
+      sections.put(record);
+    }
+    JSONObject index = new JSONObject();
+    index.put("version", mVersion);
+    index.put("totalSections", mSections.size());
+    index.put("sections", sections);
+    byte[] content = index.toString(2).getBytes(StandardCharsets.UTF_8);
+
+    // stored, so that the index can be read without inflating anything.
+    CRC32 crc = new CRC32();
+    crc.update(content);
+    ZipEntry entry = new ZipEntry(INDEX_FILENAME);
+    entry.setMethod(ZipEntry.STORED);
+    entry.setSize(content.length);
+    entry.setCompressedSize(content.length);
+    entry.setCrc(crc.getValue());
+    mZip.putNextEntry(entry);
+    mZip.write(content);
+    mZip.closeEntry();
+  }
+}
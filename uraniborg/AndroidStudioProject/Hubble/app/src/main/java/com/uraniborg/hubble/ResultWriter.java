@@ -0,0 +1,282 @@
+//Copyright 2019 Uraniborg authors.
+//
+//Licensed under the Apache License, Version 2.0 (the "License");
+//you may not use this file except in compliance with the License.
+//You may obtain a copy of the License at
+//
+//http://www.apache.org/licenses/LICENSE-2.0
+//
+//Unless required by applicable law or agreed to in writing, software
+//distributed under the License is distributed on an "AS IS" BASIS,
+//WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//See the License for the specific language governing permissions and
+//limitations under the License.
+
+package com.uraniborg.hubble;
+
+import android.content.Context;
+import android.util.JsonWriter;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Streams one Hubble result file. The file is opened once and written through a buffer, and each
+ * record is emitted token by token with a {@link JsonWriter} as it is handed over, instead of being
+ * built as a string first. The layout matches what the result parsers expect: a header carrying
+ * the version and record count, the records as 2-space indented JSON objects separated by
+ * <code>",\n"</code>, and a footer closing the array and the document.
+ *
+ * <p>While a {@link ResultArchive} is open, the result file is written as a section of the
+ * archive instead.
+ *
+ * <p>When the number of records is not known up front, {@link #openSpooled(Context, String,
+ * String)} writes the records to a spool file first, and {@link #commit(String, String)} assembles
+ * the result file once the count is known.
+ */
+public class ResultWriter implements Closeable {
+  public static final String TAG = "ResultWriter";
+
+  private static final String HEADER_FMT = "{ \"version\": \"%s\", \"%s\": %d,\n\"%s\": [\n";
+  private static final String FOOTER_STR = "\n]\n}";
+  private static final String RECORD_SEPARATOR = ",\n";
+  private static final String INDENT = "  ";
+  private static final int BUFFER_SIZE = (int) (64 * Utilities.Kilobyte);
+
+  private final Writer mWriter;
+  private final String mVersion;
+  private final File mSpoolFile;
+  private final File mTargetFile;
+  private int mRecordCount = 0;
+
+  private ResultWriter(@NotNull Writer writer, @NotNull String version, @Nullable File spoolFile,
+                       @NotNull File targetFile) {
+    mWriter = writer;
+    mVersion = version;
+    mSpoolFile = spoolFile;
+    mTargetFile = targetFile;
+  }
+
+  /**
+   * Opens (and truncates) a result file in {@link Utilities#getResultStorageDirectory(Context)}.
+   * @param context The execution context.
+   * @param filename The name of the file to write to.
+   * @param version The Hubble version to record in the header.
+   * @return a {@link ResultWriter} for the file. Callers must close it.
+   * @throws IOException if the file cannot be opened.
+   */
+  @NotNull
+  public static ResultWriter open(@NotNull Context context, @NotNull String filename,
+                                  @NotNull String version) throws IOException {
+    File dataFile = getResultFile(context, filename);
+    return new ResultWriter(openTarget(dataFile), version, null, dataFile);
+  }
+
+  /**
+   * Opens a writer whose records go to a spool file in the app's cache dir. Nothing appears in
+   * the result file until {@link #commit(String, String)} is called.
+   * @param context The execution context.
+   * @param filename The name of the result file to eventually write to.
+   * @param version The Hubble version to record in the header.
+   * @return a {@link ResultWriter} for the file. Callers must commit or close it.
+   * @throws IOException if the spool file cannot be opened.
+   */
+  @NotNull
+  public static ResultWriter openSpooled(@NotNull Context context, @NotNull String filename,
+                                         @NotNull String version) throws IOException {
+    File spoolFile = new File(context.getCacheDir(), filename + ".part");
+    return new ResultWriter(openBufferedWriter(spoolFile), version, spoolFile,
+        getResultFile(context, filename));
+  }
+
+  @NotNull
+  private static File getResultFile(@NotNull Context context, @NotNull String filename) {
+    File resultDir = Utilities.getResultStorageDirectory(context);
+    if (!resultDir.exists()) {
+      resultDir.mkdirs();
+    }
+    return new File(resultDir, filename);
+  }
+
+  // writes into the open ResultArchive, if any, instead of the result file itself.
+  @NotNull
+  private static Writer openTarget(@NotNull File resultFile) throws IOException {
+    ResultArchive archive = ResultArchive.getInstance();
+    if (archive != null) {
+      return archive.openSection(resultFile.getName());
+    }
+    return openBufferedWriter(resultFile);
+  }
+
+  @NotNull
+  private static Writer openBufferedWriter(@NotNull File file) throws IOException {
+    return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file),
+        StandardCharsets.UTF_8), BUFFER_SIZE);
+  }
+
+  public int getRecordCount() {
+    return mRecordCount;
+  }
+
+  public void writeHeader(@NotNull String countName, int count, @NotNull String fieldName)
+      throws IOException {
+    mWriter.write(formatHeader(countName, count, fieldName));
+  }
+
+  @NotNull
+  private String formatHeader(@NotNull String countName, int count, @NotNull String fieldName) {
+    return String.format(Locale.US, HEADER_FMT, mVersion, countName, count, fieldName);
+  }
+
+  public void writeFooter() throws IOException {
+    mWriter.write(FOOTER_STR);
+  }
+
+  /**
+   * Writes one record made of the serializable fields of <code>info</code>.
+   * @param info The record to write.
+   * @param skip Field names to leave out, see {@link BaseInfo#getJSONString(String[])}.
+   */
+  public void writeRecord(@NotNull BaseInfo info, @Nullable String[] skip) throws IOException {
+    info.writeJSON(beginRecord(), skip);
+  }
+
+  /**
+   * Writes one record made of an already assembled {@link JSONObject}.
+   * @param record The record to write.
+   */
+  public void writeRecord(@NotNull JSONObject record) throws IOException {
+    writeValue(beginRecord(), record);
+  }
+
+  @NotNull
+  private JsonWriter beginRecord() throws IOException {
+    if (mRecordCount > 0) {
+      mWriter.write(RECORD_SEPARATOR);
+    }
+    mRecordCount++;
+    // a JsonWriter only accepts a single top-level value, so each record gets its own. It writes
+    // straight through to mWriter and holds no buffered state, so it doesn't need to be closed.
+    JsonWriter jsonWriter = new JsonWriter(mWriter);
+    jsonWriter.setIndent(INDENT);
+    return jsonWriter;
+  }
+
+  /**
+   * Finishes a writer opened with {@link #openSpooled(Context, String, String)}: writes the header
+   * with the number of records written so far, the spooled records and the footer to the result
+   * file, then deletes the spool file.
+   * @param countName The name of the header field holding the record count.
+   * @param fieldName The name of the array holding the records.
+   * @throws IOException if the spool file cannot be read or the result file cannot be written.
+   */
+  public void commit(@NotNull String countName, @NotNull String fieldName) throws IOException {
+    if (mSpoolFile == null) {
+      throw new IllegalStateException("commit() is only supported on spooled writers");
+    }
+    mWriter.close();
+
+    try (Writer writer = openTarget(mTargetFile);
+         Reader spool = new InputStreamReader(new FileInputStream(mSpoolFile),
+             StandardCharsets.UTF_8)) {
+      writer.write(formatHeader(countName, mRecordCount, fieldName));
+      char[] buffer = new char[BUFFER_SIZE];
+      int read;
+      while ((read = spool.read(buffer)) != -1) {
+        writer.write(buffer, 0, read);
+      }
+      writer.write(FOOTER_STR);
+    } finally {
+      mSpoolFile.delete();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    mWriter.close();
+  }
+
+  /**
+   * Writes a value as JSON, following the same conversions that {@link JSONObject} applies when
+   * it is stringified: {@link JSONObject#NULL} and <code>null</code> become <code>null</code>,
+   * sets and <code>int</code>/{@link String} arrays become arrays, and any other non-primitive
+   * value is written as its string form.
+   * @param writer The writer to emit tokens to.
+   * @param value The value to write.
+   */
+  static void writeValue(@NotNull JsonWriter writer, @Nullable Object value) throws IOException {
+    if (value == null || value == JSONObject.NULL) {
+      writer.nullValue();
+    } else if (value instanceof JSONObject) {
+      JSONObject object = (JSONObject) value;
+      writer.beginObject();
+      Iterator<String> keys = object.keys();
+      while (keys.hasNext()) {
+        String key = keys.next();
+        writer.name(key);
+        writeValue(writer, object.opt(key));
+      }
+      writer.endObject();
+    } else if (value instanceof JSONArray) {
+      JSONArray array = (JSONArray) value;
+      writer.beginArray();
+      for (int i = 0; i < array.length(); i++) {
+        writeValue(writer, array.opt(i));
+      }
+      writer.endArray();
+    } else if (value instanceof Set) {
+      writer.beginArray();
+      for (Object item : (Set<?>) value) {
+        writeValue(writer, item);
+      }
+      writer.endArray();
+    } else if (value instanceof int[]) {
+      writer.beginArray();
+      for (int item : (int[]) value) {
+        writer.value(item);
+      }
+      writer.endArray();
+    } else if (value instanceof String[]) {
+      writer.beginArray();
+      for (String item : (String[]) value) {
+        writeValue(writer, item);
+      }
+      writer.endArray();
+    } else if (value.getClass().isArray()) {
+      // other array types were never converted by BaseInfo, and end up as empty arrays.
+      writer.beginArray();
+      writer.endArray();
+    } else if (value instanceof Boolean) {
+      writer.value((Boolean) value);
+    } else if (value instanceof Double || value instanceof Float) {
+      double number = ((Number) value).doubleValue();
+      // JSONObject prints integral floating point values without a fractional part.
+      if (number == (long) number) {
+        writer.value((long) number);
+      } else {
+        writer.value(number);
+      }
+    } else if (value instanceof Number) {
+      writer.value(((Number) value).longValue());
+    } else {
+      writer.value(value.toString());
+    }
+  }
+}
@@ -0,0 +1,432 @@
+//Copyright 2019 Uraniborg authors.
+//
+//Licensed under the Apache License, Version 2.0 (the "License");
+//you may not use this file except in compliance with the License.
+//You may obtain a copy of the License at
+//
+//http://www.apache.org/licenses/LICENSE-2.0
+//
+//Unless required by applicable law or agreed to in writing, software
+//distributed under the License is distributed on an "AS IS" BASIS,
+//WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//See the License for the specific language governing permissions and
+//limitations under the License.
+
+package com.uraniborg.hubble;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.os.Build;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.StructStat;
+import android.util.JsonReader;
+import android.util.Log;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Remembers, across runs, which version of every package a scan has seen, so that a differential
+ * scan can tell which packages are unchanged since the previous run.
+ *
+ * <p>A package is considered unchanged when its last update time, version code, and the size,
+ * modification and status change times and inode of its APK all match the previous run. The
+ * times are compared as precisely as {@link HashCache} compares them. For unchanged packages, the
+ * record written to the previous run's <code>packages.txt</code> is restored instead of parsing
+ * and hashing the package again. Every run records the packages it saw, whether or not it is
+ * differential, so that the next differential run has something to compare with.
+ */
+public class ScanManifest {
+  public static final String TAG = "SCANMANIFEST";
+
+  private static final String MANIFEST_FILENAME = "package_manifest.txt";
+  private static final String FORMAT_VERSION = "2";
+  private static final String SEPARATOR = "\t";
+
+  public static final String CHANGE_ADDED = "added";
+  public static final String CHANGE_REMOVED = "removed";
+  public static final String CHANGE_CHANGED = "changed";
+
+  private final String mVersion;
+  private final String mProfile;
+  private final Map<String, String> mPreviousKeys = new HashMap<>();
+  private final Map<String, JSONObject> mPreviousRecords = new HashMap<>();
+  // sorted so that the manifest and the delta list packages in a stable order.
+  private final Map<String, String> mCurrentKeys = Collections.synchronizedMap(new TreeMap<>());
+  private final Map<String, String> mChanges = Collections.synchronizedMap(new TreeMap<>());
+  private final Map<String, String> mCurrentHashes = Collections.synchronizedMap(new HashMap<>());
+  private int mReused = 0;
+
+  ScanManifest(@NotNull String version, @NotNull String profile) {
+    mVersion = version;
+    mProfile = profile;
+  }
+
+  /**
+   * Loads the manifest written by the previous run.
+   * @param context The execution context.
+   * @param version The Hubble version of this run. Records written by other versions are not
+   *                reused.
+   * @param profile The profile packages are parsed with in this run, see
+   *                {@link ScanOptions#EXTRA_PROFILE}. Records parsed with another profile are not
+   *                reused, as they hold a different set of fields.
+   * @param loadRecords Whether to also load the previous run's package records so that unchanged
+   *                    packages can be restored from them.
+   * @return a {@link ScanManifest} instance. It is empty if there was no usable previous manifest.
+   */
+  @NotNull
+  public static ScanManifest load(@NotNull Context context, @NotNull String version,
+                                  @NotNull String profile, boolean loadRecords) {
+    ScanManifest manifest = new ScanManifest(version, profile);
+    manifest.loadKeys(new File(context.getFilesDir(), MANIFEST_FILENAME));
+    if (loadRecords && !manifest.mPreviousKeys.isEmpty()) {
+      File packagesFile = new File(Utilities.getResultStorageDirectory(context), "packages.txt");
+      File archiveFile = ResultArchive.getArchiveFile(context);
+      // the previous run wrote whichever of the two is newer; lastModified() is 0 if missing.
+      if (archiveFile.lastModified() > packagesFile.lastModified()) {
+        manifest.loadRecordsFromArchive(archiveFile);
+      } else {
+        manifest.loadRecords(packagesFile);
+      }
+    }
+    return manifest;
+  }
+
+  /**
+   * Computes the key deciding whether a package changed between two runs.
+   * @return the key, or <code>null</code> if the package's APK cannot be inspected, in which case
+   * the package is always treated as changed.
+   */
+  @Nullable
+  private static String computeKey(@NotNull PackageInfo packageInfo) {
+    if (packageInfo.applicationInfo == null || packageInfo.applicationInfo.sourceDir == null) {
+      return null;
+    }
+    StructStat stat;
+    try {
+      stat = Os.stat(packageInfo.applicationInfo.sourceDir);
+    } catch (ErrnoException e) {
+      return null;
+    }
+    long versionCode;
+    if (Build.VERSION.SDK_INT < Build.VERSION_CODES.P) {
+      versionCode = packageInfo.versionCode;
+    } else {
+      versionCode = packageInfo.getLongVersionCode();
+    }
+    return buildKey(packageInfo.lastUpdateTime, versionCode, stat.st_size,
+        HashCache.getMtimeNanos(stat), HashCache.getCtimeNanos(stat), stat.st_ino);
+  }
+
+  @NotNull
+  static String buildKey(long lastUpdateTime, long versionCode, long size, long mtimeNanos,
+                         long ctimeNanos, long inode) {
+    return lastUpdateTime + SEPARATOR + versionCode + SEPARATOR + size + SEPARATOR + mtimeNanos +
+        SEPARATOR + ctimeNanos + SEPARATOR + inode;
+  }
+
+  /**
+   * Returns the metadata of a package as recorded by the previous run, if the package has not
+   * changed since.
+   * @param packageInfo The package as currently installed.
+   * @return a {@link PackageMetadata} restored from the previous run's record, or
+   * <code>null</code> if the package must be parsed again.
+   */
+  @Nullable
+  public PackageMetadata reuse(@NotNull PackageInfo packageInfo) {
+    JSONObject record = getReusableRecord(packageInfo.packageName, computeKey(packageInfo));
+    if (record == null) {
+      return null;
+    }
+
+    PackageMetadata pkgMetadata = new PackageMetadata();
+    if (!pkgMetadata.readJSON(record)) {
+      return null;
+    }
+    pkgMetadata.ref = packageInfo;
+    synchronized (this) {
+      mReused++;
+    }
+    return pkgMetadata;
+  }
+
+  @Nullable
+  JSONObject getReusableRecord(@NotNull String name, @Nullable String key) {
+    if (key == null || !key.equals(mPreviousKeys.get(name))) {
+      return null;
+    }
+    return mPreviousRecords.get(name);
+  }
+
+  /**
+   * Records a package seen in this run, and classifies it against the previous run.
+   * @param packageInfo The package as currently installed.
+   * @param pkgMetadata The metadata that will be written for the package.
+   */
+  public void observe(@NotNull PackageInfo packageInfo, @NotNull PackageMetadata pkgMetadata) {
+    observe(packageInfo.packageName, computeKey(packageInfo), pkgMetadata.hash);
+  }
+
+  void observe(@NotNull String name, @Nullable String key, @Nullable String hash) {
+    if (key != null) {
+      mCurrentKeys.put(name, key);
+    }
+    if (hash != null) {
+      mCurrentHashes.put(name, hash);
+    }
+
+    String previousKey = mPreviousKeys.get(name);
+    if (previousKey == null) {
+      mChanges.put(name, CHANGE_ADDED);
+    } else if (key == null || !key.equals(previousKey)) {
+      mChanges.put(name, CHANGE_CHANGED);
+    }
+  }
+
+  /**
+   * Saves the packages observed in this run for the next run to compare with.
+   * @param context The execution context.
+   */
+  public void save(@NotNull Context context) {
+    save(new File(context.getFilesDir(), MANIFEST_FILENAME));
+  }
+
+  void save(@NotNull File manifestFile) {
+    File tmpFile = new File(manifestFile.getPath() + ".tmp");
+    try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+        new FileOutputStream(tmpFile), StandardCharsets.UTF_8))) {
+      writer.write(getHeader());
+      writer.newLine();
+      synchronized (mCurrentKeys) {
+        for (Map.Entry<String, String> entry : mCurrentKeys.entrySet()) {
+          writer.write(entry.getKey() + SEPARATOR + entry.getValue());
+          writer.newLine();
+        }
+      }
+    } catch (IOException e) {
+      Log.e(TAG, String.format("Failed to write package manifest: %s", e.getMessage()));
+      return;
+    }
+    if (!tmpFile.renameTo(manifestFile)) {
+      Log.e(TAG, String.format("Failed to move %s into place", tmpFile.getAbsolutePath()));
+    }
+  }
+
+  /**
+   * Writes the packages added, removed and changed since the previous run to a result file.
+   * @param context The execution context.
+   * @param filename The name of the result file.
+   */
+  public void writeDelta(@NotNull Context context, @NotNull String filename) {
+    List<JSONObject> changes = getChanges();
+    try (ResultWriter writer = ResultWriter.open(context, filename, mVersion)) {
+      writer.writeHeader("totalChanges", changes.size(), "changes");
+      for (JSONObject change : changes) {
+        writer.writeRecord(change);
+      }
+      writer.writeFooter();
+    } catch (IOException e) {
+      Log.e(TAG, String.format("Failed to write %s: %s", filename, e.getMessage()));
+    }
+    Log.d(TAG, String.format("%d packages restored from the previous run, %d changes.",
+        mReused, changes.size()));
+  }
+
+  /**
+   * Lists the packages added, removed and changed since the previous run, sorted by name.
+   * @return one record per package with its name, the change, and its hash in the previous and
+   * in this run if known.
+   */
+  @NotNull
+  List<JSONObject> getChanges() {
+    // anything left over from the previous run was not seen in this one.
+    for (String name : mPreviousKeys.keySet()) {
+      if (!mCurrentKeys.containsKey(name) && !mChanges.containsKey(name)) {
+        mChanges.put(name, CHANGE_REMOVED);
+      }
+    }
+
+    List<JSONObject> changes = new ArrayList<>();
+    synchronized (mChanges) {
+      for (Map.Entry<String, String> change : mChanges.entrySet()) {
+        String name = change.getKey();
+        JSONObject previousRecord = mPreviousRecords.get(name);
+        JSONObject record = new JSONObject();
+        try {
+          record.put("name", name);
+          record.put("change", change.getValue());
+          record.put("previousHash", (previousRecord != null) ?
+              previousRecord.opt("hash") : JSONObject.NULL);
+          String hash = mCurrentHashes.get(name);
+          record.put("hash", (hash != null) ? hash : JSONObject.NULL);
+        } catch (JSONException e) {
+          Log.e(TAG, String.format("Failed to describe change of %s: %s", name, e.getMessage()));
+          continue;
+        }
+        changes.add(record);
+      }
+    }
+    return changes;
+  }
+
+  void loadKeys(@NotNull File manifestFile) {
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+        new FileInputStream(manifestFile), StandardCharsets.UTF_8))) {
+      String header = reader.readLine();
+      if (header == null || !header.equals(getHeader())) {
+        Log.d(TAG, "Package manifest was written by another version or profile, ignoring it.");
+        return;
+      }
+      String line;
+      while ((line = reader.readLine()) != null) {
+        int separator = line.indexOf(SEPARATOR);
+        if (separator <= 0) {
+          Log.w(TAG, String.format("Skipping malformed manifest line: %s", line));
+          continue;
+        }
+        mPreviousKeys.put(line.substring(0, separator), line.substring(separator + 1));
+      }
+    } catch (FileNotFoundException e) {
+      Log.d(TAG, "No package manifest from a previous run.");
+    } catch (IOException e) {
+      Log.e(TAG, String.format("Failed to read package manifest: %s", e.getMessage()));
+      mPreviousKeys.clear();
+    }
+  }
+
+  void loadRecords(@NotNull File packagesFile) {
+    try (InputStream in = new FileInputStream(packagesFile)) {
+      readRecords(in);
+    } catch (FileNotFoundException e) {
+      Log.d(TAG, "No packages.txt from a previous run.");
+    } catch (IOException | JSONException | IllegalStateException e) {
+      Log.e(TAG, String.format("Failed to read previous packages.txt: %s", e.getMessage()));
+      mPreviousRecords.clear();
+    }
+  }
+
+  void loadRecordsFromArchive(@NotNull File archiveFile) {
+    try (ZipFile archive = new ZipFile(archiveFile)) {
+      ZipEntry entry = archive.getEntry("packages.txt");
+      if (entry == null) {
+        Log.d(TAG, "No packages.txt in the previous run's archive.");
+        return;
+      }
+      try (InputStream in = archive.getInputStream(entry)) {
+        readRecords(in);
+      }
+    } catch (IOException | JSONException | IllegalStateException e) {
+      Log.e(TAG, String.format("Failed to read previous packages.txt from %s: %s",
+          archiveFile.getName(), e.getMessage()));
+      mPreviousRecords.clear();
+    }
+  }
+
+  // packages.txt holds every package's full record, so it is parsed one record at a time rather
+  // than read into memory as a whole.
+  private void readRecords(@NotNull InputStream in) throws IOException, JSONException {
+    JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    Map<String, JSONObject> records = new HashMap<>();
+    boolean isSameVersion = false;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if (name.equals("version")) {
+        isSameVersion = mVersion.equals(readValue(reader));
+        if (!isSameVersion) {
+          break;
+        }
+      } else if (name.equals("packages")) {
+        reader.beginArray();
+        while (reader.hasNext()) {
+          Object record = readValue(reader);
+          if (!(record instanceof JSONObject)) {
+            throw new JSONException(String.format("Expected a package record, got %s", record));
+          }
+          records.put(((JSONObject) record).getString("name"), (JSONObject) record);
+        }
+        reader.endArray();
+      } else {
+        reader.skipValue();
+      }
+    }
+
+    if (!isSameVersion) {
+      Log.d(TAG, "Previous packages.txt was written by another version, ignoring it.");
+      return;
+    }
+    mPreviousRecords.putAll(records);
+  }
+
+  /**
+   * Reads the next value the way {@link JSONObject} parses it: objects and arrays become
+   * {@link JSONObject} and {@link JSONArray}, <code>null</code> becomes {@link JSONObject#NULL},
+   * and numbers become a {@link Long}, or a {@link Double} if they are not integral.
+   * @param reader The reader to consume the value from.
+   * @return the value read.
+   */
+  @NotNull
+  static Object readValue(@NotNull JsonReader reader) throws IOException, JSONException {
+    switch (reader.peek()) {
+      case BEGIN_OBJECT:
+        JSONObject object = new JSONObject();
+        reader.beginObject();
+        while (reader.hasNext()) {
+          object.put(reader.nextName(), readValue(reader));
+        }
+        reader.endObject();
+        return object;
+      case BEGIN_ARRAY:
+        JSONArray array = new JSONArray();
+        reader.beginArray();
+        while (reader.hasNext()) {
+          array.put(readValue(reader));
+        }
+        reader.endArray();
+        return array;
+      case BOOLEAN:
+        return reader.nextBoolean();
+      case NULL:
+        reader.nextNull();
+        return JSONObject.NULL;
+      case NUMBER:
+        String number = reader.nextString();
+        try {
+          return Long.parseLong(number);
+        } catch (NumberFormatException e) {
+          return Double.parseDouble(number);
+        }
+      default:
+        return reader.nextString();
+    }
+  }
+
+  @NotNull
+  private String getHeader() {
+    return FORMAT_VERSION + SEPARATOR + mVersion + SEPARATOR + mProfile;
+  }
+}
@@ -0,0 +1,101 @@
+//Copyright 2019 Uraniborg authors.
+//
+//Licensed under the Apache License, Version 2.0 (the "License");
+//you may not use this file except in compliance with the License.
+//You may obtain a copy of the License at
+//
+//http://www.apache.org/licenses/LICENSE-2.0
+//
+//Unless required by applicable law or agreed to in writing, software
+//distributed under the License is distributed on an "AS IS" BASIS,
+//WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//See the License for the specific language governing permissions and
+//limitations under the License.
+
+package com.uraniborg.hubble;
+
+import android.content.Intent;
+import android.util.Log;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Locale;
+
+/**
+ * Options that change how a scan is carried out, read from the extras of the launching intent.
+ * Without any extras, Hubble behaves as it always has. For example:
+ * <pre>
+ *   adb shell am start -n com.uraniborg.hubble/com.uraniborg.hubble.MainActivity \
+ *       --ez pipelined true
+ * </pre>
+ */
+public class ScanOptions {
+  public static final String TAG = "SCANOPTIONS";
+
+  // write results while they are being collected instead of after collection is done.
+  public static final String EXTRA_PIPELINED = "pipelined";
+
+  // reuse the records of packages that have not changed since the previous run, and report
+  // which packages were added, removed or changed.
+  public static final String EXTRA_DIFFERENTIAL = "differential";
+
+  // how much of every package to parse, see PROFILE_FULL and PROFILE_MINIMAL.
+  public static final String EXTRA_PROFILE = "profile";
+
+  // list package names first and fetch each package on its own, instead of fetching every
+  // package in one call.
+  public static final String EXTRA_CHUNKED = "chunked";
+
+  // write all result files into a single compressed archive instead of the result directory.
+  public static final String EXTRA_ARCHIVE = "archive";
+
+  // the number of threads parsing packages at the same time; defaults to one per core.
+  public static final String EXTRA_PARSE_PARALLELISM = "parseParallelism";
+
+  // everything Hubble knows how to collect about a package.
+  public static final String PROFILE_FULL = "full";
+  // only what the risk analyzer needs: no app labels, descriptions or component details.
+  public static final String PROFILE_MINIMAL = "minimal";
+
+  protected boolean pipelined = false;
+  protected boolean differential = false;
+  protected String profile = PROFILE_FULL;
+  protected boolean chunked = false;
+  protected boolean archive = false;
+  protected int parseParallelism = Runtime.getRuntime().availableProcessors();
+
+  @NotNull
+  public static ScanOptions fromIntent(@Nullable Intent intent) {
+    ScanOptions options = new ScanOptions();
+    if (intent == null) {
+      return options;
+    }
+    options.pipelined = intent.getBooleanExtra(EXTRA_PIPELINED, false);
+    options.differential = intent.getBooleanExtra(EXTRA_DIFFERENTIAL, false);
+    options.chunked = intent.getBooleanExtra(EXTRA_CHUNKED, false);
+    options.archive = intent.getBooleanExtra(EXTRA_ARCHIVE, false);
+    String profile = intent.getStringExtra(EXTRA_PROFILE);
+    if (PROFILE_MINIMAL.equals(profile)) {
+      options.profile = PROFILE_MINIMAL;
+    } else if (profile != null && !PROFILE_FULL.equals(profile)) {
+      Log.w(TAG, String.format("Unknown profile %s, using %s instead.", profile, PROFILE_FULL));
+    }
+    int parseParallelism = intent.getIntExtra(EXTRA_PARSE_PARALLELISM, options.parseParallelism);
+    if (parseParallelism >= 1) {
+      options.parseParallelism = parseParallelism;
+    } else {
+      Log.w(TAG, String.format(Locale.US, "Invalid %s %d, using %d instead.",
+          EXTRA_PARSE_PARALLELISM, parseParallelism, options.parseParallelism));
+    }
+    return options;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(Locale.US,
+        "pipelined=%b, differential=%b, profile=%s, chunked=%b, archive=%b, " +
+        "parseParallelism=%d", pipelined, differential, profile, chunked, archive,
+        parseParallelism);
+  }
+}
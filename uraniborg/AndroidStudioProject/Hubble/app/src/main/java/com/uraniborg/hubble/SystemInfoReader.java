@@ -0,0 +1,243 @@
+//Copyright 2019 Uraniborg authors.
+//
+//Licensed under the Apache License, Version 2.0 (the "License");
+//you may not use this file except in compliance with the License.
+//You may obtain a copy of the License at
+//
+//http://www.apache.org/licenses/LICENSE-2.0
+//
+//Unless required by applicable law or agreed to in writing, software
+//distributed under the License is distributed on an "AS IS" BASIS,
+//WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//See the License for the specific language governing permissions and
+//limitations under the License.
+
+package com.uraniborg.hubble;
+
+import android.system.Os;
+import android.system.StructUtsname;
+import android.util.Log;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Reads the kernel version and the system properties from within the app's process, instead of
+ * starting <code>uname</code>, <code>cat</code> or <code>getprop</code> in a shell.
+ *
+ * <p>System properties are read straight from the property areas that bionic maps into every
+ * process under /dev/__properties__, which is also where getprop reads them from. As getprop
+ * would when started by this app, only the areas the app is allowed to read are included.
+ */
+public class SystemInfoReader {
+  public static final String TAG = "SYSINFOREADER";
+
+  private static final String PROC_VERSION = "/proc/version";
+  private static final String PROPERTIES_PATH = "/dev/__properties__";
+
+  // the layout of a property area, from bionic's system_properties/prop_area.h. All fields are
+  // 32 bits wide and little-endian, and all offsets are relative to the area's data.
+  private static final int PROP_AREA_MAGIC = 0x504f5250;
+  private static final int PROP_AREA_VERSION = 0xfc6ed0ab;
+  private static final int AREA_BYTES_USED = 0;
+  private static final int AREA_MAGIC = 8;
+  private static final int AREA_VERSION = 12;
+  private static final int AREA_DATA = 128;
+  // a node of the trie of property names: namelen, prop, left, right, children, name.
+  private static final int NODE_PROP = 4;
+  private static final int NODE_LEFT = 8;
+  private static final int NODE_RIGHT = 12;
+  private static final int NODE_CHILDREN = 16;
+  private static final int NODE_SIZE = 20;
+  // a property: serial, then either the value or a long value's offset, then the name.
+  private static final int PROP_VALUE_MAX = 92;
+  private static final int INFO_VALUE = 4;
+  private static final int INFO_LONG_VALUE_OFFSET = INFO_VALUE + 56;
+  private static final int INFO_NAME = INFO_VALUE + PROP_VALUE_MAX;
+  private static final int LONG_PROPERTY_FLAG = 1 << 16;
+
+  /**
+   * @return the contents of /proc/version or, if it cannot be read, the fields
+   * <code>uname -a</code> would print; <code>null</code> if neither is available.
+   */
+  @Nullable
+  public static String readKernelVersion() {
+    try (BufferedReader reader = new BufferedReader(new FileReader(PROC_VERSION))) {
+      String version = reader.readLine();
+      if (version != null && !version.trim().isEmpty()) {
+        return version.trim();
+      }
+    } catch (IOException e) {
+      Log.e(TAG, String.format("Failed to read %s: %s", PROC_VERSION, e.getMessage()));
+    }
+
+    StructUtsname uname = Os.uname();
+    if (uname == null || uname.release == null) {
+      return null;
+    }
+    return String.format("%s %s %s %s %s", uname.sysname, uname.nodename, uname.release,
+        uname.version, uname.machine);
+  }
+
+  /**
+   * Reads all system properties the app is allowed to read.
+   * @return the properties by name, sorted as getprop sorts them, or <code>null</code> if no
+   * property area could be read.
+   */
+  @Nullable
+  public static TreeMap<String, String> readProperties() {
+    final long start = System.currentTimeMillis();
+    File properties = new File(PROPERTIES_PATH);
+    File[] areas;
+    if (properties.isDirectory()) {
+      areas = properties.listFiles();
+    } else {
+      // before Android N, all properties are in a single area.
+      areas = new File[] {properties};
+    }
+    if (areas == null) {
+      Log.e(TAG, String.format("Failed to list %s", PROPERTIES_PATH));
+      return null;
+    }
+
+    TreeMap<String, String> props = new TreeMap<>();
+    int readAreas = 0;
+    for (File area : areas) {
+      // property_info and the like are not property areas, and are rejected by readArea().
+      if (area.isFile() && readArea(area, props)) {
+        readAreas++;
+      }
+    }
+    Log.d(TAG, String.format("Read %d properties from %d of %d property areas in %d ms.",
+        props.size(), readAreas, areas.length, System.currentTimeMillis() - start));
+    return (readAreas > 0) ? props : null;
+  }
+
+  /**
+   * Writes properties in the format of getprop's output, one <code>[name]: [value]</code> line
+   * per property.
+   * @param props The properties to write.
+   * @param writer The writer to write to.
+   */
+  public static void writeProperties(@NotNull Map<String, String> props, @NotNull Writer writer)
+      throws IOException {
+    for (Map.Entry<String, String> prop : props.entrySet()) {
+      writer.write('[');
+      writer.write(prop.getKey());
+      writer.write("]: [");
+      writer.write(prop.getValue());
+      writer.write("]\n");
+    }
+  }
+
+  private static boolean readArea(@NotNull File file, @NotNull Map<String, String> props) {
+    ByteBuffer area;
+    try (FileInputStream stream = new FileInputStream(file);
+         FileChannel channel = stream.getChannel()) {
+      long size = channel.size();
+      if (size < AREA_DATA || size > Integer.MAX_VALUE) {
+        return false;
+      }
+      area = channel.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+    } catch (IOException | SecurityException e) {
+      // most areas are not readable by apps.
+      return false;
+    }
+    return readArea(area, props);
+  }
+
+  /**
+   * Reads all properties held by one property area.
+   * @param area The property area, in little-endian order.
+   * @param props The map to add the properties to.
+   * @return whether the buffer is a property area of the expected version. Offsets that point
+   * outside of the area's data are skipped.
+   */
+  static boolean readArea(@NotNull ByteBuffer area, @NotNull Map<String, String> props) {
+    if (area.capacity() < AREA_DATA || area.getInt(AREA_MAGIC) != PROP_AREA_MAGIC ||
+        area.getInt(AREA_VERSION) != PROP_AREA_VERSION) {
+      return false;
+    }
+
+    // the data in use, which bounds every offset followed below.
+    final int limit = (int) Math.min(area.capacity(),
+        AREA_DATA + (area.getInt(AREA_BYTES_USED) & 0xffffffffL));
+    // the trie is walked with a stack, as its left and right links can form long chains. Its
+    // root is the first node of the data, and every offset points further into the data, so
+    // the walk cannot visit more nodes than fit into it.
+    ArrayDeque<Integer> nodes = new ArrayDeque<>();
+    nodes.push(0);
+    int budget = limit / NODE_SIZE;
+    while (!nodes.isEmpty() && budget-- > 0) {
+      int node = AREA_DATA + nodes.pop();
+      if (node < AREA_DATA || node > limit - NODE_SIZE) {
+        continue;
+      }
+      int prop = area.getInt(node + NODE_PROP);
+      if (prop != 0) {
+        readProperty(area, AREA_DATA + prop, limit, props);
+      }
+      for (int link : new int[] {NODE_LEFT, NODE_CHILDREN, NODE_RIGHT}) {
+        int next = area.getInt(node + link);
+        if (next != 0) {
+          nodes.push(next);
+        }
+      }
+    }
+    return true;
+  }
+
+  private static void readProperty(@NotNull ByteBuffer area, int info, int limit,
+                                    @NotNull Map<String, String> props) {
+    if (info < AREA_DATA || info >= limit - INFO_NAME) {
+      return;
+    }
+    String name = readString(area, info + INFO_NAME, limit);
+    if (name.isEmpty()) {
+      return;
+    }
+    int serial = area.getInt(info);
+    String value;
+    if ((serial & LONG_PROPERTY_FLAG) != 0) {
+      // long values live elsewhere, at an offset relative to the property itself.
+      int offset = area.getInt(info + INFO_LONG_VALUE_OFFSET);
+      value = readString(area, info + offset, limit);
+    } else {
+      // the length of the value is kept in the top byte of the serial.
+      int length = Math.min(serial >>> 24, PROP_VALUE_MAX - 1);
+      value = readString(area, info + INFO_VALUE, info + INFO_VALUE + length);
+    }
+    props.put(name, value);
+  }
+
+  // reads a UTF-8 string ending at a NUL byte or at end, whichever comes first.
+  @NotNull
+  private static String readString(@NotNull ByteBuffer area, int start, int end) {
+    if (start < 0 || start >= end) {
+      return "";
+    }
+    int length = 0;
+    while (start + length < end && area.get(start + length) != 0) {
+      length++;
+    }
+    byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++) {
+      bytes[i] = area.get(start + i);
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
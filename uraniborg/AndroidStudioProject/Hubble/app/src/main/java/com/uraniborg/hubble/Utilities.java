@@ -14,7 +14,6 @@
 
 package com.uraniborg.hubble;
 
-import android.app.ActivityManager;
 import android.content.Context;
 import android.content.pm.Signature;
 import android.util.Log;
@@ -24,19 +23,13 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 import androidx.annotation.NonNull;
 
@@ -48,7 +41,8 @@ public class Utilities {
 
 
   /**
-   * Computes the SHA256 digest given a string containing a path to a file.
+   * Computes the SHA256 digest given a string containing a path to a file. If a {@link HashCache}
+   * is open, a cached digest is returned for files that are unchanged since they were last hashed.
    * @param context The execution context
    * @param pathToFile A string containing a path to the file of which its content is to be hashed.
    * @return A string representing the encoded SHA256 digest of the content of the file. A
@@ -56,56 +50,29 @@ public class Utilities {
    */
   @Nullable
   public static String computeSHA256DigestOfFile(Context context, String pathToFile) {
-    final String TAG = "SHA256-File";
-    MessageDigest md = null;
-    try {
-      md = MessageDigest.getInstance("SHA256");
-      md.reset();
-    } catch (NoSuchAlgorithmException e) {
-      Log.e(TAG, "SHA256 isn't implemented on this device.");
-      return null;
-    }
-    File f = new File(pathToFile);
-    FileInputStream fis;
-    try {
-      fis = new FileInputStream(f);
-    } catch (FileNotFoundException e) {
-      Log.e(TAG, String.format("File %s is not found on the system!", f.getAbsolutePath()));
-      return null;
-    }
-    DigestInputStream dis = new DigestInputStream(fis, md);
-    long filesize = f.length();
-    if (filesize == 0) {
-      Log.e(TAG, String.format("%s is an empty file", pathToFile));
-      return null;
-    }
-
-    // decide on buffer size based on device's memory class
-    ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
-    if (am == null) {
-      Log.e(TAG, String.format("Error obtaining ActivityManager"));
-      return null;
+    HashCache cache = HashCache.getInstance();
+    if (cache != null) {
+      return cache.getOrCompute(context, pathToFile);
     }
-    int bufferSize = (int) (am.isLowRamDevice() ? 512 : 8 * Kilobyte);
-    bufferSize = (int) Math.min(filesize, bufferSize);
-
-    byte[] buffer = new byte[bufferSize];
-
-    try {
-      while (dis.read(buffer) != -1) {}
+    return computeUncachedSHA256DigestOfFile(context, pathToFile);
+  }
 
-    } catch (IOException e) {
-      Log.e(TAG, String.format("Failed to read from %s due to %s", pathToFile, e.getMessage()));
+  /**
+   * Computes the SHA256 digest given a string containing a path to a file, always reading the
+   * file. The work is delegated to {@link FileDigester}, which picks a read or memory-mapped
+   * strategy based on the file size.
+   * @param context The execution context
+   * @param pathToFile A string containing a path to the file of which its content is to be hashed.
+   * @return A string representing the encoded SHA256 digest of the content of the file. A
+   * <code>null</code> may be returned if any intermediate process failed.
+   */
+  @Nullable
+  public static String computeUncachedSHA256DigestOfFile(Context context, String pathToFile) {
+    byte[] digest = FileDigester.digest(context, new File(pathToFile));
+    if (digest == null) {
       return null;
     }
-
-    try {
-      dis.close();
-    } catch (IOException e) {
-      Log.w(TAG, String.format("Failed to close DigestInputStream"));
-    }
-
-    return convertBytesToHexString(md.digest());
+    return convertBytesToHexString(digest);
   }
 
 
@@ -210,85 +177,20 @@ public class Utilities {
   }
 
   /**
-   * Utility function to help flush contents to file within the app's external data dir.
-   * @param context The execution context.
-   * @param filename The name of the file to write to.
-   * @param content A string containing the data to write.
-   * @param append A boolean on whether to write to the end of the file or to overwrite the file.
-   * @return <code>true</code> if the write operation is successful. <code>false</code> otherwise.
-   */
-  public static boolean writeToFile(@NotNull Context context,
-                                    @NotNull String filename, String content,
-                                    boolean append) {
-    final String TAG = "writeToFile";
-    File resultDir = getResultStorageDirectory(context);
-    if (!resultDir.exists()) {
-      resultDir.mkdirs();
-    }
-    File dataFile = new File(resultDir, filename);
-
-    try (FileOutputStream fos = new FileOutputStream(dataFile, append)) {
-      fos.write(content.getBytes());
-    } catch (FileNotFoundException e) {
-      Log.e(TAG, String.format("File %s is not found for writing: %s", dataFile.getAbsolutePath(),
-          e.getMessage()));
-      return false;
-    } catch (IOException e) {
-      Log.e(TAG, String.format("Error while writing to file: %s", dataFile.getAbsolutePath(),
-          e.getMessage()));
-      return false;
-    }
-
-    return true;
-  }
-
-
-  /**
-   * Utility function to help recursively list all files in a given root directory
+   * Utility function to help list all files in a given root directory and its subdirectories.
+   * See {@link FileWalker} for walking several directories, or handling files as they are found.
    * @param root A {@link String} object containing a valid root directory.
    * @param includeSymlink A boolean determining whether or not symlinks were to be counted.
    * @return A {@link List<File>} object containing all the non-directory files in the given root
-   *         directory.
+   *         directory. Unless symlinks are counted, every file is listed once under its
+   *         canonical path.
    */
   public static List<File> getAllFilesInDirectory(@NonNull String root, boolean includeSymlink) {
-    final String TAG = "getAllFiles";
-    File rootPath = new File(root);
     List<File> resultList = new ArrayList<>();
-    Set<File> resultSet = new HashSet<>();
-
-    File[] files = rootPath.listFiles();
-    if (files == null) {
-      return resultList;
-    }
-
-    for (File file : files) {
-      if (file.isFile()) {
-        if (includeSymlink) {
-          resultList.add(file);
-          continue;
-        }
-
-        try {
-          resultSet.add(file.getCanonicalFile());
-        } catch (IOException e) {
-          Log.e(TAG, String.format("Failed to get canonical file for %s: %s",
-              file.getAbsolutePath(), e.getMessage()));
-          continue;
-        }
-      } else if (file.isDirectory()) {
-        if (includeSymlink) {
-          resultList.addAll(getAllFilesInDirectory(file.getAbsolutePath(), includeSymlink));
-        } else {
-          resultSet.addAll(getAllFilesInDirectory(file.getAbsolutePath(), includeSymlink));
-        }
-      }
-    }
-
-    if (includeSymlink) {
-      return resultList;
-    } else {
-      return new ArrayList<>(resultSet);
-    }
+    FileWalker walker = new FileWalker(includeSymlink, resultList::add);
+    walker.walk(root);
+    walker.finish();
+    return resultList;
   }
 
   /**
@@ -316,7 +218,7 @@ public class Utilities {
       String line;
       try {
         while ((line = br.readLine()) != null) {
-          resultBuffer.append(line + "\n");   // need to append \n because readline strips that off
+          resultBuffer.append(line).append('\n');   // readline strips the \n off
         }
       } catch (IOException e) {
         Log.e(TAG, String.format("Failed to read from %s stream.", this.streamType));
@@ -0,0 +1,197 @@
+//Copyright 2019 Uraniborg authors.
+//
+//Licensed under the Apache License, Version 2.0 (the "License");
+//you may not use this file except in compliance with the License.
+//You may obtain a copy of the License at
+//
+//http://www.apache.org/licenses/LICENSE-2.0
+//
+//Unless required by applicable law or agreed to in writing, software
+//distributed under the License is distributed on an "AS IS" BASIS,
+//WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//See the License for the specific language governing permissions and
+//limitations under the License.
+
+package com.uraniborg.hubble;
+
+import android.util.Log;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fixed-size pool of worker threads with a bounded work queue. When the queue is full, the
+ * submitting thread runs the task itself, which throttles producers instead of buffering an
+ * unbounded number of pending tasks.
+ */
+public class WorkerPool {
+  public static final String TAG = "WORKERPOOL";
+
+  /**
+   * A unit of work that turns one input into one output.
+   * @param <I> The type of input handed to the task.
+   * @param <O> The type of output produced by the task.
+   */
+  public interface Task<I, O> {
+    @Nullable O run(@NotNull I input);
+  }
+
+  /**
+   * Receives the outputs of a {@link Task}, one at a time, on the thread that submitted the work.
+   * @param <O> The type of output produced by the task.
+   */
+  public interface Sink<O> {
+    void accept(@Nullable O output);
+  }
+
+  // how many tasks a thread ran and how long it spent running them.
+  private static class WorkerStats {
+    final AtomicLong tasks = new AtomicLong();
+    final AtomicLong busyNanos = new AtomicLong();
+  }
+
+  private final String mName;
+  private final int mParallelism;
+  private final int mQueueCapacity;
+  private final ThreadPoolExecutor mExecutor;
+  // keyed by thread name; includes the submitting thread when it ran tasks itself.
+  private final ConcurrentHashMap<String, WorkerStats> mWorkerStats = new ConcurrentHashMap<>();
+
+  /**
+   * @param name A name used to label worker threads and log lines.
+   * @param parallelism The number of worker threads. Values below 1 are treated as 1.
+   * @param queueCapacity The maximum number of tasks waiting to be picked up by a worker.
+   */
+  public WorkerPool(@NotNull String name, int parallelism, int queueCapacity) {
+    mName = name;
+    mParallelism = Math.max(1, parallelism);
+    mQueueCapacity = Math.max(1, queueCapacity);
+    final AtomicInteger threadCount = new AtomicInteger();
+    ThreadFactory threadFactory = runnable -> {
+      Thread thread = new Thread(runnable, String.format("%s-%d", mName,
+          threadCount.incrementAndGet()));
+      thread.setDaemon(true);
+      return thread;
+    };
+    mExecutor = new ThreadPoolExecutor(mParallelism, mParallelism, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(mQueueCapacity), threadFactory,
+        new ThreadPoolExecutor.CallerRunsPolicy());
+  }
+
+  /**
+   * Creates a pool with one worker per available processor and a queue a few tasks deep per
+   * worker.
+   * @param name A name used to label worker threads and log lines.
+   * @return a new {@link WorkerPool} sized to the device's cores.
+   */
+  public static WorkerPool sizedToCores(@NotNull String name) {
+    int cores = Runtime.getRuntime().availableProcessors();
+    return new WorkerPool(name, cores, cores * 4);
+  }
+
+  public int getParallelism() {
+    return mParallelism;
+  }
+
+  /**
+   * Runs <code>task</code> over every item of <code>inputs</code> on the pool and hands each
+   * output to <code>sink</code> as soon as it and all outputs before it are ready. At most as many
+   * tasks as the pool has workers and queue slots are in flight at any time, so the outputs
+   * waiting to be consumed stay bounded no matter how many inputs there are.
+   * @param inputs The items to process.
+   * @param task The work to apply to each item.
+   * @param sink Receives the outputs in the same order as <code>inputs</code>, on the calling
+   *             thread. Outputs are <code>null</code> when the task returned <code>null</code> or
+   *             failed.
+   */
+  public <I, O> void forEachOrdered(@NotNull List<I> inputs, @NotNull Task<I, O> task,
+                                    @NotNull Sink<O> sink) {
+    final int window = mParallelism + mQueueCapacity;
+    ArrayDeque<I> pendingInputs = new ArrayDeque<>(window);
+    ArrayDeque<Future<O>> pendingFutures = new ArrayDeque<>(window);
+    for (I input : inputs) {
+      if (pendingFutures.size() >= window) {
+        sink.accept(awaitOutput(pendingInputs.poll(), pendingFutures.poll()));
+      }
+      pendingInputs.add(input);
+      pendingFutures.add(mExecutor.submit(() -> runTimed(task, input)));
+    }
+    while (!pendingFutures.isEmpty()) {
+      sink.accept(awaitOutput(pendingInputs.poll(), pendingFutures.poll()));
+    }
+  }
+
+  @Nullable
+  private <I, O> O runTimed(@NotNull Task<I, O> task, @NotNull I input) {
+    final long start = System.nanoTime();
+    try {
+      return task.run(input);
+    } finally {
+      // computeIfAbsent() needs API 24; whichever stats are put first are the ones kept.
+      final String name = Thread.currentThread().getName();
+      WorkerStats stats = mWorkerStats.get(name);
+      if (stats == null) {
+        WorkerStats newStats = new WorkerStats();
+        stats = mWorkerStats.putIfAbsent(name, newStats);
+        if (stats == null) {
+          stats = newStats;
+        }
+      }
+      stats.tasks.incrementAndGet();
+      stats.busyNanos.addAndGet(System.nanoTime() - start);
+    }
+  }
+
+  @Nullable
+  private <I, O> O awaitOutput(@NotNull I input, @NotNull Future<O> future) {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      Log.e(TAG, String.format("%s: task for %s failed: %s", mName, input, e.getCause()));
+    } catch (InterruptedException e) {
+      Log.e(TAG, String.format("%s: interrupted while waiting for results", mName));
+      Thread.currentThread().interrupt();
+    }
+    return null;
+  }
+
+  /**
+   * Logs how many tasks each thread ran so far, how long it was busy, and the resulting
+   * throughput. A thread that submitted work shows up too if the queue was ever full and it ran
+   * tasks itself.
+   * @param tag The tag to log under.
+   */
+  public void logWorkerStats(@NotNull String tag) {
+    // sorted by thread name so that the workers are listed in a stable order.
+    Map<String, WorkerStats> workers = new TreeMap<>(mWorkerStats);
+    for (Map.Entry<String, WorkerStats> worker : workers.entrySet()) {
+      long tasks = worker.getValue().tasks.get();
+      long busyNanos = worker.getValue().busyNanos.get();
+      Log.d(tag, String.format(Locale.US, "  Worker %s ran %d tasks in %.2f ms (%.1f tasks/s).",
+          worker.getKey(), tasks, busyNanos / 1e6,
+          (busyNanos == 0) ? 0.0 : tasks * 1e9 / busyNanos));
+    }
+  }
+
+  /**
+   * Stops accepting new work and lets the worker threads exit once the queue drains.
+   */
+  public void shutdown() {
+    mExecutor.shutdown();
+  }
+}
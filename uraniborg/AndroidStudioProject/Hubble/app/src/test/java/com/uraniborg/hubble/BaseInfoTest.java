@@ -0,0 +1,190 @@
+//Copyright 2019 Uraniborg authors.
+//
+//Licensed under the Apache License, Version 2.0 (the "License");
+//you may not use this file except in compliance with the License.
+//You may obtain a copy of the License at
+//
+//http://www.apache.org/licenses/LICENSE-2.0
+//
+//Unless required by applicable law or agreed to in writing, software
+//distributed under the License is distributed on an "AS IS" BASIS,
+//WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//See the License for the specific language governing permissions and
+//limitations under the License.
+
+package com.uraniborg.hubble;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Checks what {@link BaseInfo} serializes from the cached field descriptors, and compares it with
+ * looking the fields up for every record as it did before they were cached.
+ *
+ * <p>{@link android.util.JsonWriter} is only a stub off device, so the JSONObject path of
+ * {@link BaseInfo#getJSONString(String[])} is what is tested and timed here; both paths share the
+ * same descriptors.
+ */
+public class BaseInfoTest {
+  private static final int WARMUP_ITERATIONS = 20000;
+  private static final int MEASURED_ITERATIONS = 100000;
+
+  public static class Record extends BaseInfo {
+    public static final String TAG = "RECORD";
+
+    protected final int constant = 7;
+    protected String name;
+    protected int count;
+    protected long size;
+    protected boolean enabled;
+    protected Set<String> permissions;
+    protected String[] paths;
+    protected int[] codes;
+    protected String missing;
+  }
+
+  private static Record createRecord() {
+    Record record = new Record();
+    record.name = "com.example.app";
+    record.count = 3;
+    record.size = 5L * Integer.MAX_VALUE;
+    record.enabled = true;
+    record.permissions = new HashSet<>(Arrays.asList("android.permission.CAMERA",
+        "android.permission.INTERNET"));
+    record.paths = new String[] {"/system/app/Example/Example.apk", "/data/app/Example"};
+    record.codes = new int[] {1, 2, 3};
+    return record;
+  }
+
+  @Test
+  public void getJSONString_writesEveryInstanceField() throws Exception {
+    JSONObject json = new JSONObject(createRecord().getJSONString(null));
+
+    assertEquals(8, json.length());
+    assertFalse(json.has("TAG"));
+    assertFalse(json.has("constant"));
+    assertEquals("com.example.app", json.getString("name"));
+    assertEquals(3, json.getInt("count"));
+    assertEquals(5L * Integer.MAX_VALUE, json.getLong("size"));
+    assertTrue(json.getBoolean("enabled"));
+    assertEquals(2, json.getJSONArray("permissions").length());
+    assertEquals("/data/app/Example", json.getJSONArray("paths").getString(1));
+    assertEquals(3, json.getJSONArray("codes").getInt(2));
+    assertTrue(json.isNull("missing"));
+  }
+
+  @Test
+  public void getJSONString_honoursSkipAndWritesNullSetsAsEmptyArrays() throws Exception {
+    Record record = createRecord();
+    record.permissions = null;
+    JSONObject json = new JSONObject(record.getJSONString(new String[] {"size", "paths"}));
+
+    assertFalse(json.has("size"));
+    assertFalse(json.has("paths"));
+    assertEquals(0, json.getJSONArray("permissions").length());
+  }
+
+  @Test
+  public void readJSON_restoresWhatGetJSONStringWrote() throws Exception {
+    Record record = createRecord();
+    Record restored = new Record();
+
+    assertTrue(restored.readJSON(new JSONObject(record.getJSONString(null))));
+    assertEquals(record.name, restored.name);
+    assertEquals(record.count, restored.count);
+    assertEquals(record.size, restored.size);
+    assertEquals(record.enabled, restored.enabled);
+    assertEquals(record.permissions, restored.permissions);
+    assertArrayEquals(record.paths, restored.paths);
+    assertArrayEquals(record.codes, restored.codes);
+    assertNull(restored.missing);
+  }
+
+  @Test
+  public void benchmark_cachedAgainstPerRecordFieldLookup() throws Exception {
+    assumeTrue("benchmarks only run with -Pbenchmarks", Boolean.getBoolean("hubble.benchmarks"));
+    Record record = createRecord();
+    String[] skip = {"missing"};
+    int sink = 0;
+
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      sink += record.getJSONString(skip).length();
+      sink += getUncachedJSONString(record, skip).length();
+    }
+
+    long start = System.nanoTime();
+    for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+      sink += getUncachedJSONString(record, skip).length();
+    }
+    double uncachedNanos = (double) (System.nanoTime() - start) / MEASURED_ITERATIONS;
+    start = System.nanoTime();
+    for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+      sink += record.getJSONString(skip).length();
+    }
+    double cachedNanos = (double) (System.nanoTime() - start) / MEASURED_ITERATIONS;
+
+    System.out.println(String.format("Record to JSON: fields looked up per record %.0f ns, " +
+        "cached descriptors %.0f ns (%.2fx) [%d]", uncachedNanos, cachedNanos,
+        uncachedNanos / cachedNanos, sink));
+  }
+
+  // how BaseInfo.getJSONString worked before the field descriptors were cached.
+  private static String getUncachedJSONString(BaseInfo info, String[] skip) throws Exception {
+    List<String> skipFieldList = Arrays.asList(skip);
+    List<Field> fields = new ArrayList<>();
+    for (Field field : info.getClass().getDeclaredFields()) {
+      int fieldModifiers = field.getModifiers();
+      if (Modifier.isStatic(fieldModifiers) || Modifier.isFinal(fieldModifiers) ||
+          skipFieldList.contains(field.getName())) {
+        continue;
+      }
+      fields.add(field);
+    }
+
+    JSONObject result = new JSONObject();
+    for (Field field : fields) {
+      Object value = field.get(info);
+      if (field.getType().equals(Set.class)) {
+        JSONArray array = new JSONArray();
+        if (value != null) {
+          for (Object item : (Set) value) {
+            array.put(item);
+          }
+        }
+        value = array;
+      }
+      value = (value == null) ? JSONObject.NULL : value;
+      if (value instanceof int[]) {
+        JSONArray array = new JSONArray();
+        for (int item : (int[]) value) {
+          array.put(item);
+        }
+        value = array;
+      } else if (value instanceof String[]) {
+        JSONArray array = new JSONArray();
+        for (String item : (String[]) value) {
+          array.put(item);
+        }
+        value = array;
+      }
+      result.put(field.getName(), value);
+    }
+    return result.toString(2).replace("\\/", "/");
+  }
+}
@@ -0,0 +1,154 @@
+//Copyright 2019 Uraniborg authors.
+//
+//Licensed under the Apache License, Version 2.0 (the "License");
+//you may not use this file except in compliance with the License.
+//You may obtain a copy of the License at
+//
+//http://www.apache.org/licenses/LICENSE-2.0
+//
+//Unless required by applicable law or agreed to in writing, software
+//distributed under the License is distributed on an "AS IS" BASIS,
+//WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//See the License for the specific language governing permissions and
+//limitations under the License.
+
+package com.uraniborg.hubble;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assume.assumeTrue;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Random;
+
+/**
+ * Checks that {@link FileDigester} produces the same digests through both of its strategies, and
+ * compares it with the {@link DigestInputStream} loop it replaced.
+ *
+ * <p>The stubbed {@link Context} has no ActivityManager, so FileDigester uses its low RAM sizes
+ * here: 512 byte reads, and 8 MB windows for files of 16 MB and more.
+ */
+public class FileDigesterTest {
+  private static final int SMALL_SIZE = (int) (100 * Utilities.Kilobyte);
+  // above the mapping threshold, and not a multiple of the window size.
+  private static final int LARGE_SIZE = (int) (20 * Utilities.Megabyte) + 12345;
+  private static final int BENCHMARK_FILES = 200;
+  private static final int BENCHMARK_ITERATIONS = 5;
+
+  @Rule
+  public TemporaryFolder mFolder = new TemporaryFolder();
+
+  private final Context mContext = new ContextWrapper(null);
+
+  @Test
+  public void digest_readsSmallFiles() throws Exception {
+    File file = createFile("small", SMALL_SIZE, 1);
+    assertArrayEquals(expectedDigest(file), FileDigester.digest(mContext, file));
+  }
+
+  @Test
+  public void digest_mapsLargeFilesAcrossWindows() throws Exception {
+    File file = createFile("large", LARGE_SIZE, 2);
+    assertArrayEquals(expectedDigest(file), FileDigester.digest(mContext, file));
+  }
+
+  @Test
+  public void digest_rejectsEmptyAndMissingFiles() throws Exception {
+    assertNull(FileDigester.digest(mContext, mFolder.newFile("empty")));
+    assertNull(FileDigester.digest(mContext, new File(mFolder.getRoot(), "missing")));
+  }
+
+  @Test
+  public void benchmark_digestAgainstStreamLoop() throws Exception {
+    assumeTrue("benchmarks only run with -Pbenchmarks", Boolean.getBoolean("hubble.benchmarks"));
+    File[] smallFiles = new File[BENCHMARK_FILES];
+    for (int i = 0; i < smallFiles.length; i++) {
+      smallFiles[i] = createFile("small" + i, SMALL_SIZE, i);
+    }
+    File largeFile = createFile("large", LARGE_SIZE, -1);
+
+    // once each to warm up, and to get the files into the page cache.
+    for (File file : smallFiles) {
+      FileDigester.digest(mContext, file);
+      streamDigest(file);
+    }
+    FileDigester.digest(mContext, largeFile);
+    streamDigest(largeFile);
+
+    long start = System.nanoTime();
+    for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+      for (File file : smallFiles) {
+        FileDigester.digest(mContext, file);
+      }
+    }
+    long smallDigester = (System.nanoTime() - start) / BENCHMARK_ITERATIONS;
+    start = System.nanoTime();
+    for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+      for (File file : smallFiles) {
+        streamDigest(file);
+      }
+    }
+    long smallStream = (System.nanoTime() - start) / BENCHMARK_ITERATIONS;
+
+    start = System.nanoTime();
+    for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+      FileDigester.digest(mContext, largeFile);
+    }
+    long largeDigester = (System.nanoTime() - start) / BENCHMARK_ITERATIONS;
+    start = System.nanoTime();
+    for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+      streamDigest(largeFile);
+    }
+    long largeStream = (System.nanoTime() - start) / BENCHMARK_ITERATIONS;
+
+    System.out.println(String.format("%d files of %d bytes: stream %.1f ms, FileDigester " +
+        "%.1f ms; one file of %d bytes: stream %.1f ms, FileDigester %.1f ms", BENCHMARK_FILES,
+        SMALL_SIZE, smallStream / 1e6, smallDigester / 1e6, LARGE_SIZE, largeStream / 1e6,
+        largeDigester / 1e6));
+  }
+
+  private File createFile(String name, int size, long seed) throws IOException {
+    byte[] content = new byte[size];
+    new Random(seed).nextBytes(content);
+    File file = mFolder.newFile(name);
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(content);
+    }
+    return file;
+  }
+
+  private static byte[] expectedDigest(File file) throws Exception {
+    MessageDigest md = MessageDigest.getInstance("SHA-256");
+    try (FileInputStream in = new FileInputStream(file)) {
+      byte[] buffer = new byte[(int) Utilities.Megabyte];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        md.update(buffer, 0, read);
+      }
+    }
+    return md.digest();
+  }
+
+  // how Utilities.computeSHA256DigestOfFile hashed files before FileDigester.
+  private static byte[] streamDigest(File file) throws Exception {
+    MessageDigest md = MessageDigest.getInstance("SHA256");
+    byte[] buffer = new byte[(int) Math.min(file.length(), 8 * Utilities.Kilobyte)];
+    try (DigestInputStream dis = new DigestInputStream(new FileInputStream(file), md)) {
+      while (dis.read(buffer) != -1) {
+      }
+    }
+    return md.digest();
+  }
+}
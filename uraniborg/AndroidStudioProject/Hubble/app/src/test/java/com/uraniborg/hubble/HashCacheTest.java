@@ -0,0 +1,205 @@
+//Copyright 2019 Uraniborg authors.
+//
+//Licensed under the Apache License, Version 2.0 (the "License");
+//you may not use this file except in compliance with the License.
+//You may obtain a copy of the License at
+//
+//http://www.apache.org/licenses/LICENSE-2.0
+//
+//Unless required by applicable law or agreed to in writing, software
+//distributed under the License is distributed on an "AS IS" BASIS,
+//WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//See the License for the specific language governing permissions and
+//limitations under the License.
+
+package com.uraniborg.hubble;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Checks when {@link HashCache} reuses a digest across runs, and how it reads and writes its file.
+ */
+public class HashCacheTest {
+  private static final String FINGERPRINT = "vendor/device:14/UQ1A/123:user/release-keys";
+  private static final String PATH = "/system/bin/sh";
+  private static final String HASH =
+      "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+  private static final long SECOND = 1000000000L;
+  // well after the file was last changed, so that it is not racy.
+  private static final long HASHED_AT = 1700000100L * SECOND;
+
+  @Rule
+  public TemporaryFolder mFolder = new TemporaryFolder();
+
+  private File getCacheFile() {
+    return new File(mFolder.getRoot(), "hash_cache.txt");
+  }
+
+  private HashCache openCache(String fingerprint) {
+    HashCache cache = new HashCache(getCacheFile(), fingerprint);
+    cache.load();
+    return cache;
+  }
+
+  private static HashCache.Entry createEntry(String hash) {
+    return new HashCache.Entry(64769, 1234, 5678, 1700000000L * SECOND + 123,
+        1700000000L * SECOND + 456, hash);
+  }
+
+  // runs a scan that hashes PATH and nothing else, as it looks in createEntry().
+  private void writeCache() {
+    HashCache cache = openCache(FINGERPRINT);
+    assertNull(cache.lookup(PATH, createEntry(null)));
+    cache.store(PATH, createEntry(HASH), HASHED_AT);
+    cache.save();
+  }
+
+  private void writeCacheFile(String... lines) throws Exception {
+    try (Writer writer = new OutputStreamWriter(new FileOutputStream(getCacheFile()),
+        StandardCharsets.UTF_8)) {
+      for (String line : lines) {
+        writer.write(line + "\n");
+      }
+    }
+  }
+
+  @Test
+  public void lookup_returnsTheDigestOfAnUnchangedFile() {
+    writeCache();
+
+    HashCache cache = openCache(FINGERPRINT);
+
+    assertEquals(HASH, cache.lookup(PATH, createEntry(null)));
+  }
+
+  @Test
+  public void lookup_missesWhenAnyOfTheFileStatusChanged() {
+    writeCache();
+    HashCache.Entry entry = createEntry(null);
+    HashCache.Entry[] changed = new HashCache.Entry[] {
+        new HashCache.Entry(entry.device + 1, entry.inode, entry.size, entry.mtimeNanos,
+            entry.ctimeNanos, null),
+        new HashCache.Entry(entry.device, entry.inode + 1, entry.size, entry.mtimeNanos,
+            entry.ctimeNanos, null),
+        new HashCache.Entry(entry.device, entry.inode, entry.size + 1, entry.mtimeNanos,
+            entry.ctimeNanos, null),
+        // changes within the same second only show in the nanoseconds.
+        new HashCache.Entry(entry.device, entry.inode, entry.size, entry.mtimeNanos + 1,
+            entry.ctimeNanos, null),
+        new HashCache.Entry(entry.device, entry.inode, entry.size, entry.mtimeNanos,
+            entry.ctimeNanos + 1, null),
+    };
+
+    HashCache cache = openCache(FINGERPRINT);
+
+    for (HashCache.Entry current : changed) {
+      assertNull(cache.lookup(PATH, current));
+    }
+    assertNull(cache.lookup("/system/bin/toybox", entry));
+  }
+
+  @Test
+  public void store_skipsFilesChangedWithinASecondOfHashing() {
+    HashCache.Entry entry = createEntry(HASH);
+    HashCache cache = openCache(FINGERPRINT);
+    cache.store(PATH, entry, entry.ctimeNanos + SECOND - 1);
+    cache.store("/system/bin/toybox", entry, entry.ctimeNanos + SECOND);
+    cache.save();
+
+    cache = openCache(FINGERPRINT);
+
+    assertNull(cache.lookup(PATH, createEntry(null)));
+    assertEquals(HASH, cache.lookup("/system/bin/toybox", createEntry(null)));
+  }
+
+  @Test
+  public void store_skipsPathsThatCannotBeSaved() {
+    HashCache cache = openCache(FINGERPRINT);
+    cache.store("/data/tab\there", createEntry(HASH), HASHED_AT);
+    cache.store("/data/line\nbreak", createEntry(HASH), HASHED_AT);
+    cache.save();
+
+    cache = openCache(FINGERPRINT);
+
+    assertNull(cache.lookup("/data/tab\there", createEntry(null)));
+    assertNull(cache.lookup("/data/line\nbreak", createEntry(null)));
+  }
+
+  @Test
+  public void load_dropsTheCacheOfAnotherBuild() {
+    writeCache();
+
+    HashCache cache = openCache("vendor/device:14/UQ1A/124:user/release-keys");
+
+    assertNull(cache.lookup(PATH, createEntry(null)));
+  }
+
+  @Test
+  public void load_dropsTheCacheOfAnotherFormat() throws Exception {
+    writeCacheFile("1\t" + FINGERPRINT, PATH + "\t64769\t1234\t5678\t1700000000\t" + HASH);
+
+    HashCache cache = openCache(FINGERPRINT);
+
+    assertNull(cache.lookup(PATH, createEntry(null)));
+  }
+
+  @Test
+  public void load_skipsMalformedLines() throws Exception {
+    HashCache.Entry entry = createEntry(null);
+    String status = "\t" + entry.device + "\t" + entry.inode + "\t" + entry.size + "\t" +
+        entry.mtimeNanos + "\t" + entry.ctimeNanos + "\t";
+    writeCacheFile("2\t" + FINGERPRINT,
+        "/system/bin/short\t64769\t1234\t" + HASH,
+        "/system/bin/long" + status + HASH + "\textra",
+        "/system/bin/nan\t64769\tinode\t5678\t1\t2\t" + HASH,
+        "",
+        PATH + status + HASH);
+
+    HashCache cache = openCache(FINGERPRINT);
+
+    assertEquals(HASH, cache.lookup(PATH, entry));
+    assertNull(cache.lookup("/system/bin/short", entry));
+    assertNull(cache.lookup("/system/bin/long", entry));
+    assertNull(cache.lookup("/system/bin/nan", entry));
+  }
+
+  @Test
+  public void save_keepsOnlyTheFilesLookedUpInThisRun() {
+    HashCache cache = openCache(FINGERPRINT);
+    cache.store(PATH, createEntry(HASH), HASHED_AT);
+    cache.store("/system/bin/toybox", createEntry(HASH), HASHED_AT);
+    cache.save();
+    cache = openCache(FINGERPRINT);
+    assertEquals(HASH, cache.lookup(PATH, createEntry(null)));
+    cache.save();
+
+    cache = openCache(FINGERPRINT);
+
+    assertEquals(HASH, cache.lookup(PATH, createEntry(null)));
+    assertNull(cache.lookup("/system/bin/toybox", createEntry(null)));
+  }
+
+  @Test
+  public void save_replacesTheCacheWithoutLeavingATemporaryFile() throws Exception {
+    writeCacheFile("2\t" + FINGERPRINT, "garbage");
+
+    writeCache();
+
+    assertTrue(getCacheFile().isFile());
+    assertFalse(new File(getCacheFile().getPath() + ".tmp").exists());
+    assertEquals(HASH, openCache(FINGERPRINT).lookup(PATH, createEntry(null)));
+  }
+}
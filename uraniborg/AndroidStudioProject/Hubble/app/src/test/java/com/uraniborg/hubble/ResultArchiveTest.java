@@ -0,0 +1,190 @@
+//Copyright 2019 Uraniborg authors.
+//
+//Licensed under the Apache License, Version 2.0 (the "License");
+//you may not use this file except in compliance with the License.
+//You may obtain a copy of the License at
+//
+//http://www.apache.org/licenses/LICENSE-2.0
+//
+//Unless required by applicable law or agreed to in writing, software
+//distributed under the License is distributed on an "AS IS" BASIS,
+//WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//See the License for the specific language governing permissions and
+//limitations under the License.
+
+package com.uraniborg.hubble;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Checks that a {@link ResultArchive} is a regular zip file, and that its index locates every
+ * section well enough to inflate it on its own.
+ */
+public class ResultArchiveTest {
+  @Rule
+  public TemporaryFolder mFolder = new TemporaryFolder();
+
+  private Context createContext() {
+    final File externalFilesDir = mFolder.getRoot();
+    return new ContextWrapper(null) {
+      @Override
+      public File getExternalFilesDir(String type) {
+        return externalFilesDir;
+      }
+    };
+  }
+
+  @After
+  public void tearDown() {
+    ResultArchive.close();
+  }
+
+  private static Map<String, String> createSections() {
+    StringBuilder packages = new StringBuilder("{\"packages\": [\n");
+    for (int i = 0; i < 2000; i++) {
+      packages.append(String.format("  {\"name\": \"com.example.app%d\", \"versionCode\": %d},\n",
+          i, i));
+    }
+    packages.append("]}\n");
+    Map<String, String> sections = new LinkedHashMap<>();
+    sections.put("packages.txt", packages.toString());
+    sections.put("build.txt", "{\"buildInfo\": [{\"fingerprint\": \"vendor/device:14/\u00fc\"}]}\n");
+    sections.put("device_properties.txt", "");
+    return sections;
+  }
+
+  private File writeArchive(Context context, Map<String, String> sections) throws Exception {
+    ResultArchive.open(context, "1.0.0");
+    ResultArchive archive = ResultArchive.getInstance();
+    assertNotNull(archive);
+    for (Map.Entry<String, String> section : sections.entrySet()) {
+      try (Writer writer = archive.openSection(section.getKey())) {
+        writer.write(section.getValue());
+      }
+    }
+    ResultArchive.close();
+    return ResultArchive.getArchiveFile(context);
+  }
+
+  @Test
+  public void close_writesAZipWithTheIndexLastAndStored() throws Exception {
+    Context context = createContext();
+    Map<String, String> sections = createSections();
+
+    File archiveFile = writeArchive(context, sections);
+
+    assertTrue(archiveFile.isFile());
+    assertFalse(new File(archiveFile.getPath() + ".part").exists());
+    try (ZipFile zip = new ZipFile(archiveFile)) {
+      List<? extends ZipEntry> entries = Collections.list(zip.entries());
+      List<String> names = new ArrayList<>();
+      for (ZipEntry entry : entries) {
+        names.add(entry.getName());
+      }
+      List<String> expected = new ArrayList<>(sections.keySet());
+      expected.add(ResultArchive.INDEX_FILENAME);
+      assertEquals(expected, names);
+
+      ZipEntry index = entries.get(entries.size() - 1);
+      assertEquals(ZipEntry.STORED, index.getMethod());
+      for (Map.Entry<String, String> section : sections.entrySet()) {
+        ZipEntry entry = zip.getEntry(section.getKey());
+        assertEquals(ZipEntry.DEFLATED, entry.getMethod());
+        try (InputStream in = zip.getInputStream(entry)) {
+          assertEquals(section.getValue(), new String(readAll(in), StandardCharsets.UTF_8));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void index_locatesSectionsThatInflateOnTheirOwn() throws Exception {
+    Context context = createContext();
+    Map<String, String> sections = createSections();
+
+    File archiveFile = writeArchive(context, sections);
+
+    JSONObject index;
+    try (ZipFile zip = new ZipFile(archiveFile)) {
+      try (InputStream in = zip.getInputStream(zip.getEntry(ResultArchive.INDEX_FILENAME))) {
+        index = new JSONObject(new String(readAll(in), StandardCharsets.UTF_8));
+      }
+    }
+    assertEquals("1.0.0", index.getString("version"));
+    assertEquals(sections.size(), index.getInt("totalSections"));
+
+    JSONArray records = index.getJSONArray("sections");
+    try (RandomAccessFile file = new RandomAccessFile(archiveFile, "r")) {
+      for (int i = 0; i < records.length(); i++) {
+        JSONObject record = records.getJSONObject(i);
+        byte[] expected = sections.get(record.getString("name")).getBytes(StandardCharsets.UTF_8);
+        assertEquals(expected.length, record.getLong("size"));
+
+        // the local header of the section starts with its signature.
+        file.seek(record.getLong("headerOffset"));
+        assertEquals(0x04034b50, Integer.reverseBytes(file.readInt()));
+
+        byte[] compressed = new byte[(int) record.getLong("compressedSize")];
+        file.seek(record.getLong("dataOffset"));
+        file.readFully(compressed);
+        Inflater inflater = new Inflater(true);
+        inflater.setInput(compressed);
+        // one byte more than expected, so that a longer section would show.
+        byte[] buffer = new byte[expected.length + 1];
+        int length = 0;
+        while (!inflater.finished() && !inflater.needsInput() && length < buffer.length) {
+          length += inflater.inflate(buffer, length, buffer.length - length);
+        }
+        assertTrue(inflater.finished());
+        inflater.end();
+
+        byte[] inflated = Arrays.copyOf(buffer, length);
+        assertArrayEquals(expected, inflated);
+        CRC32 crc = new CRC32();
+        crc.update(inflated);
+        assertEquals(crc.getValue(), record.getLong("crc32"));
+      }
+    }
+  }
+
+  private static byte[] readAll(InputStream in) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      out.write(buffer, 0, read);
+    }
+    return out.toByteArray();
+  }
+}
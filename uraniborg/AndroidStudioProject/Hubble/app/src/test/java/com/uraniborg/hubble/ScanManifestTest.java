@@ -0,0 +1,185 @@
+//Copyright 2019 Uraniborg authors.
+//
+//Licensed under the Apache License, Version 2.0 (the "License");
+//you may not use this file except in compliance with the License.
+//You may obtain a copy of the License at
+//
+//http://www.apache.org/licenses/LICENSE-2.0
+//
+//Unless required by applicable law or agreed to in writing, software
+//distributed under the License is distributed on an "AS IS" BASIS,
+//WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//See the License for the specific language governing permissions and
+//limitations under the License.
+
+package com.uraniborg.hubble;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Checks how {@link ScanManifest} decides which packages changed between two runs, and the changes
+ * it reports.
+ */
+public class ScanManifestTest {
+  private static final String VERSION = "2.0.0";
+  private static final String PROFILE = "full";
+  private static final long SECOND = 1000000000L;
+  private static final String KEY = ScanManifest.buildKey(1700000000000L, 42, 123456,
+      1700000000L * SECOND + 123, 1700000000L * SECOND + 456, 7890);
+
+  @Rule
+  public TemporaryFolder mFolder = new TemporaryFolder();
+
+  private File getManifestFile() {
+    return new File(mFolder.getRoot(), "package_manifest.txt");
+  }
+
+  private ScanManifest loadManifest(String version, String profile) {
+    ScanManifest manifest = new ScanManifest(version, profile);
+    manifest.loadKeys(getManifestFile());
+    return manifest;
+  }
+
+  // a previous run that saw com.example.a, com.example.b and com.example.c with the same key.
+  private void savePreviousRun() {
+    ScanManifest previous = loadManifest(VERSION, PROFILE);
+    for (String name : Arrays.asList("com.example.a", "com.example.b", "com.example.c")) {
+      previous.observe(name, KEY, "hash-" + name);
+    }
+    previous.save(getManifestFile());
+  }
+
+  private static List<String> describe(List<JSONObject> changes) throws Exception {
+    List<String> descriptions = new ArrayList<>();
+    for (JSONObject change : changes) {
+      descriptions.add(change.getString("name") + " " + change.getString("change") + " " +
+          change.get("previousHash") + " " + change.get("hash"));
+    }
+    return descriptions;
+  }
+
+  @Test
+  public void buildKey_differsWhenAnyOfThePackageStatusChanged() {
+    Set<String> keys = new HashSet<>(Arrays.asList(
+        KEY,
+        ScanManifest.buildKey(1700000000001L, 42, 123456, 1700000000L * SECOND + 123,
+            1700000000L * SECOND + 456, 7890),
+        ScanManifest.buildKey(1700000000000L, 43, 123456, 1700000000L * SECOND + 123,
+            1700000000L * SECOND + 456, 7890),
+        ScanManifest.buildKey(1700000000000L, 42, 123457, 1700000000L * SECOND + 123,
+            1700000000L * SECOND + 456, 7890),
+        // an APK replaced within the same second only differs in the nanoseconds.
+        ScanManifest.buildKey(1700000000000L, 42, 123456, 1700000000L * SECOND + 124,
+            1700000000L * SECOND + 456, 7890),
+        ScanManifest.buildKey(1700000000000L, 42, 123456, 1700000000L * SECOND + 123,
+            1700000000L * SECOND + 457, 7890),
+        ScanManifest.buildKey(1700000000000L, 42, 123456, 1700000000L * SECOND + 123,
+            1700000000L * SECOND + 456, 7891)));
+
+    assertEquals(7, keys.size());
+  }
+
+  @Test
+  public void getChanges_listsAddedRemovedAndChangedPackagesByName() throws Exception {
+    savePreviousRun();
+
+    ScanManifest manifest = loadManifest(VERSION, PROFILE);
+    manifest.observe("com.example.d", KEY, "hash-d");
+    manifest.observe("com.example.c", KEY + "1", "hash-c2");
+    manifest.observe("com.example.a", KEY, "hash-com.example.a");
+
+    assertEquals(Arrays.asList(
+        "com.example.b removed null null",
+        "com.example.c changed null hash-c2",
+        "com.example.d added null hash-d"), describe(manifest.getChanges()));
+  }
+
+  @Test
+  public void getChanges_treatsPackagesThatCannotBeInspectedAsChanged() throws Exception {
+    savePreviousRun();
+
+    ScanManifest manifest = loadManifest(VERSION, PROFILE);
+    manifest.observe("com.example.a", null, null);
+    manifest.observe("com.example.b", KEY, "hash-com.example.b");
+    manifest.observe("com.example.c", KEY, "hash-com.example.c");
+    manifest.observe("com.example.e", null, null);
+
+    assertEquals(Arrays.asList(
+        "com.example.a changed null null",
+        "com.example.e added null null"), describe(manifest.getChanges()));
+  }
+
+  @Test
+  public void getChanges_reportsEveryPackageAsAddedWithoutAPreviousRun() throws Exception {
+    ScanManifest manifest = loadManifest(VERSION, PROFILE);
+    manifest.observe("com.example.a", KEY, "hash-a");
+
+    assertEquals(Arrays.asList("com.example.a added null hash-a"),
+        describe(manifest.getChanges()));
+  }
+
+  @Test
+  public void save_keepsOnlyThePackagesSeenInThisRun() throws Exception {
+    savePreviousRun();
+    ScanManifest manifest = loadManifest(VERSION, PROFILE);
+    manifest.observe("com.example.a", KEY, "hash-com.example.a");
+    // packages whose APK cannot be inspected have no key to save.
+    manifest.observe("com.example.b", null, null);
+    manifest.save(getManifestFile());
+
+    manifest = loadManifest(VERSION, PROFILE);
+    manifest.observe("com.example.a", KEY, "hash-com.example.a");
+    manifest.observe("com.example.b", KEY, "hash-com.example.b");
+
+    assertEquals(Arrays.asList("com.example.b added null hash-com.example.b"),
+        describe(manifest.getChanges()));
+    assertFalse(new File(getManifestFile().getPath() + ".tmp").exists());
+  }
+
+  @Test
+  public void loadKeys_ignoresManifestsOfAnotherVersionOrProfile() throws Exception {
+    savePreviousRun();
+
+    for (ScanManifest manifest : Arrays.asList(loadManifest("2.0.1", PROFILE),
+        loadManifest(VERSION, "minimal"))) {
+      manifest.observe("com.example.a", KEY, "hash-a");
+      assertEquals(Arrays.asList("com.example.a added null hash-a"),
+          describe(manifest.getChanges()));
+    }
+  }
+
+  @Test
+  public void loadKeys_skipsMalformedLines() throws Exception {
+    ScanManifest header = new ScanManifest(VERSION, PROFILE);
+    header.save(getManifestFile());
+    try (Writer writer = new OutputStreamWriter(new FileOutputStream(getManifestFile(), true),
+        StandardCharsets.UTF_8)) {
+      writer.write("com.example.nokey\n");
+      writer.write("\t" + KEY + "\n");
+      writer.write("com.example.a\t" + KEY + "\n");
+    }
+
+    ScanManifest manifest = loadManifest(VERSION, PROFILE);
+    manifest.observe("com.example.a", KEY, null);
+
+    assertTrue(manifest.getChanges().isEmpty());
+  }
+}
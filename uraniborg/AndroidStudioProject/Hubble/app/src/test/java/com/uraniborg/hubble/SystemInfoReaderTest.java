@@ -0,0 +1,237 @@
+//Copyright 2019 Uraniborg authors.
+//
+//Licensed under the Apache License, Version 2.0 (the "License");
+//you may not use this file except in compliance with the License.
+//You may obtain a copy of the License at
+//
+//http://www.apache.org/licenses/LICENSE-2.0
+//
+//Unless required by applicable law or agreed to in writing, software
+//distributed under the License is distributed on an "AS IS" BASIS,
+//WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//See the License for the specific language governing permissions and
+//limitations under the License.
+
+package com.uraniborg.hubble;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Checks {@link SystemInfoReader}'s parser of bionic's property areas against synthetic areas laid
+ * out as in system_properties/prop_area.h, prop_bt.h and prop_info.h.
+ */
+public class SystemInfoReaderTest {
+  private static final int AREA_SIZE = 4096;
+  private static final int DATA = 128;
+  private static final int LONG_VALUE = "0123456789".length() * 12;
+
+  /**
+   * Builds a property area: a header, then a trie of nodes and the properties they point to, each
+   * allocated after the previous one as bionic does.
+   */
+  private static class AreaBuilder {
+    final ByteBuffer area = ByteBuffer.allocate(AREA_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    final Map<String, Integer> nodes = new HashMap<>();
+    int used = 0;
+
+    AreaBuilder() {
+      area.putInt(8, 0x504f5250);
+      area.putInt(12, 0xfc6ed0ab);
+      // the root node, which has no name.
+      node("");
+    }
+
+    // allocates in the data, aligned to 4 bytes; returns the offset relative to the data.
+    int allocate(int size) {
+      int offset = used;
+      used += (size + 3) & ~3;
+      area.putInt(0, used);
+      return offset;
+    }
+
+    int node(String name) {
+      byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+      int node = allocate(20 + bytes.length + 1);
+      area.putInt(DATA + node, bytes.length);
+      put(DATA + node + 20, bytes);
+      nodes.put(name, node);
+      return node;
+    }
+
+    void link(int node, int field, int target) {
+      area.putInt(DATA + node + field, target);
+    }
+
+    int property(int node, String name, String value) {
+      byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+      byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+      int info = allocate(4 + 92 + nameBytes.length + 1);
+      put(DATA + info + 4 + 92, nameBytes);
+      if (valueBytes.length < 92) {
+        area.putInt(DATA + info, valueBytes.length << 24);
+        put(DATA + info + 4, valueBytes);
+      } else {
+        // long values are stored after the property, at an offset relative to it.
+        int longValue = allocate(valueBytes.length + 1);
+        area.putInt(DATA + info, 1 << 16);
+        put(DATA + info + 4, "Must use __system_property_read_callback()".getBytes(
+            StandardCharsets.UTF_8));
+        area.putInt(DATA + info + 4 + 56, longValue - info);
+        put(DATA + longValue, valueBytes);
+      }
+      link(node, 4, info);
+      return info;
+    }
+
+    void put(int offset, byte[] bytes) {
+      for (int i = 0; i < bytes.length; i++) {
+        area.put(offset + i, bytes[i]);
+      }
+    }
+
+    ByteBuffer build() {
+      return area.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+  }
+
+  private static final int LEFT = 8;
+  private static final int RIGHT = 12;
+  private static final int CHILDREN = 16;
+
+  private static String longValue() {
+    char[] value = new char[LONG_VALUE];
+    Arrays.fill(value, 'v');
+    return new String(value);
+  }
+
+  // root -> ro (ro.a) -> children: build (ro.build.b), with siblings hardware (left) and
+  // product (right, ro.product.c holding a long value).
+  private static AreaBuilder createTree() {
+    AreaBuilder builder = new AreaBuilder();
+    int ro = builder.node("ro");
+    builder.link(0, CHILDREN, ro);
+    builder.property(ro, "ro.a", "1");
+    int build = builder.node("build");
+    builder.link(ro, CHILDREN, build);
+    builder.property(build, "ro.build.b", "user");
+    int hardware = builder.node("hardware");
+    builder.link(build, LEFT, hardware);
+    builder.property(hardware, "ro.hardware", "");
+    int product = builder.node("product");
+    builder.link(build, RIGHT, product);
+    builder.property(product, "ro.product.c", longValue());
+    return builder;
+  }
+
+  @Test
+  public void readArea_readsShortAndLongPropertiesThroughSiblingsAndChildren() {
+    Map<String, String> props = new TreeMap<>();
+
+    assertTrue(SystemInfoReader.readArea(createTree().build(), props));
+
+    Map<String, String> expected = new TreeMap<>();
+    expected.put("ro.a", "1");
+    expected.put("ro.build.b", "user");
+    expected.put("ro.hardware", "");
+    expected.put("ro.product.c", longValue());
+    assertEquals(expected, props);
+  }
+
+  @Test
+  public void readArea_rejectsOtherMagicsVersionsAndSizes() {
+    ByteBuffer badMagic = createTree().build();
+    badMagic.putInt(8, 0x12345678);
+    ByteBuffer badVersion = createTree().build();
+    badVersion.putInt(12, 0xfc6ed0ac);
+    ByteBuffer tooSmall = ByteBuffer.allocate(DATA - 1).order(ByteOrder.LITTLE_ENDIAN);
+    Map<String, String> props = new TreeMap<>();
+
+    assertFalse(SystemInfoReader.readArea(badMagic, props));
+    assertFalse(SystemInfoReader.readArea(badVersion, props));
+    assertFalse(SystemInfoReader.readArea(tooSmall, props));
+    assertTrue(props.isEmpty());
+  }
+
+  @Test
+  public void readArea_skipsOffsetsOutsideTheData() {
+    AreaBuilder builder = createTree();
+    int ro = builder.nodes.get("ro");
+    // links past the data, into the header, and so far that the end of the node overflows.
+    int stray = builder.node("stray");
+    builder.link(ro, LEFT, stray);
+    builder.link(stray, RIGHT, -DATA - 4);
+    builder.link(stray, CHILDREN, Integer.MAX_VALUE - DATA - 10);
+    // properties past the data and with an overflowing end, and a long value whose offset
+    // overflows.
+    builder.link(stray, 4, builder.used + 4096);
+    int overflow = builder.node("overflow");
+    builder.link(stray, LEFT, overflow);
+    builder.link(overflow, 4, Integer.MAX_VALUE - DATA - 50);
+    builder.link(overflow, LEFT, AREA_SIZE);
+    int broken = builder.node("broken");
+    builder.link(ro, RIGHT, broken);
+    int info = builder.property(broken, "ro.broken", longValue());
+    builder.area.putInt(DATA + info + 4 + 56, Integer.MAX_VALUE);
+    Map<String, String> props = new TreeMap<>();
+
+    assertTrue(SystemInfoReader.readArea(builder.build(), props));
+    assertEquals(5, props.size());
+    assertEquals("", props.get("ro.broken"));
+    assertEquals(longValue(), props.get("ro.product.c"));
+  }
+
+  @Test
+  public void readArea_stopsAtTheBytesInUse() {
+    AreaBuilder builder = createTree();
+    // everything from ro.build.b's node on is no longer part of the data.
+    builder.area.putInt(0, builder.nodes.get("build") + 8);
+    Map<String, String> props = new TreeMap<>();
+
+    assertTrue(SystemInfoReader.readArea(builder.build(), props));
+    assertEquals(1, props.size());
+    assertEquals("1", props.get("ro.a"));
+  }
+
+  @Test
+  public void readArea_survivesTruncatedAreasAndLoops() {
+    AreaBuilder builder = createTree();
+    // claims more bytes in use than the buffer holds, and links the root to itself.
+    builder.area.putInt(0, Integer.MAX_VALUE);
+    builder.link(0, LEFT, 0);
+    ByteBuffer truncated = ByteBuffer.allocate(DATA + builder.used - 30)
+        .order(ByteOrder.LITTLE_ENDIAN);
+    for (int i = 0; i < truncated.capacity(); i++) {
+      truncated.put(i, builder.area.get(i));
+    }
+    Map<String, String> props = new TreeMap<>();
+
+    assertTrue(SystemInfoReader.readArea(truncated, props));
+    assertEquals("1", props.get("ro.a"));
+    assertEquals("user", props.get("ro.build.b"));
+  }
+
+  @Test
+  public void writeProperties_writesGetpropLines() throws Exception {
+    Map<String, String> props = new TreeMap<>();
+    props.put("ro.b", "");
+    props.put("ro.a", "1");
+    StringWriter writer = new StringWriter();
+
+    SystemInfoReader.writeProperties(props, writer);
+
+    assertEquals("[ro.a]: [1]\n[ro.b]: []\n", writer.toString());
+  }
+}
@@ -31,9 +31,11 @@ import tarfile  # to untar decompressed adb backup file
 from typing import Optional  # runtime support for type hints.
 import zlib  # to decompress adb backup
 
+import hubble_parser
 import syscall_wrapper
 
 AdbWrapper = syscall_wrapper.AdbWrapper
+HubbleParser = hubble_parser.HubbleParser
 SyscallWrapper = syscall_wrapper.SyscallWrapper
 
 HUBBLE_PACKAGE_NAME = "com.uraniborg.hubble"
@@ -357,11 +359,57 @@ def classify_dir_using_adb_format(adb_wrapper: syscall_wrapper.AdbWrapper,
       logger.debug("{} does not exist yet! Using it!".format(target_dir))
       break
 
+  if is_results_archive(source):
+    # pulled into the directory, and unpacked to the same layout as the files.
+    os.makedirs(target_dir)
+    if (adb_wrapper.pull(source, target_dir) and
+        HubbleParser.unpack_results_archive(target_dir, logger)):
+      return target_dir
+    return None
+
   if adb_wrapper.pull(source, target_dir):
     return target_dir
   return None
 
 
+def is_results_archive(source: str) -> bool:
+  """Tells whether Hubble reported its results.zip rather than a directory.
+
+  Args:
+    source: the result location (on target device) logged by Hubble.
+
+  Returns:
+    True if Hubble was run with the archive extra and wrote a single archive.
+  """
+  return os.path.basename(source) == HubbleParser.RESULT_ARCHIVE
+
+
+def pull_results_archive(adb_wrapper: syscall_wrapper.AdbWrapper,
+                         source: str,
+                         logger: logging.Logger) -> Optional[str]:
+  """Pulls Hubble's results.zip to the host and unpacks it.
+
+  Args:
+    adb_wrapper: An AdbWrapper instance.
+    source: the path to results.zip (on target device).
+    logger: A logger object to log debug or error messages.
+
+  Returns:
+    A string representing the directory (on host) holding the archive and the
+    result files unpacked from it. <code>None</code> is returned if the archive
+    cannot be pulled or unpacked.
+  """
+  unpacked_dir = "/tmp/unzipped_hubble_results"
+  shutil.rmtree(unpacked_dir, ignore_errors=True)
+  os.makedirs(unpacked_dir)
+  if not adb_wrapper.pull(source, unpacked_dir):
+    logger.error("Failed to pull %s from device.", source)
+    return None
+  if not HubbleParser.unpack_results_archive(unpacked_dir, logger):
+    return None
+  return unpacked_dir
+
+
 def _retry_apk_extraction(adb_wrapper: syscall_wrapper.AdbWrapper,
                           retry_packages_dict: dict[str, str],
                           apks_dir: str,
@@ -528,7 +576,15 @@ def classify_dir_using_build_fingerprint(
   # need to grab the build.txt to a tmp location
   tmp_file = "/tmp/device_build.txt"
   adb_pull_failed = False
-  if not adb_wrapper.pull("{}/build.txt".format(source), tmp_file):
+  unpacked_dir = None
+  if is_results_archive(source):
+    # the whole archive is pulled now, as build.txt is one of its entries.
+    unpacked_dir = pull_results_archive(adb_wrapper, source, logger)
+    if unpacked_dir:
+      tmp_file = os.path.join(unpacked_dir, "build.txt")
+    else:
+      adb_pull_failed = True
+  elif not adb_wrapper.pull("{}/build.txt".format(source), tmp_file):
     logger.error("Failed to pull build.txt from device results dir.")
     adb_pull_failed = True
 
@@ -561,8 +617,11 @@ def classify_dir_using_build_fingerprint(
     tar_obj.extractall(base_result_path)
 
     # we overwrite tmp_file to reuse existing logic
-    tmp_file = os.path.join(base_result_path, "apps", HUBBLE_PACKAGE_NAME,
-                            "ef", "results", "build.txt")
+    backup_results_dir = os.path.join(base_result_path, "apps",
+                                      HUBBLE_PACKAGE_NAME, "ef", "results")
+    tmp_file = os.path.join(backup_results_dir, "build.txt")
+    if not os.path.exists(tmp_file):
+      HubbleParser.unpack_results_archive(backup_results_dir, logger)
     logger.debug("tmp_file: %s", tmp_file)
 
   build_info = ""
@@ -603,6 +662,17 @@ def classify_dir_using_build_fingerprint(
                                  os.path.join(apks_dir,
                                               "failed_extraction.txt"))
     return target_dir
+  elif unpacked_dir:
+    os.makedirs(target_dir, exist_ok=True)
+    shutil.move(unpacked_dir, os.path.join(target_dir, "results"))
+    failed_extraction_dict = extract_apks_from_device(
+        adb_wrapper, os.path.join(target_dir, "results", "packages.txt"),
+        apks_dir, logger)
+    if failed_extraction_dict:
+      write_dict_as_json_to_file(failed_extraction_dict,
+                                 os.path.join(apks_dir,
+                                              "failed_extraction.txt"))
+    return target_dir
   else:
     if adb_wrapper.pull(source, target_dir):
       failed_extraction_dict = extract_apks_from_device(
@@ -23,6 +23,7 @@ observations and expose them as method calls to its consumers.
 import base64
 import json
 import os
+import zipfile
 
 
 class HubbleParser:
@@ -48,6 +49,10 @@ class HubbleParser:
       "hardware": "hardware.txt"
   }
 
+  # Written by Hubble instead of the files above when run with the archive
+  # extra. Every file is an entry of it, along with the uncompressed index.txt.
+  RESULT_ARCHIVE = "results.zip"
+
   SYSTEM_SHARED_UID_SET = set([
       "android.uid.system",
       "android.uid.phone",
@@ -68,6 +73,31 @@ class HubbleParser:
         return False
     return True
 
+  @staticmethod
+  def unpack_results_archive(directory, logger):
+    """Unpacks the result archive in directory, if any, next to it.
+
+    Args:
+      directory: the directory that may hold Hubble's results.zip.
+      logger: A logger object to log debug or error messages.
+
+    Returns:
+      True if the archive was found and unpacked.
+      False if there is no archive or it cannot be read.
+    """
+    archive_path = os.path.join(directory, HubbleParser.RESULT_ARCHIVE)
+    if not os.path.isfile(archive_path):
+      return False
+    try:
+      with zipfile.ZipFile(archive_path) as archive:
+        logger.debug("Unpacking %d entries of %s...", len(archive.namelist()),
+                     archive_path)
+        archive.extractall(directory)
+    except (zipfile.BadZipFile, OSError) as e:
+      logger.error("Failed to unpack %s: %s", archive_path, e)
+      return False
+    return True
+
   def __init__(self, logger, normalize=False):
     self.packages = ""
     self.certificates = ""
@@ -107,6 +137,8 @@ class HubbleParser:
 
     Assuming that hubble output files aren't renamed, this method is able to
     pick up the necessary files to be read into memory and loads them as JSON.
+    If they are missing but the directory holds a results.zip, the archive is
+    unpacked into the directory first.
 
     Args:
       directory: the directory where hubble outputs for a specific observation
@@ -122,7 +154,14 @@ class HubbleParser:
       logger.error("%s is empty!", directory)
       return False
 
-    for f in list(HubbleParser.CORE_FILES_DICT.values()):
+    core_files = list(HubbleParser.CORE_FILES_DICT.values())
+    if (not all(os.path.exists(os.path.join(directory, f)) for f in core_files)
+        and HubbleParser.RESULT_ARCHIVE in output_files):
+      logger.debug("Core files missing, reading them from %s instead.",
+                   HubbleParser.RESULT_ARCHIVE)
+      HubbleParser.unpack_results_archive(directory, logger)
+
+    for f in core_files:
       if not os.path.exists(os.path.join(directory, f)):
         logger.error("%s not found in %s", f, directory)
         return False